@@ -75,6 +75,7 @@ import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserTokenDao;
 import org.sonar.db.webhook.WebhookDeliveryDao;
+import org.sonar.db.webhook.WebhookOutboxDao;
 
 public class DaoModule extends Module {
   private static final List<Class<? extends Dao>> classes = Collections.unmodifiableList(Arrays.asList(
@@ -132,7 +133,8 @@ public class DaoModule extends Module {
     UserGroupDao.class,
     UserPermissionDao.class,
     UserTokenDao.class,
-    WebhookDeliveryDao.class)
+    WebhookDeliveryDao.class,
+    WebhookOutboxDao.class)
   );
 
   @Override
@@ -73,6 +73,7 @@ import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserTokenDao;
 import org.sonar.db.webhook.WebhookDeliveryDao;
+import org.sonar.db.webhook.WebhookOutboxDao;
 
 public class DbClient {
 
@@ -125,6 +126,7 @@ public class DbClient {
   private final QProfileChangeDao qProfileChangeDao;
   private final UserPermissionDao userPermissionDao;
   private final WebhookDeliveryDao webhookDeliveryDao;
+  private final WebhookOutboxDao webhookOutboxDao;
   private final DefaultQProfileDao defaultQProfileDao;
   private final EsQueueDao esQueueDao;
   private final PluginDao pluginDao;
@@ -187,6 +189,7 @@ public class DbClient {
     qProfileChangeDao = getDao(map, QProfileChangeDao.class);
     userPermissionDao = getDao(map, UserPermissionDao.class);
     webhookDeliveryDao = getDao(map, WebhookDeliveryDao.class);
+    webhookOutboxDao = getDao(map, WebhookOutboxDao.class);
     defaultQProfileDao = getDao(map, DefaultQProfileDao.class);
     esQueueDao = getDao(map, EsQueueDao.class);
     pluginDao = getDao(map, PluginDao.class);
@@ -388,6 +391,10 @@ public class DbClient {
     return webhookDeliveryDao;
   }
 
+  public WebhookOutboxDao webhookOutboxDao() {
+    return webhookOutboxDao;
+  }
+
   public DefaultQProfileDao defaultQProfileDao() {
     return defaultQProfileDao;
   }
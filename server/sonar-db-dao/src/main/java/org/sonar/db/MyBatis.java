@@ -129,6 +129,7 @@ import org.sonar.db.user.UserTokenCount;
 import org.sonar.db.user.UserTokenDto;
 import org.sonar.db.user.UserTokenMapper;
 import org.sonar.db.webhook.WebhookDeliveryMapper;
+import org.sonar.db.webhook.WebhookOutboxMapper;
 
 public class MyBatis implements Startable {
 
@@ -250,7 +251,8 @@ public class MyBatis implements Startable {
       UserMapper.class,
       UserPermissionMapper.class,
       UserTokenMapper.class,
-      WebhookDeliveryMapper.class
+      WebhookDeliveryMapper.class,
+      WebhookOutboxMapper.class
     };
     confBuilder.loadMappers(mappers);
 
@@ -260,6 +260,15 @@ public class ComponentDao implements Dao {
     return mapper(dbSession).selectAllRootsByOrganization(organizationUuid);
   }
 
+  /**
+   * Select the distinct values of column project_uuid, whatever the qualifier and the status
+   * of components. Each component belongs to exactly one of these values, so they can be
+   * used to partition the full indexing of project data.
+   */
+  public List<String> selectDistinctProjectUuids(DbSession dbSession) {
+    return mapper(dbSession).selectDistinctProjectUuids();
+  }
+
   public List<ComponentDto> selectGhostProjects(DbSession session, String organizationUuid, @Nullable String query, int offset, int limit) {
     return mapper(session).selectGhostProjects(organizationUuid, buildUpperLikeSql(query), new RowBounds(offset, limit));
   }
@@ -22,6 +22,7 @@ package org.sonar.db.duplication;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
@@ -38,6 +39,14 @@ public class DuplicationDao implements Dao {
       partition -> session.getMapper(DuplicationMapper.class).selectCandidates(analysisUuid, language, partition));
   }
 
+  /**
+   * Scroll over the blocks of the last analysis of all projects, restricted to the enabled files of the given language.
+   * These are the blocks that can be returned by {@link #selectCandidates(DbSession, String, String, Collection)}.
+   */
+  public void scrollLastAnalysesUnits(DbSession session, String language, ResultHandler<DuplicationUnitDto> handler) {
+    session.getMapper(DuplicationMapper.class).scrollLastAnalysesUnits(language, handler);
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
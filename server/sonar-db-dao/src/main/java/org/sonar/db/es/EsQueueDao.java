@@ -22,6 +22,7 @@ package org.sonar.db.es;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.db.Dao;
@@ -73,6 +74,24 @@ public class EsQueueDao implements Dao {
     return mapper(dbSession).selectForRecovery(beforeDate, limit);
   }
 
+  public int countAll(DbSession dbSession) {
+    return mapper(dbSession).countAll();
+  }
+
+  /**
+   * Creation date of the oldest item of the queue, if any
+   */
+  public Optional<Long> selectOldestCreatedAt(DbSession dbSession) {
+    return Optional.ofNullable(mapper(dbSession).selectOldestCreatedAt());
+  }
+
+  /**
+   * Creation date of the oldest item of the queue created after the given date, if any
+   */
+  public Optional<Long> selectOldestCreatedAtAfter(DbSession dbSession, long afterDate) {
+    return Optional.ofNullable(mapper(dbSession).selectOldestCreatedAtAfter(afterDate));
+  }
+
   private static EsQueueMapper mapper(DbSession dbSession) {
     return dbSession.getMapper(EsQueueMapper.class);
   }
@@ -103,6 +103,36 @@ public class IssueDao implements Dao {
     mapper(dbSession).scrollNonClosedByModuleOrProject(module.projectUuid(), likeModuleUuidPath, handler);
   }
 
+  /**
+   * Issues of a module or project, whatever their status, which have been updated at or after the given date.
+   * Closed issues are returned so that clients can forget about them.
+   */
+  public void scrollByModuleOrProjectUpdatedSince(DbSession dbSession, ComponentDto module, long updatedSince, ResultHandler<IssueDto> handler) {
+    String likeModuleUuidPath = buildLikeValue(module.moduleUuidPath(), WildcardPosition.AFTER);
+    mapper(dbSession).scrollByModuleOrProjectUpdatedSince(module.projectUuid(), likeModuleUuidPath, updatedSince, handler);
+  }
+
+  /**
+   * Most recent technical update date of the issues of a project or branch, whatever their status
+   */
+  public java.util.Optional<Long> selectMaxUpdatedAtByProjectUuid(DbSession dbSession, String projectUuid) {
+    return java.util.Optional.ofNullable(mapper(dbSession).selectMaxUpdatedAtByProjectUuid(projectUuid));
+  }
+
+  /**
+   * Page of the non-closed issues of a project or branch, ordered by component uuid then by key.
+   * The next page is selected by passing the component uuid and the key of the last issue of the previous page,
+   * which does not require to skip the issues already read.
+   *
+   * @param after last issue of the previous page, {@code null} to select the first page
+   */
+  public List<IssueDto> selectNonClosedByProjectUuid(DbSession dbSession, String projectUuid, @Nullable IssueDto after, int pageSize) {
+    return mapper(dbSession).selectNonClosedByProjectUuidAfter(projectUuid,
+      after == null ? null : after.getComponentUuid(),
+      after == null ? null : after.getKey(),
+      pageSize);
+  }
+
   public List<ShortBranchIssueDto> selectOpenByComponentUuids(DbSession dbSession, Collection<String> componentUuids) {
     return executeLargeInputs(componentUuids, mapper(dbSession)::selectOpenByComponentUuids);
   }
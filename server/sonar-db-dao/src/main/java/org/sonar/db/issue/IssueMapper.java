@@ -21,6 +21,8 @@ package org.sonar.db.issue;
 
 import java.util.List;
 import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.session.ResultHandler;
 
@@ -46,4 +48,19 @@ public interface IssueMapper {
     @Param("projectUuid") String projectUuid,
     @Param("likeModuleUuidPath") String likeModuleUuidPath,
     ResultHandler<IssueDto> handler);
+
+  void scrollByModuleOrProjectUpdatedSince(
+    @Param("projectUuid") String projectUuid,
+    @Param("likeModuleUuidPath") String likeModuleUuidPath,
+    @Param("updatedSince") long updatedSince,
+    ResultHandler<IssueDto> handler);
+
+  @CheckForNull
+  Long selectMaxUpdatedAtByProjectUuid(@Param("projectUuid") String projectUuid);
+
+  List<IssueDto> selectNonClosedByProjectUuidAfter(
+    @Param("projectUuid") String projectUuid,
+    @Nullable @Param("afterComponentUuid") String afterComponentUuid,
+    @Nullable @Param("afterKey") String afterKey,
+    @Param("pageSize") int pageSize);
 }
@@ -85,13 +85,13 @@ public class MeasureDao implements Dao {
     mapper(dbSession).selectTreeByQuery(query, baseComponent.uuid(), query.getUuidPath(baseComponent), resultHandler);
   }
 
-  public List<PastMeasureDto> selectPastMeasures(DbSession dbSession, String componentUuid, String analysisUuid, Collection<Integer> metricIds) {
-    if (metricIds.isEmpty()) {
-      return emptyList();
-    }
-    return executeLargeInputs(
-      metricIds,
-      ids -> mapper(dbSession).selectPastMeasuresOnSingleAnalysis(componentUuid, analysisUuid, ids));
+  /**
+   * Streams, in a single query, the numeric measures of the specified analysis on the project, modules, directories,
+   * views and sub-views. Measures on files, which are usually purged, and measures on developers are excluded.
+   * Measures are ordered by component uuid then by metric id, so that the measures of a component are consecutive.
+   */
+  public void selectPastMeasures(DbSession dbSession, String analysisUuid, ResultHandler<PastMeasureDto> resultHandler) {
+    mapper(dbSession).selectPastMeasuresOnAnalysis(analysisUuid, resultHandler);
   }
 
   /**
@@ -23,8 +23,11 @@ import java.util.Collections;
 import java.util.List;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
+import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.MyBatis;
 
+import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
+
 public class NotificationQueueDao implements Dao {
 
   private final MyBatis mybatis;
@@ -44,11 +47,13 @@ public class NotificationQueueDao implements Dao {
   }
 
   public void delete(List<NotificationQueueDto> dtos) {
-    try (DbSession session = mybatis.openSession(true)) {
+    if (dtos.isEmpty()) {
+      return;
+    }
+    List<Long> ids = dtos.stream().map(NotificationQueueDto::getId).collect(MoreCollectors.toList(dtos.size()));
+    try (DbSession session = mybatis.openSession(false)) {
       NotificationQueueMapper mapper = session.getMapper(NotificationQueueMapper.class);
-      for (NotificationQueueDto dto : dtos) {
-        mapper.delete(dto.getId());
-      }
+      executeLargeUpdates(ids, mapper::deleteByIds);
       session.commit();
     }
   }
@@ -20,9 +20,8 @@
 package org.sonar.db.purge;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 import org.sonar.db.DbSession;
 
 import static com.google.common.collect.FluentIterable.from;
@@ -30,8 +29,20 @@ import static java.util.Arrays.asList;
 
 class PurgeCommands {
 
-  private static final int MAX_SNAPSHOTS_PER_QUERY = 1000;
-  private static final int MAX_RESOURCES_PER_QUERY = 1000;
+  /**
+   * Maximum number of values in a SQL IN clause on Oracle
+   */
+  @VisibleForTesting
+  static final int MAX_CHUNK_SIZE = 1000;
+  @VisibleForTesting
+  static final int MIN_CHUNK_SIZE = 10;
+  private static final int INITIAL_CHUNK_SIZE = 100;
+  /**
+   * Expected duration of the deletion and commit of a chunk of rows, in milliseconds
+   */
+  @VisibleForTesting
+  static final long CHUNK_TIME_BUDGET_MS = 1_000L;
+  private static final long UNKNOWN_ROWS = -1L;
 
   private final DbSession session;
   private final PurgeMapper purgeMapper;
@@ -48,39 +59,32 @@ class PurgeCommands {
     this(session, session.getMapper(PurgeMapper.class), profiler);
   }
 
-  List<String> selectSnapshotUuids(PurgeSnapshotQuery query) {
-    return purgeMapper.selectAnalysisIdsAndUuids(query).stream().map(IdUuidPair::getUuid).collect(Collectors.toList());
-  }
-
   List<IdUuidPair> selectSnapshotIdUuids(PurgeSnapshotQuery query) {
     return purgeMapper.selectAnalysisIdsAndUuids(query);
   }
 
+  /**
+   * Deletes all the analyses of the specified root component. Analyses are deleted in chunks, so that each
+   * transaction stays within the time budget whatever the number of analyses and measures of the project.
+   */
   void deleteAnalyses(String rootUuid) {
     profiler.start("deleteAnalyses (events)");
-    purgeMapper.deleteEventsByComponentUuid(rootUuid);
+    long rows = purgeMapper.deleteEventsByComponentUuid(rootUuid);
     session.commit();
-    profiler.stop();
+    profiler.stop(rows);
 
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(purgeMapper.selectAnalysisIdsAndUuids(new PurgeSnapshotQuery().setComponentUuid(rootUuid))),
-      MAX_SNAPSHOTS_PER_QUERY);
+    List<String> analysisUuids = IdUuidPairs.uuids(purgeMapper.selectAnalysisIdsAndUuids(new PurgeSnapshotQuery().setComponentUuid(rootUuid)));
 
-    deleteAnalysisDuplications(analysisUuidsPartitions);
+    deleteAnalysisDuplications(analysisUuids);
 
     profiler.start("deleteAnalyses (project_measures)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisMeasures);
-    session.commit();
-    profiler.stop();
-
-    profiler.start("deleteAnalyses (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalyses);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalysisMeasures));
 
     profiler.start("deleteAnalyses (analysis_properties)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisProperties);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalysisProperties));
+
+    profiler.start("deleteAnalyses (snapshots)");
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalyses));
   }
 
   void deleteAnalyses(PurgeSnapshotQuery... queries) {
@@ -92,54 +96,39 @@ class PurgeCommands {
 
   @VisibleForTesting
   void deleteAnalyses(List<IdUuidPair> analysisIdUuids) {
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisIdUuids), MAX_SNAPSHOTS_PER_QUERY);
+    List<String> analysisUuids = IdUuidPairs.uuids(analysisIdUuids);
 
-    deleteAnalysisDuplications(analysisUuidsPartitions);
+    deleteAnalysisDuplications(analysisUuids);
 
     profiler.start("deleteAnalyses (events)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisEvents);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalysisEvents));
 
     profiler.start("deleteAnalyses (project_measures)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisMeasures);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalysisMeasures));
 
     profiler.start("deleteAnalyses (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalyses);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalyses));
 
     profiler.start("deleteAnalyses (analysis_properties)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisProperties);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalysisProperties));
   }
 
-  void purgeAnalyses(List<IdUuidPair> analysisUuids) {
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisUuids), MAX_SNAPSHOTS_PER_QUERY);
+  void purgeAnalyses(List<IdUuidPair> analysisIdUuids) {
+    List<String> analysisUuids = IdUuidPairs.uuids(analysisIdUuids);
 
-    deleteAnalysisDuplications(analysisUuidsPartitions);
+    deleteAnalysisDuplications(analysisUuids);
 
     profiler.start("deleteSnapshotWastedMeasures (project_measures)");
     List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
-    analysisUuidsPartitions
-      .forEach(analysisUuidsPartition -> purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsPartition, metricIdsWithoutHistoricalData));
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, chunk -> purgeMapper.deleteAnalysisWastedMeasures(chunk, metricIdsWithoutHistoricalData)));
 
     profiler.start("updatePurgeStatusToOne (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::updatePurgeStatusToOne);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::updatePurgeStatusToOne));
   }
 
-  private void deleteAnalysisDuplications(List<List<String>> snapshotUuidsPartitions) {
+  private void deleteAnalysisDuplications(List<String> analysisUuids) {
     profiler.start("deleteAnalysisDuplications (duplications_index)");
-    snapshotUuidsPartitions.forEach(purgeMapper::deleteAnalysisDuplications);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(analysisUuids, purgeMapper::deleteAnalysisDuplications));
   }
 
   void deletePermissions(long rootId) {
@@ -177,18 +166,11 @@ class PurgeCommands {
     if (rootAndModulesOrSubviewsIds.isEmpty()) {
       return;
     }
-    List<List<Long>> idPartitions = Lists.partition(IdUuidPairs.ids(rootAndModulesOrSubviewsIds), MAX_RESOURCES_PER_QUERY);
-    List<List<String>> uuidsPartitions = Lists.partition(IdUuidPairs.uuids(rootAndModulesOrSubviewsIds), MAX_RESOURCES_PER_QUERY);
-
     profiler.start("deleteByRootAndModulesOrSubviews (properties)");
-    idPartitions.forEach(purgeMapper::deletePropertiesByComponentIds);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(IdUuidPairs.ids(rootAndModulesOrSubviewsIds), purgeMapper::deletePropertiesByComponentIds));
 
     profiler.start("deleteByRootAndModulesOrSubviews (manual_measures)");
-    uuidsPartitions.forEach(purgeMapper::deleteManualMeasuresByComponentUuids);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(IdUuidPairs.uuids(rootAndModulesOrSubviewsIds), purgeMapper::deleteManualMeasuresByComponentUuids));
   }
 
   void deleteComponents(String rootUuid) {
@@ -204,9 +186,7 @@ class PurgeCommands {
     }
 
     profiler.start("deleteComponents (projects)");
-    Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY).forEach(purgeMapper::deleteComponentsByUuids);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(componentUuids, purgeMapper::deleteComponentsByUuids));
   }
 
   void deleteComponentMeasures(List<String> componentUuids) {
@@ -215,27 +195,26 @@ class PurgeCommands {
     }
 
     profiler.start("deleteComponentMeasures (project_measures)");
-    Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY).forEach(purgeMapper::fullDeleteComponentMeasures);
-    session.commit();
-    profiler.stop();
+    profiler.stop(executeInChunks(componentUuids, purgeMapper::fullDeleteComponentMeasures));
   }
 
-  void deleteComponentMeasures(List<String> analysisUuids, List<String> componentUuids) {
-    if (analysisUuids.isEmpty() || componentUuids.isEmpty()) {
+  /**
+   * Deletes the measures of the components of the specified root which have one of the given qualifiers, except
+   * on the last analysis. Components are selected by the database itself, while analyses are processed in chunks,
+   * instead of a statement for each pair of partitions of analyses and components.
+   */
+  void deleteComponentMeasuresWithoutHistoricalData(String rootUuid, List<String> qualifiers) {
+    if (qualifiers.isEmpty()) {
       return;
     }
 
-    List<List<String>> analysisUuidsPartitions = Lists.partition(analysisUuids, MAX_SNAPSHOTS_PER_QUERY);
-    List<List<String>> componentUuidsPartitions = Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY);
+    List<String> analysisUuids = IdUuidPairs.uuids(purgeMapper.selectAnalysisIdsAndUuids(new PurgeSnapshotQuery()
+      .setComponentUuid(rootUuid)
+      .setIslast(false)
+      .setNotPurged(true)));
 
-    profiler.start("deleteComponentMeasures");
-    for (List<String> analysisUuidsPartition : analysisUuidsPartitions) {
-      for (List<String> componentUuidsPartition : componentUuidsPartitions) {
-        purgeMapper.deleteComponentMeasures(analysisUuidsPartition, componentUuidsPartition);
-      }
-    }
-    session.commit();
-    profiler.stop();
+    profiler.start("deleteComponentMeasures (project_measures)");
+    profiler.stop(executeInChunks(analysisUuids, chunk -> purgeMapper.deleteComponentMeasuresWithoutHistoricalData(rootUuid, qualifiers, chunk)));
   }
 
   void deleteFileSources(String rootUuid) {
@@ -272,4 +251,41 @@ class PurgeCommands {
     session.commit();
     profiler.stop();
   }
+
+  /**
+   * Executes the statement on successive chunks of the given values, each chunk being committed. The size of chunks
+   * is not fixed but adapts so that each of them is processed in about {@link #CHUNK_TIME_BUDGET_MS}: transactions
+   * stay short when rows are costly to delete, for example analyses with a lot of measures, while the number
+   * of statements is kept low when they are cheap.
+   *
+   * @return the total number of affected rows, or a negative value if unknown (batch sessions do not return it)
+   */
+  private <T> long executeInChunks(List<T> values, Function<List<T>, Integer> statement) {
+    long rows = 0L;
+    int chunkSize = INITIAL_CHUNK_SIZE;
+    int from = 0;
+    while (from < values.size()) {
+      int to = Math.min(values.size(), from + chunkSize);
+      long start = System.currentTimeMillis();
+      int chunkRows = statement.apply(values.subList(from, to));
+      session.commit();
+      rows = rows < 0 || chunkRows < 0 ? UNKNOWN_ROWS : (rows + chunkRows);
+      chunkSize = nextChunkSize(chunkSize, System.currentTimeMillis() - start);
+      from = to;
+    }
+    return rows;
+  }
+
+  /**
+   * Size of the next chunk, given the time spent on the previous one. The size grows by at most a factor of two,
+   * as the duration of a single chunk is not a reliable estimate.
+   */
+  @VisibleForTesting
+  static int nextChunkSize(int chunkSize, long elapsedMs) {
+    long size = 2L * chunkSize;
+    if (elapsedMs > 0) {
+      size = Math.min(size, chunkSize * CHUNK_TIME_BUDGET_MS / elapsedMs);
+    }
+    return (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size));
+  }
 }
@@ -35,10 +35,7 @@ import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.BranchMapper;
-import org.sonar.db.component.ComponentDao;
 import org.sonar.db.component.ComponentDto;
-import org.sonar.db.component.ComponentTreeQuery;
-import org.sonar.db.component.ComponentTreeQuery.Strategy;
 
 import static java.util.Collections.emptyList;
 import static org.sonar.api.utils.DateUtils.dateToLong;
@@ -51,11 +48,9 @@ public class PurgeDao implements Dao {
   private static final ImmutableSet<String> QUALIFIERS_MODULE_SUBVIEW = ImmutableSet.of("BRC", "SVW");
   private static final String SCOPE_PROJECT = "PRJ";
 
-  private final ComponentDao componentDao;
   private final System2 system2;
 
-  public PurgeDao(ComponentDao componentDao, System2 system2) {
-    this.componentDao = componentDao;
+  public PurgeDao(System2 system2) {
     this.system2 = system2;
   }
 
@@ -64,7 +59,7 @@ public class PurgeDao implements Dao {
     PurgeCommands commands = new PurgeCommands(session, mapper, profiler);
     String rootUuid = conf.rootProjectIdUuid().getUuid();
     deleteAbortedAnalyses(rootUuid, commands);
-    deleteDataOfComponentsWithoutHistoricalData(session, rootUuid, conf.scopesWithoutHistoricalData(), commands);
+    deleteDataOfComponentsWithoutHistoricalData(rootUuid, conf.scopesWithoutHistoricalData(), commands);
     purgeAnalyses(commands, rootUuid);
     purgeDisabledComponents(session, conf, listener);
     deleteOldClosedIssues(conf, mapper, listener);
@@ -119,28 +114,8 @@ public class PurgeDao implements Dao {
     commands.deleteAnalyses(query);
   }
 
-  private void deleteDataOfComponentsWithoutHistoricalData(DbSession dbSession, String rootUuid, String[] scopesWithoutHistoricalData, PurgeCommands purgeCommands) {
-    if (scopesWithoutHistoricalData.length == 0) {
-      return;
-    }
-
-    List<String> analysisUuids = purgeCommands.selectSnapshotUuids(
-      new PurgeSnapshotQuery()
-        .setComponentUuid(rootUuid)
-        .setIslast(false)
-        .setNotPurged(true));
-    List<String> componentWithoutHistoricalDataUuids = componentDao
-      .selectDescendants(
-        dbSession,
-        ComponentTreeQuery.builder()
-          .setBaseUuid(rootUuid)
-          .setQualifiers(Arrays.asList(scopesWithoutHistoricalData))
-          .setStrategy(Strategy.LEAVES)
-          .build())
-      .stream().map(ComponentDto::uuid)
-      .collect(MoreCollectors.toList());
-
-    purgeCommands.deleteComponentMeasures(analysisUuids, componentWithoutHistoricalDataUuids);
+  private static void deleteDataOfComponentsWithoutHistoricalData(String rootUuid, String[] scopesWithoutHistoricalData, PurgeCommands purgeCommands) {
+    purgeCommands.deleteComponentMeasuresWithoutHistoricalData(rootUuid, Arrays.asList(scopesWithoutHistoricalData));
   }
 
   private void purgeDisabledComponents(DbSession session, PurgeConfiguration conf, PurgeListener listener) {
@@ -32,43 +32,48 @@ public interface PurgeMapper {
    */
   List<IdUuidPair> selectRootAndModulesOrSubviewsByProjectUuid(@Param("rootUuid") String rootUuid);
 
-  void deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisProperties(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisProperties(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisEvents(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisEvents(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisMeasures(@Param("analysisUuids") List<String> analysisUuids);
+  int deleteAnalysisMeasures(@Param("analysisUuids") List<String> analysisUuids);
 
-  void fullDeleteComponentMeasures(@Param("componentUuids") List<String> componentUuids);
+  int fullDeleteComponentMeasures(@Param("componentUuids") List<String> componentUuids);
 
-  void deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
+  /**
+   * Deletes the measures of the enabled components of the specified root which have one of the given qualifiers,
+   * on the given analyses. Components are selected by the database itself rather than being passed as parameters.
+   */
+  int deleteComponentMeasuresWithoutHistoricalData(@Param("rootUuid") String rootUuid, @Param("qualifiers") List<String> qualifiers,
+    @Param("analysisUuids") List<String> analysisUuids);
 
   List<Long> selectMetricIdsWithoutHistoricalData();
 
-  void deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
+  int deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
 
-  void updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
+  int updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
 
   void resolveComponentIssuesNotAlreadyResolved(@Param("componentUuids") List<String> componentUuids, @Param("dateAsLong") Long dateAsLong);
 
   void deleteProjectLinksByComponentUuid(@Param("rootUuid") String rootUuid);
 
-  void deletePropertiesByComponentIds(@Param("componentIds") List<Long> componentIds);
+  int deletePropertiesByComponentIds(@Param("componentIds") List<Long> componentIds);
 
   void deleteComponentsByProjectUuid(@Param("rootUuid") String rootUuid);
 
-  void deleteComponentsByUuids(@Param("componentUuids") List<String> componentUuids);
+  int deleteComponentsByUuids(@Param("componentUuids") List<String> componentUuids);
 
   void deleteGroupRolesByComponentId(@Param("rootId") long rootId);
 
   void deleteUserRolesByComponentId(@Param("rootId") long rootId);
 
-  void deleteManualMeasuresByComponentUuids(@Param("componentUuids") List<String> componentUuids);
+  int deleteManualMeasuresByComponentUuids(@Param("componentUuids") List<String> componentUuids);
 
-  void deleteEventsByComponentUuid(@Param("componentUuid") String componentUuid);
+  int deleteEventsByComponentUuid(@Param("componentUuid") String componentUuid);
 
   List<PurgeableAnalysisDto> selectPurgeableAnalysesWithEvents(@Param("componentUuid") String componentUuid);
 
@@ -32,6 +32,7 @@ import org.sonar.api.utils.log.Logger;
 public class PurgeProfiler {
 
   private Map<String, Long> durations = new HashMap<>();
+  private Map<String, Long> rows = new HashMap<>();
   private long startTime;
   private String currentTable;
   private final Clock clock;
@@ -47,6 +48,7 @@ public class PurgeProfiler {
 
   public void reset() {
     durations.clear();
+    rows.clear();
   }
 
   void start(String table) {
@@ -64,6 +66,18 @@ public class PurgeProfiler {
     durations.put(currentTable, cumulatedDuration + (clock.now() - startTime));
   }
 
+  /**
+   * Same as {@link #stop()}, but also records the number of rows affected since {@link #start(String)}, so that
+   * the throughput of the table is reported by {@link #dump(long, Logger)}. A negative number of rows means
+   * that it is unknown.
+   */
+  void stop(long affectedRows) {
+    stop();
+    if (affectedRows >= 0) {
+      rows.merge(currentTable, affectedRows, Long::sum);
+    }
+  }
+
   public void dump(long totalTime, Logger logger) {
     List<Entry<String, Long>> data = new ArrayList<>(durations.entrySet());
     Collections.sort(data, (o1, o2) -> o2.getValue().compareTo(o1.getValue()));
@@ -72,6 +86,14 @@ public class PurgeProfiler {
       StringBuilder sb = new StringBuilder();
       sb.append("   o ").append(entry.getKey()).append(": ").append(TimeUtils.formatDuration(entry.getValue()))
         .append(" (").append((int) (entry.getValue() / percent)).append("%)");
+      Long tableRows = rows.get(entry.getKey());
+      if (tableRows != null) {
+        sb.append(", ").append(tableRows).append(" rows");
+        long duration = entry.getValue();
+        if (duration > 0) {
+          sb.append(" (").append(tableRows * 1000 / duration).append(" rows/s)");
+        }
+      }
       logger.info(sb.toString());
     }
   }
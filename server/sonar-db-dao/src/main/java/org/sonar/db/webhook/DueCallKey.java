@@ -0,0 +1,55 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Position of a webhook call in the results of {@link WebhookOutboxDao#selectDue(org.sonar.db.DbSession, long, int)}.
+ * Values are copied, so that the position does not change when the call is updated.
+ */
+@Immutable
+public final class DueCallKey {
+  private final long nextAttemptAt;
+  private final long createdAt;
+  private final String uuid;
+
+  private DueCallKey(long nextAttemptAt, long createdAt, String uuid) {
+    this.nextAttemptAt = nextAttemptAt;
+    this.createdAt = createdAt;
+    this.uuid = uuid;
+  }
+
+  public static DueCallKey of(WebhookOutboxDto dto) {
+    return new DueCallKey(dto.getNextAttemptAt(), dto.getCreatedAt(), dto.getUuid());
+  }
+
+  public long getNextAttemptAt() {
+    return nextAttemptAt;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public String getUuid() {
+    return uuid;
+  }
+}
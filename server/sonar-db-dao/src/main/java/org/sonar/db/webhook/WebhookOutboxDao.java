@@ -0,0 +1,81 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import java.util.Collection;
+import java.util.List;
+import org.apache.ibatis.session.RowBounds;
+import org.sonar.db.Dao;
+import org.sonar.db.DbSession;
+
+import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
+
+public class WebhookOutboxDao implements Dao {
+
+  /**
+   * The webhook calls which can be attempted at the specified date. Results are ordered by ascending date of
+   * next attempt.
+   */
+  public List<WebhookOutboxDto> selectDue(DbSession dbSession, long now, int limit) {
+    return mapper(dbSession).selectDue(now, null, new RowBounds(0, limit));
+  }
+
+  /**
+   * Same as {@link #selectDue(DbSession, long, int)}, but returns only the calls which follow the specified one in
+   * the order of results. It allows to page through the due calls, even if the ones already read have been
+   * updated since.
+   */
+  public List<WebhookOutboxDto> selectDueAfter(DbSession dbSession, long now, DueCallKey after, int limit) {
+    return mapper(dbSession).selectDue(now, after, new RowBounds(0, limit));
+  }
+
+  public int countAll(DbSession dbSession) {
+    return mapper(dbSession).countAll();
+  }
+
+  public void insert(DbSession dbSession, WebhookOutboxDto dto) {
+    mapper(dbSession).insert(dto);
+  }
+
+  /**
+   * Updates the number of attempts and the date of the next attempt of the specified webhook call, only if it
+   * has not been updated since it was read, for example by another Compute Engine or Web Server node.
+   *
+   * @return {@code true} if the row has been updated
+   */
+  public boolean updateNextAttempt(DbSession dbSession, WebhookOutboxDto dto, int attempts, long nextAttemptAt) {
+    int updatedRows = mapper(dbSession).updateNextAttempt(dto.getUuid(), attempts, nextAttemptAt, dto.getAttempts(), dto.getNextAttemptAt());
+    if (updatedRows == 1) {
+      dto.setAttempts(attempts);
+      dto.setNextAttemptAt(nextAttemptAt);
+      return true;
+    }
+    return false;
+  }
+
+  public void deleteByUuids(DbSession dbSession, Collection<String> uuids) {
+    WebhookOutboxMapper mapper = mapper(dbSession);
+    executeLargeUpdates(uuids, mapper::deleteByUuids);
+  }
+
+  private static WebhookOutboxMapper mapper(DbSession dbSession) {
+    return dbSession.getMapper(WebhookOutboxMapper.class);
+  }
+}
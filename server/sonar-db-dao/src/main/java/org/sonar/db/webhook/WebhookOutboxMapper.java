@@ -0,0 +1,39 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
+
+public interface WebhookOutboxMapper {
+
+  List<WebhookOutboxDto> selectDue(@Param("now") long now, @Nullable @Param("after") DueCallKey after, RowBounds rowBounds);
+
+  int countAll();
+
+  void insert(WebhookOutboxDto dto);
+
+  int updateNextAttempt(@Param("uuid") String uuid, @Param("attempts") int attempts, @Param("nextAttemptAt") long nextAttemptAt,
+    @Param("currentAttempts") int currentAttempts, @Param("currentNextAttemptAt") long currentNextAttemptAt);
+
+  void deleteByUuids(@Param("uuids") List<String> uuids);
+}
@@ -690,6 +690,20 @@ public class ComponentDaoTest {
       .containsOnly(project.uuid());
   }
 
+  @Test
+  public void select_distinct_project_uuids() {
+    OrganizationDto organization = db.organizations().insert();
+    ComponentDto project = db.components().insertMainBranch(organization);
+    ComponentDto branch = db.components().insertProjectBranch(project);
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    db.components().insertComponent(newFileDto(module));
+    ComponentDto disabledProject = db.components().insertComponent(newPrivateProjectDto(organization).setEnabled(false));
+    ComponentDto view = db.components().insertView(organization);
+
+    assertThat(underTest.selectDistinctProjectUuids(dbSession))
+      .containsExactlyInAnyOrder(project.uuid(), branch.uuid(), disabledProject.uuid(), view.uuid());
+  }
+
   @Test
   public void select_all_roots_by_organization() {
     OrganizationDto organization = db.organizations().insert();
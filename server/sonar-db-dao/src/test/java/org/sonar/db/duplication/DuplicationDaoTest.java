@@ -19,6 +19,7 @@
  */
 package org.sonar.db.duplication;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
@@ -59,6 +60,22 @@ public class DuplicationDaoTest {
     assertThat(blocks).hasSize(2);
   }
 
+  @Test
+  public void scroll_last_analyses_units() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    dbSession.commit();
+
+    List<DuplicationUnitDto> blocks = new ArrayList<>();
+    dao.scrollLastAnalysesUnits(dbSession, "java", context -> blocks.add(context.getResultObject()));
+
+    assertThat(blocks).extracting(DuplicationUnitDto::getComponentKey).containsOnly("bar-last", "foo-last");
+    assertThat(blocks).extracting(DuplicationUnitDto::getAnalysisUuid).containsOnly("u3", "u7");
+
+    blocks.clear();
+    dao.scrollLastAnalysesUnits(dbSession, "js", context -> blocks.add(context.getResultObject()));
+    assertThat(blocks).isEmpty();
+  }
+
   @Test
   public void select_component() {
     db.prepareDbUnit(getClass(), "select_component.xml");
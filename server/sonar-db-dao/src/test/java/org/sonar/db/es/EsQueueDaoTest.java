@@ -126,4 +126,36 @@ public class EsQueueDaoTest {
       .extracting(EsQueueDto::getUuid)
       .containsExactly(i3.getUuid(), i2.getUuid(), i1.getUuid());
   }
+
+  @Test
+  public void countAll_and_selectOldestCreatedAt() {
+    assertThat(underTest.countAll(dbSession)).isEqualTo(0);
+    assertThat(underTest.selectOldestCreatedAt(dbSession)).isEmpty();
+
+    system2.setNow(1_001L);
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    system2.setNow(1_000L);
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    system2.setNow(1_002L);
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+
+    assertThat(underTest.countAll(dbSession)).isEqualTo(3);
+    assertThat(underTest.selectOldestCreatedAt(dbSession)).contains(1_000L);
+  }
+
+  @Test
+  public void selectOldestCreatedAtAfter() {
+    assertThat(underTest.selectOldestCreatedAtAfter(dbSession, 0L)).isEmpty();
+
+    system2.setNow(1_000L);
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    system2.setNow(1_002L);
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    system2.setNow(1_001L);
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+
+    assertThat(underTest.selectOldestCreatedAtAfter(dbSession, 999L)).contains(1_000L);
+    assertThat(underTest.selectOldestCreatedAtAfter(dbSession, 1_000L)).contains(1_001L);
+    assertThat(underTest.selectOldestCreatedAtAfter(dbSession, 1_002L)).isEmpty();
+  }
 }
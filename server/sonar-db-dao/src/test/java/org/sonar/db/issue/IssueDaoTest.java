@@ -22,7 +22,9 @@ package org.sonar.db.issue;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.junit.Rule;
@@ -155,6 +157,41 @@ public class IssueDaoTest {
     assertThat(accumulator.list).isEmpty();
   }
 
+  @Test
+  public void selectNonClosedByProjectUuid_by_pages() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto anotherProject = db.components().insertPrivateProject();
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project));
+    ComponentDto file2 = db.components().insertComponent(newFileDto(project));
+    List<IssueDto> openIssues = new ArrayList<>();
+    for (ComponentDto component : asList(project, file1, file2)) {
+      for (int i = 0; i < 3; i++) {
+        openIssues.add(db.issues().insert(rule, project, component, issue -> issue.setStatus("OPEN").setResolution(null)));
+      }
+    }
+    db.issues().insert(rule, project, file1, i -> i.setStatus("CLOSED").setResolution("FIXED"));
+    db.issues().insert(rule, anotherProject, anotherProject, i -> i.setStatus("OPEN").setResolution(null));
+
+    List<IssueDto> pages = new ArrayList<>();
+    List<IssueDto> page = underTest.selectNonClosedByProjectUuid(db.getSession(), project.uuid(), null, 4);
+    int pageCount = 0;
+    while (!page.isEmpty()) {
+      pageCount++;
+      assertThat(page.size()).isLessThanOrEqualTo(4);
+      pages.addAll(page);
+      page = underTest.selectNonClosedByProjectUuid(db.getSession(), project.uuid(), page.get(page.size() - 1), 4);
+    }
+
+    assertThat(pageCount).isEqualTo(3);
+    assertThat(pages).extracting(IssueDto::getKey)
+      .containsExactlyElementsOf(openIssues.stream()
+        .sorted(Comparator.comparing(IssueDto::getComponentUuid).thenComparing(IssueDto::getKey))
+        .map(IssueDto::getKey)
+        .collect(Collectors.toList()));
+    assertThat(underTest.selectNonClosedByProjectUuid(db.getSession(), "does_not_exist", null, 4)).isEmpty();
+  }
+
   @Test
   public void scrollNonClosedByModuleOrProject() {
     RuleDefinitionDto rule = db.rules().insert();
@@ -183,6 +220,46 @@ public class IssueDaoTest {
     assertThat(accumulator.list).isEmpty();
   }
 
+  @Test
+  public void scrollByModuleOrProjectUpdatedSince() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto anotherProject = db.components().insertPrivateProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    ComponentDto file = db.components().insertComponent(newFileDto(module));
+    IssueDto oldIssueOnFile = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(1_000L));
+    IssueDto recentIssueOnFile = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(2_000L));
+    IssueDto recentClosedIssueOnFile = db.issues().insert(rule, project, file, i -> i.setStatus("CLOSED").setResolution("FIXED").setUpdatedAt(3_000L));
+    IssueDto recentIssueOnProject = db.issues().insert(rule, project, project, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(2_000L));
+    db.issues().insert(rule, anotherProject, anotherProject, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(2_000L));
+
+    Accumulator accumulator = new Accumulator();
+    underTest.scrollByModuleOrProjectUpdatedSince(db.getSession(), project, 2_000L, accumulator);
+    accumulator.assertThatContainsOnly(recentIssueOnFile, recentClosedIssueOnFile, recentIssueOnProject);
+
+    accumulator.clear();
+    underTest.scrollByModuleOrProjectUpdatedSince(db.getSession(), module, 0L, accumulator);
+    accumulator.assertThatContainsOnly(oldIssueOnFile, recentIssueOnFile, recentClosedIssueOnFile);
+
+    accumulator.clear();
+    underTest.scrollByModuleOrProjectUpdatedSince(db.getSession(), project, 4_000L, accumulator);
+    assertThat(accumulator.list).isEmpty();
+  }
+
+  @Test
+  public void selectMaxUpdatedAtByProjectUuid() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto emptyProject = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(1_000L));
+    db.issues().insert(rule, project, file, i -> i.setStatus("CLOSED").setResolution("FIXED").setUpdatedAt(3_000L));
+    db.issues().insert(rule, project, project, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(2_000L));
+
+    assertThat(underTest.selectMaxUpdatedAtByProjectUuid(db.getSession(), project.uuid())).contains(3_000L);
+    assertThat(underTest.selectMaxUpdatedAtByProjectUuid(db.getSession(), emptyProject.uuid())).isEmpty();
+  }
+
   @Test
   public void selectOpenByComponentUuid() {
     RuleDefinitionDto rule = db.rules().insert();
@@ -40,9 +40,11 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.resources.Qualifiers.FILE;
 import static org.sonar.api.resources.Qualifiers.UNIT_TEST_FILE;
 import static org.sonar.api.utils.DateUtils.parseDate;
+import static org.sonar.db.component.ComponentTesting.newDirectory;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
 import static org.sonar.db.component.ComponentTesting.newModuleDto;
 import static org.sonar.db.component.SnapshotTesting.newAnalysis;
@@ -445,6 +447,47 @@ public class MeasureDaoTest {
       .setLast(isLast));
   }
 
-  // TODO test selectPastMeasures
+  @Test
+  public void selectPastMeasures_returns_numeric_measures_of_analysis_ordered_by_component() {
+    ComponentDto project = db.components().insertPrivateProject(db.getDefaultOrganization(), "P1");
+    ComponentDto module = db.components().insertComponent(newModuleDto("M1", project));
+    ComponentDto directory = db.components().insertComponent(newDirectory(module, "D1", "src"));
+    ComponentDto file = db.components().insertComponent(newFileDto(directory).setUuid("F1"));
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, project.uuid(), false);
+    insertPastMeasure(OTHER_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID, 10d);
+    insertPastMeasure(OTHER_ANALYSIS_UUID, project.uuid(), COVERAGE_METRIC_ID, 80d);
+    insertPastMeasure(OTHER_ANALYSIS_UUID, directory.uuid(), NCLOC_METRIC_ID, 5d);
+    insertPastMeasure(OTHER_ANALYSIS_UUID, module.uuid(), COMPLEXITY_METRIC_ID, 3d);
+    // measure on file
+    insertPastMeasure(OTHER_ANALYSIS_UUID, file.uuid(), NCLOC_METRIC_ID, 5d);
+    // measure without value
+    insertPastMeasure(OTHER_ANALYSIS_UUID, module.uuid(), NCLOC_METRIC_ID, null);
+    // measure of another analysis
+    insertPastMeasure(LAST_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID, 20d);
+    // measure on developer
+    insertMeasureOnPerson("M1", OTHER_ANALYSIS_UUID, project.uuid(), COMPLEXITY_METRIC_ID, A_PERSON_ID);
+    db.commit();
+
+    List<PastMeasureDto> result = new ArrayList<>();
+    underTest.selectPastMeasures(dbSession, OTHER_ANALYSIS_UUID, context -> result.add(context.getResultObject()));
+
+    assertThat(result)
+      .extracting(PastMeasureDto::getComponentUuid, PastMeasureDto::getMetricId, PastMeasureDto::getValue)
+      .containsExactly(
+        tuple("D1", NCLOC_METRIC_ID, 5d),
+        tuple("M1", COMPLEXITY_METRIC_ID, 3d),
+        tuple("P1", COVERAGE_METRIC_ID, 80d),
+        tuple("P1", NCLOC_METRIC_ID, 10d));
+  }
+
+  private void insertPastMeasure(String analysisUuid, String componentUuid, int metricId, @Nullable Double value) {
+    MeasureDto measure = MeasureTesting.newMeasure()
+      .setAnalysisUuid(analysisUuid)
+      .setComponentUuid(componentUuid)
+      .setMetricId(metricId)
+      .setValue(value);
+    db.getDbClient().measureDao().insert(db.getSession(), measure);
+  }
 
 }
@@ -192,6 +192,20 @@ public class PurgeCommandsTest {
     assertThat(dbTester.countRowsOfTable("user_roles")).isEqualTo(2);
   }
 
+  @Test
+  public void size_of_chunks_grows_when_statements_are_fast() {
+    assertThat(PurgeCommands.nextChunkSize(100, 0L)).isEqualTo(200);
+    assertThat(PurgeCommands.nextChunkSize(100, 10L)).isEqualTo(200);
+    assertThat(PurgeCommands.nextChunkSize(800, 10L)).isEqualTo(PurgeCommands.MAX_CHUNK_SIZE);
+  }
+
+  @Test
+  public void size_of_chunks_shrinks_when_statements_exceed_time_budget() {
+    assertThat(PurgeCommands.nextChunkSize(1000, 2 * PurgeCommands.CHUNK_TIME_BUDGET_MS)).isEqualTo(500);
+    assertThat(PurgeCommands.nextChunkSize(100, PurgeCommands.CHUNK_TIME_BUDGET_MS)).isEqualTo(100);
+    assertThat(PurgeCommands.nextChunkSize(100, 1000 * PurgeCommands.CHUNK_TIME_BUDGET_MS)).isEqualTo(PurgeCommands.MIN_CHUNK_SIZE);
+  }
+
   private List<IdUuidPair> getHugeNumberOfIdUuidPairs() {
     List<IdUuidPair> hugeNbOfSnapshotIds = newArrayList();
     for (long i = 0; i < 4500; i++) {
@@ -48,8 +48,10 @@ import org.sonar.db.component.BranchType;
 import org.sonar.db.component.ComponentDbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.measure.custom.CustomMeasureDto;
+import org.sonar.db.metric.MetricDto;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 
@@ -141,6 +143,34 @@ public class PurgeDaoTest {
     dbTester.assertDbUnit(getClass(), "shouldDeleteHistoricalDataOfDirectoriesAndFiles-result.xml", "projects", "snapshots");
   }
 
+  @Test
+  public void purge_deletes_measures_of_directories_and_files_except_on_last_analysis() {
+    MetricDto metric = dbTester.measures().insertMetric(m -> m.setDeleteHistoricalData(false));
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    ComponentDto directory = dbTester.components().insertComponent(newDirectory(project, "src"));
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project, directory));
+    SnapshotDto oldAnalysis = dbTester.components().insertSnapshot(project, s -> s.setLast(false));
+    SnapshotDto lastAnalysis = dbTester.components().insertSnapshot(project);
+    for (SnapshotDto analysis : asList(oldAnalysis, lastAnalysis)) {
+      for (ComponentDto component : asList(project, directory, file)) {
+        dbTester.measures().insertMeasure(component, analysis, metric);
+      }
+    }
+    PurgeConfiguration conf = new PurgeConfiguration(new IdUuidPair(project.getId(), project.uuid()), new String[] {Scopes.DIRECTORY, Scopes.FILE},
+      30, Optional.of(30), System2.INSTANCE, Collections.emptyList());
+
+    underTest.purge(dbSession, conf, PurgeListener.EMPTY, new PurgeProfiler());
+    dbSession.commit();
+
+    assertThat(dbTester.select("select component_uuid as \"COMPONENT\", analysis_uuid as \"ANALYSIS\" from project_measures"))
+      .extracting(row -> row.get("COMPONENT") + "/" + row.get("ANALYSIS"))
+      .containsOnly(
+        project.uuid() + "/" + oldAnalysis.getUuid(),
+        project.uuid() + "/" + lastAnalysis.getUuid(),
+        directory.uuid() + "/" + lastAnalysis.getUuid(),
+        file.uuid() + "/" + lastAnalysis.getUuid());
+  }
+
   @Test
   public void close_issues_clean_index_and_file_sources_of_disabled_components_specified_by_uuid_in_configuration() {
     dbTester.prepareDbUnit(getClass(), "close_issues_clean_index_and_files_sources_of_specified_components.xml");
@@ -24,8 +24,10 @@ import org.junit.Test;
 import org.sonar.api.utils.log.Logger;
 
 import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.endsWith;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 public class PurgeProfilerTest {
 
@@ -80,6 +82,39 @@ public class PurgeProfilerTest {
     verify(logger).info(contains("bar: 5ms"));
   }
 
+  @Test
+  public void shouldDumpThroughputOfTablesWhenRowsAreKnown() {
+    profiler.start("foo");
+    clock.sleep(500);
+    profiler.stop(1000);
+
+    profiler.start("foo");
+    clock.sleep(500);
+    profiler.stop(2000);
+
+    profiler.start("bar");
+    clock.sleep(5);
+    profiler.stop(-1);
+
+    profiler.dump(2000, logger);
+    verify(logger).info(contains("foo: 1s (50%), 3000 rows (3000 rows/s)"));
+    verify(logger).info(endsWith("bar: 5ms (0%)"));
+  }
+
+  @Test
+  public void shouldDumpTablesWithRowsDeletedInNoTime() {
+    profiler.start("foo");
+    profiler.stop(1000);
+
+    profiler.start("bar");
+    clock.sleep(5);
+    profiler.stop(10);
+
+    profiler.dump(0, logger);
+    verify(logger).info(contains("bar: 5ms"));
+    verifyNoMoreInteractions(logger);
+  }
+
   private class MockedClock extends PurgeProfiler.Clock {
     private long now = 0;
 
@@ -110,6 +110,29 @@ public class FileSourceDaoTest {
       "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
   }
 
+  @Test
+  public void insert_and_select_inputs_hash() {
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setBinaryData("FILE2_BINARY_DATA".getBytes())
+      .setDataHash("FILE2_DATA_HASH")
+      .setSrcHash("FILE2_HASH")
+      .setInputsHash("FILE2_INPUTS_HASH")
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    session.commit();
+
+    FileSourceDto fileSourceDto = underTest.selectSourceByFileUuid(session, "FILE2_UUID");
+    assertThat(fileSourceDto.getInputsHash()).isEqualTo("FILE2_INPUTS_HASH");
+
+    underTest.update(session, fileSourceDto.setInputsHash("NEW_INPUTS_HASH"));
+    session.commit();
+
+    assertThat(underTest.selectSourceByFileUuid(session, "FILE2_UUID").getInputsHash()).isEqualTo("NEW_INPUTS_HASH");
+  }
+
   @Test
   public void selectLineHashes_does_not_fail_when_lineshashes_is_null() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -0,0 +1,132 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import java.util.stream.IntStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WebhookOutboxDaoTest {
+
+  private static final long NOW = 1_500_000_000L;
+
+  @Rule
+  public final DbTester dbTester = DbTester.create(System2.INSTANCE).setDisableDefaultOrganization(true);
+
+  private final DbSession dbSession = dbTester.getSession();
+  private final WebhookOutboxDao underTest = dbTester.getDbClient().webhookOutboxDao();
+
+  @Test
+  public void insert_and_select_due_webhook_calls() {
+    WebhookOutboxDto dto = newDto("O1", NOW)
+      .setCeTaskUuid("TASK_1")
+      .setAnalysisUuid("ANALYSIS_1");
+    underTest.insert(dbSession, dto);
+
+    assertThat(underTest.selectDue(dbSession, NOW, 10)).hasSize(1);
+    WebhookOutboxDto stored = underTest.selectDue(dbSession, NOW, 10).get(0);
+    assertThat(stored.getUuid()).isEqualTo("O1");
+    assertThat(stored.getComponentUuid()).isEqualTo("COMPONENT_1");
+    assertThat(stored.getCeTaskUuid()).isEqualTo("TASK_1");
+    assertThat(stored.getAnalysisUuid()).isEqualTo("ANALYSIS_1");
+    assertThat(stored.getName()).isEqualTo("Jenkins");
+    assertThat(stored.getUrl()).isEqualTo("http://jenkins");
+    assertThat(stored.getProjectKey()).isEqualTo("PROJECT_1");
+    assertThat(stored.getPayload()).isEqualTo("{json}");
+    assertThat(stored.getAttempts()).isEqualTo(0);
+    assertThat(stored.getNextAttemptAt()).isEqualTo(NOW);
+    assertThat(stored.getCreatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  public void selectDue_ignores_webhook_calls_scheduled_later_and_orders_by_date_of_next_attempt() {
+    underTest.insert(dbSession, newDto("O1", NOW));
+    underTest.insert(dbSession, newDto("O2", NOW - 10));
+    underTest.insert(dbSession, newDto("O3", NOW + 10));
+
+    assertThat(underTest.selectDue(dbSession, NOW, 10)).extracting(WebhookOutboxDto::getUuid).containsExactly("O2", "O1");
+    assertThat(underTest.selectDue(dbSession, NOW, 1)).extracting(WebhookOutboxDto::getUuid).containsExactly("O2");
+    assertThat(underTest.countAll(dbSession)).isEqualTo(3);
+  }
+
+  @Test
+  public void selectDueAfter_returns_calls_following_the_specified_one() {
+    underTest.insert(dbSession, newDto("O1", NOW));
+    underTest.insert(dbSession, newDto("O2", NOW - 10));
+    underTest.insert(dbSession, newDto("O3", NOW));
+    underTest.insert(dbSession, newDto("O4", NOW + 10));
+    WebhookOutboxDto first = underTest.selectDue(dbSession, NOW, 1).get(0);
+    DueCallKey after = DueCallKey.of(first);
+
+    // position does not depend on updates of the call
+    underTest.updateNextAttempt(dbSession, first, 1, NOW + 1_000);
+
+    assertThat(after.getUuid()).isEqualTo("O2");
+    assertThat(underTest.selectDueAfter(dbSession, NOW, after, 10)).extracting(WebhookOutboxDto::getUuid).containsExactly("O1", "O3");
+    assertThat(underTest.selectDueAfter(dbSession, NOW, DueCallKey.of(newDto("O1", NOW)), 10)).extracting(WebhookOutboxDto::getUuid).containsExactly("O3");
+  }
+
+  @Test
+  public void updateNextAttempt_fails_if_row_has_been_updated_concurrently() {
+    underTest.insert(dbSession, newDto("O1", NOW));
+    WebhookOutboxDto read1 = underTest.selectDue(dbSession, NOW, 10).get(0);
+    WebhookOutboxDto read2 = underTest.selectDue(dbSession, NOW, 10).get(0);
+
+    assertThat(underTest.updateNextAttempt(dbSession, read1, 1, NOW + 1_000)).isTrue();
+    assertThat(read1.getAttempts()).isEqualTo(1);
+    assertThat(read1.getNextAttemptAt()).isEqualTo(NOW + 1_000);
+
+    assertThat(underTest.updateNextAttempt(dbSession, read2, 1, NOW + 2_000)).isFalse();
+    assertThat(read2.getAttempts()).isEqualTo(0);
+    assertThat(underTest.selectDue(dbSession, NOW, 10)).isEmpty();
+    assertThat(underTest.selectDue(dbSession, NOW + 1_000, 10)).extracting(WebhookOutboxDto::getAttempts).containsExactly(1);
+  }
+
+  @Test
+  public void deleteByUuids_supports_more_uuids_than_max_size_of_sql_in_clause() {
+    IntStream.range(0, 1_010).forEach(i -> underTest.insert(dbSession, newDto("O" + i, NOW)));
+    underTest.insert(dbSession, newDto("KEPT", NOW));
+
+    underTest.deleteByUuids(dbSession, IntStream.range(0, 1_010).mapToObj(i -> "O" + i).collect(toList()));
+    underTest.deleteByUuids(dbSession, asList("MISSING"));
+
+    assertThat(underTest.selectDue(dbSession, NOW, 2_000)).extracting(WebhookOutboxDto::getUuid).containsExactly("KEPT");
+  }
+
+  private static WebhookOutboxDto newDto(String uuid, long nextAttemptAt) {
+    return new WebhookOutboxDto()
+      .setUuid(uuid)
+      .setComponentUuid("COMPONENT_1")
+      .setName("Jenkins")
+      .setUrl("http://jenkins")
+      .setProjectKey("PROJECT_1")
+      .setPayload("{json}")
+      .setAttempts(0)
+      .setNextAttemptAt(nextAttemptAt)
+      .setCreatedAt(NOW);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.db.migration.version.v67;
+
+import java.sql.SQLException;
+import org.sonar.db.Database;
+import org.sonar.server.platform.db.migration.def.BigIntegerColumnDef;
+import org.sonar.server.platform.db.migration.def.ClobColumnDef;
+import org.sonar.server.platform.db.migration.def.IntegerColumnDef;
+import org.sonar.server.platform.db.migration.def.VarcharColumnDef;
+import org.sonar.server.platform.db.migration.sql.CreateIndexBuilder;
+import org.sonar.server.platform.db.migration.sql.CreateTableBuilder;
+import org.sonar.server.platform.db.migration.step.DdlChange;
+
+public class CreateTableWebhookOutbox extends DdlChange {
+  private static final String TABLE_NAME = "webhook_outbox";
+  private static final BigIntegerColumnDef NEXT_ATTEMPT_AT_COLUMN = BigIntegerColumnDef.newBigIntegerColumnDefBuilder()
+    .setColumnName("next_attempt_at")
+    .setIsNullable(false)
+    .build();
+
+  public CreateTableWebhookOutbox(Database db) {
+    super(db);
+  }
+
+  @Override
+  public void execute(Context context) throws SQLException {
+    context.execute(new CreateTableBuilder(getDialect(), TABLE_NAME)
+      .addPkColumn(VarcharColumnDef.newVarcharColumnDefBuilder()
+        .setColumnName("uuid")
+        .setIsNullable(false)
+        .setLimit(VarcharColumnDef.UUID_SIZE)
+        .build())
+      .addColumn(VarcharColumnDef.newVarcharColumnDefBuilder()
+        .setColumnName("component_uuid")
+        .setIsNullable(false)
+        .setLimit(VarcharColumnDef.UUID_SIZE)
+        .build())
+      .addColumn(VarcharColumnDef.newVarcharColumnDefBuilder()
+        .setColumnName("ce_task_uuid")
+        .setIsNullable(true)
+        .setLimit(VarcharColumnDef.UUID_SIZE)
+        .build())
+      .addColumn(VarcharColumnDef.newVarcharColumnDefBuilder()
+        .setColumnName("analysis_uuid")
+        .setIsNullable(true)
+        .setLimit(VarcharColumnDef.UUID_SIZE)
+        .build())
+      .addColumn(VarcharColumnDef.newVarcharColumnDefBuilder()
+        .setColumnName("name")
+        .setIsNullable(false)
+        .setLimit(100)
+        .build())
+      .addColumn(VarcharColumnDef.newVarcharColumnDefBuilder()
+        .setColumnName("url")
+        .setIsNullable(false)
+        .setLimit(2000)
+        .build())
+      .addColumn(VarcharColumnDef.newVarcharColumnDefBuilder()
+        .setColumnName("project_key")
+        .setIsNullable(false)
+        .setLimit(400)
+        .build())
+      .addColumn(ClobColumnDef.newClobColumnDefBuilder()
+        .setColumnName("payload")
+        .setIsNullable(false)
+        .build())
+      .addColumn(IntegerColumnDef.newIntegerColumnDefBuilder()
+        .setColumnName("attempts")
+        .setIsNullable(false)
+        .build())
+      .addColumn(NEXT_ATTEMPT_AT_COLUMN)
+      .addColumn(BigIntegerColumnDef.newBigIntegerColumnDefBuilder()
+        .setColumnName("created_at")
+        .setIsNullable(false)
+        .build())
+      .build()
+    );
+
+    context.execute(new CreateIndexBuilder(getDialect())
+      .addColumn(NEXT_ATTEMPT_AT_COLUMN)
+      .setUnique(false)
+      .setTable(TABLE_NAME)
+      .setName("webhook_outbox_next_attempt")
+      .build()
+    );
+  }
+}
@@ -34,6 +34,9 @@ public class DbVersion67 implements DbVersion {
       .add(1835, "Populate WEBHOOK_DELIVERIES.ANALYSIS_UUID", PopulateAnalysisUuidColumnOnWebhookDeliveries.class)
       .add(1836, "Migrate 'previous_analysis' leak periods to 'previous_version'", MigratePreviousAnalysisToPreviousVersion.class)
       .add(1837, "Drop old licenses", DropOldLicenses.class)
+      .add(1838, "Add FILE_SOURCES.INPUTS_HASH", AddInputsHashToFileSources.class)
+      .add(1839, "Create table WEBHOOK_OUTBOX", CreateTableWebhookOutbox.class)
+      .add(1840, "Add index on ISSUES.PROJECT_UUID, COMPONENT_UUID and KEE", AddIndexOnProjectUuidComponentUuidAndKeeOfIssues.class)
     ;
   }
 }
@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.db.migration.version.v67;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.db.CoreDbTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CreateTableWebhookOutboxTest {
+  private static final String TABLE = "webhook_outbox";
+
+  @Rule
+  public final CoreDbTester db = CoreDbTester.createForSchema(CreateTableWebhookOutboxTest.class, "empty.sql");
+
+  private CreateTableWebhookOutbox underTest = new CreateTableWebhookOutbox(db.database());
+
+  @Test
+  public void creates_table_on_empty_db() throws SQLException {
+    underTest.execute();
+
+    assertThat(db.countRowsOfTable(TABLE)).isEqualTo(0);
+
+    db.assertColumnDefinition(TABLE, "uuid", Types.VARCHAR, 40, false);
+    db.assertColumnDefinition(TABLE, "component_uuid", Types.VARCHAR, 40, false);
+    db.assertColumnDefinition(TABLE, "ce_task_uuid", Types.VARCHAR, 40, true);
+    db.assertColumnDefinition(TABLE, "analysis_uuid", Types.VARCHAR, 40, true);
+    db.assertColumnDefinition(TABLE, "name", Types.VARCHAR, 100, false);
+    db.assertColumnDefinition(TABLE, "url", Types.VARCHAR, 2000, false);
+    db.assertColumnDefinition(TABLE, "project_key", Types.VARCHAR, 400, false);
+    db.assertColumnDefinition(TABLE, "payload", Types.CLOB, 2147483647, false);
+    db.assertColumnDefinition(TABLE, "attempts", Types.INTEGER, null, false);
+    db.assertColumnDefinition(TABLE, "next_attempt_at", Types.BIGINT, null, false);
+    db.assertColumnDefinition(TABLE, "created_at", Types.BIGINT, null, false);
+
+    db.assertIndex(TABLE, "webhook_outbox_next_attempt", "next_attempt_at");
+  }
+}
@@ -22,51 +22,83 @@ package org.sonar.server.batch;
 import com.google.common.base.Splitter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.rules.RuleType;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.issue.IssueDto;
+import org.sonar.db.property.PropertyDto;
 import org.sonar.scanner.protocol.input.ScannerInput;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.WsUtils;
 import org.sonarqube.ws.MediaTypes;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Maps.newHashMap;
 import static java.lang.String.format;
 import static org.sonar.api.web.UserRole.USER;
+import static org.sonar.core.config.PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES;
 import static org.sonar.core.util.Protobuf.setNullable;
 import static org.sonar.server.ws.KeyExamples.KEY_BRANCH_EXAMPLE_001;
 import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
 
+/**
+ * Issues of a component, as loaded by scanners. Responses are versioned by an ETag which changes whenever an issue
+ * of the project, the key of one of its modules or the last analysis changes, so that scanners can cache them. A request
+ * with a parameter {@code changedSince} and an ETag of the same modules and analysis gets only the issues updated since
+ * the given date, including the closed ones, and the response has the header {@value #DELTA_HEADER}.
+ * <p/>
+ * There is no empty response with status 304, because the update date of an issue is set before the commit of its
+ * transaction: an issue can be committed after an issue with a more recent update date has been returned, without
+ * changing the ETag. For the same reason deltas start {@link #CHANGED_SINCE_MARGIN_MS} before the requested date.
+ * Deltas are not returned when the requested date is older than the retention of closed issues, as closed issues
+ * which have been purged in the meantime would never be returned.
+ */
 public class IssuesAction implements BatchWsAction {
 
+  static final String DELTA_HEADER = "X-Sonar-Delta";
+  static final long CHANGED_SINCE_MARGIN_MS = 60 * 60 * 1_000L;
+
   private static final String PARAM_KEY = "key";
   private static final String PARAM_BRANCH = "branch";
+  private static final String PARAM_CHANGED_SINCE = "changedSince";
   private static final Splitter MODULE_PATH_SPLITTER = Splitter.on('.').trimResults().omitEmptyStrings();
 
   private final DbClient dbClient;
   private final UserSession userSession;
   private final ComponentFinder componentFinder;
+  private final Configuration config;
+  private final System2 system2;
 
-  public IssuesAction(DbClient dbClient, UserSession userSession, ComponentFinder componentFinder) {
+  public IssuesAction(DbClient dbClient, UserSession userSession, ComponentFinder componentFinder, Configuration config, System2 system2) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
+    this.config = config;
+    this.system2 = system2;
   }
 
   @Override
   public void define(WebService.NewController controller) {
     WebService.NewAction action = controller.createAction("issues")
-      .setDescription("Return open issues")
+      .setDescription("Return open issues. The response has an ETag header.")
       .setResponseExample(getClass().getResource("issues-example.proto"))
       .setSince("5.1")
       .setInternal(true)
@@ -83,6 +115,14 @@ public class IssuesAction implements BatchWsAction {
       .setSince("6.6")
       .setDescription("Branch key")
       .setExampleValue(KEY_BRANCH_EXAMPLE_001);
+
+    action
+      .createParam(PARAM_CHANGED_SINCE)
+      .setSince("7.0")
+      .setDescription("Only return the issues, including the closed ones, updated since this date, as a number of milliseconds since epoch. " +
+        "Ignored if the key is a file key, if the header If-None-Match is not an ETag of the same modules and last analysis, " +
+        "or if the date is older than the retention of closed issues.")
+      .setExampleValue("1508320800000");
   }
 
   @Override
@@ -92,9 +132,23 @@ public class IssuesAction implements BatchWsAction {
       userSession.checkComponentPermission(USER, component);
       Map<String, String> keysByUUid = keysByUUid(dbSession, component);
 
+      String modulesVersion = modulesVersion(dbSession, component, keysByUUid);
+      Optional<Long> lastUpdate = dbClient.issueDao().selectMaxUpdatedAtByProjectUuid(dbSession, component.projectUuid());
+      String etag = "\"" + modulesVersion + "-" + lastUpdate.orElse(0L) + "\"";
+      response.setHeader("ETag", etag);
+      lastUpdate.ifPresent(date -> response.setHeader("Last-Modified", formatHttpDate(date)));
+      Long changedSince = request.paramAsLong(PARAM_CHANGED_SINCE);
+      boolean delta = changedSince != null && Scopes.PROJECT.equals(component.scope())
+        && request.header("If-None-Match").filter(known -> known.startsWith("\"" + modulesVersion + "-")).isPresent()
+        && changedSince >= system2.now() - closedIssuesRetentionMs(dbSession, component);
+      if (delta) {
+        response.setHeader(DELTA_HEADER, "true");
+      }
+
       ScannerInput.ServerIssue.Builder responseBuilder = ScannerInput.ServerIssue.newBuilder();
       response.stream().setMediaType(MediaTypes.PROTOBUF);
-      OutputStream output = response.stream().output();
+      // issues are written while the cursor is iterated
+      OutputStream output = WsUtils.streamingOutput(response);
 
       ResultHandler<IssueDto> handler = resultContext -> {
         IssueDto issue = resultContext.getResultObject();
@@ -102,7 +156,11 @@ public class IssuesAction implements BatchWsAction {
       };
       switch (component.scope()) {
         case Scopes.PROJECT:
-          dbClient.issueDao().scrollNonClosedByModuleOrProject(dbSession, component, handler);
+          if (delta) {
+            dbClient.issueDao().scrollByModuleOrProjectUpdatedSince(dbSession, component, changedSince - CHANGED_SINCE_MARGIN_MS, handler);
+          } else {
+            dbClient.issueDao().scrollNonClosedByModuleOrProject(dbSession, component, handler);
+          }
           break;
         case Scopes.FILE:
           dbClient.issueDao().scrollNonClosedByComponentUuid(dbSession, component.uuid(), handler);
@@ -161,6 +219,35 @@ public class IssuesAction implements BatchWsAction {
     return keysByUUid;
   }
 
+  /**
+   * Closed issues are purged after a number of days which can be overridden by project
+   */
+  private long closedIssuesRetentionMs(DbSession dbSession, ComponentDto component) {
+    ComponentDto project = dbClient.componentDao().selectOrFailByUuid(dbSession, component.projectUuid());
+    PropertyDto projectProperty = dbClient.propertiesDao().selectProjectProperty(dbSession, project.getId(), DAYS_BEFORE_DELETING_CLOSED_ISSUES);
+    int days = projectProperty == null || projectProperty.getValue() == null
+      ? config.getInt(DAYS_BEFORE_DELETING_CLOSED_ISSUES).orElse(0)
+      : Integer.parseInt(projectProperty.getValue().trim());
+    return TimeUnit.DAYS.toMillis(days);
+  }
+
+  private static String formatHttpDate(long date) {
+    return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atOffset(ZoneOffset.UTC));
+  }
+
+  /**
+   * Issues are written with the keys of their modules and the paths of their files, which can change without the
+   * issues being updated: module keys can be updated at any time, and an analysis can move a file without changing
+   * its uuid. As for the version of project data, a delta never spans an analysis.
+   */
+  private String modulesVersion(DbSession dbSession, ComponentDto component, Map<String, String> keysByUUid) {
+    StringBuilder version = new StringBuilder(component.uuid());
+    dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(dbSession, component.projectUuid())
+      .ifPresent(analysis -> version.append(analysis.getUuid()));
+    version.append(new TreeMap<>(keysByUUid));
+    return DigestUtils.sha1Hex(version.toString());
+  }
+
   private ComponentDto loadComponent(DbSession dbSession, Request request) {
     String componentKey = request.mandatoryParam(PARAM_KEY);
     String branch = request.param(PARAM_BRANCH);
@@ -22,6 +22,8 @@ package org.sonar.server.batch;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
@@ -37,6 +39,8 @@ import static org.sonar.server.ws.WsUtils.writeProtobuf;
 
 public class ProjectAction implements BatchWsAction {
 
+  static final String FILE_DATA_NOT_MODIFIED_HEADER = "X-Sonar-File-Data-Not-Modified";
+
   private static final String PARAM_KEY = "key";
   private static final String PARAM_PROFILE = "profile";
   private static final String PARAM_ISSUES_MODE = "issues_mode";
@@ -51,7 +55,9 @@ public class ProjectAction implements BatchWsAction {
   @Override
   public void define(WebService.NewController controller) {
     WebService.NewAction action = controller.createAction("project")
-      .setDescription("Return project repository")
+      .setDescription("Return project repository. The response has an ETag header, which is the version of the file data. " +
+        "If the header If-None-Match of the request is equal to the current ETag, the file data are not returned " +
+        "and the response has the header " + FILE_DATA_NOT_MODIFIED_HEADER + ".")
       .setResponseExample(getClass().getResource("project-example.json"))
       .setSince("4.5")
       .setInternal(true)
@@ -83,16 +89,35 @@ public class ProjectAction implements BatchWsAction {
 
   @Override
   public void handle(Request wsRequest, Response wsResponse) throws Exception {
+    String knownEtag = wsRequest.header("If-None-Match").orElse(null);
     ProjectRepositories data = projectDataLoader.load(ProjectDataQuery.create()
       .setModuleKey(wsRequest.mandatoryParam(PARAM_KEY))
       .setProfileName(wsRequest.param(PARAM_PROFILE))
       .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE))
-      .setBranch(wsRequest.param(PARAM_BRANCH)));
-
+      .setBranch(wsRequest.param(PARAM_BRANCH))
+      .setKnownVersion(toVersion(knownEtag)));
+
+    String version = data.version();
+    if (version != null) {
+      String etag = "\"" + version + "\"";
+      wsResponse.setHeader("ETag", etag);
+      if (etag.equals(knownEtag)) {
+        // settings are always returned, so that they are never stored by clients
+        wsResponse.setHeader(FILE_DATA_NOT_MODIFIED_HEADER, "true");
+      }
+    }
     WsProjectResponse projectResponse = buildResponse(data);
     writeProtobuf(projectResponse, wsRequest, wsResponse);
   }
 
+  @CheckForNull
+  private static String toVersion(@Nullable String etag) {
+    if (etag == null || etag.length() < 2) {
+      return null;
+    }
+    return etag.substring(1, etag.length() - 1);
+  }
+
   private static WsProjectResponse buildResponse(ProjectRepositories data) {
     WsProjectResponse.Builder response = WsProjectResponse.newBuilder();
     setNullable(data.lastAnalysisDate(), response::setLastAnalysisDate, Date::getTime);
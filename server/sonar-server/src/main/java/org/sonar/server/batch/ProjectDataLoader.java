@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ServerSide;
@@ -89,17 +90,34 @@ public class ProjectDataLoader {
       TreeModuleSettings treeModuleSettings = new TreeModuleSettings(session, modulesTree, modulesTreeSettings);
 
       addSettingsToChildrenModules(data, moduleKey, Maps.newHashMap(), treeModuleSettings, hasScanPerm);
-      List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, branchOrMainModule);
-      addFileData(data, modulesTree, files);
 
       // FIXME need real value but actually only used to know if there is a previous analysis in local issue tracking mode so any value is
       // ok
       data.setLastAnalysisDate(new Date());
 
+      data.setVersion(computeVersion(session, branchOrMainModule, modulesTree));
+      if (data.version().equals(query.getKnownVersion())) {
+        // the client already has the file data, which can not change without a change of version
+        return data;
+      }
+      List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, branchOrMainModule);
+      addFileData(data, modulesTree, files);
+
       return data;
     }
   }
 
+  /**
+   * Version of the file data, which only change with analyses
+   */
+  private String computeVersion(DbSession session, ComponentDto module, List<ComponentDto> modulesTree) {
+    StringBuilder version = new StringBuilder(module.uuid());
+    dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(session, module.projectUuid())
+      .ifPresent(analysis -> version.append(analysis.getUuid()));
+    modulesTree.stream().map(ComponentDto::getKey).sorted().forEach(version::append);
+    return DigestUtils.sha1Hex(version.toString());
+  }
+
   private static boolean isProjectOrModule(ComponentDto module) {
     if (!Scopes.PROJECT.equals(module.scope())) {
       return false;
@@ -28,6 +28,7 @@ public class ProjectDataQuery {
   private String profileName;
   private boolean issuesMode;
   private String branch;
+  private String knownVersion;
 
   private ProjectDataQuery() {
     // No direct call
@@ -71,6 +72,19 @@ public class ProjectDataQuery {
     return this;
   }
 
+  /**
+   * Version of the project data already known by the client, if any
+   */
+  @CheckForNull
+  public String getKnownVersion() {
+    return knownVersion;
+  }
+
+  public ProjectDataQuery setKnownVersion(@Nullable String knownVersion) {
+    this.knownVersion = knownVersion;
+    return this;
+  }
+
   public static ProjectDataQuery create() {
     return new ProjectDataQuery();
   }
@@ -0,0 +1,37 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+/**
+ * Marker interface of a {@link TypeAwareVisitor} which supports being called concurrently on different
+ * Components of type {@link Component.Type#FILE}.
+ * <p>
+ * When {@link VisitorsCrawler} runs in parallel mode, the files of a directory are visited concurrently by such visitors.
+ * All the files of a directory are visited before the directory itself is visited in {@link ComponentVisitor.Order#POST_ORDER},
+ * so aggregation on directories, modules and projects is not impacted. Components of other types are always visited
+ * sequentially.
+ * </p>
+ * <p>
+ * The visit of a file by such a visitor, including the repositories it calls, must be thread-safe. See
+ * {@link org.sonar.server.computation.task.projectanalysis.source.LastCommitVisitor}.
+ * </p>
+ */
+public interface ThreadSafeVisitor {
+}
@@ -21,11 +21,18 @@ package org.sonar.server.computation.task.projectanalysis.component;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Loggers;
@@ -37,6 +44,13 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * This crawler make any number of {@link TypeAwareVisitor} or {@link PathAwareVisitor} defined in a list visit a component tree, component per component, in the order of the list
+ * <p>
+ * When an {@link ExecutorService} is provided, the files of each directory are visited concurrently by the visitors
+ * implementing {@link ThreadSafeVisitor}. For a given file, the visitors are still called in the order of the list: consecutive
+ * thread-safe visitors visit all the files of the directory concurrently, then consecutive other visitors visit them sequentially,
+ * and so on. All the files of a directory are visited before the directory itself is visited in
+ * {@link ComponentVisitor.Order#POST_ORDER}.
+ * </p>
  */
 public class VisitorsCrawler implements ComponentCrawler {
 
@@ -44,17 +58,59 @@ public class VisitorsCrawler implements ComponentCrawler {
   private final Map<ComponentVisitor, VisitorDuration> visitorCumulativeDurations;
   private final List<VisitorWrapper> preOrderVisitorWrappers;
   private final List<VisitorWrapper> postOrderVisitorWrappers;
+  @CheckForNull
+  private final ExecutorService executorService;
+  private final List<FileVisitorWrappers> fileVisitorWrappers;
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors) {
     this(visitors, false);
   }
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration) {
+    this(visitors, computeDuration, null);
+  }
+
+  /**
+   * @param executorService if not {@code null}, files are visited concurrently by the visitors implementing {@link ThreadSafeVisitor}
+   */
+  public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration, @Nullable ExecutorService executorService) {
     List<VisitorWrapper> visitorWrappers = from(visitors).transform(ToVisitorWrapper.INSTANCE).toList();
     this.preOrderVisitorWrappers = from(visitorWrappers).filter(MathPreOrderVisitor.INSTANCE).toList();
     this.postOrderVisitorWrappers = from(visitorWrappers).filter(MatchPostOrderVisitor.INSTANCE).toList();
     this.computeDuration = computeDuration;
     this.visitorCumulativeDurations = computeDuration ? from(visitors).toMap(VisitorWrapperToInitialDuration.INSTANCE) : Collections.emptyMap();
+    this.executorService = executorService;
+    this.fileVisitorWrappers = buildFileVisitorWrappers(preOrderVisitorWrappers, postOrderVisitorWrappers);
+  }
+
+  /**
+   * Splits the visitors of files, in the order they are called, into groups of consecutive visitors which
+   * are all thread-safe or all not thread-safe.
+   */
+  private static List<FileVisitorWrappers> buildFileVisitorWrappers(List<VisitorWrapper> preOrderVisitorWrappers, List<VisitorWrapper> postOrderVisitorWrappers) {
+    MatchVisitorMaxDepth fileMaxDepth = MatchVisitorMaxDepth.forType(Component.Type.FILE);
+    List<FileVisitorWrappers> result = new ArrayList<>();
+    FileVisitorWrappers current = null;
+    for (VisitorWrapper visitorWrapper : from(concat(preOrderVisitorWrappers, postOrderVisitorWrappers)).filter(fileMaxDepth)) {
+      boolean threadSafe = isThreadSafe(visitorWrapper);
+      if (current == null || current.threadSafe != threadSafe) {
+        current = new FileVisitorWrappers(threadSafe);
+        result.add(current);
+      }
+      current.visitorWrappers.add(visitorWrapper);
+    }
+    return result;
+  }
+
+  private static boolean isThreadSafe(VisitorWrapper visitorWrapper) {
+    ComponentVisitor visitor = visitorWrapper.getWrappedVisitor();
+    if (!(visitor instanceof ThreadSafeVisitor)) {
+      return false;
+    }
+    if (!(visitor instanceof TypeAwareVisitor)) {
+      throw new IllegalArgumentException("Only TypeAwareVisitor can implement ThreadSafeVisitor");
+    }
+    return true;
   }
 
   public Map<ComponentVisitor, Long> getCumulativeDurations() {
@@ -106,11 +162,67 @@ public class VisitorsCrawler implements ComponentCrawler {
   }
 
   private void visitChildren(Component component) {
+    if (executorService != null && hasOnlyFileChildren(component)) {
+      visitFiles(component.getChildren(), executorService);
+      return;
+    }
     for (Component child : component.getChildren()) {
       visit(child);
     }
   }
 
+  private static boolean hasOnlyFileChildren(Component component) {
+    List<Component> children = component.getChildren();
+    return !children.isEmpty() && children.stream().allMatch(child -> child.getType() == Component.Type.FILE);
+  }
+
+  private void visitFiles(List<Component> files, ExecutorService executorService) {
+    for (FileVisitorWrappers wrappers : fileVisitorWrappers) {
+      if (wrappers.threadSafe) {
+        List<Future<?>> futures = new ArrayList<>(files.size());
+        for (Component file : files) {
+          futures.add(executorService.submit(() -> visitFile(file, wrappers.visitorWrappers)));
+        }
+        waitFor(futures);
+      } else {
+        for (Component file : files) {
+          visitFile(file, wrappers.visitorWrappers);
+        }
+      }
+    }
+  }
+
+  private void visitFile(Component file, List<VisitorWrapper> visitorWrappers) {
+    try {
+      for (VisitorWrapper visitorWrapper : visitorWrappers) {
+        visitorWrapper.beforeComponent(file);
+        visitNode(file, visitorWrapper);
+        visitorWrapper.afterComponent(file);
+      }
+    } catch (RuntimeException e) {
+      VisitException.rethrowOrWrap(
+        e,
+        "Visit of Component {key=%s,type=%s} failed",
+        file.getKey(), file.getType());
+    }
+  }
+
+  private static void waitFor(List<Future<?>> futures) {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while visiting files", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException("Fail to visit files", e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
   private void visitNode(Component component, VisitorWrapper visitor) {
     Profiler profiler = Profiler.create(Loggers.get(visitor.getWrappedVisitor().getClass()))
       .startTrace("Visiting component {}", component.getKey());
@@ -182,7 +294,11 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
 
     public static MatchVisitorMaxDepth forComponent(Component component) {
-      return INSTANCES.get(component.getType());
+      return forType(component.getType());
+    }
+
+    public static MatchVisitorMaxDepth forType(Component.Type type) {
+      return INSTANCES.get(type);
     }
 
     @Override
@@ -210,15 +326,25 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
   }
 
+  private static final class FileVisitorWrappers {
+    private final boolean threadSafe;
+    private final List<VisitorWrapper> visitorWrappers = new ArrayList<>();
+
+    private FileVisitorWrappers(boolean threadSafe) {
+      this.threadSafe = threadSafe;
+    }
+  }
+
   private static final class VisitorDuration {
-    private long duration = 0;
+    // incremented concurrently by the thread-safe visitors of files
+    private final AtomicLong duration = new AtomicLong(0);
 
     public void increment(long duration) {
-      this.duration += duration;
+      this.duration.addAndGet(duration);
     }
 
     public long getDuration() {
-      return duration;
+      return duration.get();
     }
   }
 
@@ -50,6 +50,7 @@ import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity
 import org.sonar.server.computation.task.projectanalysis.filemove.MutableMovedFilesRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.filemove.SourceSimilarityImpl;
 import org.sonar.server.computation.task.projectanalysis.filesystem.ComputationTempFolderProvider;
+import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesCache;
 import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesLoader;
 import org.sonar.server.computation.task.projectanalysis.issue.CloseIssuesOnRemovedComponentsVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesLoader;
@@ -248,6 +249,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       ShortBranchTrackerExecution.class,
       MergeBranchTrackerExecution.class,
       ComponentIssuesLoader.class,
+      BaseIssuesCache.class,
       BaseIssuesLoader.class,
       IssueTrackingDelegator.class,
       BranchPersisterImpl.class,
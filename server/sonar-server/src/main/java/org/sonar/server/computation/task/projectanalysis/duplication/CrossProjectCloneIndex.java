@@ -0,0 +1,225 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.duplication.DuplicationUnitDto;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MappedCloneIndex;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Index of the duplication blocks of the last analysis of all projects, which allows to look up the candidates of
+ * cross project duplications without querying the table DUPLICATIONS_INDEX for each file.
+ * <p>
+ * There is one {@link MappedCloneIndex} per language, built from the database on first use and shared by all the
+ * workers of the Compute Engine. It's rebuilt when older than the value of {@link #MAX_AGE_PROPERTY}, so the projects
+ * analyzed in the meantime are not taken into account until then. Workers keep on querying the previous index while it's
+ * rebuilt. The index is disabled when this property is not set.
+ * </p>
+ */
+public class CrossProjectCloneIndex implements Startable {
+
+  static final String MAX_AGE_PROPERTY = "sonar.ce.crossProjectDuplications.index.maxAgeInMinutes";
+
+  private static final Logger LOGGER = Loggers.get(CrossProjectCloneIndex.class);
+  private static final int HASH_BYTES = 8;
+
+  private final DbClient dbClient;
+  private final TempFolder tempFolder;
+  private final System2 system2;
+  private final long maxAgeInMs;
+  private final Map<String, LanguageIndex> indexesByLanguage = new ConcurrentHashMap<>();
+  private final Map<String, Lock> locksByLanguage = new ConcurrentHashMap<>();
+
+  public CrossProjectCloneIndex(DbClient dbClient, TempFolder tempFolder, System2 system2, Configuration configuration) {
+    this.dbClient = dbClient;
+    this.tempFolder = tempFolder;
+    this.system2 = system2;
+    this.maxAgeInMs = configuration.getLong(MAX_AGE_PROPERTY).orElse(0L) * 60_000L;
+  }
+
+  public boolean isEnabled() {
+    return maxAgeInMs > 0;
+  }
+
+  /**
+   * Same as {@link org.sonar.db.duplication.DuplicationDao#selectCandidates(DbSession, String, String, Collection)}.
+   *
+   * @param excludedAnalysisUuid uuid of the previous analysis of the current project, if any
+   */
+  public List<Block> selectCandidates(String language, Collection<String> hashes, @Nullable String excludedAnalysisUuid) {
+    LanguageIndex index = getIndex(language);
+    List<Block> result = new ArrayList<>();
+    for (String hash : new LinkedHashSet<>(hashes)) {
+      if (hash.length() != HASH_BYTES * 2) {
+        // such a block can not be in the index
+        continue;
+      }
+      for (Block block : index.cloneIndex.getBySequenceHash(new ByteArray(hash))) {
+        if (!index.analysisUuidsByFileKey.get(block.getResourceId()).equals(excludedAnalysisUuid)) {
+          result.add(block);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The first call for a language waits for the index to be built. Then, when the index is too old, it's rebuilt by
+   * one of the callers while the others keep on using the previous one.
+   */
+  private LanguageIndex getIndex(String language) {
+    checkState(isEnabled(), "Index of cross project duplications is disabled");
+    LanguageIndex index = indexesByLanguage.get(language);
+    if (index != null && !isExpired(index)) {
+      return index;
+    }
+    Lock lock = locksByLanguage.computeIfAbsent(language, l -> new ReentrantLock());
+    if (index == null) {
+      lock.lock();
+    } else if (!lock.tryLock()) {
+      // being rebuilt by another worker
+      return index;
+    }
+    try {
+      LanguageIndex current = indexesByLanguage.get(language);
+      if (current == null || isExpired(current)) {
+        LanguageIndex newIndex = build(language);
+        indexesByLanguage.put(language, newIndex);
+        if (current != null) {
+          // index may still be used by other workers, mapping remains valid after deletion of the file
+          FileUtils.deleteQuietly(current.file);
+        }
+        current = newIndex;
+      }
+      return current;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isExpired(LanguageIndex index) {
+    return system2.now() - index.builtAt > maxAgeInMs;
+  }
+
+  private LanguageIndex build(String language) {
+    Profiler profiler = Profiler.create(LOGGER).startInfo("Build index of cross project duplications for language " + language);
+    long now = system2.now();
+    File file = tempFolder.newFile("cross-project-cpd-" + language, ".idx");
+    try {
+      Map<String, String> analysisUuidsByFileKey = write(language, file);
+      LanguageIndex index = new LanguageIndex(file, MappedCloneIndex.open(file), analysisUuidsByFileKey, now);
+      profiler.stopInfo();
+      return index;
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(file);
+      throw new IllegalStateException("Fail to build index of cross project duplications for language " + language, e);
+    }
+  }
+
+  /**
+   * Blocks are written to the file while the database is scrolled, they are not loaded on heap.
+   *
+   * @return the uuid of the analysis of each file of the index
+   */
+  private Map<String, String> write(String language, File file) throws IOException {
+    Map<String, String> analysisUuidsByFileKey = new HashMap<>();
+    // share the instances of uuids between the files of an analysis
+    Map<String, String> analysisUuids = new HashMap<>();
+    try (DbSession dbSession = dbClient.openSession(false);
+      MappedCloneIndex.Writer writer = new MappedCloneIndex.Writer(file, HASH_BYTES)) {
+      dbClient.duplicationDao().scrollLastAnalysesUnits(dbSession, language, context -> {
+        DuplicationUnitDto dto = context.getResultObject();
+        if (dto.getHash().length() != HASH_BYTES * 2) {
+          return;
+        }
+        analysisUuidsByFileKey.computeIfAbsent(dto.getComponentKey(), k -> analysisUuids.computeIfAbsent(dto.getAnalysisUuid(), Function.identity()));
+        try {
+          writer.insert(Block.builder()
+            .setResourceId(dto.getComponentKey())
+            .setBlockHash(new ByteArray(dto.getHash()))
+            .setIndexInFile(dto.getIndexInFile())
+            .setLines(dto.getStartLine(), dto.getEndLine())
+            .build());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      writer.finish();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return analysisUuidsByFileKey;
+  }
+
+  @Override
+  public void start() {
+    // index is lazily built
+  }
+
+  @Override
+  public void stop() {
+    for (LanguageIndex index : indexesByLanguage.values()) {
+      FileUtils.deleteQuietly(index.file);
+    }
+    indexesByLanguage.clear();
+  }
+
+  private static final class LanguageIndex {
+    private final File file;
+    private final CloneIndex cloneIndex;
+    private final Map<String, String> analysisUuidsByFileKey;
+    private final long builtAt;
+
+    private LanguageIndex(File file, CloneIndex cloneIndex, Map<String, String> analysisUuidsByFileKey, long builtAt) {
+      this.file = file;
+      this.cloneIndex = cloneIndex;
+      this.analysisUuidsByFileKey = analysisUuidsByFileKey;
+      this.builtAt = builtAt;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.File;
+import java.util.List;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Cache of the non-closed issues of all the components of the analyzed project or branch, as they are in database
+ * before the analysis. They are loaded at first use, by pages of {@link #PAGE_SIZE} issues, instead of one query
+ * per component, and are kept on disk grouped by component.
+ */
+public class BaseIssuesCache extends ProtobufIssueDiskCache {
+
+  static final int PAGE_SIZE = 1_000;
+
+  private final ComponentIssuesLoader issuesLoader;
+  private final TreeRootHolder treeRootHolder;
+  private boolean loaded = false;
+
+  // this constructor is used by picocontainer
+  public BaseIssuesCache(TempFolder tempFolder, System2 system2, ComponentIssuesLoader issuesLoader, TreeRootHolder treeRootHolder) {
+    this(tempFolder.newFile("base-issues", ".dat"), system2, issuesLoader, treeRootHolder);
+  }
+
+  public BaseIssuesCache(File file, System2 system2, ComponentIssuesLoader issuesLoader, TreeRootHolder treeRootHolder) {
+    super(file, system2);
+    this.issuesLoader = issuesLoader;
+    this.treeRootHolder = treeRootHolder;
+  }
+
+  /**
+   * Same as {@link ComponentIssuesLoader#loadForComponentUuid(String)} for a component of the analyzed project or branch.
+   */
+  public List<DefaultIssue> loadForComponentUuid(String componentUuid) {
+    ensureLoaded();
+    try (CloseableIterator<DefaultIssue> issues = traverse(componentUuid)) {
+      return newArrayList(issues);
+    }
+  }
+
+  private synchronized void ensureLoaded() {
+    if (loaded) {
+      return;
+    }
+    try (CacheAppender<DefaultIssue> appender = newAppender()) {
+      issuesLoader.loadForProjectUuid(treeRootHolder.getRoot().getUuid(), PAGE_SIZE, appender::append);
+    }
+    loaded = true;
+  }
+}
@@ -22,12 +22,14 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.issue.IssueChangeDto;
+import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolder;
 
@@ -68,24 +70,42 @@ public class ComponentIssuesLoader {
     }
   }
 
+  /**
+   * Loads the non-closed issues of all the components of a project or branch, by pages of {@code pageSize} issues.
+   * Issues are ordered by component, so that the issues of a component are passed contiguously to the consumer.
+   */
+  public void loadForProjectUuid(String projectUuid, int pageSize, Consumer<DefaultIssue> consumer) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      IssueDto last = null;
+      List<IssueDto> page;
+      do {
+        page = dbClient.issueDao().selectNonClosedByProjectUuid(dbSession, projectUuid, last, pageSize);
+        page.forEach(dto -> consumer.accept(toDefaultIssue(dto)));
+        last = page.isEmpty() ? null : page.get(page.size() - 1);
+      } while (page.size() == pageSize);
+    }
+  }
+
   private List<DefaultIssue> loadForComponentUuid(String componentUuid, DbSession dbSession) {
     List<DefaultIssue> result = new ArrayList<>();
-    dbSession.getMapper(IssueMapper.class).scrollNonClosedByComponentUuid(componentUuid, resultContext -> {
-      DefaultIssue issue = (resultContext.getResultObject()).toDefaultIssue();
-
-      // TODO this field should be set outside this class
-      if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
-        issue.setOnDisabledRule(true);
-        // TODO to be improved, why setOnDisabledRule(true) is not enough ?
-        issue.setBeingClosed(true);
-      }
-      // FIXME
-      issue.setSelectedAt(System.currentTimeMillis());
-      result.add(issue);
-    });
+    dbSession.getMapper(IssueMapper.class).scrollNonClosedByComponentUuid(componentUuid, resultContext -> result.add(toDefaultIssue(resultContext.getResultObject())));
     return result;
   }
 
+  private DefaultIssue toDefaultIssue(IssueDto dto) {
+    DefaultIssue issue = dto.toDefaultIssue();
+
+    // TODO this field should be set outside this class
+    if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
+      issue.setOnDisabledRule(true);
+      // TODO to be improved, why setOnDisabledRule(true) is not enough ?
+      issue.setBeingClosed(true);
+    }
+    // FIXME
+    issue.setSelectedAt(System.currentTimeMillis());
+    return issue;
+  }
+
   public static void setChanges(Map<String, List<IssueChangeDto>> changeDtoByIssueKey, DefaultIssue i) {
     changeDtoByIssueKey.computeIfAbsent(i.key(), k -> emptyList()).forEach(c -> {
       switch (c.getChangeType()) {
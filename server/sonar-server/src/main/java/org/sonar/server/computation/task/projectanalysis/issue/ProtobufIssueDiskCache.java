@@ -0,0 +1,410 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.DiskCache;
+
+import static org.sonar.core.util.Protobuf.setNullable;
+
+/**
+ * Stores issues on disk as a stream of length-delimited protobuf messages. Compared to
+ * Java serialization, the encoding is compact and cheap to decode.
+ * <p>
+ * The offsets of the issues of each component are indexed in memory, so that the issues of a single
+ * component can be read with {@link #traverse(String)} without scanning the whole file.
+ * Appenders must be used sequentially, not concurrently.
+ * </p>
+ */
+public class ProtobufIssueDiskCache implements DiskCache<DefaultIssue> {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private final System2 system2;
+  private final Map<String, List<Segment>> segmentsByComponentUuid = new HashMap<>();
+  private long fileLength = 0L;
+
+  public ProtobufIssueDiskCache(File file, System2 system2) {
+    this.file = file;
+    this.system2 = system2;
+    try {
+      // creates or truncates the file
+      new FileOutputStream(file).close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    }
+  }
+
+  @Override
+  public ProtobufDiskAppender newAppender() {
+    return new ProtobufDiskAppender();
+  }
+
+  @Override
+  public CloseableIterator<DefaultIssue> traverse() {
+    try {
+      return new IssueIterator(new BufferedInputStream(FileUtils.openInputStream(file), BUFFER_SIZE));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  /**
+   * Issues of the specified component, in the order they have been appended.
+   */
+  public CloseableIterator<DefaultIssue> traverse(String componentUuid) {
+    List<Segment> segments = segmentsByComponentUuid.get(componentUuid);
+    if (segments == null) {
+      return CloseableIterator.emptyCloseableIterator();
+    }
+    try {
+      return new ComponentIssueIterator(new RandomAccessFile(file, "r"), new ArrayList<>(segments).iterator());
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  private void index(@Nullable String componentUuid, long start, long end) {
+    if (componentUuid == null) {
+      return;
+    }
+    List<Segment> segments = segmentsByComponentUuid.computeIfAbsent(componentUuid, k -> new ArrayList<>());
+    Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (last != null && last.end == start) {
+      // issues of a component are usually appended contiguously
+      last.end = end;
+    } else {
+      segments.add(new Segment(start, end));
+    }
+  }
+
+  public class ProtobufDiskAppender implements CacheAppender<DefaultIssue> {
+    private final long startOffset;
+    private final CountingOutputStream output;
+
+    private ProtobufDiskAppender() {
+      this.startOffset = fileLength;
+      try {
+        this.output = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    @Override
+    public ProtobufDiskAppender append(DefaultIssue issue) {
+      long offset = startOffset + output.getCount();
+      try {
+        toProto(issue).writeDelimitedTo(output);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+      index(issue.componentUuid(), offset, startOffset + output.getCount());
+      return this;
+    }
+
+    @Override
+    public void close() {
+      system2.close(output);
+      fileLength = startOffset + output.getCount();
+    }
+  }
+
+  private static class Segment {
+    private final long start;
+    private long end;
+
+    private Segment(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  private static class IssueIterator extends CloseableIterator<DefaultIssue> {
+    private final InputStream input;
+
+    private IssueIterator(InputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    @CheckForNull
+    protected DefaultIssue doNext() {
+      return readIssue(input);
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static class ComponentIssueIterator extends CloseableIterator<DefaultIssue> {
+    private final RandomAccessFile randomAccessFile;
+    private final Iterator<Segment> segments;
+    private InputStream segmentInput = new ByteArrayInputStream(new byte[0]);
+
+    private ComponentIssueIterator(RandomAccessFile randomAccessFile, Iterator<Segment> segments) {
+      this.randomAccessFile = randomAccessFile;
+      this.segments = segments;
+    }
+
+    @Override
+    @CheckForNull
+    protected DefaultIssue doNext() {
+      while (true) {
+        DefaultIssue issue = readIssue(segmentInput);
+        if (issue != null) {
+          return issue;
+        }
+        if (!segments.hasNext()) {
+          return null;
+        }
+        segmentInput = readSegment(segments.next());
+      }
+    }
+
+    private InputStream readSegment(Segment segment) {
+      try {
+        byte[] bytes = new byte[(int) (segment.end - segment.start)];
+        randomAccessFile.seek(segment.start);
+        randomAccessFile.readFully(bytes);
+        return new ByteArrayInputStream(bytes);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read issues from disk", e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(randomAccessFile);
+    }
+  }
+
+  @CheckForNull
+  private static DefaultIssue readIssue(InputStream input) {
+    try {
+      IssueCacheProtos.Issue issue = IssueCacheProtos.Issue.parser().parseDelimitedFrom(input);
+      return issue == null ? null : toDefaultIssue(issue);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read issues from disk", e);
+    }
+  }
+
+  static IssueCacheProtos.Issue toProto(DefaultIssue issue) {
+    IssueCacheProtos.Issue.Builder builder = IssueCacheProtos.Issue.newBuilder();
+    setNullable(issue.key(), builder::setKey);
+    setNullable(issue.type(), t -> builder.setRuleType(t.getDbConstant()));
+    setNullable(issue.componentUuid(), builder::setComponentUuid);
+    setNullable(issue.componentKey(), builder::setComponentKey);
+    setNullable(issue.moduleUuid(), builder::setModuleUuid);
+    setNullable(issue.moduleUuidPath(), builder::setModuleUuidPath);
+    setNullable(issue.projectUuid(), builder::setProjectUuid);
+    setNullable(issue.projectKey(), builder::setProjectKey);
+    setNullable(issue.ruleKey(), k -> builder.setRuleKey(k.toString()));
+    setNullable(issue.language(), builder::setLanguage);
+    setNullable(issue.severity(), builder::setSeverity);
+    builder.setManualSeverity(issue.manualSeverity());
+    setNullable(issue.message(), builder::setMessage);
+    setNullable(issue.line(), builder::setLine);
+    setNullable(issue.gap(), builder::setGap);
+    setNullable(issue.effortInMinutes(), builder::setEffort);
+    setNullable(issue.status(), builder::setStatus);
+    setNullable(issue.resolution(), builder::setResolution);
+    setNullable(issue.assignee(), builder::setAssignee);
+    setNullable(issue.checksum(), builder::setChecksum);
+    for (Map.Entry<String, String> attribute : issue.attributes().entrySet()) {
+      IssueCacheProtos.Attribute.Builder attributeBuilder = builder.addAttributesBuilder().setKey(attribute.getKey());
+      setNullable(attribute.getValue(), attributeBuilder::setValue);
+    }
+    setNullable(issue.authorLogin(), builder::setAuthorLogin);
+    for (IssueComment comment : issue.comments()) {
+      builder.addComments(toProto((DefaultIssueComment) comment));
+    }
+    builder.addAllTags(issue.tags());
+    DbIssues.Locations locations = issue.getLocations();
+    setNullable(locations, l -> builder.setLocations(l.toByteString()));
+    setNullable(issue.creationDate(), builder::setCreationDate, Date::getTime);
+    setNullable(issue.updateDate(), builder::setUpdateDate, Date::getTime);
+    setNullable(issue.closeDate(), builder::setCloseDate, Date::getTime);
+    setNullable(issue.currentChange(), c -> builder.setCurrentChanges(toProto(c)));
+    for (FieldDiffs change : issue.changes()) {
+      builder.addChanges(toProto(change));
+    }
+    builder.setIsNew(issue.isNew());
+    builder.setIsCopied(issue.isCopied());
+    builder.setBeingClosed(issue.isBeingClosed());
+    builder.setOnDisabledRule(issue.isOnDisabledRule());
+    builder.setIsChanged(issue.isChanged());
+    builder.setSendNotifications(issue.mustSendNotifications());
+    setNullable(issue.selectedAt(), builder::setSelectedAt);
+    return builder.build();
+  }
+
+  private static IssueCacheProtos.Comment toProto(DefaultIssueComment comment) {
+    IssueCacheProtos.Comment.Builder builder = IssueCacheProtos.Comment.newBuilder();
+    setNullable(comment.key(), builder::setKey);
+    setNullable(comment.issueKey(), builder::setIssueKey);
+    setNullable(comment.userLogin(), builder::setUserLogin);
+    setNullable(comment.createdAt(), builder::setCreatedAt, Date::getTime);
+    setNullable(comment.updatedAt(), builder::setUpdatedAt, Date::getTime);
+    setNullable(comment.markdownText(), builder::setMarkdownText);
+    builder.setIsNew(comment.isNew());
+    return builder.build();
+  }
+
+  private static IssueCacheProtos.FieldDiffs toProto(FieldDiffs fieldDiffs) {
+    IssueCacheProtos.FieldDiffs.Builder builder = IssueCacheProtos.FieldDiffs.newBuilder();
+    setNullable(fieldDiffs.issueKey(), builder::setIssueKey);
+    setNullable(fieldDiffs.userLogin(), builder::setUserLogin);
+    setNullable(fieldDiffs.creationDate(), builder::setCreationDate, Date::getTime);
+    for (Map.Entry<String, FieldDiffs.Diff> diff : fieldDiffs.diffs().entrySet()) {
+      IssueCacheProtos.Diff.Builder diffBuilder = builder.addDiffsBuilder().setField(diff.getKey());
+      setNullable(diff.getValue().oldValue(), diffBuilder::setOldValue, Object::toString);
+      setNullable(diff.getValue().newValue(), diffBuilder::setNewValue, Object::toString);
+    }
+    return builder.build();
+  }
+
+  static DefaultIssue toDefaultIssue(IssueCacheProtos.Issue proto) {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(proto.hasKey() ? proto.getKey() : null);
+    if (proto.hasRuleType()) {
+      issue.setType(RuleType.valueOf(proto.getRuleType()));
+    }
+    issue.setComponentUuid(proto.hasComponentUuid() ? proto.getComponentUuid() : null);
+    issue.setComponentKey(proto.hasComponentKey() ? proto.getComponentKey() : null);
+    issue.setModuleUuid(proto.hasModuleUuid() ? proto.getModuleUuid() : null);
+    issue.setModuleUuidPath(proto.hasModuleUuidPath() ? proto.getModuleUuidPath() : null);
+    issue.setProjectUuid(proto.hasProjectUuid() ? proto.getProjectUuid() : null);
+    issue.setProjectKey(proto.hasProjectKey() ? proto.getProjectKey() : null);
+    issue.setRuleKey(proto.hasRuleKey() ? RuleKey.parse(proto.getRuleKey()) : null);
+    issue.setLanguage(proto.hasLanguage() ? proto.getLanguage() : null);
+    issue.setSeverity(proto.hasSeverity() ? proto.getSeverity() : null);
+    issue.setManualSeverity(proto.getManualSeverity());
+    issue.setMessage(proto.hasMessage() ? proto.getMessage() : null);
+    issue.setLine(proto.hasLine() ? proto.getLine() : null);
+    issue.setGap(proto.hasGap() ? proto.getGap() : null);
+    issue.setEffort(proto.hasEffort() ? Duration.create(proto.getEffort()) : null);
+    if (proto.hasStatus()) {
+      issue.setStatus(proto.getStatus());
+    }
+    issue.setResolution(proto.hasResolution() ? proto.getResolution() : null);
+    issue.setAssignee(proto.hasAssignee() ? proto.getAssignee() : null);
+    issue.setChecksum(proto.hasChecksum() ? proto.getChecksum() : null);
+    for (IssueCacheProtos.Attribute attribute : proto.getAttributesList()) {
+      issue.setAttribute(attribute.getKey(), attribute.hasValue() ? attribute.getValue() : null);
+    }
+    issue.setAuthorLogin(proto.hasAuthorLogin() ? proto.getAuthorLogin() : null);
+    for (IssueCacheProtos.Comment comment : proto.getCommentsList()) {
+      issue.addComment(toDefaultIssueComment(comment));
+    }
+    if (proto.getTagsCount() > 0) {
+      issue.setTags(proto.getTagsList());
+    }
+    if (proto.hasLocations()) {
+      issue.setLocations(parseLocations(proto));
+    }
+    issue.setCreationDate(proto.hasCreationDate() ? new Date(proto.getCreationDate()) : null);
+    issue.setUpdateDate(proto.hasUpdateDate() ? new Date(proto.getUpdateDate()) : null);
+    issue.setCloseDate(proto.hasCloseDate() ? new Date(proto.getCloseDate()) : null);
+    if (proto.hasCurrentChanges()) {
+      issue.setCurrentChange(toFieldDiffs(proto.getCurrentChanges()));
+    }
+    // replaces the changes registered by setCurrentChange()
+    List<FieldDiffs> changes = new ArrayList<>(proto.getChangesCount());
+    for (IssueCacheProtos.FieldDiffs change : proto.getChangesList()) {
+      changes.add(toFieldDiffs(change));
+    }
+    issue.setChanges(changes.isEmpty() ? null : changes);
+    issue.setNew(proto.getIsNew());
+    issue.setCopied(proto.getIsCopied());
+    issue.setBeingClosed(proto.getBeingClosed());
+    issue.setOnDisabledRule(proto.getOnDisabledRule());
+    issue.setChanged(proto.getIsChanged());
+    issue.setSendNotifications(proto.getSendNotifications());
+    issue.setSelectedAt(proto.hasSelectedAt() ? proto.getSelectedAt() : null);
+    return issue;
+  }
+
+  private static DbIssues.Locations parseLocations(IssueCacheProtos.Issue proto) {
+    try {
+      return DbIssues.Locations.parseFrom(proto.getLocations());
+    } catch (InvalidProtocolBufferException e) {
+      throw new IllegalStateException("Fail to read locations of issue " + proto.getKey(), e);
+    }
+  }
+
+  private static DefaultIssueComment toDefaultIssueComment(IssueCacheProtos.Comment proto) {
+    DefaultIssueComment comment = new DefaultIssueComment();
+    comment.setKey(proto.hasKey() ? proto.getKey() : null);
+    comment.setIssueKey(proto.hasIssueKey() ? proto.getIssueKey() : null);
+    comment.setUserLogin(proto.hasUserLogin() ? proto.getUserLogin() : null);
+    comment.setCreatedAt(proto.hasCreatedAt() ? new Date(proto.getCreatedAt()) : null);
+    comment.setUpdatedAt(proto.hasUpdatedAt() ? new Date(proto.getUpdatedAt()) : null);
+    comment.setMarkdownText(proto.hasMarkdownText() ? proto.getMarkdownText() : null);
+    comment.setNew(proto.getIsNew());
+    return comment;
+  }
+
+  private static FieldDiffs toFieldDiffs(IssueCacheProtos.FieldDiffs proto) {
+    FieldDiffs fieldDiffs = new FieldDiffs();
+    fieldDiffs.setIssueKey(proto.hasIssueKey() ? proto.getIssueKey() : null);
+    fieldDiffs.setUserLogin(proto.hasUserLogin() ? proto.getUserLogin() : null);
+    fieldDiffs.setCreationDate(proto.hasCreationDate() ? new Date(proto.getCreationDate()) : null);
+    for (IssueCacheProtos.Diff diff : proto.getDiffsList()) {
+      Serializable oldValue = diff.hasOldValue() ? diff.getOldValue() : null;
+      Serializable newValue = diff.hasNewValue() ? diff.getNewValue() : null;
+      fieldDiffs.setDiff(diff.getField(), oldValue, newValue);
+    }
+    return fieldDiffs;
+  }
+}
@@ -42,11 +42,22 @@ public class TrackerBaseInputFactory {
   private final ComponentIssuesLoader issuesLoader;
   private final DbClient dbClient;
   private final MovedFilesRepository movedFilesRepository;
+  @CheckForNull
+  private final BaseIssuesCache baseIssuesCache;
 
   public TrackerBaseInputFactory(ComponentIssuesLoader issuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+    this(issuesLoader, dbClient, movedFilesRepository, null);
+  }
+
+  /**
+   * When {@code baseIssuesCache} is not {@code null}, issues are read from it instead of being loaded one component at a time
+   */
+  public TrackerBaseInputFactory(ComponentIssuesLoader issuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository,
+    @Nullable BaseIssuesCache baseIssuesCache) {
     this.issuesLoader = issuesLoader;
     this.dbClient = dbClient;
     this.movedFilesRepository = movedFilesRepository;
+    this.baseIssuesCache = baseIssuesCache;
   }
 
   public Input<DefaultIssue> create(Component component) {
@@ -80,6 +91,9 @@ public class TrackerBaseInputFactory {
 
     @Override
     protected List<DefaultIssue> loadIssues() {
+      if (baseIssuesCache != null) {
+        return baseIssuesCache.loadForComponentUuid(effectiveUuid);
+      }
       return issuesLoader.loadForComponentUuid(effectiveUuid);
     }
   }
@@ -0,0 +1,363 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of {@link RawMeasureRepository} for Components of a report, which stores measures in columns of
+ * primitive arrays: one column per metric, indexed by the report ref of the component.
+ * <p>
+ * Only measures of type {@link Measure.ValueType#NO_VALUE}, {@link Measure.ValueType#BOOLEAN}, {@link Measure.ValueType#INT},
+ * {@link Measure.ValueType#LONG} and {@link Measure.ValueType#DOUBLE}, without data, developer nor QualityGate status,
+ * are stored in columns. Other measures are stored as objects in a side table.
+ * </p>
+ */
+public final class ColumnarRawMeasureRepository implements RawMeasureRepository {
+  /**
+   * Rough estimation of the heap used by a measure stored in the side table
+   */
+  private static final long ESTIMATED_BYTES_PER_OBJECT_MEASURE = 150L;
+
+  private static final byte PRESENT = 1;
+  private static final byte NO_VALUE = 2;
+  private static final byte HAS_VARIATION = 4;
+
+  private MetricColumn[] columnsByMetricId = new MetricColumn[0];
+  private final Map<Integer, Map<MeasureKey, Measure>> objectMeasuresByRef = new HashMap<>();
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public int loadAsRawMeasures(Collection<Component> components, Collection<Metric> metrics) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(toRef(component), metric, null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(toRef(component), metric, measure.getDeveloper()) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(toRef(component), metric, measure.getDeveloper()) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+      measure.getValueType(), metric.getType().getValueType());
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int ref = toRef(component);
+    if (overridePolicy == OverridePolicy.DO_NOT_OVERRIDE && find(ref, metric, measure.getDeveloper()) != null) {
+      return;
+    }
+    if (isNumeric(measure)) {
+      removeObjectMeasure(ref, new MeasureKey(metric.getKey(), null));
+      columnFor(metric).set(ref, measure);
+    } else {
+      if (measure.getDeveloper() == null) {
+        MetricColumn column = getColumn(metric);
+        if (column != null) {
+          column.remove(ref);
+        }
+      }
+      objectMeasuresByRef.computeIfAbsent(ref, k -> new HashMap<>()).put(new MeasureKey(metric.getKey(), measure.getDeveloper()), measure);
+    }
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    int ref = toRef(component);
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    MetricColumn column = getColumn(metric);
+    if (column != null && column.isPresent(ref)) {
+      builder.add(column.get(ref));
+    }
+    Map<MeasureKey, Measure> objectMeasures = objectMeasuresByRef.get(ref);
+    if (objectMeasures != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : objectMeasures.entrySet()) {
+        if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+          builder.add(entry.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int ref = toRef(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (MetricColumn column : columnsByMetricId) {
+      if (column != null && column.isPresent(ref)) {
+        builder.put(column.metric.getKey(), column.get(ref));
+      }
+    }
+    Map<MeasureKey, Measure> objectMeasures = objectMeasuresByRef.get(ref);
+    if (objectMeasures != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : objectMeasures.entrySet()) {
+        builder.put(entry.getKey().getMetricKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (MetricColumn column : columnsByMetricId) {
+      if (column != null) {
+        size += column.size;
+      }
+    }
+    for (Map<MeasureKey, Measure> objectMeasures : objectMeasuresByRef.values()) {
+      size += objectMeasures.size();
+    }
+    return size;
+  }
+
+  @Override
+  public long estimateMemoryFootprint() {
+    long bytes = 0L;
+    int objectMeasures = 0;
+    for (MetricColumn column : columnsByMetricId) {
+      if (column != null) {
+        bytes += column.estimateMemoryFootprint();
+      }
+    }
+    for (Map<MeasureKey, Measure> measures : objectMeasuresByRef.values()) {
+      objectMeasures += measures.size();
+    }
+    return bytes + objectMeasures * ESTIMATED_BYTES_PER_OBJECT_MEASURE;
+  }
+
+  @CheckForNull
+  private Measure find(int ref, Metric metric, @Nullable Developer developer) {
+    if (developer == null) {
+      MetricColumn column = getColumn(metric);
+      if (column != null && column.isPresent(ref)) {
+        return column.get(ref);
+      }
+    }
+    Map<MeasureKey, Measure> objectMeasures = objectMeasuresByRef.get(ref);
+    if (objectMeasures == null) {
+      return null;
+    }
+    return objectMeasures.get(new MeasureKey(metric.getKey(), developer));
+  }
+
+  private void removeObjectMeasure(int ref, MeasureKey key) {
+    Map<MeasureKey, Measure> objectMeasures = objectMeasuresByRef.get(ref);
+    if (objectMeasures != null) {
+      objectMeasures.remove(key);
+    }
+  }
+
+  private static boolean isNumeric(Measure measure) {
+    switch (measure.getValueType()) {
+      case NO_VALUE:
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case DOUBLE:
+        return measure.getDeveloper() == null && !measure.hasQualityGateStatus() && measure.getData() == null;
+      default:
+        return false;
+    }
+  }
+
+  private static int toRef(Component component) {
+    return component.getReportAttributes().getRef();
+  }
+
+  @CheckForNull
+  private MetricColumn getColumn(Metric metric) {
+    int metricId = metric.getId();
+    return metricId < columnsByMetricId.length ? columnsByMetricId[metricId] : null;
+  }
+
+  private MetricColumn columnFor(Metric metric) {
+    int metricId = metric.getId();
+    checkArgument(metricId >= 0, "Metric id must be positive: %s", metricId);
+    if (metricId >= columnsByMetricId.length) {
+      columnsByMetricId = Arrays.copyOf(columnsByMetricId, Math.max(metricId + 1, columnsByMetricId.length * 2));
+    }
+    MetricColumn column = columnsByMetricId[metricId];
+    if (column == null) {
+      column = new MetricColumn(metric);
+      columnsByMetricId[metricId] = column;
+    }
+    return column;
+  }
+
+  private static final class MetricColumn {
+    private final Metric metric;
+    private byte[] flags = new byte[0];
+    private double[] values = new double[0];
+    // allocated only when a measure of the column has a variation
+    @CheckForNull
+    private double[] variations;
+    private int size = 0;
+
+    private MetricColumn(Metric metric) {
+      this.metric = metric;
+    }
+
+    boolean isPresent(int ref) {
+      return ref >= 0 && ref < flags.length && (flags[ref] & PRESENT) != 0;
+    }
+
+    Measure get(int ref) {
+      byte flag = flags[ref];
+      Double variation = (flag & HAS_VARIATION) != 0 ? variations[ref] : null;
+      if ((flag & NO_VALUE) != 0) {
+        return Measure.createNumeric(Measure.ValueType.NO_VALUE, null, variation);
+      }
+      return Measure.createNumeric(metric.getType().getValueType(), values[ref], variation);
+    }
+
+    void set(int ref, Measure measure) {
+      checkArgument(ref >= 0, "Component ref must be positive: %s", ref);
+      ensureCapacity(ref);
+      if (!isPresent(ref)) {
+        size++;
+      }
+      byte flag = PRESENT;
+      if (measure.getValueType() == Measure.ValueType.NO_VALUE) {
+        flag |= NO_VALUE;
+        values[ref] = 0d;
+      } else {
+        values[ref] = toDouble(measure);
+      }
+      if (measure.hasVariation()) {
+        flag |= HAS_VARIATION;
+        if (variations == null) {
+          variations = new double[values.length];
+        }
+        variations[ref] = measure.getVariation();
+      }
+      flags[ref] = flag;
+    }
+
+    void remove(int ref) {
+      if (isPresent(ref)) {
+        flags[ref] = 0;
+        size--;
+      }
+    }
+
+    private void ensureCapacity(int ref) {
+      if (ref >= flags.length) {
+        int capacity = Math.max(ref + 1, flags.length + (flags.length >> 1));
+        flags = Arrays.copyOf(flags, capacity);
+        values = Arrays.copyOf(values, capacity);
+        if (variations != null) {
+          variations = Arrays.copyOf(variations, capacity);
+        }
+      }
+    }
+
+    private static double toDouble(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        default:
+          throw new IllegalArgumentException("Unsupported value type: " + measure.getValueType());
+      }
+    }
+
+    long estimateMemoryFootprint() {
+      long bytes = flags.length + 8L * values.length;
+      if (variations != null) {
+        bytes += 8L * variations.length;
+      }
+      return bytes;
+    }
+  }
+}
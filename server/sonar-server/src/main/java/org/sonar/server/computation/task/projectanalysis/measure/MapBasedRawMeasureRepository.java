@@ -44,7 +44,12 @@ import static java.util.Objects.requireNonNull;
  *
  * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
  */
-public final class MapBasedRawMeasureRepository<T> implements MeasureRepository {
+public final class MapBasedRawMeasureRepository<T> implements RawMeasureRepository {
+  /**
+   * Rough estimation of the heap used by a {@link Measure}, its boxed value, its {@link MeasureKey} and the {@link HashMap} entry
+   */
+  private static final long ESTIMATED_BYTES_PER_MEASURE = 150L;
+
   private final Function<Component, T> componentToKey;
   private final Map<T, Map<MeasureKey, Measure>> measures = new HashMap<>();
 
@@ -158,6 +163,7 @@ public final class MapBasedRawMeasureRepository<T> implements MeasureRepository
     return Optional.fromNullable(measuresPerMetric.get(new MeasureKey(metric.getKey(), measure.getDeveloper())));
   }
 
+  @Override
   public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
     requireNonNull(component);
     requireNonNull(measure);
@@ -176,8 +182,18 @@ public final class MapBasedRawMeasureRepository<T> implements MeasureRepository
     }
   }
 
-  public enum OverridePolicy {
-    OVERRIDE, DO_NOT_OVERRIDE
+  @Override
+  public int size() {
+    int size = 0;
+    for (Map<MeasureKey, Measure> measuresPerMetric : measures.values()) {
+      size += measuresPerMetric.size();
+    }
+    return size;
+  }
+
+  @Override
+  public long estimateMemoryFootprint() {
+    return size() * ESTIMATED_BYTES_PER_MEASURE;
   }
 
   private static class MatchMetric implements Predicate<Map.Entry<MeasureKey, Measure>> {
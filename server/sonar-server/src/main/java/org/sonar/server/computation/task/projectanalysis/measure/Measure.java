@@ -100,6 +100,15 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Creates a Measure of type {@link ValueType#NO_VALUE}, {@link ValueType#BOOLEAN}, {@link ValueType#INT},
+   * {@link ValueType#LONG} or {@link ValueType#DOUBLE} from its value as stored internally, ie. without scaling it.
+   */
+  static Measure createNumeric(ValueType valueType, @Nullable Double value, @Nullable Double variation) {
+    checkArgument(valueType != ValueType.STRING && valueType != ValueType.LEVEL, "Not a numeric value type: %s", valueType);
+    return new Measure(valueType, null, value, null, null, null, variation);
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private QualityGateStatus qualityGateStatus;
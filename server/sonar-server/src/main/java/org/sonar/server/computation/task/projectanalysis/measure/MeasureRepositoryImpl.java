@@ -29,6 +29,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.picocontainer.Startable;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -37,7 +41,7 @@ import org.sonar.db.measure.MeasureQuery;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
-import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.measure.RawMeasureRepository.OverridePolicy;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricValidator;
@@ -45,8 +49,23 @@ import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricVali
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
 
-public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+/**
+ * Access to raw measures is synchronized, as they are added concurrently by the visitors of files implementing
+ * {@link org.sonar.server.computation.task.projectanalysis.component.ThreadSafeVisitor}.
+ */
+public class MeasureRepositoryImpl implements MeasureRepository, Startable {
+  /**
+   * Storage of raw measures: "map" (default) stores {@link Measure} objects in maps, "columnar" stores
+   * numeric measures in primitive arrays (see {@link ColumnarRawMeasureRepository}).
+   */
+  public static final String RAW_MEASURE_STORE_PROPERTY = "sonar.ce.measures.rawStore";
+  static final String MAP_STORE = "map";
+  static final String COLUMNAR_STORE = "columnar";
+
+  private static final Logger LOGGER = Loggers.get(MeasureRepositoryImpl.class);
+
+  private final String storeName;
+  private final RawMeasureRepository delegate;
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
@@ -58,6 +77,18 @@ public class MeasureRepositoryImpl implements MeasureRepository {
 
   public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository,
     ReportMetricValidator reportMetricValidator) {
+    this(dbClient, reportReader, metricRepository, reportMetricValidator, MAP_STORE);
+  }
+
+  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository,
+    ReportMetricValidator reportMetricValidator, Configuration configuration) {
+    this(dbClient, reportReader, metricRepository, reportMetricValidator, configuration.get(RAW_MEASURE_STORE_PROPERTY).orElse(MAP_STORE));
+  }
+
+  private MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository,
+    ReportMetricValidator reportMetricValidator, String storeName) {
+    this.storeName = storeName;
+    this.delegate = createDelegate(storeName);
     this.dbClient = dbClient;
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
@@ -65,6 +96,29 @@ public class MeasureRepositoryImpl implements MeasureRepository {
     this.metricRepository = metricRepository;
   }
 
+  private static RawMeasureRepository createDelegate(String storeName) {
+    switch (storeName) {
+      case MAP_STORE:
+        return new MapBasedRawMeasureRepository<>(toReportRef());
+      case COLUMNAR_STORE:
+        return new ColumnarRawMeasureRepository();
+      default:
+        throw new IllegalArgumentException(String.format("Unsupported value '%s' for property %s. Supported values are %s and %s",
+          storeName, RAW_MEASURE_STORE_PROPERTY, MAP_STORE, COLUMNAR_STORE));
+    }
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    LOGGER.info("Raw measures: {} stored with '{}' store, estimated memory footprint {} KB",
+      delegate.size(), storeName, delegate.estimateMemoryFootprint() / 1024);
+  }
+
   @Override
   public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
     // fail fast
@@ -82,7 +136,7 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   @Override
-  public int loadAsRawMeasures(Collection<Component> components, Collection<Metric> metrics) {
+  public synchronized int loadAsRawMeasures(Collection<Component> components, Collection<Metric> metrics) {
     requireNonNull(components);
     requireNonNull(metrics);
 
@@ -108,7 +162,7 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   @Override
-  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+  public synchronized Optional<Measure> getRawMeasure(Component component, Metric metric) {
     Optional<Measure> local = delegate.getRawMeasure(component, metric);
     if (local.isPresent()) {
       return local;
@@ -120,23 +174,23 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   @Override
-  public void add(Component component, Metric metric, Measure measure) {
+  public synchronized void add(Component component, Metric metric, Measure measure) {
     delegate.add(component, metric, measure);
   }
 
   @Override
-  public void update(Component component, Metric metric, Measure measure) {
+  public synchronized void update(Component component, Metric metric, Measure measure) {
     delegate.update(component, metric, measure);
   }
 
   @Override
-  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+  public synchronized Set<Measure> getRawMeasures(Component component, Metric metric) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component, metric);
   }
 
   @Override
-  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+  public synchronized SetMultimap<String, Measure> getRawMeasures(Component component) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component);
   }
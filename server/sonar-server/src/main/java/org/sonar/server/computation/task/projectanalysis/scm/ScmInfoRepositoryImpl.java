@@ -20,8 +20,8 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -30,12 +30,15 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Thread-safe, as SCM info of files is loaded concurrently by {@link org.sonar.server.computation.task.projectanalysis.source.LastCommitVisitor}.
+ */
 public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
   private static final Logger LOGGER = Loggers.get(ScmInfoRepositoryImpl.class);
 
   private final BatchReportReader batchReportReader;
-  private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  private final Map<Component, ScmInfo> scmInfoCache = new ConcurrentHashMap<>();
   private final ScmInfoDbLoader scmInfoDbLoader;
 
   public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, ScmInfoDbLoader scmInfoDbLoader) {
@@ -59,8 +62,9 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     }
 
     scmInfo = getScmInfoForComponent(component);
-    scmInfoCache.put(component, scmInfo);
-    return optionalOf(scmInfo);
+    // another thread may have loaded the SCM info of the same file meanwhile, the first one is kept
+    ScmInfo existing = scmInfoCache.putIfAbsent(component, scmInfo);
+    return optionalOf(existing == null ? scmInfo : existing);
   }
 
   private static Optional<ScmInfo> optionalOf(ScmInfo scmInfo) {
@@ -0,0 +1,143 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import com.google.common.base.Optional;
+import com.google.protobuf.MessageLite;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
+import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Computes a hash of all the data, except the source code itself, that the {@link LineReader}s use to build the
+ * sources of a file: coverage, syntax highlighting, symbols, SCM and duplications.
+ * <p>
+ * When both this hash and the hash of the source code are the same as the ones of the previous analysis, the
+ * sources of the file don't need to be computed again.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class FileSourceInputsHashComputer {
+
+  /**
+   * Must be incremented when the data built by the line readers changes for the same inputs
+   */
+  private static final int VERSION = 1;
+  private static final int END_OF_SECTION = -1;
+
+  private final BatchReportReader reportReader;
+  private final DuplicationRepository duplicationRepository;
+
+  public FileSourceInputsHashComputer(BatchReportReader reportReader, DuplicationRepository duplicationRepository) {
+    this.reportReader = reportReader;
+    this.duplicationRepository = duplicationRepository;
+  }
+
+  public String compute(Component file, Optional<ScmInfo> scmInfo) {
+    MessageDigest digest = DigestUtils.getMd5Digest();
+    updateInt(digest, VERSION);
+    updateInt(digest, file.getFileAttributes().getLines());
+
+    int fileRef = file.getReportAttributes().getRef();
+    updateMessages(digest, reportReader.readComponentCoverage(fileRef));
+    updateMessages(digest, reportReader.readComponentSyntaxHighlighting(fileRef));
+    updateMessages(digest, reportReader.readComponentSymbols(fileRef));
+    if (scmInfo.isPresent()) {
+      updateChangesets(digest, scmInfo.get());
+    }
+    updateInt(digest, END_OF_SECTION);
+    updateDuplications(digest, duplicationRepository.getDuplications(file));
+    return Hex.encodeHexString(digest.digest());
+  }
+
+  private static void updateMessages(MessageDigest digest, CloseableIterator<? extends MessageLite> messages) {
+    try (CloseableIterator<? extends MessageLite> it = messages) {
+      while (it.hasNext()) {
+        byte[] bytes = it.next().toByteArray();
+        updateInt(digest, bytes.length);
+        digest.update(bytes);
+      }
+    }
+    updateInt(digest, END_OF_SECTION);
+  }
+
+  private static void updateChangesets(MessageDigest digest, ScmInfo scmInfo) {
+    for (Changeset changeset : scmInfo.getAllChangesets()) {
+      updateString(digest, changeset.getRevision());
+      updateString(digest, changeset.getAuthor());
+      digest.update(ByteBuffer.allocate(Long.BYTES).putLong(changeset.getDate()).array());
+    }
+  }
+
+  /**
+   * Only the text blocks of the current file are used by {@link DuplicationLineReader}, and they are sorted to
+   * not depend on the order of the duplications.
+   */
+  private static void updateDuplications(MessageDigest digest, Iterable<Duplication> duplications) {
+    List<TextBlock> textBlocks = new ArrayList<>();
+    for (Duplication duplication : duplications) {
+      textBlocks.add(duplication.getOriginal());
+      for (Duplicate duplicate : duplication.getDuplicates()) {
+        if (duplicate instanceof InnerDuplicate) {
+          textBlocks.add(duplicate.getTextBlock());
+        }
+      }
+    }
+    Collections.sort(textBlocks);
+    for (TextBlock textBlock : textBlocks) {
+      updateInt(digest, textBlock.getStart());
+      updateInt(digest, textBlock.getEnd());
+    }
+    updateInt(digest, END_OF_SECTION);
+  }
+
+  private static void updateString(MessageDigest digest, @Nullable String s) {
+    if (s == null) {
+      updateInt(digest, END_OF_SECTION);
+    } else {
+      byte[] bytes = s.getBytes(UTF_8);
+      updateInt(digest, bytes.length);
+      digest.update(bytes);
+    }
+  }
+
+  private static void updateInt(MessageDigest digest, int i) {
+    digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(i).array());
+  }
+}
@@ -20,10 +20,13 @@
 package org.sonar.server.computation.task.projectanalysis.source;
 
 import com.google.common.base.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
-import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.component.ThreadSafeVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
@@ -33,47 +36,44 @@ import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
-public class LastCommitVisitor extends PathAwareVisitorAdapter<LastCommitVisitor.LastCommit> {
+/**
+ * Files can be visited concurrently: loading of their SCM info, from report or from database, is the costly part of
+ * this visitor. The date of the last commit of a component is kept until its parent, which is visited after all its
+ * children, aggregates it.
+ */
+public class LastCommitVisitor extends TypeAwareVisitorAdapter implements ThreadSafeVisitor {
 
   private final MeasureRepository measureRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final Metric lastCommitDateMetric;
+  private final Map<Component, Long> lastCommitDates = new ConcurrentHashMap<>();
 
   public LastCommitVisitor(MetricRepository metricRepository, MeasureRepository measureRepository, ScmInfoRepository scmInfoRepository) {
-    super(CrawlerDepthLimit.LEAVES, POST_ORDER, new SimpleStackElementFactory<LastCommit>() {
-      @Override
-      public LastCommit createForAny(Component component) {
-        return new LastCommit();
-      }
-
-      /** Stack item is not used at ProjectView level, saves on instantiating useless objects */
-      @Override
-      public LastCommit createForProjectView(Component projectView) {
-        return null;
-      }
-    });
+    super(CrawlerDepthLimit.LEAVES, POST_ORDER);
     this.measureRepository = measureRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.lastCommitDateMetric = metricRepository.getByKey(CoreMetrics.LAST_COMMIT_DATE_KEY);
   }
 
   @Override
-  public void visitProject(Component project, Path<LastCommit> path) {
-    saveAndAggregate(project, path);
+  public void visitProject(Component project) {
+    saveAndAggregate(project, aggregateChildren(project));
+    // project is the root, nothing to aggregate into
+    lastCommitDates.clear();
   }
 
   @Override
-  public void visitDirectory(Component directory, Path<LastCommit> path) {
-    saveAndAggregate(directory, path);
+  public void visitDirectory(Component directory) {
+    saveAndAggregate(directory, aggregateChildren(directory));
   }
 
   @Override
-  public void visitModule(Component module, Path<LastCommit> path) {
-    saveAndAggregate(module, path);
+  public void visitModule(Component module) {
+    saveAndAggregate(module, aggregateChildren(module));
   }
 
   @Override
-  public void visitFile(Component file, Path<LastCommit> path) {
+  public void visitFile(Component file) {
     // load SCM blame information from report. It can be absent when the file was not touched
     // since previous analysis (optimization to decrease execution of blame commands). In this case
     // the date is loaded from database, as it did not change from previous analysis.
@@ -81,50 +81,45 @@ public class LastCommitVisitor extends PathAwareVisitorAdapter<LastCommitVisitor
     Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(file);
     if (scmInfoOptional.isPresent()) {
       ScmInfo scmInfo = scmInfoOptional.get();
-      path.current().addDate(scmInfo.getLatestChangeset().getDate());
+      saveAndAggregate(file, scmInfo.getLatestChangeset().getDate());
     }
-    saveAndAggregate(file, path);
   }
 
   @Override
-  public void visitView(Component view, Path<LastCommit> path) {
-    saveAndAggregate(view, path);
+  public void visitView(Component view) {
+    saveAndAggregate(view, aggregateChildren(view));
+    // view is the root, nothing to aggregate into
+    lastCommitDates.clear();
   }
 
   @Override
-  public void visitSubView(Component subView, Path<LastCommit> path) {
-    saveAndAggregate(subView, path);
+  public void visitSubView(Component subView) {
+    saveAndAggregate(subView, aggregateChildren(subView));
   }
 
   @Override
-  public void visitProjectView(Component projectView, Path<LastCommit> path) {
+  public void visitProjectView(Component projectView) {
     Optional<Measure> rawMeasure = measureRepository.getRawMeasure(projectView, lastCommitDateMetric);
     if (rawMeasure.isPresent()) {
-      // path.parent() should never fail as a project view must never be a root component
-      path.parent().addDate(rawMeasure.get().getLongValue());
+      lastCommitDates.put(projectView, rawMeasure.get().getLongValue());
     }
   }
 
-  private void saveAndAggregate(Component component, Path<LastCommit> path) {
-    long maxDate = path.current().getDate();
-    if (maxDate > 0L) {
-      measureRepository.add(component, lastCommitDateMetric, Measure.newMeasureBuilder().create(maxDate));
-
-      if (!path.isRoot()) {
-        path.parent().addDate(maxDate);
+  private long aggregateChildren(Component component) {
+    long maxDate = 0L;
+    for (Component child : component.getChildren()) {
+      Long childDate = lastCommitDates.remove(child);
+      if (childDate != null) {
+        maxDate = Math.max(maxDate, childDate);
       }
     }
+    return maxDate;
   }
 
-  public static final class LastCommit {
-    private long date = 0;
-
-    public void addDate(long l) {
-      this.date = Math.max(this.date, l);
-    }
-
-    public long getDate() {
-      return date;
+  private void saveAndAggregate(Component component, long maxDate) {
+    if (maxDate > 0L) {
+      measureRepository.add(component, lastCommitDateMetric, Measure.newMeasureBuilder().create(maxDate));
+      lastCommitDates.put(component, maxDate);
     }
   }
 }
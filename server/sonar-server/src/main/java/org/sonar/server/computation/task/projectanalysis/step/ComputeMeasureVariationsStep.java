@@ -20,11 +20,12 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 import javax.annotation.CheckForNull;
@@ -43,14 +44,11 @@ import org.sonar.server.computation.task.projectanalysis.measure.MeasureKey;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
-import org.sonar.server.computation.task.projectanalysis.period.Period;
 import org.sonar.server.computation.task.projectanalysis.period.PeriodHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
-import static java.util.function.Function.identity;
-import static org.sonar.core.util.stream.MoreCollectors.uniqueIndex;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
@@ -59,6 +57,9 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  * Set variations on all numeric measures found in the repository.
  * This step MUST be executed after all steps that create some measures
  * <p/>
+ * Measures of the analysis of the period are loaded in a single query before visiting the components, instead
+ * of one query per component.
+ * <p/>
  * Note that measures on developer are not handle yet.
  */
 public class ComputeMeasureVariationsStep implements ComputationStep {
@@ -80,24 +81,41 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
   @Override
   public void execute() {
+    List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(MoreCollectors.toList());
+    new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(loadPastMeasures(), metrics))
+      .visit(treeRootHolder.getRoot());
+  }
+
+  private Map<String, PastMeasureValues> loadPastMeasures() {
+    if (!periodHolder.hasPeriod()) {
+      return Collections.emptyMap();
+    }
+    Map<String, PastMeasureValues> pastMeasuresByComponentUuid = new HashMap<>();
     try (DbSession dbSession = dbClient.openSession(false)) {
-      List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(MoreCollectors.toList());
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
-        .visit(treeRootHolder.getRoot());
+      // measures are ordered by component, so the values of a component are built before moving to the next one
+      PastMeasureValues.Builder builder = new PastMeasureValues.Builder();
+      dbClient.measureDao().selectPastMeasures(dbSession, periodHolder.getPeriod().getAnalysisUuid(), context -> {
+        PastMeasureDto pastMeasure = context.getResultObject();
+        if (!pastMeasure.getComponentUuid().equals(builder.componentUuid)) {
+          builder.buildTo(pastMeasuresByComponentUuid);
+          builder.componentUuid = pastMeasure.getComponentUuid();
+        }
+        builder.add(pastMeasure.getMetricId(), pastMeasure.getValue());
+      });
+      builder.buildTo(pastMeasuresByComponentUuid);
     }
+    return pastMeasuresByComponentUuid;
   }
 
   private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
 
-    private final DbSession session;
-    private final Set<Integer> metricIds;
+    private final Map<String, PastMeasureValues> pastMeasuresByComponentUuid;
     private final List<Metric> metrics;
 
-    VariationMeasuresVisitor(DbSession session, List<Metric> metrics) {
+    VariationMeasuresVisitor(Map<String, PastMeasureValues> pastMeasuresByComponentUuid, List<Metric> metrics) {
       // measures on files are currently purged, so past measures are not available on files
       super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
-      this.session = session;
-      this.metricIds = metrics.stream().map(Metric::getId).collect(MoreCollectors.toSet());
+      this.pastMeasuresByComponentUuid = pastMeasuresByComponentUuid;
       this.metrics = metrics;
     }
 
@@ -110,23 +128,17 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
       MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
       if (periodHolder.hasPeriod()) {
-        Period period = periodHolder.getPeriod();
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectPastMeasures(session, component.getUuid(), period.getAnalysisUuid(), metricIds);
+        PastMeasureValues pastMeasures = pastMeasuresByComponentUuid.getOrDefault(component.getUuid(), PastMeasureValues.EMPTY);
         setVariationMeasures(component, pastMeasures, measuresWithVariationRepository);
       }
       return measuresWithVariationRepository;
     }
 
-    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, MeasuresWithVariationRepository measuresWithVariationRepository) {
-      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = pastMeasures
-        .stream()
-        .collect(uniqueIndex(m -> new MeasureKey(metricRepository.getById((long) m.getMetricId()).getKey(), null), identity()));
+    private void setVariationMeasures(Component component, PastMeasureValues pastMeasures, MeasuresWithVariationRepository measuresWithVariationRepository) {
       for (Metric metric : metrics) {
         Optional<Measure> measure = measureRepository.getRawMeasure(component, metric);
         if (measure.isPresent() && !measure.get().hasVariation()) {
-          PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metric.getKey(), null));
-          double pastValue = (pastMeasure != null && pastMeasure.hasValue()) ? pastMeasure.getValue() : 0d;
+          double pastValue = pastMeasures.get(metric.getId(), 0d);
           measuresWithVariationRepository.add(metric, measure.get(), computeVariation(measure.get(), pastValue));
         }
       }
@@ -158,6 +170,55 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     }
   }
 
+  /**
+   * Values of the past measures of a component, indexed by metric id. Metric ids are kept sorted in an array of
+   * primitives, which is much more compact than a map of boxed values for the thousands of components of large projects.
+   */
+  private static final class PastMeasureValues {
+    private static final PastMeasureValues EMPTY = new PastMeasureValues(new int[0], new double[0]);
+
+    private final int[] metricIds;
+    private final double[] values;
+
+    private PastMeasureValues(int[] metricIds, double[] values) {
+      this.metricIds = metricIds;
+      this.values = values;
+    }
+
+    double get(int metricId, double defaultValue) {
+      int index = Arrays.binarySearch(metricIds, metricId);
+      return index >= 0 ? values[index] : defaultValue;
+    }
+
+    private static final class Builder {
+      @CheckForNull
+      private String componentUuid;
+      private int size = 0;
+      private int[] metricIds = new int[16];
+      private double[] values = new double[16];
+
+      void add(int metricId, double value) {
+        if (size == metricIds.length) {
+          metricIds = Arrays.copyOf(metricIds, size * 2);
+          values = Arrays.copyOf(values, size * 2);
+        }
+        metricIds[size] = metricId;
+        values[size] = value;
+        size++;
+      }
+
+      /**
+       * Metric ids are expected to be added in ascending order
+       */
+      void buildTo(Map<String, PastMeasureValues> pastMeasuresByComponentUuid) {
+        if (componentUuid != null) {
+          pastMeasuresByComponentUuid.put(componentUuid, new PastMeasureValues(Arrays.copyOf(metricIds, size), Arrays.copyOf(values, size)));
+        }
+        size = 0;
+      }
+    }
+  }
+
   private static final class MeasuresWithVariationRepository {
 
     private final Map<MeasureKey, MeasureWithVariation> measuresWithVariations = new HashMap<>();
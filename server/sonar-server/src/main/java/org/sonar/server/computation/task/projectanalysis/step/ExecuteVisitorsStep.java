@@ -19,8 +19,12 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
@@ -30,14 +34,23 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 public class ExecuteVisitorsStep implements ComputationStep {
 
+  /**
+   * Number of threads used to visit files with the visitors implementing
+   * {@link org.sonar.server.computation.task.projectanalysis.component.ThreadSafeVisitor}.
+   * Files are visited sequentially when the value is lower or equal to 1 (the default).
+   */
+  public static final String VISITOR_THREADS_PROPERTY = "sonar.ce.visitors.threads";
+
   private static final Logger LOGGER = Loggers.get(ExecuteVisitorsStep.class);
 
   private final TreeRootHolder treeRootHolder;
   private final List<ComponentVisitor> visitors;
+  private final int threads;
 
-  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors) {
+  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors, Configuration configuration) {
     this.treeRootHolder = treeRootHolder;
     this.visitors = visitors;
+    this.threads = configuration.getInt(VISITOR_THREADS_PROPERTY).orElse(1);
   }
 
   @Override
@@ -47,9 +60,24 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
-    visitorsCrawler.visit(treeRootHolder.getRoot());
-    logVisitorExecutionDurations(visitors, visitorsCrawler);
+    if (threads <= 1) {
+      VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
+      visitorsCrawler.visit(treeRootHolder.getRoot());
+      logVisitorExecutionDurations(visitors, visitorsCrawler);
+      return;
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CE_visitors-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled(), executorService);
+      visitorsCrawler.visit(treeRootHolder.getRoot());
+      logVisitorExecutionDurations(visitors, visitorsCrawler);
+    } finally {
+      executorService.shutdownNow();
+    }
   }
 
   private static void logVisitorExecutionDurations(List<ComponentVisitor> visitors, VisitorsCrawler visitorsCrawler) {
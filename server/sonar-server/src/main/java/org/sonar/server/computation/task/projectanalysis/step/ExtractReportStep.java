@@ -24,33 +24,51 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.ZipUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeTaskInputDao;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
 import org.sonar.server.computation.task.projectanalysis.batch.MutableBatchReportDirectoryHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 /**
  * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
  * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * <p/>
+ * When {@link #READ_FROM_ZIP_PROPERTY} is enabled, the zip file is only copied from the database
+ * and the report is read directly from it, without being extracted.
  */
 public class ExtractReportStep implements ComputationStep {
 
+  /**
+   * Whether the report is read from its zip file rather than from a directory where it is extracted.
+   * Disabled by default. Zip files larger than 2GB are always extracted.
+   */
+  public static final String READ_FROM_ZIP_PROPERTY = "sonar.ce.report.readFromZip";
+
+  private static final Logger LOGGER = Loggers.get(ExtractReportStep.class);
+
   private final DbClient dbClient;
   private final CeTask task;
   private final TempFolder tempFolder;
   private final MutableBatchReportDirectoryHolder reportDirectoryHolder;
+  private final boolean readFromZip;
 
   public ExtractReportStep(DbClient dbClient, CeTask task, TempFolder tempFolder,
-    MutableBatchReportDirectoryHolder reportDirectoryHolder) {
+    MutableBatchReportDirectoryHolder reportDirectoryHolder, Configuration configuration) {
     this.dbClient = dbClient;
     this.task = task;
     this.tempFolder = tempFolder;
     this.reportDirectoryHolder = reportDirectoryHolder;
+    this.readFromZip = configuration.getBoolean(READ_FROM_ZIP_PROPERTY).orElse(false);
   }
 
   @Override
@@ -58,20 +76,37 @@ public class ExtractReportStep implements ComputationStep {
     try (DbSession dbSession = dbClient.openSession(false)) {
       Optional<CeTaskInputDao.DataStream> opt = dbClient.ceTaskInputDao().selectData(dbSession, task.getUuid());
       if (opt.isPresent()) {
-        File unzippedDir = tempFolder.newDir();
         try (CeTaskInputDao.DataStream reportStream = opt.get();
-             InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
-          ZipUtils.unzip(zipStream, unzippedDir);
+          InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
+          reportDirectoryHolder.setDirectory(readFromZip ? copyZip(zipStream) : unzip(zipStream));
         } catch (IOException e) {
           throw new IllegalStateException("Fail to extract report " + task.getUuid() + " from database", e);
         }
-        reportDirectoryHolder.setDirectory(unzippedDir);
       } else {
         throw MessageException.of("Analysis report " + task.getUuid() + " is missing in database");
       }
     }
   }
 
+  private File unzip(InputStream zipStream) throws IOException {
+    File unzippedDir = tempFolder.newDir();
+    ZipUtils.unzip(zipStream, unzippedDir);
+    return unzippedDir;
+  }
+
+  private File copyZip(InputStream zipStream) throws IOException {
+    File zip = tempFolder.newFile("scanner-report", ".zip");
+    FileUtils.copyInputStreamToFile(zipStream, zip);
+    if (ScannerReportReader.canReadZip(zip)) {
+      return zip;
+    }
+    LOGGER.info("Report {} is too large to be read from its zip file, it is extracted", task.getUuid());
+    File unzippedDir = tempFolder.newDir();
+    ZipUtils.unzip(zip, unzippedDir);
+    FileUtils.deleteQuietly(zip);
+    return unzippedDir;
+  }
+
   @Override
   public String getDescription() {
     return "Extract report";
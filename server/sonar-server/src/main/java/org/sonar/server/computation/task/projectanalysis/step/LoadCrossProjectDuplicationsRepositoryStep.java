@@ -22,7 +22,9 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import com.google.common.base.Function;
 import java.util.Collection;
 import java.util.List;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
@@ -39,6 +41,7 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectCloneIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
@@ -65,16 +68,25 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
   private final DbClient dbClient;
+  @CheckForNull
+  private final CrossProjectCloneIndex crossProjectCloneIndex;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
     IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    this(treeRootHolder, reportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder, integrateCrossProjectDuplications, dbClient, null);
+  }
+
+  public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
+    AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient, @Nullable CrossProjectCloneIndex crossProjectCloneIndex) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
     this.dbClient = dbClient;
+    this.crossProjectCloneIndex = crossProjectCloneIndex;
   }
 
   @Override
@@ -107,25 +119,33 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
       }
 
       Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
-      if (dtos.isEmpty()) {
+      Collection<Block> duplicatedBlocks = selectDuplicatedBlocks(file, hashes);
+      if (duplicatedBlocks.isEmpty()) {
         return;
       }
 
-      Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
       Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
       LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
 
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
+    private Collection<Block> selectDuplicatedBlocks(Component file, Collection<String> hashes) {
+      String language = file.getFileAttributes().getLanguageKey();
+      if (crossProjectCloneIndex != null && crossProjectCloneIndex.isEnabled()) {
+        return crossProjectCloneIndex.selectCandidates(language, hashes, getBaseAnalysisUuid());
+      }
       try (DbSession dbSession = dbClient.openSession(false)) {
-        Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
-        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
+        List<DuplicationUnitDto> dtos = dbClient.duplicationDao().selectCandidates(dbSession, getBaseAnalysisUuid(), language, hashes);
+        return from(dtos).transform(DtoToBlock.INSTANCE).toList();
       }
     }
+
+    @CheckForNull
+    private String getBaseAnalysisUuid() {
+      Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
+      return projectAnalysis == null ? null : projectAnalysis.getUuid();
+    }
   }
 
   private enum CpdTextBlockToHash implements Function<CpdTextBlock, String> {
@@ -21,19 +21,31 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.hash.SourceHashComputer;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -50,6 +62,7 @@ import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
 import org.sonar.server.computation.task.projectanalysis.source.ComputeFileSourceData;
 import org.sonar.server.computation.task.projectanalysis.source.CoverageLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.DuplicationLineReader;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceInputsHashComputer;
 import org.sonar.server.computation.task.projectanalysis.source.HighlightingLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.LineReader;
 import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter;
@@ -60,8 +73,24 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Sources of files are computed and encoded by a pool of {@value #THREADS_PROPERTY} workers, while the
+ * CE thread stays the single writer to the database. At most {@value #QUEUE_DEPTH_PROPERTY} files are
+ * in progress at the same time, which bounds the memory used by encoded data waiting to be written.
+ * <p>
+ * Sources of a file are not computed again when its source code and the inputs of the line readers (see
+ * {@link FileSourceInputsHashComputer}) did not change since the previous analysis.
+ * </p>
+ */
 public class PersistFileSourcesStep implements ComputationStep {
 
+  static final String THREADS_PROPERTY = "sonar.ce.persistFileSources.threads";
+  static final String QUEUE_DEPTH_PROPERTY = "sonar.ce.persistFileSources.queueDepth";
+
+  private static final Logger LOGGER = Loggers.get(PersistFileSourcesStep.class);
+  // file sources can be big, so pending statements are flushed as soon as their data exceed this size
+  private static final long MAX_PENDING_BYTES = 16L * 1024 * 1024;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -69,9 +98,11 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final Configuration configuration;
+  private final FileSourceInputsHashComputer inputsHashComputer;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Configuration configuration) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -79,27 +110,53 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.configuration = configuration;
+    this.inputsHashComputer = new FileSourceInputsHashComputer(reportReader, duplicationRepository);
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
+    int threads = Math.max(1, configuration.getInt(THREADS_PROPERTY).orElse(1));
+    int queueDepth = Math.max(1, configuration.getInt(QUEUE_DEPTH_PROPERTY).orElse(2 * threads));
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CE_file_sources-%d")
+      .setDaemon(true)
+      .build());
+    // Statements are batched, but flushed by size rather than by count since keeping all data in memory can produce OOM for big files
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      FileSourceVisitor visitor = new FileSourceVisitor(dbSession, executorService, queueDepth);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.finish();
+      visitor.logMetrics(threads, queueDepth);
+    } finally {
+      executorService.shutdownNow();
     }
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final ExecutorService executorService;
+    private final int queueDepth;
+    private final Deque<PendingFileSource> pendingFileSources = new ArrayDeque<>();
+    private final AtomicLong computeNanos = new AtomicLong();
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private long pendingBytes = 0L;
+    private int files = 0;
+    private int unchangedFiles = 0;
+    private int writtenFiles = 0;
+    private long writtenBytes = 0L;
+    private long writeNanos = 0L;
+    private final long startNanos = System.nanoTime();
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, ExecutorService executorService, int queueDepth) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.executorService = executorService;
+      this.queueDepth = queueDepth;
     }
 
     @Override
@@ -114,23 +171,90 @@ public class PersistFileSourcesStep implements ComputationStep {
 
     @Override
     public void visitFile(Component file) {
-      try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-        LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file)) {
-        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
-        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+      // ScmInfoRepository is not thread-safe, so SCM info is loaded by the crawler thread
+      Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+      FileSourceDto previousDto = previousFileSourcesByUuid.get(file.getUuid());
+      String previousSrcHash = previousDto == null ? null : previousDto.getSrcHash();
+      String previousInputsHash = previousDto == null ? null : previousDto.getInputsHash();
+      if (pendingFileSources.size() >= queueDepth) {
+        persistSource(pendingFileSources.removeFirst());
+      }
+      Future<EncodedFileSource> future = executorService.submit(() -> computeSource(file, scmInfo, previousSrcHash, previousInputsHash));
+      pendingFileSources.addLast(new PendingFileSource(file, future));
+      files++;
+    }
+
+    /**
+     * @return {@code null} if neither the source code nor the inputs of the line readers changed since the previous analysis
+     */
+    @CheckForNull
+    private EncodedFileSource computeSource(Component file, Optional<ScmInfo> scmInfo, @Nullable String previousSrcHash, @Nullable String previousInputsHash) {
+      long start = System.nanoTime();
+      try {
+        String inputsHash = inputsHashComputer.compute(file, scmInfo);
+        if (inputsHash.equals(previousInputsHash) && computeSrcHash(file).equals(previousSrcHash)) {
+          return null;
+        }
+        try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
+          LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplicationRepository, file)) {
+          ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
+          ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
+          byte[] data = FileSourceDto.encodeSourceData(fileSourceData.getFileSourceData());
+          return new EncodedFileSource(data, fileSourceData.getSrcHash(), fileSourceData.getLineHashes(), inputsHash, lineReaders.getLatestChange());
+        }
+      } finally {
+        computeNanos.addAndGet(System.nanoTime() - start);
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+    private String computeSrcHash(Component file) {
+      SourceHashComputer sourceHashComputer = new SourceHashComputer();
+      try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file)) {
+        while (linesIterator.hasNext()) {
+          sourceHashComputer.addLine(linesIterator.next(), linesIterator.hasNext());
+        }
+      }
+      return sourceHashComputer.getHash();
+    }
+
+    private void finish() {
+      while (!pendingFileSources.isEmpty()) {
+        persistSource(pendingFileSources.removeFirst());
+      }
+      commit();
+    }
+
+    private void persistSource(PendingFileSource pending) {
+      EncodedFileSource encoded;
+      try {
+        encoded = pending.future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", pending.file.getKey()), e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", pending.file.getKey()), e.getCause());
+      }
+      if (encoded == null) {
+        unchangedFiles++;
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        persistSource(encoded, pending.file.getUuid());
+      } catch (Exception e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", pending.file.getKey()), e);
+      } finally {
+        writeNanos += System.nanoTime() - start;
+      }
+    }
 
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
+    private void persistSource(EncodedFileSource encoded, String componentUuid) {
+      byte[] data = encoded.data;
       String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
+      String srcHash = encoded.srcHash;
+      String lineHashes = encoded.lineHashes;
+      String inputsHash = encoded.inputsHash;
+      Changeset latestChange = encoded.latestChange;
       FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
@@ -142,31 +266,59 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setSrcHash(srcHash)
           .setDataHash(dataHash)
           .setLineHashes(lineHashes)
+          .setInputsHash(inputsHash)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        written(data);
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
         boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
         boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
         String revision = computeRevision(latestChange);
         boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+        boolean inputsHashUpdated = !inputsHash.equals(previousDto.getInputsHash());
+        if (binaryDataUpdated || srcHashUpdated || revisionUpdated || inputsHashUpdated) {
           previousDto
             .setBinaryData(data)
             .setDataHash(dataHash)
             .setSrcHash(srcHash)
             .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
+            .setInputsHash(inputsHash)
+            .setRevision(revision);
+          // sources did not change when only inputs_hash is updated, so the date of update is kept
+          if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+            previousDto.setUpdatedAt(system2.now());
+          }
           dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
+          written(data);
         }
       }
     }
 
+    private void written(byte[] data) {
+      writtenFiles++;
+      writtenBytes += data.length;
+      pendingBytes += data.length;
+      if (pendingBytes >= MAX_PENDING_BYTES) {
+        commit();
+      }
+    }
+
+    private void commit() {
+      session.commit();
+      pendingBytes = 0L;
+    }
+
+    private void logMetrics(int threads, int queueDepth) {
+      long durationMs = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      LOGGER.debug("{} files processed by {} threads with a queue depth of {}, {} unchanged, {} files written ({} bytes) in {} ms ({} KB/s), " +
+        "compute time {} ms, write time {} ms",
+        files, threads, queueDepth, unchangedFiles, writtenFiles, writtenBytes, durationMs, writtenBytes * 1_000L / 1_024L / durationMs,
+        TimeUnit.NANOSECONDS.toMillis(computeNanos.get()), TimeUnit.NANOSECONDS.toMillis(writeNanos));
+    }
+
     @CheckForNull
     private String computeRevision(@Nullable Changeset latestChange) {
       if (latestChange == null) {
@@ -176,19 +328,45 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  private static class PendingFileSource {
+    private final Component file;
+    private final Future<EncodedFileSource> future;
+
+    private PendingFileSource(Component file, Future<EncodedFileSource> future) {
+      this.file = file;
+      this.future = future;
+    }
+  }
+
+  private static class EncodedFileSource {
+    private final byte[] data;
+    private final String srcHash;
+    private final String lineHashes;
+    private final String inputsHash;
+    @CheckForNull
+    private final Changeset latestChange;
+
+    private EncodedFileSource(byte[] data, String srcHash, String lineHashes, String inputsHash, @Nullable Changeset latestChange) {
+      this.data = data;
+      this.srcHash = srcHash;
+      this.lineHashes = lineHashes;
+      this.inputsHash = inputsHash;
+      this.latestChange = latestChange;
+    }
+  }
+
   private static class LineReaders implements AutoCloseable {
     private final List<LineReader> readers = new ArrayList<>();
     private final List<CloseableIterator<?>> closeables = new ArrayList<>();
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, DuplicationRepository duplicationRepository, Component component) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<ScannerReport.LineCoverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
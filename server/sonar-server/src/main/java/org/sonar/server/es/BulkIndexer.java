@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -59,6 +60,7 @@ import static java.lang.String.format;
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  * </ul>
+ * Documents can be added concurrently by multiple threads, for example by the workers of {@link ParallelIndexing}.
  */
 public class BulkIndexer {
 
@@ -89,7 +91,7 @@ public class BulkIndexer {
       .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
       .setBulkSize(FLUSH_BYTE_SIZE)
       .setBulkActions(FLUSH_ACTIONS)
-      .setConcurrentRequests(sizeHandler.getConcurrentRequests())
+      .setConcurrentRequests(sizeHandler.getConcurrentRequests(this::getNumberOfShards))
       .build();
   }
 
@@ -97,6 +99,13 @@ public class BulkIndexer {
     return indexType;
   }
 
+  private int getNumberOfShards() {
+    String index = indexType.getIndex();
+    GetSettingsResponse settingsResp = client.nativeClient().admin().indices().prepareGetSettings(index).get();
+    String shards = settingsResp.getSetting(index, IndexMetaData.SETTING_NUMBER_OF_SHARDS);
+    return shards == null ? DEFAULT_NUMBER_OF_SHARDS : Integer.parseInt(shards);
+  }
+
   public void start() {
     result.clear();
     sizeHandler.beforeStart(this);
@@ -252,7 +261,7 @@ public class BulkIndexer {
     /**
      * @see BulkProcessor.Builder#setConcurrentRequests(int)
      */
-    int getConcurrentRequests() {
+    int getConcurrentRequests(IntSupplier numberOfShards) {
       // in the same thread by default
       return 0;
     }
@@ -271,17 +280,17 @@ public class BulkIndexer {
     private final Map<String, Object> initialSettings = new HashMap<>();
     private final Runtime2 runtime2;
     private ProgressLogger progress;
+    private long startedAt;
 
     LargeSizeHandler(Runtime2 runtime2) {
       this.runtime2 = runtime2;
     }
 
     @Override
-    int getConcurrentRequests() {
-      // see SONAR-8075
+    int getConcurrentRequests(IntSupplier numberOfShards) {
+      // see SONAR-8075. A bulk request is executed by one thread on each shard of the index.
       int cores = runtime2.getCores();
-      // FIXME do not use DEFAULT_NUMBER_OF_SHARDS
-      return Math.max(1, cores / DEFAULT_NUMBER_OF_SHARDS) - 1;
+      return Math.max(1, cores / Math.max(1, numberOfShards.getAsInt())) - 1;
     }
 
     @Override
@@ -289,6 +298,7 @@ public class BulkIndexer {
       this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", bulkIndexer.indexType.getIndex()), bulkIndexer.result.total, LOGGER)
         .setPluralLabel("requests");
       this.progress.start();
+      this.startedAt = System.currentTimeMillis();
       Map<String, Object> temporarySettings = new HashMap<>();
       GetSettingsResponse settingsResp = bulkIndexer.client.nativeClient().admin().indices().prepareGetSettings(bulkIndexer.indexType.getIndex()).get();
 
@@ -316,6 +326,10 @@ public class BulkIndexer {
 
       updateSettings(bulkIndexer, initialSettings);
       this.progress.stop();
+
+      long durationMs = Math.max(1L, System.currentTimeMillis() - startedAt);
+      long total = bulkIndexer.result.getTotal();
+      LOGGER.info("{} documents of type {} indexed in {} ms | {} docs/s", total, bulkIndexer.indexType, durationMs, total * 1_000L / durationMs);
     }
 
     private static void updateSettings(BulkIndexer bulkIndexer, Map<String, Object> settings) {
@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Full indexing of documents split into partitions, for example the issues of each project.
+ * Partitions are loaded from database by a pool of workers that feed the same {@link BulkIndexer},
+ * so that reading the rows of a partition overlaps with the bulk requests of the others.
+ */
+public class ParallelIndexing {
+
+  /**
+   * Each worker holds a database connection while loading its partition
+   */
+  private static final int MAX_WORKERS = 8;
+
+  private ParallelIndexing() {
+    // only static methods
+  }
+
+  public static int defaultNumberOfWorkers() {
+    return Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  /**
+   * Executes {@code indexer} on each partition and waits for all of them to be processed. The first failure
+   * cancels the partitions that are not processed yet and is thrown as an {@link IllegalStateException}.
+   */
+  public static <P> void index(IndexType indexType, Collection<P> partitions, int workers, Consumer<P> indexer) {
+    checkArgument(workers > 0, "Number of workers must be positive: %s", workers);
+    if (workers == 1 || partitions.size() <= 1) {
+      partitions.forEach(indexer);
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+      .setNameFormat("ParallelIndexing" + indexType + "-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<?>> futures = new ArrayList<>(partitions.size());
+      for (P partition : partitions) {
+        futures.add(executor.submit(() -> indexer.accept(partition)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Indexing of " + indexType + " has been interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to index " + indexType, e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
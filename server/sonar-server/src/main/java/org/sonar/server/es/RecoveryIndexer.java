@@ -23,13 +23,22 @@ package org.sonar.server.es;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.math.RandomUtils;
 import org.sonar.api.Startable;
 import org.sonar.api.config.Configuration;
@@ -44,6 +53,16 @@ import org.sonar.db.es.EsQueueDto;
 
 import static java.lang.String.format;
 
+/**
+ * Indexes the documents referenced by the table es_queue, which failed to be indexed
+ * synchronously. Items of the queue are grouped by index type and by project, then indexed
+ * by a pool of workers.
+ * <p>
+ * Runs are not executed at a fixed rate. When items too recent to be recovered remain in queue after a
+ * run, the next one is scheduled as soon as the oldest of them is old enough to be recovered. Otherwise,
+ * or if the run failed or did not recover any of the items it selected, the next one is delayed by
+ * {@code sonar.search.recovery.delayInMs}.
+ */
 public class RecoveryIndexer implements Startable {
 
   private static final Logger LOGGER = Loggers.get(RecoveryIndexer.class);
@@ -52,9 +71,12 @@ public class RecoveryIndexer implements Startable {
   private static final String PROPERTY_DELAY = "sonar.search.recovery.delayInMs";
   private static final String PROPERTY_MIN_AGE = "sonar.search.recovery.minAgeInMs";
   private static final String PROPERTY_LOOP_LIMIT = "sonar.search.recovery.loopLimit";
+  private static final String PROPERTY_WORKERS = "sonar.search.recovery.workers";
   private static final long DEFAULT_DELAY_IN_MS = 5L * 60 * 1000;
+  private static final long MIN_DELAY_IN_MS = 1_000L;
   private static final long DEFAULT_MIN_AGE_IN_MS = 5L * 60 * 1000;
   private static final int DEFAULT_LOOP_LIMIT = 10_000;
+  private static final int DEFAULT_WORKERS = 2;
   private static final double CIRCUIT_BREAKER_IN_PERCENT = 0.7;
 
   private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1,
@@ -62,12 +84,18 @@ public class RecoveryIndexer implements Startable {
       .setPriority(Thread.MIN_PRIORITY)
       .setNameFormat("RecoveryIndexer-%d")
       .build());
+  private final ExecutorService workersExecutorService;
   private final System2 system2;
   private final Configuration config;
   private final DbClient dbClient;
   private final Map<IndexType, ResilientIndexer> indexersByType;
   private final long minAgeInMs;
   private final long loopLimit;
+  private final int workers;
+  private final AtomicLong recoveredCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final long delayInMs;
+  private volatile long nextDelayInMs;
 
   public RecoveryIndexer(System2 system2, Configuration config, DbClient dbClient, ResilientIndexer... indexers) {
     this.system2 = system2;
@@ -75,34 +103,57 @@ public class RecoveryIndexer implements Startable {
     this.dbClient = dbClient;
     this.indexersByType = new HashMap<>();
     Arrays.stream(indexers).forEach(i -> i.getIndexTypes().forEach(indexType -> indexersByType.put(indexType, i)));
+    this.delayInMs = getSetting(PROPERTY_DELAY, DEFAULT_DELAY_IN_MS);
+    this.nextDelayInMs = delayInMs;
     this.minAgeInMs = getSetting(PROPERTY_MIN_AGE, DEFAULT_MIN_AGE_IN_MS);
     this.loopLimit = getSetting(PROPERTY_LOOP_LIMIT, DEFAULT_LOOP_LIMIT);
+    this.workers = (int) Math.max(1L, getSetting(PROPERTY_WORKERS, DEFAULT_WORKERS));
+    this.workersExecutorService = Executors.newFixedThreadPool(workers,
+      new ThreadFactoryBuilder()
+        .setPriority(Thread.MIN_PRIORITY)
+        .setNameFormat("RecoveryIndexer-worker-%d")
+        .build());
   }
 
   @Override
   public void start() {
-    long delayInMs = getSetting(PROPERTY_DELAY, DEFAULT_DELAY_IN_MS);
-
     // in the cluster mode, avoid (but not prevent!) simultaneous executions of recovery
     // indexers so that a document is not handled multiple times.
     long initialDelayInMs = getSetting(PROPERTY_INITIAL_DELAY, RandomUtils.nextInt(1 + (int) (delayInMs / 2)));
 
-    executorService.scheduleAtFixedRate(
-      this::recover,
-      initialDelayInMs,
-      delayInMs,
-      TimeUnit.MILLISECONDS);
+    schedule(initialDelayInMs);
+  }
+
+  private void schedule(long delay) {
+    try {
+      executorService.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // the indexer is being stopped
+    }
+  }
+
+  private void run() {
+    try {
+      recover();
+    } finally {
+      if (!executorService.isShutdown()) {
+        schedule(nextDelayInMs);
+      }
+    }
   }
 
   @Override
   public void stop() {
     try {
       executorService.shutdown();
+      workersExecutorService.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
     } catch (InterruptedException e) {
       LOGGER.error(LOG_PREFIX + "Unable to stop recovery indexer in timely fashion", e);
       executorService.shutdownNow();
       Thread.currentThread().interrupt();
+    } finally {
+      workersExecutorService.shutdownNow();
     }
   }
 
@@ -112,16 +163,18 @@ public class RecoveryIndexer implements Startable {
       Profiler profiler = Profiler.create(LOGGER).start();
       long beforeDate = system2.now() - minAgeInMs;
       IndexingResult result = new IndexingResult();
+      boolean tooManyFailures = false;
 
       Collection<EsQueueDto> items = dbClient.esQueueDao().selectForRecovery(dbSession, beforeDate, loopLimit);
+      boolean noProgress = !items.isEmpty();
       while (!items.isEmpty()) {
-        IndexingResult loopResult = new IndexingResult();
-
-        groupItemsByType(items).asMap().forEach((type, typeItems) -> loopResult.add(doIndex(dbSession, type, typeItems)));
+        IndexingResult loopResult = index(items);
         result.add(loopResult);
+        noProgress &= loopResult.getSuccess() == 0L;
 
         if (loopResult.getSuccessRatio() <= CIRCUIT_BREAKER_IN_PERCENT) {
           LOGGER.error(LOG_PREFIX + "too many failures [{}/{} documents], waiting for next run", loopResult.getFailures(), loopResult.getTotal());
+          tooManyFailures = true;
           break;
         }
 
@@ -131,29 +184,144 @@ public class RecoveryIndexer implements Startable {
 
         items = dbClient.esQueueDao().selectForRecovery(dbSession, beforeDate, loopLimit);
       }
+      recoveredCount.addAndGet(result.getSuccess());
+      failureCount.addAndGet(result.getFailures());
       if (result.getTotal() > 0L) {
         profiler.stopInfo(LOG_PREFIX + format("%d documents processed [%d failures]", result.getTotal(), result.getFailures()));
       }
+      // items which can not be recovered, for example because of an unsupported type, are not retried before the configured delay
+      nextDelayInMs = tooManyFailures || noProgress ? delayInMs : computeNextDelay(dbSession, beforeDate);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.warn(LOG_PREFIX + "interrupted while recovering documents");
     } catch (Throwable t) {
       LOGGER.error(LOG_PREFIX + "fail to recover documents", t);
+      nextDelayInMs = delayInMs;
+    }
+  }
+
+  /**
+   * The next run is executed when the oldest item of the queue which was too recent to be recovered by
+   * this run becomes old enough, but not later than the configured delay. Older items which remain in
+   * queue could not be recovered by this run, so they do not shorten the delay.
+   */
+  private long computeNextDelay(DbSession dbSession, long beforeDate) {
+    return dbClient.esQueueDao().selectOldestCreatedAtAfter(dbSession, beforeDate)
+      .map(oldest -> oldest + minAgeInMs - system2.now())
+      .map(delay -> Math.max(Math.min(MIN_DELAY_IN_MS, delayInMs), Math.min(delay, delayInMs)))
+      .orElse(delayInMs);
+  }
+
+  private IndexingResult index(Collection<EsQueueDto> items) throws InterruptedException, ExecutionException {
+    List<Batch> batches = createBatches(items, workers);
+    IndexingResult result = new IndexingResult();
+    if (batches.size() == 1) {
+      result.add(doIndex(batches.get(0)));
+      return result;
     }
+    List<Future<IndexingResult>> futures = new ArrayList<>(batches.size());
+    batches.forEach(batch -> futures.add(workersExecutorService.submit(() -> doIndex(batch))));
+    for (Future<IndexingResult> future : futures) {
+      result.add(future.get());
+    }
+    return result;
   }
 
-  private IndexingResult doIndex(DbSession dbSession, IndexType type, Collection<EsQueueDto> typeItems) {
-    LOGGER.trace(LOG_PREFIX + "processing {} {}", typeItems.size(), type);
+  private IndexingResult doIndex(Batch batch) {
+    LOGGER.trace(LOG_PREFIX + "processing {} {}", batch.items.size(), batch.type);
 
-    ResilientIndexer indexer = indexersByType.get(type);
+    ResilientIndexer indexer = indexersByType.get(batch.type);
     if (indexer == null) {
-      LOGGER.error(LOG_PREFIX + "ignore {} items with unsupported type {}", typeItems.size(), type);
+      LOGGER.error(LOG_PREFIX + "ignore {} items with unsupported type {}", batch.items.size(), batch.type);
       return new IndexingResult();
     }
-    return indexer.index(dbSession, typeItems);
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return indexer.index(dbSession, batch.items);
+    }
+  }
+
+  /**
+   * Items are grouped by type, then the items of a type are split by project into at most
+   * {@code workers} batches. All the items of a project, including the duplicates of a document,
+   * are processed by the same batch, so that a document is never indexed by two workers at the same time.
+   */
+  @VisibleForTesting
+  static List<Batch> createBatches(Collection<EsQueueDto> items, int workers) {
+    List<Batch> batches = new ArrayList<>();
+    groupItemsByType(items).asMap().forEach((type, typeItems) -> {
+      // routing is the project uuid, if any
+      Map<String, List<EsQueueDto>> itemsByProject = new LinkedHashMap<>();
+      typeItems.forEach(item -> itemsByProject.computeIfAbsent(item.getDocRouting(), k -> new ArrayList<>()).add(item));
+
+      // largest projects first, each one added to the smallest batch
+      List<Batch> typeBatches = new ArrayList<>();
+      itemsByProject.values().stream()
+        .sorted(Comparator.comparingInt((List<EsQueueDto> projectItems) -> projectItems.size()).reversed())
+        .forEach(projectItems -> {
+          Batch batch = typeBatches.size() < workers ? new Batch(type) : typeBatches.remove(0);
+          batch.items.addAll(projectItems);
+          typeBatches.add(batch);
+          typeBatches.sort(Comparator.comparingInt(b -> b.items.size()));
+        });
+      batches.addAll(typeBatches);
+    });
+    return batches;
   }
 
   private static ListMultimap<IndexType, EsQueueDto> groupItemsByType(Collection<EsQueueDto> items) {
     return items.stream().collect(MoreCollectors.index(i -> IndexType.parse(i.getDocType())));
   }
 
+  /**
+   * Number of items in queue, including the ones which are too recent to be recovered
+   */
+  public long getBacklog() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.esQueueDao().countAll(dbSession);
+    }
+  }
+
+  /**
+   * Age of the oldest item in queue, in milliseconds. Zero if queue is empty.
+   */
+  public long getLagInMs() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.esQueueDao().selectOldestCreatedAt(dbSession)
+        .map(oldest -> Math.max(0L, system2.now() - oldest))
+        .orElse(0L);
+    }
+  }
+
+  public long getRecoveredCount() {
+    return recoveredCount.get();
+  }
+
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  public long getNextDelayInMs() {
+    return nextDelayInMs;
+  }
+
+  @VisibleForTesting
+  static class Batch {
+    private final IndexType type;
+    private final List<EsQueueDto> items = new ArrayList<>();
+
+    private Batch(IndexType type) {
+      this.type = type;
+    }
+
+    IndexType getType() {
+      return type;
+    }
+
+    List<EsQueueDto> getItems() {
+      return items;
+    }
+  }
+
   private long getSetting(String key, long defaultValue) {
     long val = config.getLong(key).orElse(defaultValue);
     LOGGER.debug(LOG_PREFIX + "{}={}", key, val);
@@ -0,0 +1,50 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+public interface RecoveryIndexerMBean {
+
+  String OBJECT_NAME = "SonarQube:name=ElasticsearchRecovery";
+
+  /**
+   * Number of documents waiting in es_queue to be indexed, including the ones which are too recent to be recovered
+   */
+  long getBacklog();
+
+  /**
+   * Age of the oldest document waiting in es_queue, in milliseconds
+   */
+  long getLagInMs();
+
+  /**
+   * Number of documents successfully recovered since startup
+   */
+  long getRecoveredCount();
+
+  /**
+   * Number of documents which failed to be recovered since startup. They are kept in queue for next runs.
+   */
+  long getFailureCount();
+
+  /**
+   * Delay before the next recovery run, in milliseconds
+   */
+  long getNextDelayInMs();
+}
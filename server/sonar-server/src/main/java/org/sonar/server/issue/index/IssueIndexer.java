@@ -45,6 +45,7 @@ import org.sonar.server.es.IndexingListener;
 import org.sonar.server.es.IndexingResult;
 import org.sonar.server.es.OneToManyResilientIndexingListener;
 import org.sonar.server.es.OneToOneResilientIndexingListener;
+import org.sonar.server.es.ParallelIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
@@ -89,10 +90,31 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
     return INDEX_TYPES;
   }
 
+  /**
+   * Issues are loaded and indexed project by project, by {@link ParallelIndexing#defaultNumberOfWorkers()} concurrent workers.
+   * Partitions are the distinct values of projects.project_uuid, so that, as when iterating over all issues,
+   * the issues of disabled components, of branches and of any other root are indexed.
+   */
   @Override
   public void indexOnStartup(Set<IndexType> uninitializedIndexTypes) {
-    try (IssueIterator issues = issueIteratorFactory.createForAll()) {
-      doIndex(issues, Size.LARGE, IndexingListener.FAIL_ON_ERROR);
+    List<String> projectUuids;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      projectUuids = dbClient.componentDao().selectDistinctProjectUuids(dbSession);
+    }
+
+    BulkIndexer bulk = createBulkIndexer(Size.LARGE, IndexingListener.FAIL_ON_ERROR);
+    bulk.start();
+    try {
+      ParallelIndexing.index(INDEX_TYPE_ISSUE, projectUuids, ParallelIndexing.defaultNumberOfWorkers(), projectUuid -> {
+        try (IssueIterator issues = issueIteratorFactory.createForProject(projectUuid)) {
+          while (issues.hasNext()) {
+            bulk.add(newIndexRequest(issues.next()));
+          }
+        }
+      });
+    } finally {
+      // restores the settings of index (refresh interval, replicas) even if indexing failed
+      bulk.stop();
     }
   }
 
@@ -68,6 +68,7 @@ import org.sonar.db.metric.MetricDtoFunctions;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.ProtobufStreamWriter;
 import org.sonarqube.ws.Measures;
 import org.sonarqube.ws.Measures.ComponentTreeWsResponse;
 
@@ -256,26 +257,33 @@ public class ComponentTreeAction implements MeasuresWsAction {
 
   @Override
   public void handle(Request request, Response response) throws Exception {
-    ComponentTreeWsResponse componentTreeWsResponse = doHandle(toComponentTreeWsRequest(request));
-    writeProtobuf(componentTreeWsResponse, request, response);
-  }
-
-  private ComponentTreeWsResponse doHandle(ComponentTreeRequest request) {
-    ComponentTreeData data = load(request);
+    ComponentTreeRequest componentTreeRequest = toComponentTreeWsRequest(request);
+    ComponentTreeData data = load(componentTreeRequest);
     if (data.getComponents() == null) {
-      return emptyResponse(data.getBaseComponent(), request);
+      writeProtobuf(emptyResponse(data.getBaseComponent(), componentTreeRequest), request, response);
+      return;
     }
 
-    return buildResponse(
-      request,
-      data,
-      Paging.forPageIndex(
-        request.getPage())
-        .withPageSize(request.getPageSize())
-        .andTotal(data.getComponentCount()));
+    Paging paging = Paging.forPageIndex(componentTreeRequest.getPage())
+      .withPageSize(componentTreeRequest.getPageSize())
+      .andTotal(data.getComponentCount());
+    // the page of components and their measures is loaded in memory, as components are filtered and sorted on
+    // their measures. Only the response is streamed, so that these components are not copied into a whole protobuf message.
+    try (ProtobufStreamWriter writer = ProtobufStreamWriter.of(request, response, buildResponseHeader(componentTreeRequest, data, paging),
+      ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER)) {
+      for (ComponentDto componentDto : data.getComponents()) {
+        writer.write(toWsComponent(
+          componentDto,
+          data.getMeasuresByComponentUuidAndMetric().row(componentDto.uuid()),
+          data.getReferenceComponentsByUuid()).build());
+      }
+    }
   }
 
-  private static ComponentTreeWsResponse buildResponse(ComponentTreeRequest request, ComponentTreeData data, Paging paging) {
+  /**
+   * Response without the components, which are streamed
+   */
+  private static ComponentTreeWsResponse buildResponseHeader(ComponentTreeRequest request, ComponentTreeData data, Paging paging) {
     ComponentTreeWsResponse.Builder response = ComponentTreeWsResponse.newBuilder();
     response.getPagingBuilder()
       .setPageIndex(paging.pageIndex())
@@ -289,13 +297,6 @@ public class ComponentTreeAction implements MeasuresWsAction {
         data.getMeasuresByComponentUuidAndMetric().row(data.getBaseComponent().uuid()),
         data.getReferenceComponentsByUuid()));
 
-    for (ComponentDto componentDto : data.getComponents()) {
-      response.addComponents(toWsComponent(
-        componentDto,
-        data.getMeasuresByComponentUuidAndMetric().row(componentDto.uuid()),
-        data.getReferenceComponentsByUuid()));
-    }
-
     if (areMetricsInResponse(request)) {
       Measures.Metrics.Builder metricsBuilder = response.getMetricsBuilder();
       for (MetricDto metricDto : data.getMetrics()) {
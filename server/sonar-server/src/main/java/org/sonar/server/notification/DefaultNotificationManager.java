@@ -25,13 +25,17 @@ import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Multimap;
 import java.io.IOException;
 import java.io.InvalidClassException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
@@ -56,6 +60,8 @@ public class DefaultNotificationManager implements NotificationManager {
   private final DbClient dbClient;
 
   private boolean alreadyLoggedDeserializationIssue = false;
+  // recipients of the notifications of the last batch returned by getFromQueue(int), by dispatcher, project and permissions
+  private volatile Map<List<Object>, Multimap<String, NotificationChannel>> recipientsCache = null;
 
   /**
    * Default constructor used by Pico
@@ -78,21 +84,43 @@ public class DefaultNotificationManager implements NotificationManager {
   /**
    * Give the notification queue so that it can be processed
    */
+  @CheckForNull
   public Notification getFromQueue() {
-    int batchSize = 1;
+    List<Notification> notifications = getFromQueue(1);
+    return notifications.isEmpty() ? null : notifications.get(0);
+  }
+
+  /**
+   * Removes the given number of the oldest notifications from the queue and returns them, in the order
+   * they were queued. Notifications which can not be read anymore are ignored.
+   * <p/>
+   * Recipients returned by {@link #findSubscribedRecipientsForDispatcher(NotificationDispatcher, String, SubscriberPermissionsOnProject)}
+   * are cached until the next call, as the notifications of a batch are usually dispatched to the same
+   * subscribers, for example when they relate to the same project.
+   */
+  public List<Notification> getFromQueue(int batchSize) {
     List<NotificationQueueDto> notificationDtos = dbClient.notificationQueueDao().selectOldest(batchSize);
     if (notificationDtos.isEmpty()) {
-      return null;
+      recipientsCache = null;
+      return Collections.emptyList();
     }
+    recipientsCache = new ConcurrentHashMap<>();
     dbClient.notificationQueueDao().delete(notificationDtos);
 
-    return convertToNotification(notificationDtos);
+    List<Notification> notifications = new ArrayList<>(notificationDtos.size());
+    for (NotificationQueueDto notificationDto : notificationDtos) {
+      Notification notification = convertToNotification(notificationDto);
+      if (notification != null) {
+        notifications.add(notification);
+      }
+    }
+    return notifications;
   }
 
-  private Notification convertToNotification(List<NotificationQueueDto> notifications) {
+  @CheckForNull
+  private Notification convertToNotification(NotificationQueueDto notification) {
     try {
-      // If batchSize is increased then we should return a list instead of a single element
-      return notifications.get(0).toNotification();
+      return notification.toNotification();
     } catch (InvalidClassException e) {
       // SONAR-4739
       if (!alreadyLoggedDeserializationIssue) {
@@ -121,7 +149,16 @@ public class DefaultNotificationManager implements NotificationManager {
   public Multimap<String, NotificationChannel> findSubscribedRecipientsForDispatcher(NotificationDispatcher dispatcher,
     String projectKey, SubscriberPermissionsOnProject subscriberPermissionsOnProject) {
     requireNonNull(projectKey, "projectKey is mandatory");
-    String dispatcherKey = dispatcher.getKey();
+    Map<List<Object>, Multimap<String, NotificationChannel>> cache = recipientsCache;
+    if (cache == null) {
+      return findSubscribedRecipients(dispatcher.getKey(), projectKey, subscriberPermissionsOnProject);
+    }
+    return cache.computeIfAbsent(Arrays.asList(dispatcher.getKey(), projectKey, subscriberPermissionsOnProject),
+      k -> findSubscribedRecipients(dispatcher.getKey(), projectKey, subscriberPermissionsOnProject));
+  }
+
+  private Multimap<String, NotificationChannel> findSubscribedRecipients(String dispatcherKey, String projectKey,
+    SubscriberPermissionsOnProject subscriberPermissionsOnProject) {
 
     Set<SubscriberAndChannel> subscriberAndChannels = Arrays.stream(notificationChannels)
       .flatMap(notificationChannel -> toSubscriberAndChannels(dispatcherKey, projectKey, notificationChannel))
@@ -20,15 +20,26 @@
 package org.sonar.server.notification;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import org.picocontainer.Startable;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.notifications.Notification;
+import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -43,28 +54,62 @@ import org.sonar.api.utils.log.Loggers;
     key = NotificationDaemon.PROPERTY_DELAY_BEFORE_REPORTING_STATUS,
     defaultValue = "600",
     name = "Delay before reporting notification status, in seconds",
+    global = false),
+  @Property(
+    key = NotificationDaemon.PROPERTY_BATCH_SIZE,
+    defaultValue = "100",
+    name = "Number of notifications dequeued at once. Notifications are removed from the queue when they are dequeued, "
+      + "so up to this number of notifications are lost if the server stops abruptly while delivering them",
+    global = false),
+  @Property(
+    key = NotificationDaemon.PROPERTY_WORKERS,
+    defaultValue = "1",
+    name = "Number of threads delivering notifications. Notifications are delivered in order only with a single thread. "
+      + "Greater values require all the notification dispatchers and channels, including the ones of plugins, to support concurrent deliveries",
+    global = false),
+  @Property(
+    key = NotificationDaemon.PROPERTY_MAX_DELIVERIES_PER_SECOND,
+    defaultValue = "0",
+    name = "Maximum number of deliveries per second through each channel, 0 for no limit. Can be overridden for a channel with "
+      + "sonar.notifications.<channel key>.maxDeliveriesPerSecond",
     global = false)
 })
 @ServerSide
 public class NotificationDaemon implements Startable {
   private static final String THREAD_NAME_PREFIX = "sq-notification-service-";
+  private static final String WORKER_THREAD_NAME_PREFIX = "sq-notification-worker-";
 
   private static final Logger LOG = Loggers.get(NotificationDaemon.class);
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  public static final String PROPERTY_WORKERS = "sonar.notifications.workers";
+  public static final String PROPERTY_MAX_DELIVERIES_PER_SECOND = "sonar.notifications.maxDeliveriesPerSecond";
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final int DEFAULT_WORKERS = 1;
 
+  private final Configuration config;
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
+  private final int batchSize;
+  private final int workers;
   private final DefaultNotificationManager manager;
   private final NotificationService service;
+  private final Map<String, Optional<RateLimiter>> rateLimitersByChannel = new ConcurrentHashMap<>();
+  private final LongAdder deliveredCount = new LongAdder();
+  private volatile long deliveriesPerMinute = 0L;
 
   private ScheduledExecutorService executorService;
+  private ExecutorService workerService;
   private boolean stopping = false;
 
   public NotificationDaemon(Configuration config, DefaultNotificationManager manager, NotificationService service) {
+    this.config = config;
     this.delayInSeconds = config.getLong(PROPERTY_DELAY).get();
     this.delayBeforeReportingStatusInSeconds = config.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS).get();
+    this.batchSize = Math.max(1, config.getInt(PROPERTY_BATCH_SIZE).orElse(DEFAULT_BATCH_SIZE));
+    this.workers = Math.max(1, config.getInt(PROPERTY_WORKERS).orElse(DEFAULT_WORKERS));
     this.manager = manager;
     this.service = service;
   }
@@ -76,6 +121,14 @@ public class NotificationDaemon implements Startable {
         .setNameFormat(THREAD_NAME_PREFIX + "%d")
         .setPriority(Thread.MIN_PRIORITY)
         .build());
+    if (workers > 1) {
+      workerService = Executors.newFixedThreadPool(workers,
+        new ThreadFactoryBuilder()
+          .setNameFormat(WORKER_THREAD_NAME_PREFIX + "%d")
+          .setPriority(Thread.MIN_PRIORITY)
+          .setDaemon(true)
+          .build());
+    }
     executorService.scheduleWithFixedDelay(() -> {
       try {
         processQueue();
@@ -83,7 +136,7 @@ public class NotificationDaemon implements Startable {
         LOG.error("Error in NotificationService", e);
       }
     }, 0, delayInSeconds, TimeUnit.SECONDS);
-    LOG.info("Notification service started (delay {} sec.)", delayInSeconds);
+    LOG.info("Notification service started (delay {} sec., {} workers)", delayInSeconds, workers);
   }
 
   @Override
@@ -92,6 +145,9 @@ public class NotificationDaemon implements Startable {
       stopping = true;
       executorService.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
+      if (workerService != null) {
+        workerService.shutdownNow();
+      }
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
       Thread.currentThread().interrupt();
@@ -99,15 +155,41 @@ public class NotificationDaemon implements Startable {
     LOG.info("Notification service stopped");
   }
 
+  /**
+   * Number of notifications waiting to be delivered
+   */
+  public long getQueueSize() {
+    return manager.count();
+  }
+
+  /**
+   * Number of notifications delivered since startup
+   */
+  public long getDeliveredCount() {
+    return deliveredCount.sum();
+  }
+
+  /**
+   * Number of notifications delivered per minute during the last processing of the queue
+   */
+  public long getDeliveriesPerMinute() {
+    return deliveriesPerMinute;
+  }
+
+  /**
+   * Notifications are removed from the queue before being delivered (see {@link DefaultNotificationManager#getFromQueue(int)}),
+   * so the notifications of the batch being delivered are lost if the server stops abruptly.
+   */
   private synchronized void processQueue() {
     long start = now();
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      service.deliver(notifToSend);
-      notifSentCount++;
+    List<Notification> notifsToSend = manager.getFromQueue(batchSize);
+    while (!notifsToSend.isEmpty()) {
+      deliver(notifsToSend);
+      notifSentCount += notifsToSend.size();
+      deliveredCount.add(notifsToSend.size());
       if (stopping) {
         break;
       }
@@ -118,10 +200,44 @@ public class NotificationDaemon implements Startable {
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.getFromQueue(batchSize);
+    }
+    if (notifSentCount > 0) {
+      deliveriesPerMinute = notifSentCount * 60 * 1000 / Math.max(1L, now() - start);
     }
   }
 
+  private void deliver(List<Notification> notifications) {
+    if (workerService == null) {
+      notifications.forEach(notification -> service.deliver(notification, this::acquireDelivery));
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<>(notifications.size());
+    for (Notification notification : notifications) {
+      futures.add(workerService.submit(() -> service.deliver(notification, this::acquireDelivery)));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        LOG.error("Fail to deliver notification", e.getCause());
+      }
+    }
+  }
+
+  private void acquireDelivery(NotificationChannel channel) {
+    rateLimitersByChannel.computeIfAbsent(channel.getKey(), this::createRateLimiter).ifPresent(RateLimiter::acquire);
+  }
+
+  private Optional<RateLimiter> createRateLimiter(String channelKey) {
+    double maxDeliveriesPerSecond = config.getDouble("sonar.notifications." + channelKey + ".maxDeliveriesPerSecond")
+      .orElse(config.getDouble(PROPERTY_MAX_DELIVERIES_PER_SECOND).orElse(0d));
+    return maxDeliveriesPerSecond > 0 ? Optional.of(RateLimiter.create(maxDeliveriesPerSecond)) : Optional.empty();
+  }
+
   @VisibleForTesting
   void log(long notifSentCount, long remainingNotifCount, long spentTimeInMinutes) {
     LOG.info("{} notifications sent during the past {} minutes and {} still waiting to be sent",
@@ -33,6 +33,7 @@ public class NotificationModule extends Module {
       NotificationUpdater.class,
       DefaultNotificationManager.class,
       NotificationDaemon.class,
+      NotificationDaemonMBeanImpl.class,
       EmailNotificationChannel.class);
   }
 }
@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.notifications.Notification;
@@ -60,6 +61,15 @@ public class NotificationService {
   }
 
   public void deliver(Notification notification) {
+    deliver(notification, channel -> {
+    });
+  }
+
+  /**
+   * @param beforeChannelDelivery called before each delivery of the notification through a channel, for example
+   *                              to limit the rate of deliveries
+   */
+  public void deliver(Notification notification, Consumer<NotificationChannel> beforeChannelDelivery) {
     SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
       NotificationDispatcher.Context context = new ContextImpl(recipients);
@@ -70,16 +80,18 @@ public class NotificationService {
         LOG.warn(String.format("Unable to dispatch notification %s using %s", notification, dispatcher), e);
       }
     }
-    dispatch(notification, recipients);
+    dispatch(notification, recipients, beforeChannelDelivery);
   }
 
-  private static void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+  private static void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients,
+    Consumer<NotificationChannel> beforeChannelDelivery) {
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
       String username = entry.getKey();
       Collection<NotificationChannel> userChannels = entry.getValue();
       LOG.debug("For user {} via {}", username, userChannels);
       for (NotificationChannel channel : userChannels) {
         try {
+          beforeChannelDelivery.accept(channel);
           channel.deliver(notification, username);
         } catch (Exception e) {
           // catch all exceptions in order to deliver via other channels
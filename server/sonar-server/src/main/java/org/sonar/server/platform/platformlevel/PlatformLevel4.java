@@ -61,6 +61,7 @@ import org.sonar.server.es.IndexCreator;
 import org.sonar.server.es.IndexDefinitions;
 import org.sonar.server.es.ProjectIndexersImpl;
 import org.sonar.server.es.RecoveryIndexer;
+import org.sonar.server.es.RecoveryIndexerMBeanImpl;
 import org.sonar.server.es.metadata.EsDbCompatibilityImpl;
 import org.sonar.server.es.metadata.MetadataIndex;
 import org.sonar.server.es.metadata.MetadataIndexDefinition;
@@ -561,6 +562,7 @@ public class PlatformLevel4 extends PlatformLevel {
       HttpRequestIdModule.class,
 
       RecoveryIndexer.class,
+      RecoveryIndexerMBeanImpl.class,
       ProjectIndexersImpl.class);
 
     // telemetry
@@ -0,0 +1,95 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.webhook;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of durations of webhook calls, with fixed buckets. Percentiles are approximated
+ * by the upper bound of the bucket they fall in.
+ */
+class DeliveryLatencyHistogram {
+
+  private static final long[] UPPER_BOUNDS_MS = {50L, 100L, 250L, 500L, 1_000L, 2_500L, 5_000L, 10_000L, 30_000L};
+
+  private final LongAdder[] counts = new LongAdder[UPPER_BOUNDS_MS.length + 1];
+  private final AtomicLong max = new AtomicLong();
+
+  DeliveryLatencyHistogram() {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  void record(long durationMs) {
+    int bucket = 0;
+    while (bucket < UPPER_BOUNDS_MS.length && durationMs > UPPER_BOUNDS_MS[bucket]) {
+      bucket++;
+    }
+    counts[bucket].increment();
+    max.accumulateAndGet(durationMs, Math::max);
+  }
+
+  long count() {
+    long total = 0L;
+    for (LongAdder count : counts) {
+      total += count.sum();
+    }
+    return total;
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the duration in milliseconds under which the specified percentage of calls completed, 0 if none completed
+   */
+  long percentile(double percentile) {
+    long total = count();
+    if (total == 0L) {
+      return 0L;
+    }
+    long rank = (long) Math.ceil(total * percentile / 100.0);
+    long cumulated = 0L;
+    for (int i = 0; i < UPPER_BOUNDS_MS.length; i++) {
+      cumulated += counts[i].sum();
+      if (cumulated >= rank) {
+        return Math.min(UPPER_BOUNDS_MS[i], max.get());
+      }
+    }
+    return max.get();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < counts.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      if (i < UPPER_BOUNDS_MS.length) {
+        sb.append("<=").append(UPPER_BOUNDS_MS[i]);
+      } else {
+        sb.append('>').append(UPPER_BOUNDS_MS[UPPER_BOUNDS_MS.length - 1]);
+      }
+      sb.append("ms: ").append(counts[i].sum());
+    }
+    return sb.toString();
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.server.webhook;
 
 import com.google.common.base.Throwables;
+import java.util.Collection;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactory;
@@ -54,6 +55,15 @@ public class WebhookDeliveryStorage {
     }
   }
 
+  /**
+   * Inserts the specified deliveries in the given session, without committing it. Used with a batch session,
+   * the deliveries are written in a single round-trip to the database.
+   */
+  public void persist(DbSession dbSession, Collection<WebhookDelivery> deliveries) {
+    WebhookDeliveryDao dao = dbClient.webhookDeliveryDao();
+    deliveries.forEach(delivery -> dao.insert(dbSession, toDto(delivery)));
+  }
+
   public void purge(String componentUuid) {
     long beforeDate = system.now() - ALIVE_DELAY_MS;
     try (DbSession dbSession = dbClient.openSession(false)) {
@@ -0,0 +1,379 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.webhook;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import okhttp3.HttpUrl;
+import org.picocontainer.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.webhook.DueCallKey;
+import org.sonar.db.webhook.WebhookOutboxDao;
+import org.sonar.db.webhook.WebhookOutboxDto;
+
+/**
+ * Delivers webhooks from a persistent outbox, the table WEBHOOK_OUTBOX. Webhook calls are added to the outbox
+ * by {@link #enqueue(List, WebhookPayload)} and are then executed by a bounded pool of threads, so that a slow
+ * endpoint does not block the analysis or the request that triggered it.
+ * <p>
+ * The number of concurrent calls to a given host is limited. Calls which fail because of a connectivity
+ * problem, a server error or throttling are retried with an exponential backoff. Calls are leased in database
+ * before being executed, so that each call is executed by a single Compute Engine or Web Server node. A call
+ * interrupted by a crash is retried when its lease expires.
+ * <p>
+ * Deliveries are written to the table WEBHOOK_DELIVERIES, together with the update of the outbox, in a batch
+ * of statements at each polling of the outbox.
+ */
+@ServerSide
+@ComputeEngineSide
+public class WebhookDispatcher implements Startable {
+
+  public static final String PROPERTY_WORKERS = "sonar.webhooks.workers";
+  public static final String PROPERTY_MAX_CALLS_PER_HOST = "sonar.webhooks.maxConcurrentCallsPerHost";
+  public static final String PROPERTY_MAX_ATTEMPTS = "sonar.webhooks.maxAttempts";
+  public static final String PROPERTY_RETRY_DELAY = "sonar.webhooks.retryDelayInSeconds";
+  private static final int DEFAULT_WORKERS = 5;
+  private static final int DEFAULT_MAX_CALLS_PER_HOST = 2;
+  private static final int DEFAULT_MAX_ATTEMPTS = 5;
+  private static final long DEFAULT_RETRY_DELAY_IN_SECONDS = 10L;
+  private static final long MAX_RETRY_DELAY_MS = 60L * 60 * 1000;
+  /**
+   * Duration after which a call which is still not completed, for example because the node executing it crashed,
+   * can be attempted again. It is much larger than the timeouts of the HTTP client.
+   */
+  @VisibleForTesting
+  static final long LEASE_DURATION_MS = 5L * 60 * 1000;
+  private static final long POLL_DELAY_MS = 1_000L;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private static final Logger LOGGER = Loggers.get(WebhookDispatcher.class);
+
+  private final DbClient dbClient;
+  private final WebhookCaller caller;
+  private final WebhookDeliveryStorage deliveryStorage;
+  private final System2 system;
+  private final UuidFactory uuidFactory;
+  private final int workers;
+  private final int maxCallsPerHost;
+  private final int maxAttempts;
+  private final long retryDelayMs;
+  private final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+  private final Queue<CompletedCall> completedCalls = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger callsInProgress = new AtomicInteger();
+  private final LongAdder successCount = new LongAdder();
+  private final LongAdder failureCount = new LongAdder();
+  private final LongAdder retryCount = new LongAdder();
+  private final DeliveryLatencyHistogram latencyHistogram = new DeliveryLatencyHistogram();
+
+  private Executor workerExecutor;
+  private ScheduledExecutorService scheduler;
+
+  public WebhookDispatcher(Configuration config, DbClient dbClient, WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system,
+    UuidFactory uuidFactory) {
+    this.dbClient = dbClient;
+    this.caller = caller;
+    this.deliveryStorage = deliveryStorage;
+    this.system = system;
+    this.uuidFactory = uuidFactory;
+    this.workers = Math.max(1, config.getInt(PROPERTY_WORKERS).orElse(DEFAULT_WORKERS));
+    this.maxCallsPerHost = Math.max(1, config.getInt(PROPERTY_MAX_CALLS_PER_HOST).orElse(DEFAULT_MAX_CALLS_PER_HOST));
+    this.maxAttempts = Math.max(1, config.getInt(PROPERTY_MAX_ATTEMPTS).orElse(DEFAULT_MAX_ATTEMPTS));
+    this.retryDelayMs = TimeUnit.SECONDS.toMillis(Math.max(1L, config.getLong(PROPERTY_RETRY_DELAY).orElse(DEFAULT_RETRY_DELAY_IN_SECONDS)));
+  }
+
+  @VisibleForTesting
+  WebhookDispatcher(Configuration config, DbClient dbClient, WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system,
+    UuidFactory uuidFactory, Executor workerExecutor) {
+    this(config, dbClient, caller, deliveryStorage, system, uuidFactory);
+    this.workerExecutor = workerExecutor;
+  }
+
+  @Override
+  public void start() {
+    workerExecutor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+      // calls are submitted only if a worker is available, the queue never holds more than the pending ones
+      new ArrayBlockingQueue<>(workers),
+      new ThreadFactoryBuilder()
+        .setNameFormat("sq-webhook-worker-%d")
+        .setDaemon(true)
+        .build());
+    scheduler = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder()
+        .setNameFormat("sq-webhook-dispatcher-%d")
+        .setDaemon(true)
+        .build());
+    scheduler.scheduleWithFixedDelay(this::dispatchSafely, POLL_DELAY_MS, POLL_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      ((ExecutorService) workerExecutor).shutdown();
+      try {
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        ((ExecutorService) workerExecutor).awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      // calls which are still in progress will be retried when their lease expires
+      try (DbSession dbSession = dbClient.openSession(true)) {
+        flushCompletedCalls(dbSession);
+      } catch (Exception e) {
+        LOGGER.warn("Failed to persist webhook deliveries", e);
+      }
+    }
+  }
+
+  /**
+   * Adds calls of the specified webhooks to the outbox. They are executed asynchronously.
+   */
+  public void enqueue(List<Webhook> webhooks, WebhookPayload payload) {
+    long now = system.now();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      WebhookOutboxDao dao = dbClient.webhookOutboxDao();
+      for (Webhook webhook : webhooks) {
+        dao.insert(dbSession, new WebhookOutboxDto()
+          .setUuid(uuidFactory.create())
+          .setComponentUuid(webhook.getComponentUuid())
+          .setCeTaskUuid(webhook.getCeTaskUuid().orElse(null))
+          .setAnalysisUuid(webhook.getAnalysisUuid().orElse(null))
+          .setName(webhook.getName())
+          .setUrl(webhook.getUrl())
+          .setProjectKey(payload.getProjectKey())
+          .setPayload(payload.getJson())
+          .setAttempts(0)
+          .setNextAttemptAt(now)
+          .setCreatedAt(now));
+      }
+      dbSession.commit();
+    }
+    if (scheduler != null) {
+      scheduler.execute(this::dispatchSafely);
+    }
+  }
+
+  private void dispatchSafely() {
+    try {
+      dispatch();
+    } catch (Exception e) {
+      LOGGER.error("Failed to dispatch webhooks", e);
+    }
+  }
+
+  /**
+   * Records the calls completed since the previous execution, then starts the calls which are due, within
+   * the limits of the number of workers and of the number of calls per host. The outbox is paged through until
+   * all the workers are busy, so that the calls to a saturated host do not delay the calls to other hosts.
+   */
+  @VisibleForTesting
+  void dispatch() {
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      flushCompletedCalls(dbSession);
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      WebhookOutboxDao dao = dbClient.webhookOutboxDao();
+      long now = system.now();
+      int pageSize = workers * 2;
+      DueCallKey after = null;
+      while (callsInProgress.get() < workers) {
+        List<WebhookOutboxDto> page = after == null ? dao.selectDue(dbSession, now, pageSize) : dao.selectDueAfter(dbSession, now, after, pageSize);
+        for (WebhookOutboxDto call : page) {
+          if (callsInProgress.get() >= workers) {
+            return;
+          }
+          after = DueCallKey.of(call);
+          tryStart(dbSession, dao, call, now);
+        }
+        if (page.size() < pageSize) {
+          return;
+        }
+      }
+    }
+  }
+
+  private void tryStart(DbSession dbSession, WebhookOutboxDao dao, WebhookOutboxDto call, long now) {
+    Semaphore hostPermits = permitsByHost.computeIfAbsent(hostOf(call.getUrl()), host -> new Semaphore(maxCallsPerHost));
+    if (!hostPermits.tryAcquire()) {
+      // kept in outbox until a call to the same host completes
+      return;
+    }
+    if (dao.updateNextAttempt(dbSession, call, call.getAttempts() + 1, now + LEASE_DURATION_MS)) {
+      dbSession.commit();
+      callsInProgress.incrementAndGet();
+      workerExecutor.execute(() -> execute(call, hostPermits));
+    } else {
+      // leased by another node
+      dbSession.rollback();
+      hostPermits.release();
+    }
+  }
+
+  private void execute(WebhookOutboxDto call, Semaphore hostPermits) {
+    try {
+      Webhook webhook = new Webhook(call.getComponentUuid(), call.getCeTaskUuid(), call.getAnalysisUuid(), call.getName(), call.getUrl());
+      WebhookDelivery delivery = caller.call(webhook, new WebhookPayload(call.getProjectKey(), call.getPayload()));
+      log(delivery);
+      delivery.getDurationInMs().ifPresent(latencyHistogram::record);
+      completedCalls.add(new CompletedCall(call, delivery));
+    } finally {
+      hostPermits.release();
+      callsInProgress.decrementAndGet();
+    }
+  }
+
+  private void flushCompletedCalls(DbSession dbSession) {
+    List<WebhookDelivery> deliveries = new ArrayList<>();
+    List<String> finishedCallUuids = new ArrayList<>();
+    WebhookOutboxDao dao = dbClient.webhookOutboxDao();
+    CompletedCall completed = completedCalls.poll();
+    while (completed != null) {
+      WebhookOutboxDto call = completed.call;
+      WebhookDelivery delivery = completed.delivery;
+      deliveries.add(delivery);
+      if (delivery.isSuccess()) {
+        successCount.increment();
+        finishedCallUuids.add(call.getUuid());
+      } else if (isRetryable(delivery) && call.getAttempts() < maxAttempts) {
+        retryCount.increment();
+        dao.updateNextAttempt(dbSession, call, call.getAttempts(), system.now() + retryDelay(call.getAttempts()));
+      } else {
+        failureCount.increment();
+        finishedCallUuids.add(call.getUuid());
+        LOGGER.warn("Failed to send webhook '{}' after {} attempt(s) | url={}", call.getName(), call.getAttempts(), call.getUrl());
+      }
+      completed = completedCalls.poll();
+    }
+    if (deliveries.isEmpty()) {
+      return;
+    }
+    dao.deleteByUuids(dbSession, finishedCallUuids);
+    deliveryStorage.persist(dbSession, deliveries);
+    dbSession.commit();
+  }
+
+  /**
+   * Connectivity problems, server errors and throttling are expected to be temporary. Other failures, like
+   * client errors or invalid URLs, are not retried.
+   */
+  private static boolean isRetryable(WebhookDelivery delivery) {
+    Optional<Integer> httpStatus = delivery.getHttpStatus();
+    if (httpStatus.isPresent()) {
+      return httpStatus.get() >= 500 || httpStatus.get() == HTTP_TOO_MANY_REQUESTS;
+    }
+    return delivery.getError().filter(IOException.class::isInstance).isPresent();
+  }
+
+  @VisibleForTesting
+  long retryDelay(int attempts) {
+    long delay = retryDelayMs << Math.min(attempts - 1, 20);
+    return Math.min(delay, MAX_RETRY_DELAY_MS);
+  }
+
+  private static String hostOf(String url) {
+    HttpUrl httpUrl = HttpUrl.parse(url);
+    return httpUrl == null ? url : httpUrl.host();
+  }
+
+  private static void log(WebhookDelivery delivery) {
+    Optional<String> error = delivery.getErrorMessage();
+    if (error.isPresent()) {
+      LOGGER.debug("Failed to send webhook '{}' | url={} | message={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), error.get());
+    } else {
+      LOGGER.debug("Sent webhook '{}' | url={} | time={}ms | status={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), delivery.getDurationInMs().orElse(-1), delivery.getHttpStatus().orElse(-1));
+    }
+  }
+
+  /**
+   * Number of webhook calls waiting in the outbox, including the ones in progress
+   */
+  public long getOutboxSize() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.webhookOutboxDao().countAll(dbSession);
+    }
+  }
+
+  public long getCallsInProgress() {
+    return callsInProgress.get();
+  }
+
+  /**
+   * Number of webhooks successfully delivered since startup
+   */
+  public long getSuccessCount() {
+    return successCount.sum();
+  }
+
+  /**
+   * Number of webhooks which could not be delivered since startup, after all attempts
+   */
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  /**
+   * Number of failed calls which have been scheduled for retry since startup
+   */
+  public long getRetryCount() {
+    return retryCount.sum();
+  }
+
+  DeliveryLatencyHistogram getLatencyHistogram() {
+    return latencyHistogram;
+  }
+
+  private static final class CompletedCall {
+    private final WebhookOutboxDto call;
+    private final WebhookDelivery delivery;
+
+    private CompletedCall(WebhookOutboxDto call, WebhookDelivery delivery) {
+      this.call = call;
+      this.delivery = delivery;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.webhook;
+
+public interface WebhookDispatcherMBean {
+
+  String OBJECT_NAME = "SonarQube:name=WebhookDispatcher";
+
+  /**
+   * Number of webhook calls waiting in the outbox, including the ones in progress
+   */
+  long getOutboxSize();
+
+  /**
+   * Number of webhook calls being executed by this process
+   */
+  long getCallsInProgress();
+
+  /**
+   * Number of webhooks successfully delivered since startup
+   */
+  long getSuccessCount();
+
+  /**
+   * Number of webhooks which could not be delivered since startup, after all attempts
+   */
+  long getFailureCount();
+
+  /**
+   * Number of failed calls which have been scheduled for retry since startup
+   */
+  long getRetryCount();
+
+  /**
+   * Median duration of webhook calls since startup, in milliseconds
+   */
+  long getLatencyMedianMs();
+
+  /**
+   * 95th percentile of durations of webhook calls since startup, in milliseconds
+   */
+  long getLatency95thPercentileMs();
+
+  /**
+   * 99th percentile of durations of webhook calls since startup, in milliseconds
+   */
+  long getLatency99thPercentileMs();
+
+  /**
+   * Number of webhook calls per range of duration since startup
+   */
+  String getLatencyHistogram();
+}
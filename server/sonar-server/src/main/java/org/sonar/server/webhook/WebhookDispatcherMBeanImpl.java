@@ -0,0 +1,87 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.webhook;
+
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
+
+public class WebhookDispatcherMBeanImpl implements WebhookDispatcherMBean, Startable {
+
+  private final WebhookDispatcher dispatcher;
+
+  public WebhookDispatcherMBeanImpl(WebhookDispatcher dispatcher) {
+    this.dispatcher = dispatcher;
+  }
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  @Override
+  public long getOutboxSize() {
+    return dispatcher.getOutboxSize();
+  }
+
+  @Override
+  public long getCallsInProgress() {
+    return dispatcher.getCallsInProgress();
+  }
+
+  @Override
+  public long getSuccessCount() {
+    return dispatcher.getSuccessCount();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return dispatcher.getFailureCount();
+  }
+
+  @Override
+  public long getRetryCount() {
+    return dispatcher.getRetryCount();
+  }
+
+  @Override
+  public long getLatencyMedianMs() {
+    return dispatcher.getLatencyHistogram().percentile(50);
+  }
+
+  @Override
+  public long getLatency95thPercentileMs() {
+    return dispatcher.getLatencyHistogram().percentile(95);
+  }
+
+  @Override
+  public long getLatency99thPercentileMs() {
+    return dispatcher.getLatencyHistogram().percentile(99);
+  }
+
+  @Override
+  public String getLatencyHistogram() {
+    return dispatcher.getLatencyHistogram().toString();
+  }
+}
@@ -27,6 +27,8 @@ public class WebhookModule extends Module {
     add(
       WebhookCallerImpl.class,
       WebhookDeliveryStorage.class,
+      WebhookDispatcher.class,
+      WebhookDispatcherMBeanImpl.class,
       WebHooksImpl.class,
       WebhookPayloadFactoryImpl.class);
   }
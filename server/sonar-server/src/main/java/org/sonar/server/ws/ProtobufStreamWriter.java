@@ -0,0 +1,155 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.util.ProtobufJsonFormat;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.sonarqube.ws.MediaTypes.JSON;
+import static org.sonarqube.ws.MediaTypes.PROTOBUF;
+
+/**
+ * Streams a protobuf response which contains a large repeated field, for example the page of components
+ * of api/measures/component_tree, in the media type requested by the client.
+ * <p>
+ * Contrary to {@link WsUtils#writeProtobuf(Message, Request, Response)}, the response message is never built as a whole:
+ * the other fields of the response are written first, then the elements of the repeated field are written one by one
+ * as soon as they are built. The response is in the streaming mode of {@link ServletResponse.ServletStream#startStreaming()}.
+ * <p>
+ * Only the serialization is streamed. The data the elements are built from is still held in memory by the caller,
+ * unless the caller itself iterates over it, for example with a database cursor.
+ * <pre>
+ *   try (ProtobufStreamWriter writer = ProtobufStreamWriter.of(request, response, header, MyResponse.ITEMS_FIELD_NUMBER)) {
+ *     for (ItemDto dto : dtos) {
+ *       writer.write(toWsItem(dto));
+ *     }
+ *   }
+ * </pre>
+ */
+public abstract class ProtobufStreamWriter implements AutoCloseable {
+
+  final Descriptors.FieldDescriptor streamedField;
+
+  private ProtobufStreamWriter(Descriptors.FieldDescriptor streamedField) {
+    this.streamedField = streamedField;
+  }
+
+  /**
+   * Writes the fields of {@code header}, then prepares the writing of the elements of the repeated field
+   * {@code streamedFieldNumber}. This field must not be set in {@code header}.
+   */
+  public static ProtobufStreamWriter of(Request request, Response response, Message header, int streamedFieldNumber) {
+    Descriptors.FieldDescriptor streamedField = header.getDescriptorForType().findFieldByNumber(streamedFieldNumber);
+    checkArgument(streamedField != null && streamedField.isRepeated() && streamedField.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE,
+      "Field %s of %s is not a repeated message", streamedFieldNumber, header.getDescriptorForType().getFullName());
+    checkArgument(header.getRepeatedFieldCount(streamedField) == 0, "Field %s must not be set in header", streamedField.getName());
+
+    if (request.getMediaType().equals(PROTOBUF)) {
+      response.stream().setMediaType(PROTOBUF);
+      return new BinaryWriter(WsUtils.streamingOutput(response), header, streamedField);
+    }
+    response.stream().setMediaType(JSON);
+    return new JsonStreamWriter(WsUtils.streamingOutput(response), header, streamedField);
+  }
+
+  /**
+   * Writes the next element of the repeated field
+   */
+  public abstract void write(Message element);
+
+  /**
+   * Completes the response
+   */
+  @Override
+  public abstract void close();
+
+  private static final class BinaryWriter extends ProtobufStreamWriter {
+    private final OutputStream output;
+    private final CodedOutputStream coded;
+
+    private BinaryWriter(OutputStream output, Message header, Descriptors.FieldDescriptor streamedField) {
+      super(streamedField);
+      this.output = output;
+      // a serialized message is the concatenation of its fields, and elements of a repeated field
+      // may be written anywhere after the other fields
+      this.coded = CodedOutputStream.newInstance(output);
+      try {
+        header.writeTo(coded);
+      } catch (IOException e) {
+        throw new IllegalStateException("Error while writing protobuf message", e);
+      }
+    }
+
+    @Override
+    public void write(Message element) {
+      try {
+        coded.writeMessage(streamedField.getNumber(), element);
+      } catch (IOException e) {
+        throw new IllegalStateException("Error while writing protobuf message", e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        coded.flush();
+      } catch (IOException e) {
+        throw new IllegalStateException("Error while writing protobuf message", e);
+      } finally {
+        IOUtils.closeQuietly(output);
+      }
+    }
+  }
+
+  private static final class JsonStreamWriter extends ProtobufStreamWriter {
+    private final JsonWriter writer;
+
+    private JsonStreamWriter(OutputStream output, Message header, Descriptors.FieldDescriptor streamedField) {
+      super(streamedField);
+      this.writer = JsonWriter.of(new OutputStreamWriter(output, UTF_8));
+      writer.beginObject();
+      ProtobufJsonFormat.writeFieldsExcept(header, streamedField, writer);
+      writer.name(streamedField.getName()).beginArray();
+    }
+
+    @Override
+    public void write(Message element) {
+      ProtobufJsonFormat.writeValue(element, writer);
+    }
+
+    @Override
+    public void close() {
+      writer.endArray();
+      writer.endObject();
+      writer.close();
+    }
+  }
+}
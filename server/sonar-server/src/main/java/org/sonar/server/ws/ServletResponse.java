@@ -42,6 +42,7 @@ public class ServletResponse implements Response {
 
   public static class ServletStream implements Stream {
     private final HttpServletResponse response;
+    private boolean streaming = false;
 
     public ServletStream(HttpServletResponse response) {
       this.response = response;
@@ -75,6 +76,25 @@ public class ServletResponse implements Response {
       return response;
     }
 
+    /**
+     * Switches to the streaming mode, in which the body is written while it's being computed, for example while a
+     * database cursor is iterated. Only the output buffer of the servlet container is held in memory. Once full, it's
+     * sent with chunked transfer encoding, which commits the response.
+     * <p>
+     * An error raised after the response is committed can not be returned to the client. {@link WebServiceEngine}
+     * rethrows it, so that the servlet container closes the connection before the end of the body, and the client
+     * gets an incomplete response rather than a truncated one which looks complete.
+     * </p>
+     */
+    public ServletStream startStreaming() {
+      this.streaming = true;
+      return this;
+    }
+
+    boolean isStreaming() {
+      return streaming;
+    }
+
     public ServletStream reset() {
       response.reset();
       return this;
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Locale;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.apache.catalina.connector.ClientAbortException;
 import org.picocontainer.Startable;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.server.ws.LocalConnector;
@@ -110,8 +111,7 @@ public class WebServiceEngine implements LocalConnector, Startable {
     } catch (Exception e) {
       Response.Stream stream = response.stream();
       if (stream instanceof ServletResponse.ServletStream && ((ServletResponse.ServletStream) stream).response().isCommitted()) {
-        // Request has been aborted by the client, nothing can been done as Tomcat has committed the response
-        LOGGER.debug("Request {} has been aborted by client, error is '{}'", request, e.getMessage());
+        handleErrorOfCommittedResponse(request, (ServletResponse.ServletStream) stream, e);
         return;
       }
       LOGGER.error("Fail to process request " + request, e);
@@ -121,6 +121,24 @@ public class WebServiceEngine implements LocalConnector, Startable {
     }
   }
 
+  /**
+   * Status and beginning of the body have already been sent, the error can not be returned to the client anymore
+   */
+  private static void handleErrorOfCommittedResponse(Request request, ServletResponse.ServletStream stream, Exception e) {
+    if (stream.isStreaming() && !isClientAbort(e)) {
+      LOGGER.error("Fail to stream response of request " + request, e);
+      // the servlet container closes the connection before the end of the body, so that the client
+      // does not get a truncated response which looks complete
+      throw new IllegalStateException("Fail to stream response of request " + request, e);
+    }
+    // Request has been aborted by the client, nothing can been done as Tomcat has committed the response
+    LOGGER.debug("Request {} has been aborted by client, error is '{}'", request, e.getMessage());
+  }
+
+  private static boolean isClientAbort(Exception e) {
+    return Throwables.getCausalChain(e).stream().anyMatch(ClientAbortException.class::isInstance);
+  }
+
   @CheckForNull
   private WebService.Action getAction(ActionExtractor actionExtractor) {
     String controllerPath = actionExtractor.getController();
@@ -63,6 +63,18 @@ public class WsUtils {
     }
   }
 
+  /**
+   * Output of a response which is written while it's being computed, see {@link ServletResponse.ServletStream#startStreaming()}.
+   * Other responses, for example the ones of local calls, are written as usual.
+   */
+  public static OutputStream streamingOutput(Response response) {
+    Response.Stream stream = response.stream();
+    if (stream instanceof ServletResponse.ServletStream) {
+      ((ServletResponse.ServletStream) stream).startStreaming();
+    }
+    return stream.output();
+  }
+
   /**
    * @throws BadRequestException
    */
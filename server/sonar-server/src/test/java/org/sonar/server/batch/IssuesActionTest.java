@@ -25,13 +25,18 @@ import org.assertj.core.groups.Tuple;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.api.web.UserRole;
+import org.sonar.core.config.PurgeProperties;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.issue.IssueDto;
+import org.sonar.db.property.PropertyDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.scanner.protocol.Constants.Severity;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
@@ -47,6 +52,7 @@ import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.rules.RuleType.BUG;
+import static org.sonar.core.config.PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES;
 import static org.sonar.db.component.ComponentTesting.newDirectory;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
 import static org.sonar.db.component.ComponentTesting.newModuleDto;
@@ -62,7 +68,13 @@ public class IssuesActionTest {
   @Rule
   public UserSessionRule userSessionRule = UserSessionRule.standalone();
 
-  private WsActionTester tester = new WsActionTester(new IssuesAction(db.getDbClient(), userSessionRule, TestComponentFinder.from(db)));
+  private static final long NOW = 1_508_320_800_000L;
+  private static final long HOUR = 60 * 60 * 1_000L;
+  private static final long DAY = 24 * HOUR;
+
+  private MapSettings settings = new MapSettings(new PropertyDefinitions(PurgeProperties.all()));
+  private WsActionTester tester = new WsActionTester(new IssuesAction(db.getDbClient(), userSessionRule, TestComponentFinder.from(db),
+    settings.asConfig(), new TestSystem2().setNow(NOW)));
 
   @Test
   public void test_nullable_fields() throws Exception {
@@ -262,6 +274,153 @@ public class IssuesActionTest {
     }
   }
 
+  @Test
+  public void return_etag_and_last_modified_date() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(1_508_320_800_000L));
+    addPermissionTo(project);
+
+    TestResponse response = tester.newRequest().setParam("key", project.getKey()).execute();
+    String etag = response.getHeader("ETag");
+    assertThat(etag).isNotEmpty();
+    assertThat(response.getHeader("Last-Modified")).isEqualTo("Wed, 18 Oct 2017 10:00:00 GMT");
+
+    db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(1_508_320_900_000L));
+    assertThat(tester.newRequest().setParam("key", project.getKey()).execute().getHeader("ETag")).isNotEqualTo(etag);
+  }
+
+  @Test
+  public void return_issues_updated_since_date_including_closed_ones_if_etag_is_of_same_modules() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - 3 * HOUR));
+    addPermissionTo(project);
+    String etag = tester.newRequest().setParam("key", project.getKey()).execute().getHeader("ETag");
+    IssueDto updatedIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - HOUR));
+    IssueDto closedIssue = db.issues().insert(rule, project, file, i -> i.setStatus("CLOSED").setResolution("FIXED").setUpdatedAt(NOW - HOUR));
+
+    TestResponse response = tester.newRequest()
+      .setParam("key", project.getKey())
+      .setParam("changedSince", String.valueOf(NOW - HOUR))
+      .setHeader("If-None-Match", etag)
+      .execute();
+
+    assertThat(response.getHeader(IssuesAction.DELTA_HEADER)).isEqualTo("true");
+    try (CloseableIterator<ServerIssue> result = Protobuf.readStream(response.getInputStream(), ServerIssue.parser())) {
+      assertThat(result)
+        .extracting(ServerIssue::getKey, ServerIssue::getStatus)
+        .containsExactlyInAnyOrder(tuple(updatedIssue.getKey(), "OPEN"), tuple(closedIssue.getKey(), "CLOSED"));
+    }
+  }
+
+  @Test
+  public void return_issues_committed_after_the_last_modified_date_with_an_older_update_date() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - 3 * HOUR));
+    IssueDto lastUpdatedIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - HOUR));
+    addPermissionTo(project);
+    String etag = tester.newRequest().setParam("key", project.getKey()).execute().getHeader("ETag");
+    // update date set before the update of lastUpdatedIssue, but committed after the previous request
+    IssueDto lateIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - HOUR - 60_000L));
+
+    TestResponse response = tester.newRequest()
+      .setParam("key", project.getKey())
+      .setParam("changedSince", String.valueOf(NOW - HOUR))
+      .setHeader("If-None-Match", etag)
+      .execute();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getHeader("ETag")).isEqualTo(etag);
+    assertThat(response.getHeader(IssuesAction.DELTA_HEADER)).isEqualTo("true");
+    try (CloseableIterator<ServerIssue> result = Protobuf.readStream(response.getInputStream(), ServerIssue.parser())) {
+      assertThat(result)
+        .extracting(ServerIssue::getKey)
+        .containsExactlyInAnyOrder(lastUpdatedIssue.getKey(), lateIssue.getKey());
+    }
+  }
+
+  @Test
+  public void return_all_non_closed_issues_if_etag_is_of_other_modules() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    IssueDto oldIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - 3 * HOUR));
+    IssueDto updatedIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - HOUR));
+    db.issues().insert(rule, project, file, i -> i.setStatus("CLOSED").setResolution("FIXED").setUpdatedAt(NOW - HOUR));
+    addPermissionTo(project);
+
+    TestResponse response = tester.newRequest()
+      .setParam("key", project.getKey())
+      .setParam("changedSince", String.valueOf(NOW - HOUR))
+      .setHeader("If-None-Match", "\"other-1000\"")
+      .execute();
+
+    assertThat(response.getHeader(IssuesAction.DELTA_HEADER)).isNull();
+    try (CloseableIterator<ServerIssue> result = Protobuf.readStream(response.getInputStream(), ServerIssue.parser())) {
+      assertThat(result)
+        .extracting(ServerIssue::getKey)
+        .containsExactlyInAnyOrder(oldIssue.getKey(), updatedIssue.getKey());
+    }
+  }
+
+  @Test
+  public void return_all_non_closed_issues_if_project_has_been_analyzed_since_etag() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project).setPath("src/Foo.java"));
+    IssueDto oldIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - 3 * HOUR));
+    addPermissionTo(project);
+    String etag = tester.newRequest().setParam("key", project.getKey()).execute().getHeader("ETag");
+    // the analysis moves the file without updating its issue
+    db.executeUpdateSql("update projects set path=? where uuid=?", "src/moved/Foo.java", file.uuid());
+    db.components().insertSnapshot(project);
+
+    TestResponse response = tester.newRequest()
+      .setParam("key", project.getKey())
+      .setParam("changedSince", String.valueOf(NOW - HOUR))
+      .setHeader("If-None-Match", etag)
+      .execute();
+
+    assertThat(response.getHeader("ETag")).isNotEqualTo(etag);
+    assertThat(response.getHeader(IssuesAction.DELTA_HEADER)).isNull();
+    try (CloseableIterator<ServerIssue> result = Protobuf.readStream(response.getInputStream(), ServerIssue.parser())) {
+      assertThat(result)
+        .extracting(ServerIssue::getKey, ServerIssue::getPath)
+        .containsExactly(tuple(oldIssue.getKey(), "src/moved/Foo.java"));
+    }
+  }
+
+  @Test
+  public void return_all_non_closed_issues_if_changed_since_is_older_than_retention_of_closed_issues() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    IssueDto oldIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - 10 * DAY));
+    db.properties().insertProperties(new PropertyDto().setKey(DAYS_BEFORE_DELETING_CLOSED_ISSUES).setValue("5").setResourceId(project.getId()));
+    addPermissionTo(project);
+    String etag = tester.newRequest().setParam("key", project.getKey()).execute().getHeader("ETag");
+    IssueDto updatedIssue = db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null).setUpdatedAt(NOW - HOUR));
+    db.issues().insert(rule, project, file, i -> i.setStatus("CLOSED").setResolution("FIXED").setUpdatedAt(NOW - HOUR));
+
+    TestResponse response = tester.newRequest()
+      .setParam("key", project.getKey())
+      .setParam("changedSince", String.valueOf(NOW - 10 * DAY))
+      .setHeader("If-None-Match", etag)
+      .execute();
+
+    assertThat(response.getHeader(IssuesAction.DELTA_HEADER)).isNull();
+    try (CloseableIterator<ServerIssue> result = Protobuf.readStream(response.getInputStream(), ServerIssue.parser())) {
+      assertThat(result)
+        .extracting(ServerIssue::getKey)
+        .containsExactlyInAnyOrder(oldIssue.getKey(), updatedIssue.getKey());
+    }
+  }
+
   @Test
   public void fail_if_user_does_not_have_permission_on_project() {
     ComponentDto project = db.components().insertPrivateProject();
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.batch;
 
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.sonar.scanner.protocol.input.FileData;
@@ -26,8 +27,10 @@ import org.sonar.scanner.protocol.input.ProjectRepositories;
 import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 import org.sonarqube.ws.Batch.WsProjectResponse;
+import org.sonarqube.ws.MediaTypes;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -62,6 +65,43 @@ public class ProjectActionTest {
     assertThat(queryArgumentCaptor.getValue().getBranch()).isEqualTo("my_branch");
   }
 
+  @Test
+  public void return_settings_without_file_data_if_version_is_known_by_client() {
+    ProjectRepositories projectRepositories = new ProjectRepositories();
+    projectRepositories.setVersion("abc");
+    projectRepositories.addSettings("org.codehaus.sonar:sonar", ImmutableMap.of("sonar.foo", "bar"));
+    ArgumentCaptor<ProjectDataQuery> queryArgumentCaptor = ArgumentCaptor.forClass(ProjectDataQuery.class);
+    when(projectDataLoader.load(queryArgumentCaptor.capture())).thenReturn(projectRepositories);
+
+    TestResponse response = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setHeader("If-None-Match", "\"abc\"")
+      .execute();
+
+    assertThat(queryArgumentCaptor.getValue().getKnownVersion()).isEqualTo("abc");
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getHeader("ETag")).isEqualTo("\"abc\"");
+    assertThat(response.getHeader(ProjectAction.FILE_DATA_NOT_MODIFIED_HEADER)).isEqualTo("true");
+    WsProjectResponse projectResponse = response.getInputObject(WsProjectResponse.class);
+    assertThat(projectResponse.getSettingsByModule().get("org.codehaus.sonar:sonar").getSettings()).containsOnly(entry("sonar.foo", "bar"));
+  }
+
+  @Test
+  public void return_project_data_and_version_if_version_is_not_known_by_client() {
+    ProjectRepositories projectRepositories = new ProjectRepositories();
+    projectRepositories.setVersion("def");
+    when(projectDataLoader.load(any(ProjectDataQuery.class))).thenReturn(projectRepositories);
+
+    TestResponse response = ws.newRequest()
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setHeader("If-None-Match", "\"abc\"")
+      .execute();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getHeader("ETag")).isEqualTo("\"def\"");
+  }
+
   /**
    * SONAR-7084
    */
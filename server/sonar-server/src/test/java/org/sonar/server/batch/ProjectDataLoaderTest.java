@@ -541,6 +541,42 @@ public class ProjectDataLoaderTest {
     assertThat(fileData.hash()).isEqualTo("123456");
   }
 
+  @Test
+  public void do_not_return_file_data_if_version_is_already_known() {
+    OrganizationDto organizationDto = db.organizations().insert();
+    ComponentDto project = db.components().insertPrivateProject(organizationDto);
+    userSession.logIn().addProjectPermission(SCAN_EXECUTION, project);
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    dbClient.fileSourceDao().insert(dbSession, newFileSourceDto(file).setSrcHash("123456"));
+    db.properties().insertProperties(new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR").setResourceId(project.getId()));
+    db.commit();
+    String version = underTest.load(ProjectDataQuery.create().setModuleKey(project.getKey())).version();
+
+    ProjectRepositories ref = underTest.load(ProjectDataQuery.create().setModuleKey(project.getKey()).setKnownVersion(version));
+
+    assertThat(ref.version()).isEqualTo(version);
+    assertThat(ref.fileDataByModuleAndPath()).isEmpty();
+    assertThat(ref.settings(project.getKey())).containsOnly(entry("sonar.jira.project.key", "SONAR"));
+  }
+
+  @Test
+  public void version_changes_with_analyses_but_not_with_settings() {
+    OrganizationDto organizationDto = db.organizations().insert();
+    ComponentDto project = db.components().insertPrivateProject(organizationDto);
+    userSession.logIn().addProjectPermission(SCAN_EXECUTION, project);
+    ProjectDataQuery query = ProjectDataQuery.create().setModuleKey(project.getKey());
+    String initialVersion = underTest.load(query).version();
+
+    db.properties().insertProperties(new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR").setResourceId(project.getId()));
+    String versionWithSettings = underTest.load(query).version();
+
+    db.components().insertSnapshot(project);
+    String versionAfterAnalysis = underTest.load(query).version();
+
+    assertThat(initialVersion).isNotNull().isEqualTo(versionWithSettings);
+    assertThat(versionAfterAnalysis).isNotEqualTo(versionWithSettings).isEqualTo(underTest.load(query).version());
+  }
+
   @Test
   public void return_file_data_from_multi_modules() {
     OrganizationDto organizationDto = db.organizations().insert();
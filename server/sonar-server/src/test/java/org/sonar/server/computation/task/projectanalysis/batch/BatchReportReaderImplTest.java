@@ -314,4 +314,52 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_packed_report() throws IOException {
+    writer.writeComponent(COMPONENT);
+    writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    writer.writeCoverageDetails(COMPONENT_REF, of(COVERAGE_DETAIL_1));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    writer.pack();
+
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    try (CloseableIterator<ScannerReport.Issue> res = underTest.readComponentIssues(COMPONENT_REF)) {
+      assertThat(res).containsExactly(ISSUE);
+    }
+    try (CloseableIterator<ScannerReport.Test> res = underTest.readTests(COMPONENT_REF)) {
+      assertThat(res).containsExactly(TEST_1, TEST_2);
+    }
+    try (CloseableIterator<ScannerReport.CoverageDetail> res = underTest.readCoverageDetails(COMPONENT_REF)) {
+      assertThat(res).containsExactly(COVERAGE_DETAIL_1);
+    }
+    try (CloseableIterator<String> res = underTest.readFileSource(COMPONENT_REF).get()) {
+      assertThat(res).containsExactly("1", "2", "3");
+    }
+    assertThat(underTest.readFileSource(COMPONENT_REF + 1)).isEmpty();
+  }
+
+  @Test
+  public void read_report_from_zip_file() throws IOException {
+    writer.writeComponent(COMPONENT);
+    writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    FileUtils.write(writer.getFileStructure().analysisLog(), "log1\nlog2");
+    writer.pack();
+    File zip = tempFolder.newFile();
+    writer.zip(zip);
+    underTest = new BatchReportReaderImpl(new ImmutableBatchReportDirectoryHolder(zip));
+
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    try (CloseableIterator<ScannerReport.Issue> res = underTest.readComponentIssues(COMPONENT_REF)) {
+      assertThat(res).containsExactly(ISSUE);
+    }
+    try (CloseableIterator<String> res = underTest.readFileSource(COMPONENT_REF).get()) {
+      assertThat(res).containsExactly("1", "2", "3");
+    }
+    try (CloseableIterator<String> res = underTest.readScannerLogs()) {
+      assertThat(res).containsExactly("log1", "log2");
+    }
+  }
 }
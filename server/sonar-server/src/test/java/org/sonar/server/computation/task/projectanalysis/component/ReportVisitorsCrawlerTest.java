@@ -19,7 +19,13 @@
  */
 package org.sonar.server.computation.task.projectanalysis.component;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -51,6 +57,7 @@ public class ReportVisitorsCrawlerTest {
   private final TypeAwareVisitor spyPreOrderTypeAwareVisitor = spy(new TestTypeAwareVisitor(CrawlerDepthLimit.FILE, PRE_ORDER));
   private final TypeAwareVisitor spyPostOrderTypeAwareVisitor = spy(new TestTypeAwareVisitor(CrawlerDepthLimit.FILE, POST_ORDER));
   private final TestPathAwareVisitor spyPathAwareVisitor = spy(new TestPathAwareVisitor(CrawlerDepthLimit.FILE, POST_ORDER));
+  private final TypeAwareVisitor spyThreadSafeVisitor = spy(new TestThreadSafeVisitor(CrawlerDepthLimit.FILE, POST_ORDER));
 
   @Test
   public void execute_each_visitor_on_each_level() throws Exception {
@@ -103,6 +110,57 @@ public class ReportVisitorsCrawlerTest {
     inOrder.verify(spyPostOrderTypeAwareVisitor).visitProject(COMPONENT_TREE);
   }
 
+  @Test
+  public void visit_files_of_directory_with_thread_safe_visitors_before_visiting_directory_in_parallel_mode() throws Exception {
+    Component file6 = component(FILE, 6);
+    Component directory = component(DIRECTORY, 4, FILE_5, file6);
+    Component tree = component(PROJECT, 1, component(MODULE, 2, directory));
+    InOrder inOrder = inOrder(spyThreadSafeVisitor, spyPathAwareVisitor);
+    VisitorsCrawler underTest = new VisitorsCrawler(Arrays.asList(spyThreadSafeVisitor, spyPathAwareVisitor), false, MoreExecutors.newDirectExecutorService());
+    underTest.visit(tree);
+
+    inOrder.verify(spyThreadSafeVisitor).visitFile(FILE_5);
+    inOrder.verify(spyThreadSafeVisitor).visitFile(file6);
+    inOrder.verify(spyPathAwareVisitor).visitFile(eq(FILE_5), any(PathAwareVisitor.Path.class));
+    inOrder.verify(spyPathAwareVisitor).visitFile(eq(file6), any(PathAwareVisitor.Path.class));
+    inOrder.verify(spyThreadSafeVisitor).visitDirectory(directory);
+    inOrder.verify(spyPathAwareVisitor).visitDirectory(eq(directory), any(PathAwareVisitor.Path.class));
+    inOrder.verify(spyThreadSafeVisitor).visitProject(tree);
+    inOrder.verify(spyPathAwareVisitor).visitProject(eq(tree), any(PathAwareVisitor.Path.class));
+  }
+
+  @Test
+  public void visit_files_with_thread_safe_visitors_on_threads_of_executor() throws Exception {
+    Component[] files = new Component[20];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = component(FILE, 100 + i);
+    }
+    Component directory = component(DIRECTORY, 4, files);
+    Component tree = component(PROJECT, 1, component(MODULE, 2, directory));
+    RecordingThreadSafeVisitor visitor = new RecordingThreadSafeVisitor();
+    ExecutorService executorService = Executors.newFixedThreadPool(4, new ThreadFactoryBuilder().setNameFormat("test-visitors-%d").build());
+    try {
+      new VisitorsCrawler(Arrays.asList(visitor), false, executorService).visit(tree);
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(visitor.threadNamesByFile.keySet()).containsOnly(files);
+    for (String threadName : visitor.threadNamesByFile.values()) {
+      assertThat(threadName).startsWith("test-visitors-");
+    }
+    assertThat(visitor.visitedFilesWhenDirectoryIsVisited).isEqualTo(files.length);
+    assertThat(visitor.visitedProjectThreadName).isEqualTo(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void fail_with_IAE_when_thread_safe_visitor_is_not_type_aware() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Only TypeAwareVisitor can implement ThreadSafeVisitor");
+
+    new VisitorsCrawler(Arrays.asList(new ThreadSafePathAwareVisitor()), false, MoreExecutors.newDirectExecutorService());
+  }
+
   @Test
   public void getCumulativeDurations_returns_an_empty_map_when_computation_is_disabled_in_constructor() {
     VisitorsCrawler underTest = new VisitorsCrawler(Arrays.asList(spyPreOrderTypeAwareVisitor, spyPostOrderTypeAwareVisitor), false);
@@ -149,6 +207,45 @@ public class ReportVisitorsCrawlerTest {
     }
   }
 
+  private static class TestThreadSafeVisitor extends TypeAwareVisitorAdapter implements ThreadSafeVisitor {
+
+    public TestThreadSafeVisitor(CrawlerDepthLimit maxDepth, ComponentVisitor.Order order) {
+      super(maxDepth, order);
+    }
+  }
+
+  private static class ThreadSafePathAwareVisitor extends TestPathAwareVisitor implements ThreadSafeVisitor {
+
+    public ThreadSafePathAwareVisitor() {
+      super(CrawlerDepthLimit.FILE, POST_ORDER);
+    }
+  }
+
+  private static class RecordingThreadSafeVisitor extends TypeAwareVisitorAdapter implements ThreadSafeVisitor {
+    private final Map<Component, String> threadNamesByFile = new ConcurrentHashMap<>();
+    private int visitedFilesWhenDirectoryIsVisited;
+    private String visitedProjectThreadName;
+
+    private RecordingThreadSafeVisitor() {
+      super(CrawlerDepthLimit.FILE, POST_ORDER);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      threadNamesByFile.put(file, Thread.currentThread().getName());
+    }
+
+    @Override
+    public void visitDirectory(Component directory) {
+      visitedFilesWhenDirectoryIsVisited = threadNamesByFile.size();
+    }
+
+    @Override
+    public void visitProject(Component project) {
+      visitedProjectThreadName = Thread.currentThread().getName();
+    }
+  }
+
   private static class TestPathAwareVisitor extends PathAwareVisitorAdapter<Integer> {
 
     public TestPathAwareVisitor(CrawlerDepthLimit maxDepth, ComponentVisitor.Order order) {
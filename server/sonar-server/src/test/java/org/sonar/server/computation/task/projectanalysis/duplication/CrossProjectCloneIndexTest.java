@@ -0,0 +1,187 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.JUnitTempFolder;
+import org.sonar.api.utils.internal.TestSystem2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.component.SnapshotTesting;
+import org.sonar.db.duplication.DuplicationDao;
+import org.sonar.db.duplication.DuplicationUnitDto;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+public class CrossProjectCloneIndexTest {
+
+  private static final String LANGUAGE = "xoo";
+  private static final String HASH = "a8998353e96320ec";
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public JUnitTempFolder tempFolder = new JUnitTempFolder();
+
+  private DbClient dbClient = dbTester.getDbClient();
+  private DbSession dbSession = dbTester.getSession();
+  private TestSystem2 system2 = new TestSystem2().setNow(1_000_000L);
+  private MapSettings settings = new MapSettings();
+
+  @Test
+  public void is_disabled_by_default() {
+    CrossProjectCloneIndex underTest = newCrossProjectCloneIndex();
+
+    assertThat(underTest.isEnabled()).isFalse();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Index of cross project duplications is disabled");
+    underTest.selectCandidates(LANGUAGE, singleton(HASH), null);
+  }
+
+  @Test
+  public void select_candidates_of_last_analyses() {
+    settings.setProperty("sonar.ce.crossProjectDuplications.index.maxAgeInMinutes", 10);
+    ComponentDto file1 = insertFileWithBlock("PROJECT_1", "FILE_1", LANGUAGE, HASH);
+    ComponentDto file2 = insertFileWithBlock("PROJECT_2", "FILE_2", LANGUAGE, HASH);
+    insertFileWithBlock("PROJECT_3", "FILE_3", "other_language", HASH);
+    insertFileWithBlock("PROJECT_4", "FILE_4", LANGUAGE, "b1234353e96320ff");
+    CrossProjectCloneIndex underTest = newCrossProjectCloneIndex();
+
+    List<Block> blocks = underTest.selectCandidates(LANGUAGE, asList(HASH, HASH, "unknown"), null);
+
+    assertThat(blocks).extracting(Block::getResourceId).containsOnly(file1.getDbKey(), file2.getDbKey());
+    Block block = blocks.get(0);
+    assertThat(block.getBlockHash()).isEqualTo(new ByteArray(HASH));
+    assertThat(block.getIndexInFile()).isEqualTo(0);
+    assertThat(block.getStartLine()).isEqualTo(40);
+    assertThat(block.getEndLine()).isEqualTo(55);
+
+    String analysisOfFile1 = dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(dbSession, file1.projectUuid()).get().getUuid();
+    assertThat(underTest.selectCandidates(LANGUAGE, singleton(HASH), analysisOfFile1))
+      .extracting(Block::getResourceId)
+      .containsOnly(file2.getDbKey());
+  }
+
+  @Test
+  public void index_is_rebuilt_when_too_old() {
+    settings.setProperty("sonar.ce.crossProjectDuplications.index.maxAgeInMinutes", 10);
+    insertFileWithBlock("PROJECT_1", "FILE_1", LANGUAGE, HASH);
+    CrossProjectCloneIndex underTest = newCrossProjectCloneIndex();
+    assertThat(underTest.selectCandidates(LANGUAGE, singleton(HASH), null)).hasSize(1);
+
+    insertFileWithBlock("PROJECT_2", "FILE_2", LANGUAGE, HASH);
+    system2.setNow(1_000_000L + 10 * 60_000L);
+    assertThat(underTest.selectCandidates(LANGUAGE, singleton(HASH), null)).hasSize(1);
+
+    system2.setNow(1_000_000L + 10 * 60_000L + 1);
+    assertThat(underTest.selectCandidates(LANGUAGE, singleton(HASH), null)).hasSize(2);
+
+    underTest.stop();
+  }
+
+  @Test
+  public void previous_index_is_used_while_rebuilt_by_another_worker() throws Exception {
+    settings.setProperty("sonar.ce.crossProjectDuplications.index.maxAgeInMinutes", 10);
+    insertFileWithBlock("PROJECT_1", "FILE_1", LANGUAGE, HASH);
+    DuplicationDao duplicationDao = spy(dbClient.duplicationDao());
+    DbClient spiedDbClient = spy(dbClient);
+    when(spiedDbClient.duplicationDao()).thenReturn(duplicationDao);
+    CrossProjectCloneIndex underTest = newCrossProjectCloneIndex(spiedDbClient);
+    assertThat(underTest.selectCandidates(LANGUAGE, singleton(HASH), null)).hasSize(1);
+
+    insertFileWithBlock("PROJECT_2", "FILE_2", LANGUAGE, HASH);
+    CountDownLatch rebuildStarted = new CountDownLatch(1);
+    CountDownLatch rebuildResumed = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      rebuildStarted.countDown();
+      rebuildResumed.await();
+      return invocation.callRealMethod();
+    }).when(duplicationDao).scrollLastAnalysesUnits(any(DbSession.class), eq(LANGUAGE), any(ResultHandler.class));
+    system2.setNow(1_000_000L + 10 * 60_000L + 1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<Block>> rebuild = executor.submit(() -> underTest.selectCandidates(LANGUAGE, singleton(HASH), null));
+      rebuildStarted.await();
+
+      assertThat(underTest.selectCandidates(LANGUAGE, singleton(HASH), null)).hasSize(1);
+
+      rebuildResumed.countDown();
+      assertThat(rebuild.get()).hasSize(2);
+      assertThat(underTest.selectCandidates(LANGUAGE, singleton(HASH), null)).hasSize(2);
+    } finally {
+      executor.shutdownNow();
+      underTest.stop();
+    }
+  }
+
+  private CrossProjectCloneIndex newCrossProjectCloneIndex() {
+    return newCrossProjectCloneIndex(dbClient);
+  }
+
+  private CrossProjectCloneIndex newCrossProjectCloneIndex(DbClient dbClient) {
+    return new CrossProjectCloneIndex(dbClient, tempFolder, system2, settings.asConfig());
+  }
+
+  private ComponentDto insertFileWithBlock(String projectKey, String fileKey, String language, String hash) {
+    ComponentDto project = ComponentTesting.newPrivateProjectDto(dbTester.organizations().insert()).setDbKey(projectKey);
+    dbClient.componentDao().insert(dbSession, project);
+    SnapshotDto analysis = SnapshotTesting.newAnalysis(project);
+    dbClient.snapshotDao().insert(dbSession, analysis);
+    ComponentDto file = ComponentTesting.newFileDto(project, null)
+      .setDbKey(fileKey)
+      .setLanguage(language);
+    dbClient.componentDao().insert(dbSession, file);
+    dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setHash(hash)
+      .setStartLine(40)
+      .setEndLine(55)
+      .setIndexInFile(0)
+      .setAnalysisUuid(analysis.getUuid())
+      .setComponentUuid(file.uuid()));
+    dbSession.commit();
+    return file;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
+
+public class BaseIssuesCacheTest {
+
+  private static final String PROJECT_UUID = "PROJECT_UUID";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).build());
+
+  private ComponentIssuesLoader issuesLoader = mock(ComponentIssuesLoader.class);
+  private BaseIssuesCache underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    underTest = new BaseIssuesCache(temp.newFile(), System2.INSTANCE, issuesLoader, treeRootHolder);
+  }
+
+  @Test
+  public void load_issues_of_whole_project_once() {
+    doAnswer(invocation -> {
+      Consumer<DefaultIssue> consumer = (Consumer<DefaultIssue>) invocation.getArguments()[2];
+      consumer.accept(newIssue("I1", "FILE_1"));
+      consumer.accept(newIssue("I2", "FILE_1"));
+      consumer.accept(newIssue("I3", "FILE_2"));
+      consumer.accept(newIssue("I4", PROJECT_UUID));
+      return null;
+    }).when(issuesLoader).loadForProjectUuid(eq(PROJECT_UUID), anyInt(), any(Consumer.class));
+
+    assertThat(underTest.loadForComponentUuid("FILE_1")).extracting(DefaultIssue::key).containsExactly("I1", "I2");
+    assertThat(underTest.loadForComponentUuid("FILE_2")).extracting(DefaultIssue::key).containsExactly("I3");
+    assertThat(underTest.loadForComponentUuid(PROJECT_UUID)).extracting(DefaultIssue::key).containsExactly("I4");
+    assertThat(underTest.loadForComponentUuid("FILE_WITHOUT_ISSUES")).isEmpty();
+
+    verify(issuesLoader).loadForProjectUuid(eq(PROJECT_UUID), eq(BaseIssuesCache.PAGE_SIZE), any(Consumer.class));
+    verifyNoMoreInteractions(issuesLoader);
+  }
+
+  @Test
+  public void issues_are_restored_from_disk() {
+    DefaultIssue issue = newIssue("I1", "FILE_1")
+      .setMessage("the message")
+      .setLine(10)
+      .setChecksum("checksum")
+      .setOnDisabledRule(true)
+      .setBeingClosed(true)
+      .setSelectedAt(1_500L);
+    doAnswer(invocation -> {
+      ((Consumer<DefaultIssue>) invocation.getArguments()[2]).accept(issue);
+      return null;
+    }).when(issuesLoader).loadForProjectUuid(eq(PROJECT_UUID), anyInt(), any(Consumer.class));
+
+    DefaultIssue loaded = underTest.loadForComponentUuid("FILE_1").get(0);
+
+    assertThat(loaded).isNotSameAs(issue);
+    assertThat(loaded.key()).isEqualTo("I1");
+    assertThat(loaded.ruleKey()).isEqualTo(issue.ruleKey());
+    assertThat(loaded.message()).isEqualTo("the message");
+    assertThat(loaded.line()).isEqualTo(10);
+    assertThat(loaded.checksum()).isEqualTo("checksum");
+    assertThat(loaded.isOnDisabledRule()).isTrue();
+    assertThat(loaded.isBeingClosed()).isTrue();
+    assertThat(loaded.selectedAt()).isEqualTo(1_500L);
+  }
+
+  private static DefaultIssue newIssue(String key, String componentUuid) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setType(RuleType.BUG)
+      .setComponentUuid(componentUuid)
+      .setComponentKey("key_" + componentUuid)
+      .setRuleKey(RuleKey.of("xoo", "S001"))
+      .setSeverity(Severity.BLOCKER)
+      .setStatus(Issue.STATUS_OPEN)
+      .setCreationDate(new Date(1_000_000_000L));
+  }
+}
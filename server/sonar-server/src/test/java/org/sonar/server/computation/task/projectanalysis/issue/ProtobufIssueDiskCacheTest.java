@@ -0,0 +1,208 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ProtobufIssueDiskCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void write_and_read_all_issues() throws Exception {
+    ProtobufIssueDiskCache underTest = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    underTest.newAppender()
+      .append(newIssue("ISSUE1", "FILE1"))
+      .append(newIssue("ISSUE2", "FILE2"))
+      .close();
+    underTest.newAppender()
+      .append(newIssue("ISSUE3", "FILE1"))
+      .close();
+
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      assertThat(newArrayList(traverse)).extracting(DefaultIssue::key).containsExactly("ISSUE1", "ISSUE2", "ISSUE3");
+    }
+  }
+
+  @Test
+  public void read_issues_of_a_single_component() throws Exception {
+    ProtobufIssueDiskCache underTest = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+    underTest.newAppender()
+      .append(newIssue("ISSUE1", "FILE1"))
+      .append(newIssue("ISSUE2", "FILE1"))
+      .append(newIssue("ISSUE3", "FILE2"))
+      .close();
+    underTest.newAppender()
+      .append(newIssue("ISSUE4", "FILE1"))
+      .close();
+
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse("FILE1")) {
+      assertThat(newArrayList(traverse)).extracting(DefaultIssue::key).containsExactly("ISSUE1", "ISSUE2", "ISSUE4");
+    }
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse("FILE2")) {
+      assertThat(newArrayList(traverse)).extracting(DefaultIssue::key).containsExactly("ISSUE3");
+    }
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse("UNKNOWN")) {
+      assertThat(traverse).isEmpty();
+    }
+  }
+
+  @Test
+  public void all_fields_are_kept() throws Exception {
+    ProtobufIssueDiskCache underTest = new ProtobufIssueDiskCache(temp.newFile(), System2.INSTANCE);
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(5).build())
+      .build();
+    DefaultIssue issue = newIssue("ISSUE1", "FILE1")
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("project")
+      .setLanguage("xoo")
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(12)
+      .setGap(2.5)
+      .setEffort(Duration.create(15L))
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setAssignee("john")
+      .setChecksum("abc")
+      .setAttribute("jira", "SONAR-1")
+      .setAuthorLogin("jane")
+      .setTags(newArrayList("bug", "cwe"))
+      .setLocations(locations)
+      .setUpdateDate(new Date(2_000_000_000L))
+      .setCloseDate(new Date(3_000_000_000L))
+      .setNew(false)
+      .setCopied(true)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_000L);
+    issue.addComment(new DefaultIssueComment().setKey("COMMENT1").setIssueKey("ISSUE1").setUserLogin("john").setMarkdownText("text")
+      .setCreatedAt(new Date(1_000_000_000L)).setUpdatedAt(new Date(1_000_000_000L)).setNew(true));
+    issue.addChange(new FieldDiffs().setUserLogin("jane").setCreationDate(new Date(1_000_000_000L)).setDiff("severity", "MINOR", "MAJOR"));
+    issue.setFieldChange(IssueChangeContext.createUser(new Date(1_000_000_000L), "john"), "assignee", null, "john");
+
+    underTest.newAppender().append(issue).close();
+
+    DefaultIssue read;
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      read = traverse.next();
+    }
+    assertThat(read.key()).isEqualTo("ISSUE1");
+    assertThat(read.type()).isEqualTo(RuleType.BUG);
+    assertThat(read.componentUuid()).isEqualTo("FILE1");
+    assertThat(read.componentKey()).isEqualTo("file");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE1");
+    assertThat(read.moduleUuidPath()).isEqualTo(".MODULE1.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT1");
+    assertThat(read.projectKey()).isEqualTo("project");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("xoo", "S001"));
+    assertThat(read.language()).isEqualTo("xoo");
+    assertThat(read.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("the message");
+    assertThat(read.line()).isEqualTo(12);
+    assertThat(read.gap()).isEqualTo(2.5);
+    assertThat(read.effort()).isEqualTo(Duration.create(15L));
+    assertThat(read.status()).isEqualTo(Issue.STATUS_OPEN);
+    assertThat(read.resolution()).isEqualTo(Issue.RESOLUTION_FIXED);
+    assertThat(read.assignee()).isEqualTo("john");
+    assertThat(read.checksum()).isEqualTo("abc");
+    assertThat(read.attributes()).containsOnly(entry("jira", "SONAR-1"));
+    assertThat(read.authorLogin()).isEqualTo("jane");
+    assertThat(read.tags()).containsExactly("bug", "cwe");
+    assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(locations);
+    assertThat(read.creationDate()).isEqualTo(issue.creationDate());
+    assertThat(read.updateDate()).isEqualTo(issue.updateDate());
+    assertThat(read.closeDate()).isEqualTo(issue.closeDate());
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isCopied()).isTrue();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.selectedAt()).isEqualTo(1_000L);
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT1");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE1");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("text");
+    assertThat(comment.createdAt()).isEqualTo(new Date(1_000_000_000L));
+    assertThat(comment.isNew()).isTrue();
+
+    assertThat(read.changes()).hasSize(issue.changes().size());
+    assertThat(read.changes().get(0).toString()).isEqualTo("severity=MINOR|MAJOR");
+    assertThat(read.currentChange().userLogin()).isEqualTo("john");
+    assertThat(read.currentChange().toString()).isEqualTo("assignee=john");
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to write into file");
+
+    new ProtobufIssueDiskCache(temp.newFolder(), System2.INSTANCE);
+  }
+
+  private static DefaultIssue newIssue(String key, String componentUuid) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setType(RuleType.BUG)
+      .setComponentUuid(componentUuid)
+      .setComponentKey("file")
+      .setRuleKey(RuleKey.of("xoo", "S001"))
+      .setSeverity(Severity.BLOCKER)
+      .setStatus(Issue.STATUS_OPEN)
+      .setCreationDate(new Date(1_000_000_000L));
+  }
+}
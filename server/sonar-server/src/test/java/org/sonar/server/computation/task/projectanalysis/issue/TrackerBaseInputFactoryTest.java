@@ -33,6 +33,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class TrackerBaseInputFactoryTest {
@@ -95,4 +96,15 @@ public class TrackerBaseInputFactoryTest {
     verify(issuesLoader).loadForComponentUuid(originalUuid);
     verify(issuesLoader, times(0)).loadForComponentUuid(FILE_UUID);
   }
+
+  @Test
+  public void create_returns_Input_which_retrieves_issues_from_base_issues_cache_when_available() {
+    BaseIssuesCache baseIssuesCache = mock(BaseIssuesCache.class);
+    underTest = new TrackerBaseInputFactory(issuesLoader, dbClient, movedFilesRepository, baseIssuesCache);
+
+    underTest.create(FILE).getIssues();
+
+    verify(baseIssuesCache).loadForComponentUuid(FILE_UUID);
+    verifyZeroInteractions(issuesLoader);
+  }
 }
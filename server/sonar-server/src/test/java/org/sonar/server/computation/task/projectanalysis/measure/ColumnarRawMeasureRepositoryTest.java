@@ -0,0 +1,148 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.RawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ColumnarRawMeasureRepositoryTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey("file").build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2000).setKey("other").build();
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+
+  private final Metric intMetric = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private final Metric longMetric = new MetricImpl(2, "long", "long", Metric.MetricType.WORK_DUR);
+  private final Metric doubleMetric = new MetricImpl(300, "double", "double", Metric.MetricType.PERCENT, 1, null, false);
+  private final Metric boolMetric = new MetricImpl(4, "bool", "bool", Metric.MetricType.BOOL);
+  private final Metric stringMetric = new MetricImpl(5, "string", "string", Metric.MetricType.STRING);
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository();
+
+  @Test
+  public void store_numeric_measures() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(12));
+    underTest.add(FILE_COMPONENT, longMetric, newMeasureBuilder().create(123_456_789_012L));
+    underTest.add(FILE_COMPONENT, doubleMetric, newMeasureBuilder().setVariation(1.5).create(65.37, 1));
+    underTest.add(FILE_COMPONENT, boolMetric, newMeasureBuilder().create(true));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(12);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().hasVariation()).isFalse();
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, longMetric).get().getLongValue()).isEqualTo(123_456_789_012L);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, doubleMetric).get().getDoubleValue()).isEqualTo(65.4);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, doubleMetric).get().getVariation()).isEqualTo(1.5);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, boolMetric).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, intMetric)).isAbsent();
+    assertThat(underTest.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void store_no_value_measure() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().setVariation(2).createNoValue());
+
+    Measure measure = underTest.getRawMeasure(FILE_COMPONENT, intMetric).get();
+    assertThat(measure.getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+    assertThat(measure.getVariation()).isEqualTo(2);
+  }
+
+  @Test
+  public void store_other_measures_as_objects() {
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    Measure intMeasureWithData = newMeasureBuilder().create(3, "data");
+    Measure developerMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(5);
+    underTest.add(FILE_COMPONENT, stringMetric, stringMeasure);
+    underTest.add(FILE_COMPONENT, intMetric, intMeasureWithData);
+    underTest.add(FILE_COMPONENT, intMetric, developerMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, stringMetric).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get()).isSameAs(intMeasureWithData);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, intMetric)).containsOnly(intMeasureWithData, developerMeasure);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).keySet()).containsOnly("string", "int");
+    assertThat(underTest.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void update_replaces_measure_stored_as_object_by_numeric_measure() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(3, "data"));
+    underTest.update(FILE_COMPONENT, intMetric, newMeasureBuilder().create(4));
+
+    Measure measure = underTest.getRawMeasure(FILE_COMPONENT, intMetric).get();
+    assertThat(measure.getIntValue()).isEqualTo(4);
+    assertThat(measure.getData()).isNull();
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void add_does_not_override_existing_measure_with_DO_NOT_OVERRIDE_policy() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(3));
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(4), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void add_throws_UOE_if_measure_already_exists() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(3));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be set only once for a specific Component (key=file), Metric (key=int). Use update method");
+
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(4));
+  }
+
+  @Test
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be updated only if one already exists for a specific Component (key=file), Metric (key=int). Use add method");
+
+    underTest.update(FILE_COMPONENT, intMetric, newMeasureBuilder().create(4));
+  }
+
+  @Test
+  public void add_throws_IAE_if_value_type_is_not_consistent_with_metric() {
+    expectedException.expect(IllegalArgumentException.class);
+
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create("foo"));
+  }
+
+  @Test
+  public void estimateMemoryFootprint_counts_allocated_columns() {
+    assertThat(underTest.estimateMemoryFootprint()).isZero();
+
+    underTest.add(OTHER_COMPONENT, intMetric, newMeasureBuilder().create(3));
+
+    // one byte of flags and 8 bytes of value per slot, up to the ref of the component
+    assertThat(underTest.estimateMemoryFootprint()).isEqualTo(2001L * 9);
+  }
+}
@@ -238,8 +238,12 @@ public class MeasureRepositoryRule extends ExternalResource implements MeasureRe
     return new HasComponentRefPredicate(component);
   }
 
+  /**
+   * Synchronized, as measures of files can be added concurrently by
+   * {@link org.sonar.server.computation.task.projectanalysis.component.ThreadSafeVisitor}s.
+   */
   @Override
-  public void add(Component component, Metric metric, Measure measure) {
+  public synchronized void add(Component component, Metric metric, Measure measure) {
     String ref = getRef(component);
     InternalKey internalKey = new InternalKey(ref, metric.getKey(), measure.getDeveloper());
     if (rawMeasures.containsKey(internalKey)) {
@@ -251,7 +255,7 @@ public class MeasureRepositoryRule extends ExternalResource implements MeasureRe
   }
 
   @Override
-  public void update(Component component, Metric metric, Measure measure) {
+  public synchronized void update(Component component, Metric metric, Measure measure) {
     String componentRef = getRef(component);
     InternalKey internalKey = new InternalKey(componentRef, metric.getKey(), measure.getDeveloper());
     if (!rawMeasures.containsKey(internalKey)) {
@@ -0,0 +1,119 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import com.google.common.base.Optional;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
+
+public class FileSourceInputsHashComputerTest {
+
+  private static final int FILE_REF = 1;
+  private static final Component FILE = builder(Component.Type.FILE, FILE_REF).setUuid("FILE_UUID").setKey("FILE_KEY")
+    .setFileAttributes(new FileAttributes(false, null, 3)).build();
+
+  @Rule
+  public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public DuplicationRepositoryRule duplicationRepository = DuplicationRepositoryRule.create();
+
+  private FileSourceInputsHashComputer underTest = new FileSourceInputsHashComputer(reportReader, duplicationRepository);
+
+  @Test
+  public void hash_is_the_same_for_the_same_inputs() {
+    String hash = underTest.compute(FILE, Optional.absent());
+
+    assertThat(hash).hasSize(32);
+    assertThat(underTest.compute(FILE, Optional.absent())).isEqualTo(hash);
+  }
+
+  @Test
+  public void hash_changes_when_number_of_lines_changes() {
+    Component otherFile = builder(Component.Type.FILE, FILE_REF).setUuid("FILE_UUID").setKey("FILE_KEY")
+      .setFileAttributes(new FileAttributes(false, null, 4)).build();
+
+    assertThat(underTest.compute(otherFile, Optional.absent())).isNotEqualTo(underTest.compute(FILE, Optional.absent()));
+  }
+
+  @Test
+  public void hash_changes_when_coverage_changes() {
+    String hash = underTest.compute(FILE, Optional.absent());
+
+    reportReader.putCoverage(FILE_REF, Collections.singletonList(ScannerReport.LineCoverage.newBuilder().setLine(1).setHits(true).build()));
+
+    assertThat(underTest.compute(FILE, Optional.absent())).isNotEqualTo(hash);
+  }
+
+  @Test
+  public void hash_changes_when_scm_changes() {
+    String hash = underTest.compute(FILE, Optional.absent());
+    String hashWithScm = underTest.compute(FILE, scmInfo("john"));
+
+    assertThat(hashWithScm).isNotEqualTo(hash);
+    assertThat(underTest.compute(FILE, scmInfo("john"))).isEqualTo(hashWithScm);
+    assertThat(underTest.compute(FILE, scmInfo("jane"))).isNotEqualTo(hashWithScm);
+  }
+
+  @Test
+  public void hash_changes_when_duplications_of_the_file_change() {
+    String hash = underTest.compute(FILE, Optional.absent());
+
+    duplicationRepository.add(FILE, duplication(1, 2, new InnerDuplicate(new TextBlock(3, 3))));
+
+    assertThat(underTest.compute(FILE, Optional.absent())).isNotEqualTo(hash);
+  }
+
+  @Test
+  public void hash_ignores_text_blocks_of_other_files() {
+    Component otherFile = builder(Component.Type.FILE, 2).setUuid("OTHER_UUID").setKey("OTHER_KEY")
+      .setFileAttributes(new FileAttributes(false, null, 3)).build();
+    duplicationRepository.add(FILE, duplication(1, 2, new CrossProjectDuplicate("file-a", new TextBlock(3, 3))));
+    duplicationRepository.add(otherFile, duplication(1, 2, new CrossProjectDuplicate("file-b", new TextBlock(5, 8))));
+
+    assertThat(underTest.compute(otherFile, Optional.absent())).isEqualTo(underTest.compute(FILE, Optional.absent()));
+  }
+
+  private static Duplication duplication(int originalStart, int originalEnd, Duplicate... duplicates) {
+    return new Duplication(new TextBlock(originalStart, originalEnd), Arrays.asList(duplicates));
+  }
+
+  private static Optional<ScmInfo> scmInfo(String author) {
+    Changeset changeset = Changeset.newChangesetBuilder().setAuthor(author).setDate(123456789L).setRevision("rev-1").build();
+    return Optional.of(new ScmInfoImpl(Arrays.asList(changeset, changeset, changeset)));
+  }
+}
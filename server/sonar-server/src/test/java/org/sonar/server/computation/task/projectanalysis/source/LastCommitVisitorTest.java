@@ -21,6 +21,8 @@ package org.sonar.server.computation.task.projectanalysis.source;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.measures.CoreMetrics;
@@ -80,27 +82,10 @@ public class LastCommitVisitorTest {
     // FILE_3 is the most recent file in the project
     final long FILE_3_DATE = 1_300_000_000_000L;
 
-    // simulate the output of visitFile()
-    LastCommitVisitor visitor = new LastCommitVisitor(metricRepository, measureRepository, scmInfoRepository) {
-      @Override
-      public void visitFile(Component file, Path<LastCommit> path) {
-        long fileDate;
-        switch (file.getReportAttributes().getRef()) {
-          case FILE_1_REF:
-            fileDate = FILE_1_DATE;
-            break;
-          case FILE_2_REF:
-            fileDate = FILE_2_DATE;
-            break;
-          case FILE_3_REF:
-            fileDate = FILE_3_DATE;
-            break;
-          default:
-            throw new IllegalArgumentException();
-        }
-        path.parent().addDate(fileDate);
-      }
-    };
+    scmInfoRepository.setScmInfo(FILE_1_REF, newChangeset(FILE_1_DATE));
+    scmInfoRepository.setScmInfo(FILE_2_REF, newChangeset(FILE_2_DATE));
+    scmInfoRepository.setScmInfo(FILE_3_REF, newChangeset(FILE_3_DATE));
+    LastCommitVisitor visitor = new LastCommitVisitor(metricRepository, measureRepository, scmInfoRepository);
 
     // project with 1 module, 2 directories and 3 files
     ReportComponent project = ReportComponent.builder(PROJECT, PROJECT_REF)
@@ -133,6 +118,46 @@ public class LastCommitVisitorTest {
     assertDate(PROJECT_REF, FILE_3_DATE);
   }
 
+  @Test
+  public void aggregate_date_of_last_commit_when_files_are_visited_concurrently() throws Exception {
+    int directories = 20;
+    int filesPerDirectory = 50;
+    ReportComponent.Builder module = ReportComponent.builder(MODULE, MODULE_REF);
+    for (int d = 0; d < directories; d++) {
+      int dirRef = 10 + d;
+      ReportComponent.Builder directory = ReportComponent.builder(DIRECTORY, dirRef);
+      for (int f = 0; f < filesPerDirectory; f++) {
+        int fileRef = 10_000 + d * filesPerDirectory + f;
+        scmInfoRepository.setScmInfo(fileRef, newChangeset(1_000_000_000_000L + fileRef));
+        directory.addChildren(createFileComponent(fileRef));
+      }
+      module.addChildren(directory.build());
+    }
+    ReportComponent project = ReportComponent.builder(PROJECT, PROJECT_REF).addChildren(module.build()).build();
+    treeRootHolder.setRoot(project);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      VisitorsCrawler underTest = new VisitorsCrawler(
+        Lists.<ComponentVisitor>newArrayList(new LastCommitVisitor(metricRepository, measureRepository, scmInfoRepository)), false, executorService);
+      underTest.visit(project);
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    for (int d = 0; d < directories; d++) {
+      int lastFileRef = 10_000 + d * filesPerDirectory + filesPerDirectory - 1;
+      assertDate(10 + d, 1_000_000_000_000L + lastFileRef);
+      for (int f = 0; f < filesPerDirectory; f++) {
+        int fileRef = 10_000 + d * filesPerDirectory + f;
+        assertDate(fileRef, 1_000_000_000_000L + fileRef);
+      }
+    }
+    long mostRecentDate = 1_000_000_000_000L + 10_000 + directories * filesPerDirectory - 1;
+    assertDate(MODULE_REF, mostRecentDate);
+    assertDate(PROJECT_REF, mostRecentDate);
+  }
+
   @Test
   public void aggregate_date_of_last_commit_to_views() {
     final int VIEW_REF = 1;
@@ -231,6 +256,14 @@ public class LastCommitVisitorTest {
     assertThat(measure.get().getLongValue()).isEqualTo(expectedDate);
   }
 
+  private static Changeset newChangeset(long date) {
+    return Changeset.newChangesetBuilder()
+      .setAuthor("john")
+      .setDate(date)
+      .setRevision("rev-" + date)
+      .build();
+  }
+
   private ReportComponent createFileComponent(int fileRef) {
     return ReportComponent.builder(FILE, fileRef).setFileAttributes(new FileAttributes(false, "js", 1)).build();
   }
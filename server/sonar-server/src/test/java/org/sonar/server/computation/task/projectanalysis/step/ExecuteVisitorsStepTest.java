@@ -23,6 +23,7 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.ChangeLogLevel;
@@ -36,10 +37,15 @@ import org.sonar.server.computation.task.projectanalysis.measure.MeasureReposito
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.source.LastCommitVisitor;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.api.measures.CoreMetrics.LAST_COMMIT_DATE;
+import static org.sonar.api.measures.CoreMetrics.LAST_COMMIT_DATE_KEY;
 import static org.sonar.api.measures.CoreMetrics.NCLOC;
 import static org.sonar.api.measures.CoreMetrics.NCLOC_KEY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
@@ -64,12 +70,17 @@ public class ExecuteVisitorsStepTest {
   @Rule
   public MetricRepositoryRule metricRepository = new MetricRepositoryRule()
     .add(1, NCLOC)
-    .add(new MetricImpl(2, TEST_METRIC_KEY, "name", Metric.MetricType.INT));
+    .add(new MetricImpl(2, TEST_METRIC_KEY, "name", Metric.MetricType.INT))
+    .add(3, LAST_COMMIT_DATE);
   @Rule
   public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
   @Rule
+  public ScmInfoRepositoryRule scmInfoRepository = new ScmInfoRepositoryRule();
+  @Rule
   public LogTester logTester = new LogTester();
 
+  private MapSettings settings = new MapSettings();
+
   @Before
   public void setUp() throws Exception {
     treeRootHolder.setRoot(
@@ -88,7 +99,7 @@ public class ExecuteVisitorsStepTest {
 
   @Test
   public void execute_with_type_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestTypeAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestTypeAwareVisitor()), settings.asConfig());
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(2));
@@ -107,7 +118,7 @@ public class ExecuteVisitorsStepTest {
 
   @Test
   public void execute_with_path_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestPathAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestPathAwareVisitor()), settings.asConfig());
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(1));
@@ -121,6 +132,26 @@ public class ExecuteVisitorsStepTest {
     assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(2);
   }
 
+  @Test
+  public void execute_thread_safe_visitor_on_several_threads_when_enabled() throws Exception {
+    settings.setProperty(ExecuteVisitorsStep.VISITOR_THREADS_PROPERTY, 4);
+    scmInfoRepository.setScmInfo(FILE_1_REF, newChangeset(1_500_000_000_000L));
+    scmInfoRepository.setScmInfo(FILE_2_REF, newChangeset(1_600_000_000_000L));
+    measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
+    measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(1));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder,
+      asList(new TestPathAwareVisitor(), new LastCommitVisitor(metricRepository, measureRepository, scmInfoRepository)),
+      settings.asConfig());
+
+    underStep.execute();
+
+    assertThat(measureRepository.getAddedRawMeasure(FILE_1_REF, LAST_COMMIT_DATE_KEY).get().getLongValue()).isEqualTo(1_500_000_000_000L);
+    assertThat(measureRepository.getAddedRawMeasure(FILE_2_REF, LAST_COMMIT_DATE_KEY).get().getLongValue()).isEqualTo(1_600_000_000_000L);
+    assertThat(measureRepository.getAddedRawMeasure(DIRECTORY_REF, LAST_COMMIT_DATE_KEY).get().getLongValue()).isEqualTo(1_600_000_000_000L);
+    assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, LAST_COMMIT_DATE_KEY).get().getLongValue()).isEqualTo(1_600_000_000_000L);
+    assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(2);
+  }
+
   @Test
   public void execute_logs_at_info_level_all_execution_duration_of_all_visitors() {
     try (ChangeLogLevel executor = new ChangeLogLevel(ExecuteVisitorsStep.class, LoggerLevel.DEBUG);
@@ -129,7 +160,8 @@ public class ExecuteVisitorsStepTest {
       ChangeLogLevel step3 = new ChangeLogLevel(VisitorB.class, LoggerLevel.DEBUG)) {
       ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(
         treeRootHolder,
-        asList(new VisitorA(), new VisitorB(), new VisitorC()));
+        asList(new VisitorA(), new VisitorB(), new VisitorC()),
+        settings.asConfig());
 
       underStep.execute();
 
@@ -143,6 +175,10 @@ public class ExecuteVisitorsStepTest {
     }
   }
 
+  private static Changeset newChangeset(long date) {
+    return Changeset.newChangesetBuilder().setAuthor("john").setDate(date).setRevision("rev-" + date).build();
+  }
+
   private static class VisitorA extends TypeAwareVisitorAdapter {
     public VisitorA() {
       super(CrawlerDepthLimit.PROJECT, Order.PRE_ORDER);
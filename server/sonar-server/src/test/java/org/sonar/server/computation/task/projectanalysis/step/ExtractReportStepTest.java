@@ -26,6 +26,7 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.ZipUtils;
@@ -59,7 +60,9 @@ public class ExtractReportStepTest {
   private MutableBatchReportDirectoryHolder reportDirectoryHolder = new BatchReportDirectoryHolderImpl();
   private CeTask ceTask = new CeTask.Builder().setOrganizationUuid("org1").setType(CeTaskTypes.REPORT).setUuid(TASK_UUID).build();
 
-  private ExtractReportStep underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder);
+  private MapSettings settings = new MapSettings();
+
+  private ExtractReportStep underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder, settings.asConfig());
 
   @Test
   public void fail_if_report_zip_does_not_exist() throws Exception {
@@ -71,12 +74,7 @@ public class ExtractReportStepTest {
 
   @Test
   public void unzip_report() throws Exception {
-    File reportFile = generateReport();
-    try (InputStream input = FileUtils.openInputStream(reportFile)) {
-      dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
-    }
-    dbTester.getSession().commit();
-    dbTester.getSession().close();
+    insertReport(generateReport());
 
     underTest.execute();
 
@@ -87,6 +85,28 @@ public class ExtractReportStepTest {
     assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
   }
 
+  @Test
+  public void copy_report_zip_without_extracting_it_when_reading_from_zip_is_enabled() throws Exception {
+    settings.setProperty(ExtractReportStep.READ_FROM_ZIP_PROPERTY, true);
+    underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder, settings.asConfig());
+    File reportFile = generateReport();
+    insertReport(reportFile);
+
+    underTest.execute();
+
+    File zip = reportDirectoryHolder.getDirectory();
+    assertThat(zip).isFile();
+    assertThat(FileUtils.contentEquals(zip, reportFile)).isTrue();
+  }
+
+  private void insertReport(File reportFile) throws IOException {
+    try (InputStream input = FileUtils.openInputStream(reportFile)) {
+      dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
+    }
+    dbTester.getSession().commit();
+    dbTester.getSession().close();
+  }
+
   private File generateReport() throws IOException {
     File zipDir = tempFolder.newDir();
     File metadataFile = new File(zipDir, "metadata.pb");
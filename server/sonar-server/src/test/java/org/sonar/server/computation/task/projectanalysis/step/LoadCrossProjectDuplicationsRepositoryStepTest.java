@@ -49,6 +49,7 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectCloneIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.step.ComputationStep;
@@ -171,6 +172,45 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
           .build()));
   }
 
+  @Test
+  public void call_compute_cpd_with_candidates_from_cross_project_clone_index() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    String hash = "a8998353e96320ec";
+    Block duplicatedBlock = new Block.Builder()
+      .setResourceId("OTHER_FILE_KEY")
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(0)
+      .setLines(40, 55)
+      .build();
+    CrossProjectCloneIndex crossProjectCloneIndex = mock(CrossProjectCloneIndex.class);
+    when(crossProjectCloneIndex.isEnabled()).thenReturn(true);
+    when(crossProjectCloneIndex.selectCandidates(XOO_LANGUAGE, asList(hash), baseProjectAnalysis.getUuid())).thenReturn(asList(duplicatedBlock));
+
+    ScannerReport.CpdTextBlock originBlock = ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build();
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(originBlock));
+
+    new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
+      integrateCrossProjectDuplications, dbClient, crossProjectCloneIndex).execute();
+
+    verify(integrateCrossProjectDuplications).computeCpd(CURRENT_FILE,
+      Arrays.asList(
+        new Block.Builder()
+          .setResourceId(CURRENT_FILE_KEY)
+          .setBlockHash(new ByteArray(hash))
+          .setIndexInFile(0)
+          .setLines(originBlock.getStartLine(), originBlock.getEndLine())
+          .setUnit(originBlock.getStartTokenIndex(), originBlock.getEndTokenIndex())
+          .build()),
+      Arrays.asList(duplicatedBlock));
+  }
+
   @Test
   public void call_compute_cpd_on_many_duplication() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
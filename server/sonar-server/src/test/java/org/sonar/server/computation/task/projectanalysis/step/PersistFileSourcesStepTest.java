@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -84,6 +85,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession session = dbTester.getSession();
+  private MapSettings settings = new MapSettings();
 
   private PersistFileSourcesStep underTest;
 
@@ -91,7 +93,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   public void setup() {
     when(system2.now()).thenReturn(NOW);
     underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository,
-      duplicationRepository);
+      duplicationRepository, settings.asConfig());
   }
 
   @Override
@@ -112,6 +114,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getBinaryData()).isNotEmpty();
     assertThat(fileSourceDto.getDataHash()).isNotEmpty();
     assertThat(fileSourceDto.getLineHashes()).isNotEmpty();
+    assertThat(fileSourceDto.getInputsHash()).isNotEmpty();
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(NOW);
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
 
@@ -123,6 +126,37 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_of_many_files_with_multiple_threads() {
+    settings.setProperty("sonar.ce.persistFileSources.threads", 3);
+    settings.setProperty("sonar.ce.persistFileSources.queueDepth", 2);
+    int nbFiles = 10;
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    ScannerReport.Component.Builder reportModule = ScannerReport.Component.newBuilder().setRef(2).setType(ComponentType.MODULE);
+    for (int i = 0; i < nbFiles; i++) {
+      int ref = 10 + i;
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("MODULE_KEY:src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, 1)).build());
+      reportModule.addChildRef(ref);
+      reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(ref).setType(ComponentType.FILE).setLines(1).build());
+      fileSourceRepository.addLine(ref, "line of file " + i);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+    reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(1).setType(ComponentType.PROJECT).addChildRef(2).build());
+    reportReader.putComponent(reportModule.build());
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository,
+      duplicationRepository, settings.asConfig());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(nbFiles);
+    for (int i = 0; i < nbFiles; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      assertThat(fileSourceDto.getProjectUuid()).isEqualTo(PROJECT_UUID);
+      assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("line of file " + i);
+    }
+  }
+
   @Test
   public void persist_source_hashes() {
     initBasicReport(2);
@@ -316,6 +350,44 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(past);
   }
 
+  @Test
+  public void not_compute_sources_when_source_and_inputs_did_not_change() {
+    initBasicReport(1);
+    underTest.execute();
+    // alter stored data to check that it's not computed again
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    dbClient.fileSourceDao().update(session, fileSourceDto.setSourceData(DbFileSources.Data.newBuilder()
+      .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("altered").build())
+      .build()));
+    session.commit();
+    when(system2.now()).thenReturn(NOW + 1);
+
+    underTest.execute();
+
+    fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("altered");
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  public void compute_sources_when_inputs_changed() {
+    initBasicReport(1);
+    underTest.execute();
+    String inputsHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID).getInputsHash();
+    when(system2.now()).thenReturn(NOW + 1);
+
+    reportReader.putCoverage(FILE1_REF, newArrayList(ScannerReport.LineCoverage.newBuilder()
+      .setLine(1)
+      .setHits(true)
+      .build()));
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getInputsHash()).isNotEqualTo(inputsHash);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getLineHits()).isEqualTo(1);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1);
+  }
+
   @Test
   public void update_sources_when_source_updated() {
     // Existing sources
@@ -248,7 +248,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
         .setResolution(null)
         .setCreatedAt(NOW - 1_000_000_000L)
         .setUpdatedAt(NOW - 1_000_000_000L));
-    DiskCache<DefaultIssue>.DiskAppender issueCacheAppender = issueCache.newAppender();
+    DiskCache.CacheAppender<DefaultIssue> issueCacheAppender = issueCache.newAppender();
 
     issueCacheAppender.append(
       issue.toDefaultIssue()
@@ -275,7 +275,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
         .setResolution(null)
         .setCreatedAt(NOW - 1_000_000_000L)
         .setUpdatedAt(NOW - 1_000_000_000L));
-    DiskCache<DefaultIssue>.DiskAppender issueCacheAppender = issueCache.newAppender();
+    DiskCache.CacheAppender<DefaultIssue> issueCacheAppender = issueCache.newAppender();
 
     issueCacheAppender.append(
       issue.toDefaultIssue()
@@ -311,7 +311,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
         .setResolution(null)
         .setCreatedAt(NOW - 1_000_000_000L)
         .setUpdatedAt(NOW - 1_000_000_000L));
-    DiskCache<DefaultIssue>.DiskAppender issueCacheAppender = issueCache.newAppender();
+    DiskCache.CacheAppender<DefaultIssue> issueCacheAppender = issueCache.newAppender();
 
     issueCacheAppender.append(
       issue.toDefaultIssue()
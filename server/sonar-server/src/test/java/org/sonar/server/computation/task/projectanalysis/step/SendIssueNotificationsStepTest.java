@@ -164,7 +164,7 @@ public class SendIssueNotificationsStepTest extends BaseStepTest {
           .setCreationDate(new Date(ANALYSE_DATE - FIVE_MINUTES_IN_MS))))
       .collect(Collectors.toList());
     Collections.shuffle(issues);
-    DiskCache<DefaultIssue>.DiskAppender issueCache = this.issueCache.newAppender();
+    DiskCache.CacheAppender<DefaultIssue> issueCache = this.issueCache.newAppender();
     issues.forEach(issueCache::append);
     when(notificationService.hasProjectSubscribersForTypes(PROJECT.getUuid(), SendIssueNotificationsStep.NOTIF_TYPES)).thenReturn(true);
 
@@ -263,7 +263,7 @@ public class SendIssueNotificationsStepTest extends BaseStepTest {
           .setCreationDate(new Date(ANALYSE_DATE))))
       .collect(Collectors.toList());
     Collections.shuffle(issues);
-    DiskCache<DefaultIssue>.DiskAppender issueCache = this.issueCache.newAppender();
+    DiskCache.CacheAppender<DefaultIssue> issueCache = this.issueCache.newAppender();
     issues.forEach(issueCache::append);
     when(notificationService.hasProjectSubscribersForTypes(PROJECT.getUuid(), SendIssueNotificationsStep.NOTIF_TYPES)).thenReturn(true);
     MyNewIssuesNotification myNewIssuesNotificationMock2 = createMyNewIssuesNotificationMock();
@@ -315,7 +315,7 @@ public class SendIssueNotificationsStepTest extends BaseStepTest {
           .setCreationDate(new Date(ANALYSE_DATE - FIVE_MINUTES_IN_MS))))
       .collect(Collectors.toList());
     Collections.shuffle(issues);
-    DiskCache<DefaultIssue>.DiskAppender issueCache = this.issueCache.newAppender();
+    DiskCache.CacheAppender<DefaultIssue> issueCache = this.issueCache.newAppender();
     issues.forEach(issueCache::append);
     when(notificationService.hasProjectSubscribersForTypes(PROJECT.getUuid(), SendIssueNotificationsStep.NOTIF_TYPES)).thenReturn(true);
 
@@ -49,8 +49,20 @@ public class BulkIndexerConcurrentRequestCalculationTest {
       .isEqualTo(18);
   }
 
+  @Test
+  public void should_parallelize_more_if_large_indexing_on_index_with_few_shards() {
+    assertConcurrentRequests(BulkIndexer.Size.LARGE, cores(4), 1)
+      .isEqualTo(3);
+    assertConcurrentRequests(BulkIndexer.Size.LARGE, cores(96), 2)
+      .isEqualTo(47);
+  }
+
   private AbstractIntegerAssert<?> assertConcurrentRequests(BulkIndexer.Size size, BulkIndexer.Runtime2 runtime2) {
-    return assertThat(size.createHandler(runtime2).getConcurrentRequests());
+    return assertConcurrentRequests(size, runtime2, 5);
+  }
+
+  private AbstractIntegerAssert<?> assertConcurrentRequests(BulkIndexer.Size size, BulkIndexer.Runtime2 runtime2, int numberOfShards) {
+    return assertThat(size.createHandler(runtime2).getConcurrentRequests(() -> numberOfShards));
   }
 
   private static BulkIndexer.Runtime2 cores(int cores) {
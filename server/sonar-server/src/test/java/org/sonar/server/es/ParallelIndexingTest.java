@@ -0,0 +1,96 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelIndexingTest {
+
+  private static final IndexType INDEX_TYPE = new IndexType("foos", "foo");
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void index_all_partitions_with_multiple_workers() {
+    List<String> partitions = IntStream.range(0, 100).mapToObj(i -> "P" + i).collect(Collectors.toList());
+    Set<String> indexed = ConcurrentHashMap.newKeySet();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    ParallelIndexing.index(INDEX_TYPE, partitions, 4, partition -> {
+      indexed.add(partition);
+      threads.add(Thread.currentThread().getName());
+    });
+
+    assertThat(indexed).containsOnlyElementsOf(partitions).hasSize(100);
+    assertThat(threads).isNotEmpty().doesNotContain(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void index_partitions_in_calling_thread_if_single_worker() {
+    List<String> indexed = new ArrayList<>();
+    List<String> threads = new ArrayList<>();
+
+    ParallelIndexing.index(INDEX_TYPE, asList("P1", "P2"), 1, partition -> {
+      indexed.add(partition);
+      threads.add(Thread.currentThread().getName());
+    });
+
+    assertThat(indexed).containsExactly("P1", "P2");
+    assertThat(threads).containsOnly(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void fail_if_a_partition_fails() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to index [foos/foo]");
+
+    ParallelIndexing.index(INDEX_TYPE, asList("P1", "P2", "P3"), 2, partition -> {
+      if ("P2".equals(partition)) {
+        throw new IllegalStateException("BOOM");
+      }
+    });
+  }
+
+  @Test
+  public void fail_if_number_of_workers_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of workers must be positive: 0");
+
+    ParallelIndexing.index(INDEX_TYPE, asList("P1", "P2"), 0, partition -> {
+    });
+  }
+
+  @Test
+  public void default_number_of_workers_is_bounded() {
+    assertThat(ParallelIndexing.defaultNumberOfWorkers()).isBetween(1, 8);
+  }
+}
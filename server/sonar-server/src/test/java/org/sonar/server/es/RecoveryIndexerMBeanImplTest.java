@@ -0,0 +1,73 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RecoveryIndexerMBeanImplTest {
+
+  private RecoveryIndexer recoveryIndexer = mock(RecoveryIndexer.class);
+
+  private RecoveryIndexerMBeanImpl underTest = new RecoveryIndexerMBeanImpl(recoveryIndexer);
+
+  @Test
+  public void register_and_unregister() throws Exception {
+    assertThat(getMBean()).isNull();
+
+    underTest.start();
+    assertThat(getMBean()).isNotNull();
+
+    underTest.stop();
+    assertThat(getMBean()).isNull();
+  }
+
+  @Test
+  public void metrics_delegate_to_RecoveryIndexer() {
+    when(recoveryIndexer.getBacklog()).thenReturn(120L);
+    when(recoveryIndexer.getLagInMs()).thenReturn(60_000L);
+    when(recoveryIndexer.getRecoveredCount()).thenReturn(1_500L);
+    when(recoveryIndexer.getFailureCount()).thenReturn(3L);
+    when(recoveryIndexer.getNextDelayInMs()).thenReturn(1_000L);
+
+    assertThat(underTest.getBacklog()).isEqualTo(120L);
+    assertThat(underTest.getLagInMs()).isEqualTo(60_000L);
+    assertThat(underTest.getRecoveredCount()).isEqualTo(1_500L);
+    assertThat(underTest.getFailureCount()).isEqualTo(3L);
+    assertThat(underTest.getNextDelayInMs()).isEqualTo(1_000L);
+  }
+
+  @CheckForNull
+  private ObjectInstance getMBean() throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(RecoveryIndexerMBean.OBJECT_NAME));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
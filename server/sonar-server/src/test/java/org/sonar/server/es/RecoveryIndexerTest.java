@@ -46,8 +46,10 @@ import org.sonar.db.es.EsQueueDto;
 import org.sonar.server.rule.index.RuleIndexer;
 import org.sonar.server.user.index.UserIndexer;
 
+import static java.util.Arrays.asList;
 import static java.util.stream.IntStream.rangeClosed;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.spy;
 import static org.sonar.api.utils.log.LoggerLevel.ERROR;
@@ -93,7 +95,7 @@ public class RecoveryIndexerTest {
   }
 
   @Test
-  public void start_triggers_recovery_run_at_fixed_rate() throws Exception {
+  public void start_triggers_recovery_runs() throws Exception {
     MapSettings settings = new MapSettings()
       .setProperty("sonar.search.recovery.initialDelayInMs", "0")
       .setProperty("sonar.search.recovery.delayInMs", "1");
@@ -304,6 +306,125 @@ public class RecoveryIndexerTest {
     assertThatLogsContain(INFO, "Elasticsearch recovery - 3 documents processed [0 failures]");
   }
 
+  @Test
+  public void items_are_batched_by_type_and_project() {
+    IndexType barType = new IndexType("bars", "bar");
+    EsQueueDto foo1 = EsQueueDto.create(FOO_TYPE.format(), "f1", null, "P1");
+    EsQueueDto foo2 = EsQueueDto.create(FOO_TYPE.format(), "f2", null, "P1");
+    EsQueueDto foo3 = EsQueueDto.create(FOO_TYPE.format(), "f3", null, "P2");
+    EsQueueDto foo4 = EsQueueDto.create(FOO_TYPE.format(), "f4", null, "P3");
+    EsQueueDto foo5 = EsQueueDto.create(FOO_TYPE.format(), "f1", null, "P1");
+    EsQueueDto bar1 = EsQueueDto.create(barType.format(), "b1");
+    EsQueueDto bar2 = EsQueueDto.create(barType.format(), "b2");
+
+    List<RecoveryIndexer.Batch> batches = RecoveryIndexer.createBatches(asList(foo1, foo2, foo3, bar1, foo4, foo5, bar2), 2);
+
+    assertThat(batches)
+      .extracting(RecoveryIndexer.Batch::getType, RecoveryIndexer.Batch::getItems)
+      .containsExactlyInAnyOrder(
+        tuple(FOO_TYPE, asList(foo1, foo2, foo5)),
+        tuple(FOO_TYPE, asList(foo3, foo4)),
+        tuple(barType, asList(bar1, bar2)));
+  }
+
+  @Test
+  public void batches_are_indexed_concurrently_with_their_own_db_session() {
+    IndexType barType = new IndexType("bars", "bar");
+    insertItem(FOO_TYPE, "f1");
+    insertItem(barType, "b1");
+    advanceInTime();
+    SuccessfulFakeIndexer fooIndexer = new SuccessfulFakeIndexer(FOO_TYPE);
+    SuccessfulFakeIndexer barIndexer = new SuccessfulFakeIndexer(barType);
+
+    underTest = newRecoveryIndexer(fooIndexer, barIndexer);
+    underTest.recover();
+
+    assertThatQueueHasSize(0);
+    assertThat(fooIndexer.called).hasSize(1);
+    assertThat(barIndexer.called).hasSize(1);
+    assertThat(underTest.getRecoveredCount()).isEqualTo(2L);
+    assertThat(underTest.getFailureCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void next_run_is_scheduled_when_oldest_item_is_old_enough_to_be_recovered() {
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.delayInMs", "3600000")
+      .setProperty("sonar.search.recovery.minAgeInMs", "10000");
+    underTest = newRecoveryIndexer(settings.asConfig(), new SuccessfulFakeIndexer(FOO_TYPE));
+    assertThat(underTest.getNextDelayInMs()).isEqualTo(3_600_000L);
+
+    insertItem(FOO_TYPE, "f1");
+    system2.setNow(system2.now() + 4_000L);
+    underTest.recover();
+
+    // item is not recovered yet, it will be in 6 seconds
+    assertThatQueueHasSize(1);
+    assertThat(underTest.getNextDelayInMs()).isEqualTo(6_000L);
+    assertThat(underTest.getBacklog()).isEqualTo(1L);
+    assertThat(underTest.getLagInMs()).isEqualTo(4_000L);
+
+    system2.setNow(system2.now() + 6_000L);
+    underTest.recover();
+
+    assertThatQueueHasSize(0);
+    assertThat(underTest.getNextDelayInMs()).isEqualTo(3_600_000L);
+    assertThat(underTest.getBacklog()).isEqualTo(0L);
+    assertThat(underTest.getLagInMs()).isEqualTo(0L);
+  }
+
+  @Test
+  public void next_run_is_delayed_if_too_many_failures() {
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.delayInMs", "3600000")
+      .setProperty("sonar.search.recovery.minAgeInMs", "10000");
+    insertItem(FOO_TYPE, "f1");
+    advanceInTime();
+
+    underTest = newRecoveryIndexer(settings.asConfig(), new SoftFailingFakeIndexer(FOO_TYPE));
+    underTest.recover();
+
+    assertThatQueueHasSize(1);
+    assertThat(underTest.getNextDelayInMs()).isEqualTo(3_600_000L);
+    assertThat(underTest.getFailureCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void next_run_is_delayed_if_remaining_items_can_not_be_recovered() {
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.delayInMs", "3600000")
+      .setProperty("sonar.search.recovery.minAgeInMs", "10000");
+    insertItem(FOO_TYPE, "f1");
+    advanceInTime();
+
+    underTest = newRecoveryIndexer(settings.asConfig(), new SuccessfulFakeIndexer(new IndexType("bars", "bar")));
+    underTest.recover();
+
+    // unsupported item is kept in queue, but it must not be retried every second
+    assertThatQueueHasSize(1);
+    assertThat(underTest.getNextDelayInMs()).isEqualTo(3_600_000L);
+  }
+
+  @Test
+  public void next_run_is_scheduled_when_oldest_item_too_recent_for_this_run_is_old_enough() {
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.delayInMs", "3600000")
+      .setProperty("sonar.search.recovery.minAgeInMs", "10000");
+    IndexType barType = new IndexType("bars", "bar");
+    insertItem(FOO_TYPE, "f1");
+    insertItem(barType, "b1");
+    system2.setNow(system2.now() + 20_000L);
+    insertItem(barType, "b2");
+    system2.setNow(system2.now() + 4_000L);
+
+    underTest = newRecoveryIndexer(settings.asConfig(), new SuccessfulFakeIndexer(barType));
+    underTest.recover();
+
+    // b1 is recovered, unsupported f1 is ignored and b2 will be old enough in 6 seconds
+    assertThatQueueHasSize(2);
+    assertThat(underTest.getNextDelayInMs()).isEqualTo(6_000L);
+  }
+
   private class FailingAlwaysOnSameElementIndexer implements ResilientIndexer {
     private final IndexType indexType;
     private final EsQueueDto failing;
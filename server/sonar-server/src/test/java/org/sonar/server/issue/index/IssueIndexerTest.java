@@ -25,6 +25,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.search.SearchHit;
 import org.junit.Before;
 import org.junit.Rule;
@@ -53,6 +54,10 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
 import static org.sonar.server.issue.IssueDocTesting.newDoc;
 import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE;
@@ -105,6 +110,54 @@ public class IssueIndexerTest {
     assertThatIndexHasOnly(issue1, issue2);
   }
 
+  @Test
+  public void indexOnStartup_indexes_the_issues_of_all_projects_and_branches() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project1 = db.components().insertMainBranch(organization);
+    ComponentDto branch = db.components().insertProjectBranch(project1);
+    ComponentDto project2 = db.components().insertPrivateProject(organization);
+    IssueDto issue1 = db.issues().insertIssue(IssueTesting.newIssue(rule, project1, db.components().insertComponent(newFileDto(project1))));
+    IssueDto issue2 = db.issues().insertIssue(IssueTesting.newIssue(rule, branch, db.components().insertComponent(newFileDto(branch))));
+    IssueDto issue3 = db.issues().insertIssue(IssueTesting.newIssue(rule, project2, db.components().insertComponent(newFileDto(project2))));
+
+    underTest.indexOnStartup(emptySet());
+
+    assertThatIndexHasOnly(issue1, issue2, issue3);
+  }
+
+  @Test
+  public void indexOnStartup_indexes_the_issues_of_components_which_are_not_in_a_project() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject(organization);
+    ComponentDto view = db.components().insertView(organization);
+    ComponentDto file = db.components().insertComponent(newFileDto(view));
+    IssueDto issue = db.issues().insertIssue(IssueTesting.newIssue(rule, project, db.components().insertComponent(newFileDto(project)))
+      .setComponent(file)
+      .setProject(view));
+
+    underTest.indexOnStartup(emptySet());
+
+    assertThatIndexHasOnly(issue);
+  }
+
+  @Test
+  public void indexOnStartup_restores_settings_of_index_if_indexing_fails() {
+    db.components().insertPrivateProject(organization);
+    IssueIteratorFactory issueIteratorFactory = mock(IssueIteratorFactory.class);
+    when(issueIteratorFactory.createForProject(anyString())).thenThrow(new IllegalStateException("BOOM"));
+    underTest = new IssueIndexer(es.client(), db.getDbClient(), issueIteratorFactory);
+
+    try {
+      underTest.indexOnStartup(emptySet());
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    GetSettingsResponse settings = es.client().nativeClient().admin().indices().prepareGetSettings(INDEX_TYPE_ISSUE.getIndex()).get();
+    assertThat(settings.getSetting(INDEX_TYPE_ISSUE.getIndex(), "index.refresh_interval")).isNotEqualTo("-1");
+  }
+
   @Test
   public void verify_indexed_fields() {
     RuleDefinitionDto rule = db.rules().insert();
@@ -23,6 +23,7 @@ import com.google.common.collect.Multimap;
 import java.io.InvalidClassException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.lang.RandomStringUtils;
@@ -127,6 +128,53 @@ public class DefaultNotificationManagerTest {
     verify(underTest, times(1)).logDeserializationIssue();
   }
 
+  @Test
+  public void getFromQueue_removes_a_batch_of_notifications() {
+    List<NotificationQueueDto> dtos = Arrays.asList(
+      NotificationQueueDto.toNotificationQueueDto(new Notification("first")),
+      NotificationQueueDto.toNotificationQueueDto(new Notification("second")));
+    when(notificationQueueDao.selectOldest(10)).thenReturn(dtos);
+
+    List<Notification> notifications = underTest.getFromQueue(10);
+
+    assertThat(notifications).extracting(Notification::getType).containsExactly("first", "second");
+    verify(notificationQueueDao, times(1)).delete(dtos);
+  }
+
+  @Test
+  public void getFromQueue_returns_empty_list_if_queue_is_empty() {
+    assertThat(underTest.getFromQueue(10)).isEmpty();
+
+    verify(notificationQueueDao, times(0)).delete(any(List.class));
+  }
+
+  @Test
+  public void recipients_are_cached_during_the_dispatch_of_a_batch() {
+    String projectUuid = "uuid_45";
+    when(notificationQueueDao.selectOldest(10)).thenReturn(Arrays.asList(NotificationQueueDto.toNotificationQueueDto(new Notification("test"))));
+    when(propertiesDao.findUsersForNotification("NewViolations", "Email", projectUuid))
+      .thenReturn(newHashSet(new Subscriber("user1", false)));
+    when(authorizationDao.keepAuthorizedLoginsOnProject(dbSession, newHashSet("user1"), projectUuid, "user"))
+      .thenReturn(newHashSet("user1"));
+
+    underTest.getFromQueue(10);
+    Multimap<String, NotificationChannel> first = underTest.findSubscribedRecipientsForDispatcher(dispatcher, projectUuid,
+      SubscriberPermissionsOnProject.ALL_MUST_HAVE_ROLE_USER);
+    Multimap<String, NotificationChannel> second = underTest.findSubscribedRecipientsForDispatcher(dispatcher, projectUuid,
+      SubscriberPermissionsOnProject.ALL_MUST_HAVE_ROLE_USER);
+
+    assertThat(second).isSameAs(first);
+    assertThat(first.get("user1")).containsOnly(emailChannel);
+    verify(propertiesDao, times(1)).findUsersForNotification("NewViolations", "Email", projectUuid);
+
+    // cache is dropped when next batch is dequeued
+    when(notificationQueueDao.selectOldest(10)).thenReturn(Collections.emptyList());
+    underTest.getFromQueue(10);
+    underTest.findSubscribedRecipientsForDispatcher(dispatcher, projectUuid, SubscriberPermissionsOnProject.ALL_MUST_HAVE_ROLE_USER);
+
+    verify(propertiesDao, times(2)).findUsersForNotification("NewViolations", "Email", projectUuid);
+  }
+
   @Test
   public void shouldFindNoRecipient() {
     assertThat(underTest.findSubscribedRecipientsForDispatcher(dispatcher, "uuid_45", new SubscriberPermissionsOnProject(UserRole.USER)).asMap().entrySet())
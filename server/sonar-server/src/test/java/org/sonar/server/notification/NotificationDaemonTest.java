@@ -21,7 +21,10 @@ package org.sonar.server.notification;
 
 import com.google.common.collect.Sets;
 import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.PropertyDefinitions;
@@ -32,11 +35,17 @@ import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.db.DbClient;
 import org.sonar.db.property.PropertiesDao;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -69,7 +78,7 @@ public class NotificationDaemonTest {
     when(commentOnIssueCreatedByMe.getType()).thenReturn("issue-changes");
     when(qualityGateChange.getKey()).thenReturn("QGateChange");
     when(qualityGateChange.getType()).thenReturn("qgate-changes");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(emptyList());
 
     MapSettings settings = new MapSettings(new PropertyDefinitions(NotificationDaemon.class)).setProperty("sonar.notifications.delay", 1L);
 
@@ -175,7 +184,7 @@ public class NotificationDaemonTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks();
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(singletonList(notification)).thenReturn(emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -217,7 +226,7 @@ public class NotificationDaemonTest {
   public void shouldLogEvery10Minutes() {
     setUpMocks();
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(singletonList(notification)).thenReturn(emptyList());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     underTest = spy(underTest);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -228,6 +237,77 @@ public class NotificationDaemonTest {
     underTest.stop();
   }
 
+  @Test
+  public void deliver_notifications_in_order_from_a_single_thread_by_default() {
+    setUpMocks();
+    Notification otherNotification = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(asList(notification, otherNotification)).thenReturn(emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    Set<String> deliveringThreads = ConcurrentHashMap.newKeySet();
+    doAnswer(invocation -> {
+      deliveringThreads.add(Thread.currentThread().getName());
+      return null;
+    }).when(emailChannel).deliver(any(Notification.class), anyString());
+
+    underTest.start();
+    verify(emailChannel, timeout(2000)).deliver(otherNotification, ASSIGNEE_SIMON);
+    underTest.stop();
+
+    InOrder inOrder = inOrder(emailChannel);
+    inOrder.verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    inOrder.verify(emailChannel).deliver(otherNotification, ASSIGNEE_SIMON);
+    assertThat(deliveringThreads).hasSize(1);
+    assertThat(deliveringThreads.iterator().next()).startsWith("sq-notification-service-");
+  }
+
+  @Test
+  public void deliver_batch_of_notifications_with_several_workers() {
+    setUpMocks();
+    Notification otherNotification = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(asList(notification, otherNotification)).thenReturn(emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    MapSettings settings = new MapSettings(new PropertyDefinitions(NotificationDaemon.class))
+      .setProperty("sonar.notifications.delay", 1L)
+      .setProperty(NotificationDaemon.PROPERTY_BATCH_SIZE, 50)
+      .setProperty(NotificationDaemon.PROPERTY_WORKERS, 3);
+    underTest = new NotificationDaemon(settings.asConfig(), manager, service);
+
+    underTest.start();
+    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(otherNotification, ASSIGNEE_SIMON);
+    underTest.stop();
+
+    verify(manager, atLeastOnce()).getFromQueue(50);
+    assertThat(underTest.getDeliveredCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void limit_rate_of_deliveries_per_channel() {
+    setUpMocks();
+    when(manager.getFromQueue(anyInt())).thenReturn(asList(notification, notification, notification)).thenReturn(emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    MapSettings settings = new MapSettings(new PropertyDefinitions(NotificationDaemon.class))
+      .setProperty("sonar.notifications.delay", 1L)
+      .setProperty("sonar.notifications.email.maxDeliveriesPerSecond", 5);
+    underTest = new NotificationDaemon(settings.asConfig(), manager, service);
+
+    long start = System.currentTimeMillis();
+    underTest.start();
+    verify(emailChannel, timeout(2000).times(3)).deliver(notification, ASSIGNEE_SIMON);
+    underTest.stop();
+
+    // first delivery is immediate, next ones are delayed by 200ms each
+    assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(350L);
+  }
+
+  @Test
+  public void getQueueSize_delegates_to_manager() {
+    setUpMocks();
+    when(manager.count()).thenReturn(12L);
+
+    assertThat(underTest.getQueueSize()).isEqualTo(12L);
+  }
+
   @Test
   public void hasProjectSubscribersForType() {
     setUpMocks();
@@ -19,7 +19,6 @@
  */
 package org.sonar.server.webhook;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
@@ -27,24 +26,22 @@ import org.sonar.api.config.internal.MapSettings;
 import org.sonar.server.async.AsyncExecution;
 
 import static java.util.Objects.requireNonNull;
-import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 public class AsynchronousWebHooksImplTest {
-  private static final long NOW = 1_500_000_000_000L;
   private static final String PROJECT_UUID = "P1_UUID";
 
   private final MapSettings settings = new MapSettings();
-  private final TestWebhookCaller caller = new TestWebhookCaller();
+  private final WebhookDispatcher dispatcher = mock(WebhookDispatcher.class);
   private final WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
   private final WebhookPayload mock = mock(WebhookPayload.class);
   private final RecordingAsyncExecution asyncExecution = new RecordingAsyncExecution();
 
-  private final WebHooksImpl underTest = new WebHooksImpl(caller, deliveryStorage, asyncExecution);
+  private final WebHooksImpl underTest = new WebHooksImpl(dispatcher, deliveryStorage, asyncExecution);
 
   @Test
   public void send_global_webhooks() {
@@ -53,18 +50,15 @@ public class AsynchronousWebHooksImplTest {
     settings.setProperty("sonar.webhooks.global.1.url", "http://url1");
     settings.setProperty("sonar.webhooks.global.2.name", "Second");
     settings.setProperty("sonar.webhooks.global.2.url", "http://url2");
-    caller.enqueueSuccess(NOW, 200, 1_234);
-    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
 
     underTest.sendProjectAnalysisUpdate(settings.asConfig(), new WebHooks.Analysis(PROJECT_UUID, "1", "#1"), () -> mock);
 
-    assertThat(caller.countSent()).isZero();
+    // calls are added to the outbox, which is processed by its own threads
+    verify(dispatcher).enqueue(anyListOf(Webhook.class), eq(mock));
     verifyZeroInteractions(deliveryStorage);
 
     asyncExecution.executeRecorded();
 
-    assertThat(caller.countSent()).isEqualTo(2);
-    verify(deliveryStorage, times(2)).persist(any(WebhookDelivery.class));
     verify(deliveryStorage).purge(PROJECT_UUID);
   }
 
@@ -0,0 +1,74 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.webhook;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeliveryLatencyHistogramTest {
+
+  private DeliveryLatencyHistogram underTest = new DeliveryLatencyHistogram();
+
+  @Test
+  public void percentiles_are_zero_if_no_durations() {
+    assertThat(underTest.count()).isZero();
+    assertThat(underTest.percentile(50)).isZero();
+    assertThat(underTest.percentile(99)).isZero();
+  }
+
+  @Test
+  public void percentiles_are_upper_bounds_of_buckets() {
+    for (int i = 0; i < 90; i++) {
+      underTest.record(30L);
+    }
+    for (int i = 0; i < 9; i++) {
+      underTest.record(700L);
+    }
+    underTest.record(3_000L);
+
+    assertThat(underTest.count()).isEqualTo(100L);
+    assertThat(underTest.percentile(50)).isEqualTo(50L);
+    assertThat(underTest.percentile(95)).isEqualTo(1_000L);
+    assertThat(underTest.percentile(100)).isEqualTo(3_000L);
+  }
+
+  @Test
+  public void percentiles_do_not_exceed_max_duration() {
+    underTest.record(10L);
+
+    assertThat(underTest.percentile(50)).isEqualTo(10L);
+
+    underTest.record(60_000L);
+
+    assertThat(underTest.percentile(50)).isEqualTo(50L);
+    assertThat(underTest.percentile(100)).isEqualTo(60_000L);
+  }
+
+  @Test
+  public void test_toString() {
+    underTest.record(50L);
+    underTest.record(51L);
+    underTest.record(40_000L);
+
+    assertThat(underTest.toString()).isEqualTo("<=50ms: 1, <=100ms: 1, <=250ms: 0, <=500ms: 0, <=1000ms: 0, <=2500ms: 0, " +
+      "<=5000ms: 0, <=10000ms: 0, <=30000ms: 0, >30000ms: 1");
+  }
+}
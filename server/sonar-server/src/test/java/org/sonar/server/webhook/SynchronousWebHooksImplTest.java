@@ -19,37 +19,31 @@
  */
 package org.sonar.server.webhook;
 
-import java.io.IOException;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.config.internal.MapSettings;
-import org.sonar.api.utils.log.LogTester;
-import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.async.AsyncExecution;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Matchers.any;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 public class SynchronousWebHooksImplTest {
 
-  private static final long NOW = 1_500_000_000_000L;
   private static final String PROJECT_UUID = "P1_UUID";
 
-  @Rule
-  public LogTester logTester = new LogTester();
-
   private final MapSettings settings = new MapSettings();
-  private final TestWebhookCaller caller = new TestWebhookCaller();
+  private final WebhookDispatcher dispatcher = mock(WebhookDispatcher.class);
   private final WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
   private final WebhookPayload mock = mock(WebhookPayload.class);
   private final AsyncExecution synchronousAsyncExecution = Runnable::run;
-  private final WebHooksImpl underTest = new WebHooksImpl(caller, deliveryStorage, synchronousAsyncExecution);
+  private final WebHooksImpl underTest = new WebHooksImpl(dispatcher, deliveryStorage, synchronousAsyncExecution);
 
   @Test
   public void isEnabled_returns_false_if_no_webHoolds() {
@@ -110,9 +104,7 @@ public class SynchronousWebHooksImplTest {
   public void do_nothing_if_no_webhooks() {
     underTest.sendProjectAnalysisUpdate(settings.asConfig(), new WebHooks.Analysis(PROJECT_UUID, "1", "#1"), () -> mock);
 
-    assertThat(caller.countSent()).isEqualTo(0);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).isEmpty();
-    verifyZeroInteractions(deliveryStorage);
+    verifyZeroInteractions(dispatcher, deliveryStorage);
   }
 
   @Test
@@ -122,15 +114,12 @@ public class SynchronousWebHooksImplTest {
     settings.setProperty("sonar.webhooks.global.1.url", "http://url1");
     settings.setProperty("sonar.webhooks.global.2.name", "Second");
     settings.setProperty("sonar.webhooks.global.2.url", "http://url2");
-    caller.enqueueSuccess(NOW, 200, 1_234);
-    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
 
     underTest.sendProjectAnalysisUpdate(settings.asConfig(), new WebHooks.Analysis(PROJECT_UUID, "1", "#1"), () -> mock);
 
-    assertThat(caller.countSent()).isEqualTo(2);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to send webhook 'Second' | url=http://url2 | message=Fail to connect");
-    verify(deliveryStorage, times(2)).persist(any(WebhookDelivery.class));
+    assertThat(enqueuedWebhooks())
+      .extracting(Webhook::getName, Webhook::getUrl, Webhook::getComponentUuid)
+      .containsExactly(tuple("First", "http://url1", PROJECT_UUID), tuple("Second", "http://url2", PROJECT_UUID));
     verify(deliveryStorage).purge(PROJECT_UUID);
   }
 
@@ -139,13 +128,12 @@ public class SynchronousWebHooksImplTest {
     settings.setProperty("sonar.webhooks.project", "1");
     settings.setProperty("sonar.webhooks.project.1.name", "First");
     settings.setProperty("sonar.webhooks.project.1.url", "http://url1");
-    caller.enqueueSuccess(NOW, 200, 1_234);
 
     underTest.sendProjectAnalysisUpdate(settings.asConfig(), new WebHooks.Analysis(PROJECT_UUID, "1", "#1"), () -> mock);
 
-    assertThat(caller.countSent()).isEqualTo(1);
-    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
-    verify(deliveryStorage).persist(any(WebhookDelivery.class));
+    assertThat(enqueuedWebhooks())
+      .extracting(Webhook::getName, Webhook::getUrl, Webhook::getComponentUuid)
+      .containsExactly(tuple("First", "http://url1", PROJECT_UUID));
     verify(deliveryStorage).purge(PROJECT_UUID);
   }
 
@@ -164,14 +152,18 @@ public class SynchronousWebHooksImplTest {
       .forEach(i -> {
         settings.setProperty(property + "." + i + ".name", "First");
         settings.setProperty(property + "." + i + ".url", "http://url");
-        caller.enqueueSuccess(NOW, 200, 1_234);
       });
     settings.setProperty(property, IntStream.range(1, 15).mapToObj(String::valueOf).collect(Collectors.joining(",")));
 
     underTest.sendProjectAnalysisUpdate(settings.asConfig(), new WebHooks.Analysis(PROJECT_UUID, "1", "#1"), () -> mock);
 
-    assertThat(caller.countSent()).isEqualTo(10);
-    assertThat(logTester.logs(LoggerLevel.DEBUG).stream().filter(log -> log.contains("Sent"))).hasSize(10);
+    assertThat(enqueuedWebhooks()).hasSize(10);
+  }
+
+  private List<Webhook> enqueuedWebhooks() {
+    ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+    verify(dispatcher).enqueue(captor.capture(), eq(mock));
+    return (List<Webhook>) captor.getValue();
   }
 
 }
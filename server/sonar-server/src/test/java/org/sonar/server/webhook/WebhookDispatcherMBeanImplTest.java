@@ -0,0 +1,80 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.webhook;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WebhookDispatcherMBeanImplTest {
+
+  private WebhookDispatcher dispatcher = mock(WebhookDispatcher.class);
+
+  private WebhookDispatcherMBeanImpl underTest = new WebhookDispatcherMBeanImpl(dispatcher);
+
+  @Test
+  public void register_and_unregister() throws Exception {
+    assertThat(getMBean()).isNull();
+
+    underTest.start();
+    assertThat(getMBean()).isNotNull();
+
+    underTest.stop();
+    assertThat(getMBean()).isNull();
+  }
+
+  @Test
+  public void metrics_delegate_to_WebhookDispatcher() {
+    DeliveryLatencyHistogram histogram = new DeliveryLatencyHistogram();
+    histogram.record(40L);
+    histogram.record(400L);
+    when(dispatcher.getOutboxSize()).thenReturn(12L);
+    when(dispatcher.getCallsInProgress()).thenReturn(3L);
+    when(dispatcher.getSuccessCount()).thenReturn(150L);
+    when(dispatcher.getFailureCount()).thenReturn(5L);
+    when(dispatcher.getRetryCount()).thenReturn(8L);
+    when(dispatcher.getLatencyHistogram()).thenReturn(histogram);
+
+    assertThat(underTest.getOutboxSize()).isEqualTo(12L);
+    assertThat(underTest.getCallsInProgress()).isEqualTo(3L);
+    assertThat(underTest.getSuccessCount()).isEqualTo(150L);
+    assertThat(underTest.getFailureCount()).isEqualTo(5L);
+    assertThat(underTest.getRetryCount()).isEqualTo(8L);
+    assertThat(underTest.getLatencyMedianMs()).isEqualTo(50L);
+    assertThat(underTest.getLatency99thPercentileMs()).isEqualTo(400L);
+    assertThat(underTest.getLatencyHistogram()).startsWith("<=50ms: 1, <=100ms: 0, <=250ms: 0, <=500ms: 1,");
+  }
+
+  @CheckForNull
+  private ObjectInstance getMBean() throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(WebhookDispatcherMBean.OBJECT_NAME));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
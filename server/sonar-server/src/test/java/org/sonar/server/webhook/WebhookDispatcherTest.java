@@ -0,0 +1,294 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.webhook;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.core.util.UuidFactoryFast;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.webhook.WebhookOutboxDto;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllDeliveryUuids;
+
+public class WebhookDispatcherTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+  private static final String PROJECT_UUID = "P1_UUID";
+  private static final WebhookPayload PAYLOAD = new WebhookPayload("P1", "{\"foo\":\"bar\"}");
+
+  private final System2 system = mock(System2.class);
+
+  @Rule
+  public final DbTester dbTester = DbTester.create(system).setDisableDefaultOrganization(true);
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private final DbClient dbClient = dbTester.getDbClient();
+  private final DbSession dbSession = dbTester.getSession();
+  private final MapSettings settings = new MapSettings();
+  private final TestWebhookCaller caller = new TestWebhookCaller();
+  private final WebhookDeliveryStorage deliveryStorage = new WebhookDeliveryStorage(dbClient, system, UuidFactoryFast.getInstance());
+  private final List<Runnable> submittedCalls = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    when(system.now()).thenReturn(NOW);
+  }
+
+  @Test
+  public void enqueue_adds_calls_to_outbox() {
+    WebhookDispatcher underTest = newDispatcher(Runnable::run);
+
+    underTest.enqueue(asList(newWebhook("First", "http://url1"), newWebhook("Second", "http://url2")), PAYLOAD);
+
+    List<WebhookOutboxDto> calls = dbClient.webhookOutboxDao().selectDue(dbSession, NOW, 10);
+    assertThat(calls)
+      .extracting(WebhookOutboxDto::getName, WebhookOutboxDto::getUrl, WebhookOutboxDto::getComponentUuid, WebhookOutboxDto::getProjectKey,
+        WebhookOutboxDto::getPayload, WebhookOutboxDto::getAttempts)
+      .containsOnly(
+        tuple("First", "http://url1", PROJECT_UUID, "P1", PAYLOAD.getJson(), 0),
+        tuple("Second", "http://url2", PROJECT_UUID, "P1", PAYLOAD.getJson(), 0));
+    assertThat(underTest.getOutboxSize()).isEqualTo(2);
+    assertThat(caller.countSent()).isZero();
+  }
+
+  @Test
+  public void dispatch_executes_calls_then_persists_deliveries() {
+    WebhookDispatcher underTest = newDispatcher(Runnable::run);
+    underTest.enqueue(asList(newWebhook("First", "http://url1"), newWebhook("Second", "http://url2")), PAYLOAD);
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    caller.enqueueFailure(NOW, new IllegalArgumentException("Invalid URL"));
+
+    underTest.dispatch();
+
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to send webhook 'Second' | url=http://url2 | message=Invalid URL");
+    // deliveries are persisted at next dispatch
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).isEmpty();
+
+    underTest.dispatch();
+
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(2);
+    assertThat(underTest.getOutboxSize()).isZero();
+    assertThat(underTest.getSuccessCount()).isEqualTo(1);
+    assertThat(underTest.getFailureCount()).isEqualTo(1);
+    assertThat(underTest.getRetryCount()).isZero();
+    assertThat(underTest.getLatencyHistogram().count()).isEqualTo(1);
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("Failed to send webhook 'Second' after 1 attempt(s) | url=http://url2");
+  }
+
+  @Test
+  public void connection_failure_is_retried_with_backoff() {
+    WebhookDispatcher underTest = newDispatcher(Runnable::run);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+
+    underTest.dispatch();
+    underTest.dispatch();
+
+    WebhookOutboxDto call = selectSingleCall();
+    assertThat(call.getAttempts()).isEqualTo(1);
+    assertThat(call.getNextAttemptAt()).isEqualTo(NOW + 10_000L);
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(1);
+    assertThat(underTest.getRetryCount()).isEqualTo(1);
+    assertThat(underTest.getFailureCount()).isZero();
+
+    // not due yet
+    underTest.dispatch();
+    assertThat(caller.countSent()).isEqualTo(1);
+
+    when(system.now()).thenReturn(NOW + 10_000L);
+    caller.enqueueSuccess(NOW + 10_000L, 200, 10);
+    underTest.dispatch();
+    underTest.dispatch();
+
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(underTest.getOutboxSize()).isZero();
+    assertThat(underTest.getSuccessCount()).isEqualTo(1);
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(2);
+  }
+
+  @Test
+  public void server_errors_and_throttling_are_retried() {
+    WebhookDispatcher underTest = newDispatcher(Runnable::run);
+    underTest.enqueue(asList(newWebhook("First", "http://url1"), newWebhook("Second", "http://url2")), PAYLOAD);
+    caller.enqueueSuccess(NOW, 503, 10);
+    caller.enqueueSuccess(NOW, 429, 10);
+
+    underTest.dispatch();
+    underTest.dispatch();
+
+    assertThat(underTest.getOutboxSize()).isEqualTo(2);
+    assertThat(underTest.getRetryCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void client_errors_are_not_retried() {
+    WebhookDispatcher underTest = newDispatcher(Runnable::run);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    caller.enqueueSuccess(NOW, 404, 10);
+
+    underTest.dispatch();
+    underTest.dispatch();
+
+    assertThat(underTest.getOutboxSize()).isZero();
+    assertThat(underTest.getRetryCount()).isZero();
+    assertThat(underTest.getFailureCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void call_is_abandoned_after_max_attempts() {
+    settings.setProperty(WebhookDispatcher.PROPERTY_MAX_ATTEMPTS, 2);
+    WebhookDispatcher underTest = newDispatcher(Runnable::run);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+
+    underTest.dispatch();
+    underTest.dispatch();
+    when(system.now()).thenReturn(NOW + 1_000_000L);
+    underTest.dispatch();
+    underTest.dispatch();
+
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(underTest.getOutboxSize()).isZero();
+    assertThat(underTest.getRetryCount()).isEqualTo(1);
+    assertThat(underTest.getFailureCount()).isEqualTo(1);
+    assertThat(selectAllDeliveryUuids(dbTester, dbSession)).hasSize(2);
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("Failed to send webhook 'First' after 2 attempt(s) | url=http://url1");
+  }
+
+  @Test
+  public void concurrent_calls_to_a_host_are_limited() {
+    settings.setProperty(WebhookDispatcher.PROPERTY_MAX_CALLS_PER_HOST, 1);
+    WebhookDispatcher underTest = newDispatcher(submittedCalls::add);
+    underTest.enqueue(asList(
+      newWebhook("First", "http://host1/a"),
+      newWebhook("Second", "http://host1/b"),
+      newWebhook("Third", "http://host2/a")), PAYLOAD);
+
+    underTest.dispatch();
+
+    assertThat(submittedCalls).hasSize(2);
+    assertThat(underTest.getCallsInProgress()).isEqualTo(2);
+
+    caller.enqueueSuccess(NOW, 200, 10);
+    caller.enqueueSuccess(NOW, 200, 10);
+    submittedCalls.forEach(Runnable::run);
+    submittedCalls.clear();
+    underTest.dispatch();
+
+    assertThat(submittedCalls).hasSize(1);
+    assertThat(underTest.getOutboxSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void saturated_host_does_not_delay_calls_to_other_hosts() {
+    settings.setProperty(WebhookDispatcher.PROPERTY_WORKERS, 2);
+    settings.setProperty(WebhookDispatcher.PROPERTY_MAX_CALLS_PER_HOST, 1);
+    WebhookDispatcher underTest = newDispatcher(submittedCalls::add);
+    List<Webhook> webhooks = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      webhooks.add(newWebhook("Slow" + i, "http://slow/" + i));
+    }
+    webhooks.add(newWebhook("Idle", "http://idle"));
+    underTest.enqueue(webhooks, PAYLOAD);
+
+    underTest.dispatch();
+
+    assertThat(submittedCalls).hasSize(2);
+    assertThat(dbClient.webhookOutboxDao().selectDue(dbSession, Long.MAX_VALUE, 20))
+      .filteredOn(call -> call.getAttempts() == 1)
+      .extracting(WebhookOutboxDto::getName)
+      .hasSize(2)
+      .contains("Idle");
+  }
+
+  @Test
+  public void calls_are_limited_by_number_of_workers() {
+    settings.setProperty(WebhookDispatcher.PROPERTY_WORKERS, 2);
+    WebhookDispatcher underTest = newDispatcher(submittedCalls::add);
+    underTest.enqueue(asList(
+      newWebhook("First", "http://host1"),
+      newWebhook("Second", "http://host2"),
+      newWebhook("Third", "http://host3")), PAYLOAD);
+
+    underTest.dispatch();
+
+    assertThat(submittedCalls).hasSize(2);
+  }
+
+  @Test
+  public void leased_call_is_not_executed_twice() {
+    WebhookDispatcher underTest = newDispatcher(submittedCalls::add);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+
+    underTest.dispatch();
+    newDispatcher(submittedCalls::add).dispatch();
+
+    assertThat(submittedCalls).hasSize(1);
+    WebhookOutboxDto call = selectSingleCall();
+    assertThat(call.getAttempts()).isEqualTo(1);
+    assertThat(call.getNextAttemptAt()).isEqualTo(NOW + WebhookDispatcher.LEASE_DURATION_MS);
+  }
+
+  @Test
+  public void retry_delay_grows_exponentially_up_to_one_hour() {
+    WebhookDispatcher underTest = newDispatcher(Runnable::run);
+
+    assertThat(underTest.retryDelay(1)).isEqualTo(10_000L);
+    assertThat(underTest.retryDelay(2)).isEqualTo(20_000L);
+    assertThat(underTest.retryDelay(3)).isEqualTo(40_000L);
+    assertThat(underTest.retryDelay(10)).isEqualTo(60L * 60 * 1000);
+    assertThat(underTest.retryDelay(100)).isEqualTo(60L * 60 * 1000);
+  }
+
+  private WebhookDispatcher newDispatcher(Executor executor) {
+    return new WebhookDispatcher(settings.asConfig(), dbClient, caller, deliveryStorage, system, UuidFactoryFast.getInstance(), executor);
+  }
+
+  private WebhookOutboxDto selectSingleCall() {
+    List<WebhookOutboxDto> calls = dbClient.webhookOutboxDao().selectDue(dbSession, Long.MAX_VALUE, 10);
+    assertThat(calls).hasSize(1);
+    return calls.get(0);
+  }
+
+  private static Webhook newWebhook(String name, String url) {
+    return new Webhook(PROJECT_UUID, "CE_TASK_UUID", "ANALYSIS_UUID", name, url);
+  }
+}
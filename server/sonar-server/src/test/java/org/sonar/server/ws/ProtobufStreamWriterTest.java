@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonarqube.ws.Measures.Component;
+import org.sonarqube.ws.Measures.ComponentTreeWsResponse;
+import org.sonarqube.ws.MediaTypes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProtobufStreamWriterTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private ComponentTreeWsResponse header = newHeader();
+
+  @Test
+  public void stream_json_by_default() {
+    TestRequest request = new TestRequest();
+    DumbResponse response = new DumbResponse();
+
+    try (ProtobufStreamWriter writer = ProtobufStreamWriter.of(request, response, header, ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER)) {
+      writer.write(Component.newBuilder().setKey("C1").build());
+      writer.write(Component.newBuilder().setKey("C2").build());
+    }
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.JSON);
+    assertThat(response.outputAsString()).isEqualTo("{\"paging\":{\"pageIndex\":1,\"pageSize\":100,\"total\":2}," +
+      "\"baseComponent\":{\"key\":\"P1\",\"measures\":[]}," +
+      "\"components\":[{\"key\":\"C1\",\"measures\":[]},{\"key\":\"C2\",\"measures\":[]}]}");
+  }
+
+  @Test
+  public void stream_empty_array() {
+    TestRequest request = new TestRequest();
+    DumbResponse response = new DumbResponse();
+
+    ProtobufStreamWriter.of(request, response, header, ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER).close();
+
+    assertThat(response.outputAsString()).endsWith("\"components\":[]}");
+  }
+
+  @Test
+  public void stream_protobuf() throws Exception {
+    TestRequest request = new TestRequest();
+    request.setMediaType(MediaTypes.PROTOBUF);
+    DumbResponse response = new DumbResponse();
+
+    try (ProtobufStreamWriter writer = ProtobufStreamWriter.of(request, response, header, ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER)) {
+      writer.write(Component.newBuilder().setKey("C1").build());
+      writer.write(Component.newBuilder().setKey("C2").build());
+    }
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.PROTOBUF);
+    ComponentTreeWsResponse result = ComponentTreeWsResponse.parseFrom(response.getFlushedOutput());
+    assertThat(result.getPaging().getTotal()).isEqualTo(2);
+    assertThat(result.getBaseComponent().getKey()).isEqualTo("P1");
+    assertThat(result.getComponentsList()).extracting(Component::getKey).containsExactly("C1", "C2");
+  }
+
+  @Test
+  public void fail_if_field_is_not_a_repeated_message() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Field " + ComponentTreeWsResponse.PAGING_FIELD_NUMBER + " of " + ComponentTreeWsResponse.getDescriptor().getFullName()
+      + " is not a repeated message");
+
+    ProtobufStreamWriter.of(new TestRequest(), new DumbResponse(), header, ComponentTreeWsResponse.PAGING_FIELD_NUMBER);
+  }
+
+  @Test
+  public void fail_if_field_is_set_in_header() {
+    ComponentTreeWsResponse headerWithComponents = header.toBuilder().addComponents(Component.newBuilder().setKey("C1")).build();
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Field components must not be set in header");
+
+    ProtobufStreamWriter.of(new TestRequest(), new DumbResponse(), headerWithComponents, ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER);
+  }
+
+  private static ComponentTreeWsResponse newHeader() {
+    ComponentTreeWsResponse.Builder builder = ComponentTreeWsResponse.newBuilder();
+    builder.getPagingBuilder().setPageIndex(1).setPageSize(100).setTotal(2);
+    builder.setBaseComponent(Component.newBuilder().setKey("P1"));
+    return builder.build();
+  }
+}
@@ -101,6 +101,15 @@ public class ServletResponseTest {
     verify(response).reset();
   }
 
+  @Test
+  public void start_streaming() throws Exception {
+    assertThat(underTest.stream().isStreaming()).isFalse();
+
+    underTest.stream().startStreaming();
+
+    assertThat(underTest.stream().isStreaming()).isTrue();
+  }
+
   @Test
   public void test_newJsonWriter() throws Exception {
     underTest.newJsonWriter();
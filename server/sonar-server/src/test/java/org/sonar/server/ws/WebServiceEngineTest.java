@@ -39,7 +39,10 @@ import org.sonar.server.exceptions.BadRequestException;
 import org.sonarqube.ws.MediaTypes;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class WebServiceEngineTest {
@@ -318,6 +321,43 @@ public class WebServiceEngineTest {
     assertThat(logTester.logs(LoggerLevel.DEBUG)).isNotEmpty();
   }
 
+  @Test
+  public void fail_when_streamed_response_is_committed() throws Exception {
+    ValidatingRequest request = new TestRequest().setMethod("GET").setPath("/api/system/fail");
+    Response response = mock(Response.class);
+    ServletResponse.ServletStream servletStream = mock(ServletResponse.ServletStream.class);
+    when(response.stream()).thenReturn(servletStream);
+    when(servletStream.isStreaming()).thenReturn(true);
+    HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+    when(httpServletResponse.isCommitted()).thenReturn(true);
+    when(servletStream.response()).thenReturn(httpServletResponse);
+
+    try {
+      underTest.execute(request, response);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageStartingWith("Fail to stream response of request");
+    }
+    assertThat(logTester.logs(LoggerLevel.ERROR)).isNotEmpty();
+    verify(servletStream, never()).reset();
+  }
+
+  @Test
+  public void does_not_fail_when_request_is_aborted_and_streamed_response_is_committed() throws Exception {
+    ValidatingRequest request = new TestRequest().setMethod("GET").setPath("/api/system/fail_with_client_abort_exception");
+    Response response = mock(Response.class);
+    ServletResponse.ServletStream servletStream = mock(ServletResponse.ServletStream.class);
+    when(response.stream()).thenReturn(servletStream);
+    when(servletStream.isStreaming()).thenReturn(true);
+    HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+    when(httpServletResponse.isCommitted()).thenReturn(true);
+    when(servletStream.response()).thenReturn(httpServletResponse);
+    underTest.execute(request, response);
+
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).isNotEmpty();
+    assertThat(logTester.logs(LoggerLevel.ERROR)).isEmpty();
+  }
+
   static class SystemWs implements WebService {
     @Override
     public void define(Context context) {
@@ -20,6 +20,8 @@
 package org.sonar.server.ws;
 
 import java.io.IOException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -30,6 +32,8 @@ import org.sonarqube.ws.MediaTypes;
 import org.sonarqube.ws.Permissions;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.sonar.test.ExceptionCauseMatcher.hasType;
 
 public class WsUtilsTest {
@@ -68,6 +72,24 @@ public class WsUtilsTest {
     assertThat(Issues.Issue.parseFrom(response.getFlushedOutput()).getKey()).isEqualTo("I1");
   }
 
+  @Test
+  public void streaming_output_starts_streaming_of_servlet_response() throws Exception {
+    HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+    ServletOutputStream output = mock(ServletOutputStream.class);
+    when(httpServletResponse.getOutputStream()).thenReturn(output);
+    ServletResponse response = new ServletResponse(httpServletResponse);
+
+    assertThat(WsUtils.streamingOutput(response)).isSameAs(output);
+    assertThat(response.stream().isStreaming()).isTrue();
+  }
+
+  @Test
+  public void streaming_output_of_other_responses() throws Exception {
+    DumbResponse response = new DumbResponse();
+
+    assertThat(WsUtils.streamingOutput(response)).isSameAs(response.stream().output());
+  }
+
   @Test
   public void rethrow_error_as_ISE_when_error_writing_message() throws IOException {
     TestRequest request = new TestRequest();
@@ -19,43 +19,59 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.function.Function;
-import javax.annotation.Nonnull;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.issue.Issue;
-import org.sonar.api.rule.RuleKey;
-
-import static java.util.Comparator.comparing;
 
 public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
 
-  protected void match(Tracking<RAW, BASE> tracking, Function<Trackable, SearchKey> searchKeyFactory) {
+  /**
+   * Matches each unmatched raw issue with the unmatched base issue which has the same key, giving priority to the
+   * resolved, then confirmed, then oldest base issues.
+   * <p>
+   * Base issues are indexed by the 64 bits hash of their key, in a table of primitives, so that no object is
+   * allocated per issue. As different keys may have the same hash, keys of candidates are compared before matching.
+   */
+  protected void match(Tracking<RAW, BASE> tracking, SearchKey searchKey) {
 
     if (tracking.isComplete()) {
       return;
     }
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(searchKeyFactory.apply(base), base);
+    List<BASE> bases = new ArrayList<>();
+    tracking.getUnmatchedBases().forEach(bases::add);
+    LongKeyIndex baseSearch = new LongKeyIndex(bases.size());
+    // positions of a key are iterated in the order reverse to insertion, so first bases are inserted last
+    for (int i = bases.size() - 1; i >= 0; i--) {
+      baseSearch.put(searchKey.hash(bases.get(i)), i);
     }
+    boolean[] matchedBases = new boolean[bases.size()];
 
     for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = searchKeyFactory.apply(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      bases.stream()
-        .sorted(comparing(this::statusRank).reversed()
-          .thenComparing(comparing(Trackable::getCreationDate)))
-        .findFirst()
-        .ifPresent(match -> {
-          tracking.match(raw, match);
-          baseSearch.remove(rawKey, match);
-        });
+      int match = LongKeyIndex.NONE;
+      for (int i = baseSearch.first(searchKey.hash(raw)); i != LongKeyIndex.NONE; i = baseSearch.next(i)) {
+        if (!matchedBases[i] && searchKey.matches(raw, bases.get(i)) && (match == LongKeyIndex.NONE || isPreferred(bases.get(i), bases.get(match)))) {
+          match = i;
+        }
+      }
+      if (match != LongKeyIndex.NONE) {
+        tracking.match(raw, bases.get(match));
+        matchedBases[match] = true;
+      }
+    }
+  }
+
+  /**
+   * Whether {@code base} should be matched rather than {@code other}, when both have the same key
+   */
+  private boolean isPreferred(BASE base, BASE other) {
+    int rankDiff = statusRank(base) - statusRank(other);
+    if (rankDiff != 0) {
+      return rankDiff > 0;
     }
+    return base.getCreationDate().compareTo(other.getCreationDate()) < 0;
   }
 
   private int statusRank(BASE i) {
@@ -69,119 +85,81 @@ public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  protected interface SearchKey {
-  }
-
-  protected static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    protected LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * The fields which must be equal for a raw issue to be matched with a base issue. All keys include the rule.
+   */
+  protected enum SearchKey {
+    LINE_AND_LINE_HASH {
+      @Override
+      long hash(Trackable trackable) {
+        return combine(combine(trackable.getRuleKey().hashCode(), lineOf(trackable)), lineHashOf(trackable).hashCode());
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      return Objects.hash(ruleKey, lineHash, line != null ? line : 0);
-    }
-  }
 
-  protected static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
+      @Override
+      boolean matches(Trackable raw, Trackable base) {
+        // start with most discriminant field
+        return Objects.equals(raw.getLine(), base.getLine())
+          && lineHashOf(raw).equals(lineHashOf(base))
+          && raw.getRuleKey().equals(base.getRuleKey());
+      }
+    },
 
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
+    LINE_HASH_AND_MESSAGE {
+      @Override
+      long hash(Trackable trackable) {
+        return combine(combine(trackable.getRuleKey().hashCode(), Objects.hashCode(trackable.getMessage())), lineHashOf(trackable).hashCode());
+      }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      @Override
+      boolean matches(Trackable raw, Trackable base) {
+        return lineHashOf(raw).equals(lineHashOf(base))
+          && Objects.equals(raw.getMessage(), base.getMessage())
+          && raw.getRuleKey().equals(base.getRuleKey());
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
+    },
 
-    @Override
-    public int hashCode() {
-      return Objects.hash(ruleKey, message, lineHash);
-    }
-  }
+    LINE_AND_MESSAGE {
+      @Override
+      long hash(Trackable trackable) {
+        return combine(combine(trackable.getRuleKey().hashCode(), Objects.hashCode(trackable.getMessage())), lineOf(trackable));
+      }
 
-  protected static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
+      @Override
+      boolean matches(Trackable raw, Trackable base) {
+        return Objects.equals(raw.getLine(), base.getLine())
+          && Objects.equals(raw.getMessage(), base.getMessage())
+          && raw.getRuleKey().equals(base.getRuleKey());
+      }
+    },
 
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
+    LINE_HASH {
+      @Override
+      long hash(Trackable trackable) {
+        return combine(trackable.getRuleKey().hashCode(), lineHashOf(trackable).hashCode());
+      }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      @Override
+      boolean matches(Trackable raw, Trackable base) {
+        return lineHashOf(raw).equals(lineHashOf(base))
+          && raw.getRuleKey().equals(base.getRuleKey());
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
+    };
 
-    @Override
-    public int hashCode() {
-      return Objects.hash(ruleKey, message, line != null ? line : 0);
-    }
-  }
+    abstract long hash(Trackable trackable);
 
-  protected static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
+    abstract boolean matches(Trackable raw, Trackable base);
 
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
+    private static long combine(long hash, int value) {
+      return hash * 0x9E3779B97F4A7C15L + value;
     }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
-      }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
+    private static int lineOf(Trackable trackable) {
+      Integer line = trackable.getLine();
+      return line != null ? line : 0;
     }
 
-    @Override
-    public int hashCode() {
-      return Objects.hash(ruleKey, lineHash);
+    private static String lineHashOf(Trackable trackable) {
+      return StringUtils.defaultString(trackable.getLineHash(), "");
     }
   }
 
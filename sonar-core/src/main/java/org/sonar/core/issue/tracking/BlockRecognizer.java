@@ -80,10 +80,15 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       return;
     }
 
+    LineHashSequence baseLineHashes = baseInput.getLineHashSequence();
+    LineHashSequence rawLineHashes = rawInput.getLineHashSequence();
+    Map<String, Integer> idsByHash = new HashMap<>();
+    int[] baseIds = lineIds(baseLineHashes, idsByHash);
+    int[] rawIds = lineIds(rawLineHashes, idsByHash);
     List<LinePair> possibleLinePairs = Lists.newArrayList();
     for (Integer baseLine : basesByLine.keySet()) {
       for (Integer rawLine : rawsByLine.keySet()) {
-        int weight = lengthOfMaximalBlock(baseInput.getLineHashSequence(), baseLine, rawInput.getLineHashSequence(), rawLine);
+        int weight = lengthOfMaximalBlock(baseIds, baseLine, rawIds, rawLine);
         possibleLinePairs.add(new LinePair(baseLine, rawLine, weight));
       }
     }
@@ -99,20 +104,30 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
    * @param startLineB number of line from second version of text (numbering starts from 1)
    */
   static int lengthOfMaximalBlock(LineHashSequence hashesA, int startLineA, LineHashSequence hashesB, int startLineB) {
-    if (!hashesA.getHashForLine(startLineA).equals(hashesB.getHashForLine(startLineB))) {
+    Map<String, Integer> idsByHash = new HashMap<>();
+    return lengthOfMaximalBlock(lineIds(hashesA, idsByHash), startLineA, lineIds(hashesB, idsByHash), startLineB);
+  }
+
+  /**
+   * Same as {@link #lengthOfMaximalBlock(LineHashSequence, int, LineHashSequence, int)}, but lines are compared through
+   * the identifiers of their hashes, as returned by {@link #lineIds(LineHashSequence, Map)}. It's called for
+   * each pair of lines, so comparing integers instead of hashes drastically reduces the cost on large files.
+   */
+  private static int lengthOfMaximalBlock(int[] idsA, int startLineA, int[] idsB, int startLineB) {
+    if (idsA[startLineA] != idsB[startLineB]) {
       return 0;
     }
     int length = 0;
     int ai = startLineA;
     int bi = startLineB;
-    while (ai <= hashesA.length() && bi <= hashesB.length() && hashesA.getHashForLine(ai).equals(hashesB.getHashForLine(bi))) {
+    while (ai < idsA.length && bi < idsB.length && idsA[ai] == idsB[bi]) {
       ai++;
       bi++;
       length++;
     }
     ai = startLineA;
     bi = startLineB;
-    while (ai > 0 && bi > 0 && hashesA.getHashForLine(ai).equals(hashesB.getHashForLine(bi))) {
+    while (ai > 0 && bi > 0 && idsA[ai] == idsB[bi]) {
       ai--;
       bi--;
       length++;
@@ -121,6 +136,18 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     return length - 1;
   }
 
+  /**
+   * Identifiers of the hashes of lines. Line 1 is at index 1. Lines with the same hash, in any of the sequences
+   * sharing {@code idsByHash}, have the same identifier.
+   */
+  private static int[] lineIds(LineHashSequence hashes, Map<String, Integer> idsByHash) {
+    int[] ids = new int[hashes.length() + 1];
+    for (int line = 1; line <= hashes.length(); line++) {
+      ids[line] = idsByHash.computeIfAbsent(hashes.getHashForLine(line), h -> idsByHash.size());
+    }
+    return ids;
+  }
+
   private void map(Collection<RAW> raws, Collection<BASE> bases, Tracking<RAW, BASE> result) {
     for (RAW raw : raws) {
       for (BASE base : bases) {
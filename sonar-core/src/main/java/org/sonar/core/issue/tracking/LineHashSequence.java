@@ -37,18 +37,13 @@ public class LineHashSequence {
    * Hashes of lines. Line 1 is at index 0. No null elements.
    */
   private final List<String> hashes;
-  private final SetMultimap<String, Integer> lineByHash;
+  /**
+   * Lazily loaded, as it is expensive on large files and not used by tracking
+   */
+  private SetMultimap<String, Integer> lineByHash;
 
   public LineHashSequence(List<String> hashes) {
     this.hashes = hashes;
-    this.lineByHash = HashMultimap.create();
-    
-    int lineNo = 1;
-    
-    for (String hash : hashes) {
-      lineByHash.put(hash, lineNo);
-      lineNo++;
-    }
   }
 
   /**
@@ -69,6 +64,14 @@ public class LineHashSequence {
    * The lines, starting with 1, that matches the given hash.
    */
   public Set<Integer> getLinesForHash(String hash) {
+    if (lineByHash == null) {
+      lineByHash = HashMultimap.create();
+      int lineNo = 1;
+      for (String h : hashes) {
+        lineByHash.put(h, lineNo);
+        lineNo++;
+      }
+    }
     return lineByHash.get(hash);
   }
 
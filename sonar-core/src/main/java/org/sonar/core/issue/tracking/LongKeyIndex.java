@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Index of positions, for example in an array, by 64 bits keys. It's an open-addressing hash table with linear probing,
+ * which stores keys and positions in arrays of primitives: no object is allocated per indexed value.
+ * <p>
+ * Positions associated to a key are chained in the order reverse to the one of calls to {@link #put(long, int)}:
+ * <pre>
+ *   for (int position = index.first(key); position != LongKeyIndex.NONE; position = index.next(position)) {
+ *     ...
+ *   }
+ * </pre>
+ */
+final class LongKeyIndex {
+
+  static final int NONE = -1;
+
+  private final long[] keys;
+  private final int[] heads;
+  private final int[] next;
+  private final int mask;
+
+  /**
+   * @param size the number of positions to be indexed. Positions are in the range [0, size).
+   */
+  LongKeyIndex(int size) {
+    // load factor is at most 0.5
+    int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+    this.keys = new long[capacity];
+    this.heads = new int[capacity];
+    Arrays.fill(heads, NONE);
+    this.next = new int[size];
+    this.mask = capacity - 1;
+  }
+
+  void put(long key, int position) {
+    int slot = slot(key);
+    if (heads[slot] == NONE) {
+      keys[slot] = key;
+    }
+    next[position] = heads[slot];
+    heads[slot] = position;
+  }
+
+  /**
+   * The position last put with the given key, or {@link #NONE}
+   */
+  int first(long key) {
+    return heads[slot(key)];
+  }
+
+  /**
+   * The position put with the same key before the given one, or {@link #NONE}
+   */
+  int next(int position) {
+    return next[position];
+  }
+
+  private int slot(long key) {
+    int slot = (int) mix(key) & mask;
+    while (heads[slot] != NONE && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Finalization step of MurmurHash3, which spreads the bits of keys so that linear probing is efficient
+   */
+  private static long mix(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
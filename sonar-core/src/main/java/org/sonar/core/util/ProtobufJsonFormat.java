@@ -26,6 +26,7 @@ import java.io.StringWriter;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.sonar.api.utils.text.JsonWriter;
 
 /**
@@ -155,10 +156,27 @@ public class ProtobufJsonFormat {
   public static void write(Message message, JsonWriter writer) {
     writer.setSerializeNulls(false).setSerializeEmptys(true);
     writer.beginObject();
-    writeMessage(message, writer);
+    writeMessage(message, writer, null);
     writer.endObject();
   }
 
+  /**
+   * Writes the fields of the message, except the specified one, into the JSON object which is currently opened.
+   * The excluded field is expected to be written afterwards by the caller, for example element by element with
+   * {@link #writeValue(Message, JsonWriter)} in order to stream a large repeated field.
+   */
+  public static void writeFieldsExcept(Message message, Descriptors.FieldDescriptor excludedField, JsonWriter writer) {
+    writer.setSerializeNulls(false).setSerializeEmptys(true);
+    writeMessage(message, writer, excludedField);
+  }
+
+  /**
+   * Writes a message as a JSON value, for example as an element of an array which is currently opened.
+   */
+  public static void writeValue(Message message, JsonWriter writer) {
+    writeMessageValue(message, writer);
+  }
+
   public static String toJson(Message message) {
     StringWriter json = new StringWriter();
     try (JsonWriter jsonWriter = JsonWriter.of(json)) {
@@ -167,9 +185,12 @@ public class ProtobufJsonFormat {
     return json.toString();
   }
 
-  private static void writeMessage(Message message, JsonWriter writer) {
+  private static void writeMessage(Message message, JsonWriter writer, @Nullable Descriptors.FieldDescriptor excludedField) {
     MessageType type = MessageType.of(message);
     for (Descriptors.FieldDescriptor fieldDescriptor : type.fieldDescriptors) {
+      if (fieldDescriptor.equals(excludedField)) {
+        continue;
+      }
       if (fieldDescriptor.isRepeated()) {
         writer.name(fieldDescriptor.getName());
         if (fieldDescriptor.isMapField()) {
@@ -243,7 +264,7 @@ public class ProtobufJsonFormat {
       }
     } else {
       writer.beginObject();
-      writeMessage(message, writer);
+      writeMessage(message, writer, null);
       writer.endObject();
     }
   }
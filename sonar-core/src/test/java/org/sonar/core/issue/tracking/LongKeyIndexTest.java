@@ -0,0 +1,72 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongKeyIndexTest {
+
+  @Test
+  public void positions_are_chained_by_key() {
+    LongKeyIndex underTest = new LongKeyIndex(4);
+    underTest.put(10L, 0);
+    underTest.put(20L, 1);
+    underTest.put(10L, 2);
+    underTest.put(-10L, 3);
+
+    assertThat(positionsOf(underTest, 10L)).containsExactly(2, 0);
+    assertThat(positionsOf(underTest, 20L)).containsExactly(1);
+    assertThat(positionsOf(underTest, -10L)).containsExactly(3);
+    assertThat(positionsOf(underTest, 30L)).isEmpty();
+  }
+
+  @Test
+  public void support_keys_with_colliding_slots() {
+    int size = 1_000;
+    LongKeyIndex underTest = new LongKeyIndex(size);
+    for (int i = 0; i < size; i++) {
+      // keys are multiples of the capacity, so that they would be in the same slot without mixing of bits
+      underTest.put(i * 4096L, i);
+    }
+
+    for (int i = 0; i < size; i++) {
+      assertThat(positionsOf(underTest, i * 4096L)).containsExactly(i);
+    }
+  }
+
+  @Test
+  public void empty_index() {
+    LongKeyIndex underTest = new LongKeyIndex(0);
+
+    assertThat(underTest.first(0L)).isEqualTo(LongKeyIndex.NONE);
+  }
+
+  private static List<Integer> positionsOf(LongKeyIndex index, long key) {
+    List<Integer> positions = new ArrayList<>();
+    for (int position = index.first(key); position != LongKeyIndex.NONE; position = index.next(position)) {
+      positions.add(position);
+    }
+    return positions;
+  }
+}
@@ -158,6 +158,20 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw)).isSameAs(base);
   }
 
+  @Test
+  public void do_not_fail_if_issues_without_message() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue base = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, null);
+
+    FakeInput rawInput = new FakeInput("H2");
+    Issue raw = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, null);
+    Issue rawWithMessage = rawInput.createIssueOnLine(1, RULE_UNUSED_LOCAL_VARIABLE, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw)).isSameAs(base);
+    assertThat(tracking.baseFor(rawWithMessage)).isNull();
+  }
+
   @Test
   public void do_not_fail_if_base_issue_without_line() {
     FakeInput baseInput = new FakeInput("H1", "H2");
@@ -382,6 +396,27 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw1)).isEqualTo(base1);
   }
 
+  @Test
+  public void resolved_then_confirmed_then_oldest_base_issue_is_matched_first() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue openBase = new Issue(1, "H1", RULE_SYSTEM_PRINT, "msg", org.sonar.api.issue.Issue.STATUS_OPEN, new Date(1_000L));
+    Issue recentConfirmedBase = new Issue(1, "H1", RULE_SYSTEM_PRINT, "msg", org.sonar.api.issue.Issue.STATUS_CONFIRMED, new Date(3_000L));
+    Issue oldConfirmedBase = new Issue(1, "H1", RULE_SYSTEM_PRINT, "msg", org.sonar.api.issue.Issue.STATUS_CONFIRMED, new Date(2_000L));
+    Issue resolvedBase = new Issue(1, "H1", RULE_SYSTEM_PRINT, "msg", org.sonar.api.issue.Issue.STATUS_RESOLVED, new Date(4_000L));
+    baseInput.addIssue(openBase).addIssue(recentConfirmedBase).addIssue(oldConfirmedBase).addIssue(resolvedBase);
+
+    FakeInput rawInput = new FakeInput("H1");
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw3 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(resolvedBase);
+    assertThat(tracking.baseFor(raw2)).isSameAs(oldConfirmedBase);
+    assertThat(tracking.baseFor(raw3)).isSameAs(recentConfirmedBase);
+    assertThat(tracking.getUnmatchedBases()).containsExactly(openBase);
+  }
+
   private static class Issue implements Trackable {
     private final RuleKey ruleKey;
     private final Integer line;
@@ -389,7 +424,7 @@ public class TrackerTest {
     private final String status;
     private final Date creationDate;
 
-    Issue(@Nullable Integer line, String lineHash, RuleKey ruleKey, String message, String status, Date creationDate) {
+    Issue(@Nullable Integer line, String lineHash, RuleKey ruleKey, @Nullable String message, String status, Date creationDate) {
       this.line = line;
       this.lineHash = lineHash;
       this.ruleKey = ruleKey;
@@ -445,7 +480,7 @@ public class TrackerTest {
       return new FakeInput(hashes);
     }
 
-    Issue createIssueOnLine(int line, RuleKey ruleKey, String message) {
+    Issue createIssueOnLine(int line, RuleKey ruleKey, @Nullable String message) {
       Issue issue = new Issue(line, lineHashes.get(line - 1), ruleKey, message, org.sonar.api.issue.Issue.STATUS_OPEN, new Date());
       issues.add(issue);
       return issue;
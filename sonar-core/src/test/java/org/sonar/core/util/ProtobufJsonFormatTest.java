@@ -111,6 +111,25 @@ public class ProtobufJsonFormatTest {
     assertThat(toJson(msg)).isEqualTo("{\"strings\":[],\"nesteds\":[]}");
   }
 
+  @Test
+  public void write_elements_of_array_one_by_one() {
+    TestArray msg = TestArray.newBuilder().addStrings("one").addStrings("two").build();
+    StringWriter json = new StringWriter();
+
+    try (JsonWriter writer = JsonWriter.of(json)) {
+      writer.beginObject();
+      ProtobufJsonFormat.writeFieldsExcept(msg, TestArray.getDescriptor().findFieldByNumber(TestArray.NESTEDS_FIELD_NUMBER), writer);
+      writer.name("nesteds").beginArray();
+      ProtobufJsonFormat.writeValue(NestedMsg.newBuilder().setLabel("nestedOne").build(), writer);
+      ProtobufJsonFormat.writeValue(NestedMsg.newBuilder().setLabel("nestedTwo").build(), writer);
+      writer.endArray();
+      writer.endObject();
+    }
+
+    assertThat(json.toString())
+      .isEqualTo("{\"strings\":[\"one\",\"two\"],\"nesteds\":[{\"label\":\"nestedOne\"},{\"label\":\"nestedTwo\"}]}");
+  }
+
   @Test
   public void do_not_write_null_wrapper_of_array() {
     TestNullableArray msg = TestNullableArray.newBuilder()
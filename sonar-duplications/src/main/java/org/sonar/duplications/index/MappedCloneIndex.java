@@ -0,0 +1,411 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.duplications.utils.FastStringComparator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Read-only index backed by a memory-mapped file, written by {@link Writer}.
+ * <p>
+ * Blocks are kept off-heap, sorted by hash, so that a query by hash is a binary search in the mapped file. Only the
+ * identifiers of resources are loaded on heap. The index can be queried concurrently by several threads.
+ * </p>
+ * <p>
+ * Layout of the file, in big-endian ints:
+ * <ul>
+ *   <li>header: magic number, version, number of ints in hash, number of blocks, number of resources</li>
+ *   <li>blocks sorted by hash: hash, index of resource, index in file, start line, end line, start unit, end unit</li>
+ *   <li>indexes of blocks sorted by resource</li>
+ *   <li>for each resource, position of its first block in the previous section, followed by the number of blocks</li>
+ *   <li>identifiers of resources in UTF-8, each one preceded by its length in bytes</li>
+ * </ul>
+ * </p>
+ */
+public class MappedCloneIndex extends AbstractCloneIndex {
+
+  private static final int MAGIC = 0x534f4e43;
+  private static final int VERSION = 1;
+  private static final int HEADER_INTS = 5;
+  private static final int BLOCK_INTS = 6;
+
+  private final int hashInts;
+  private final int blockInts;
+  private final int size;
+  private final String[] resourceIds;
+  private final IntBuffer data;
+  private final int byResourceOffset;
+  private final int resourceStartsOffset;
+
+  private MappedCloneIndex(IntBuffer data, String[] resourceIds) {
+    this.data = data;
+    this.hashInts = data.get(2);
+    this.blockInts = hashInts + BLOCK_INTS;
+    this.size = data.get(3);
+    this.resourceIds = resourceIds;
+    this.byResourceOffset = HEADER_INTS + size * blockInts;
+    this.resourceStartsOffset = byResourceOffset + size;
+  }
+
+  public static MappedCloneIndex open(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+      FileChannel channel = randomAccessFile.getChannel()) {
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Clone index is too large to be mapped: " + file);
+      }
+      // mapping remains valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      IntBuffer ints = buffer.asIntBuffer();
+      if (length < HEADER_INTS * 4 || ints.get(0) != MAGIC || ints.get(1) != VERSION) {
+        throw new IllegalStateException("Unsupported format of clone index: " + file);
+      }
+      int size = ints.get(3);
+      int resources = ints.get(4);
+      int blockInts = ints.get(2) + BLOCK_INTS;
+      long idsPosition = 4L * (HEADER_INTS + (long) size * blockInts + size + 2L * resources);
+      return new MappedCloneIndex(ints, readResourceIds(buffer, (int) idsPosition, resources));
+    }
+  }
+
+  private static String[] readResourceIds(ByteBuffer buffer, int position, int resources) {
+    ByteBuffer ids = buffer.duplicate();
+    ids.position(position);
+    String[] result = new String[resources];
+    for (int i = 0; i < resources; i++) {
+      byte[] bytes = new byte[ids.getInt()];
+      ids.get(bytes);
+      result[i] = new String(bytes, UTF_8);
+    }
+    return result;
+  }
+
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    int[] hash = sequenceHash.toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    int index = lowerBound(hash);
+    List<Block> result = new ArrayList<>();
+    Block.Builder builder = Block.builder();
+    while (index < size && compareHash(index, hash) == 0) {
+      result.add(createBlock(builder, index, sequenceHash));
+      index++;
+    }
+    return result;
+  }
+
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    int resource = Arrays.binarySearch(resourceIds, resourceId, FastStringComparator.INSTANCE);
+    if (resource < 0) {
+      return Collections.emptyList();
+    }
+    return getByResource(resource);
+  }
+
+  private List<Block> getByResource(int resource) {
+    int start = data.get(resourceStartsOffset + 2 * resource);
+    int count = data.get(resourceStartsOffset + 2 * resource + 1);
+    List<Block> result = new ArrayList<>(count);
+    Block.Builder builder = Block.builder();
+    for (int i = start; i < start + count; i++) {
+      result.add(createBlock(builder, data.get(byResourceOffset + i), null));
+    }
+    return result;
+  }
+
+  @Override
+  public Iterator<ResourceBlocks> iterator() {
+    return new ResourceIterator();
+  }
+
+  @Override
+  public int noResources() {
+    return resourceIds.length;
+  }
+
+  /**
+   * Not supported, the index is read-only.
+   */
+  @Override
+  public void insert(Block block) {
+    throw new UnsupportedOperationException("Clone index is read-only");
+  }
+
+  /**
+   * Index of first block with a hash greater or equal to the given one.
+   */
+  private int lowerBound(int[] hash) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareHash(middle, hash) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private int compareHash(int index, int[] hash) {
+    int offset = HEADER_INTS + index * blockInts;
+    for (int i = 0; i < hashInts; i++) {
+      int value = data.get(offset + i);
+      if (value != hash[i]) {
+        return value < hash[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private Block createBlock(Block.Builder builder, int index, @Nullable ByteArray byteHash) {
+    int offset = HEADER_INTS + index * blockInts;
+    ByteArray blockHash = byteHash;
+    if (blockHash == null) {
+      int[] hash = new int[hashInts];
+      for (int i = 0; i < hashInts; i++) {
+        hash[i] = data.get(offset + i);
+      }
+      blockHash = new ByteArray(hash);
+    }
+    offset += hashInts;
+    return builder
+      .setResourceId(resourceIds[data.get(offset)])
+      .setBlockHash(blockHash)
+      .setIndexInFile(data.get(offset + 1))
+      .setLines(data.get(offset + 2), data.get(offset + 3))
+      .setUnit(data.get(offset + 4), data.get(offset + 5))
+      .build();
+  }
+
+  /**
+   * Writes a file which can be opened with {@link MappedCloneIndex#open(File)}.
+   * <p>
+   * Blocks are appended to the file as they are inserted, then sorted by hash in the mapped file by {@link #finish()},
+   * so only the identifiers of resources are kept on heap, whatever the number of blocks.
+   * </p>
+   */
+  public static final class Writer implements Closeable {
+    private final File file;
+    private final int hashInts;
+    private final int blockInts;
+    private final DataOutputStream output;
+    private final Map<String, Integer> resourceIndexes = new HashMap<>();
+    private final List<String> resourceIds = new ArrayList<>();
+    private int[] resourceSizes = new int[16];
+    private int size = 0;
+
+    public Writer(File file, int hashBytes) throws IOException {
+      this.file = file;
+      this.hashInts = hashBytes / 4;
+      this.blockInts = hashInts + BLOCK_INTS;
+      this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      // header is written by finish()
+      for (int i = 0; i < HEADER_INTS; i++) {
+        output.writeInt(0);
+      }
+    }
+
+    public void insert(Block block) throws IOException {
+      int[] hash = block.getBlockHash().toIntArray();
+      if (hash.length != hashInts) {
+        throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+      }
+      for (int value : hash) {
+        output.writeInt(value);
+      }
+      output.writeInt(resourceIndex(block.getResourceId()));
+      output.writeInt(block.getIndexInFile());
+      output.writeInt(block.getStartLine());
+      output.writeInt(block.getEndLine());
+      output.writeInt(block.getStartUnit());
+      output.writeInt(block.getEndUnit());
+      size++;
+    }
+
+    private int resourceIndex(String resourceId) {
+      Integer index = resourceIndexes.get(resourceId);
+      if (index == null) {
+        index = resourceIds.size();
+        resourceIndexes.put(resourceId, index);
+        resourceIds.add(resourceId);
+        if (index == resourceSizes.length) {
+          resourceSizes = Arrays.copyOf(resourceSizes, (resourceSizes.length * 3) / 2 + 1);
+        }
+      }
+      resourceSizes[index]++;
+      return index;
+    }
+
+    /**
+     * Sorts the blocks and writes the other sections of the file. No block can be inserted afterwards.
+     */
+    public void finish() throws IOException {
+      output.close();
+
+      String[] sortedResourceIds = resourceIds.toArray(new String[resourceIds.size()]);
+      Arrays.sort(sortedResourceIds, FastStringComparator.INSTANCE);
+      int resources = sortedResourceIds.length;
+      int[] sortedIndexes = new int[resources];
+      int[] resourceStarts = new int[resources];
+      int start = 0;
+      for (int i = 0; i < resources; i++) {
+        int index = resourceIndexes.get(sortedResourceIds[i]);
+        sortedIndexes[index] = i;
+        resourceStarts[i] = start;
+        start += resourceSizes[index];
+      }
+      byte[][] encodedResourceIds = new byte[resources][];
+      long length = 4L * (HEADER_INTS + (long) size * blockInts + size + 2L * resources);
+      for (int i = 0; i < resources; i++) {
+        encodedResourceIds[i] = sortedResourceIds[i].getBytes(UTF_8);
+        length += 4L + encodedResourceIds[i].length;
+      }
+      if (length > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Clone index is too large to be mapped: " + file);
+      }
+
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        FileChannel channel = randomAccessFile.getChannel()) {
+        randomAccessFile.setLength(length);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        IntBuffer ints = buffer.asIntBuffer();
+        DataUtils.sort(new MappedBlocks(ints));
+
+        int byResourceOffset = HEADER_INTS + size * blockInts;
+        int[] written = new int[resources];
+        for (int i = 0; i < size; i++) {
+          int resourceOffset = HEADER_INTS + i * blockInts + hashInts;
+          int resource = sortedIndexes[ints.get(resourceOffset)];
+          ints.put(resourceOffset, resource);
+          ints.put(byResourceOffset + resourceStarts[resource] + written[resource], i);
+          written[resource]++;
+        }
+        int resourceStartsOffset = byResourceOffset + size;
+        for (int i = 0; i < resources; i++) {
+          ints.put(resourceStartsOffset + 2 * i, resourceStarts[i]);
+          ints.put(resourceStartsOffset + 2 * i + 1, written[i]);
+        }
+        buffer.position(4 * (resourceStartsOffset + 2 * resources));
+        for (byte[] bytes : encodedResourceIds) {
+          buffer.putInt(bytes.length);
+          buffer.put(bytes);
+        }
+        ints.put(0, MAGIC);
+        ints.put(1, VERSION);
+        ints.put(2, hashInts);
+        ints.put(3, size);
+        ints.put(4, resources);
+        buffer.force();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+
+    private class MappedBlocks implements DataUtils.Sortable {
+      private final IntBuffer ints;
+
+      private MappedBlocks(IntBuffer ints) {
+        this.ints = ints;
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public void swap(int i, int j) {
+        int i2 = HEADER_INTS + i * blockInts;
+        int j2 = HEADER_INTS + j * blockInts;
+        for (int k = 0; k < blockInts; k++, i2++, j2++) {
+          int x = ints.get(i2);
+          ints.put(i2, ints.get(j2));
+          ints.put(j2, x);
+        }
+      }
+
+      @Override
+      public boolean isLess(int i, int j) {
+        int i2 = HEADER_INTS + i * blockInts;
+        int j2 = HEADER_INTS + j * blockInts;
+        for (int k = 0; k < hashInts; k++, i2++, j2++) {
+          int x = ints.get(i2);
+          int y = ints.get(j2);
+          if (x != y) {
+            return x < y;
+          }
+        }
+        return false;
+      }
+    }
+  }
+
+  private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private int resource = 0;
+
+    @Override
+    public boolean hasNext() {
+      return resource < resourceIds.length;
+    }
+
+    @Override
+    public ResourceBlocks next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      ResourceBlocks blocks = new ResourceBlocks(resourceIds[resource], getByResource(resource));
+      resource++;
+      return blocks;
+    }
+  }
+}
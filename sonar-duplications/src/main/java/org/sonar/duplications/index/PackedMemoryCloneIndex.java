@@ -19,6 +19,8 @@
  */
 package org.sonar.duplications.index;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -44,6 +46,10 @@ import javax.annotation.Nullable;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Queries do not modify the index once it is sorted, so once all blocks are inserted, the index can be queried
+ * from several threads without locking. Only the sort, performed by the first query, is synchronized.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -58,7 +64,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   /**
    * Indicates that index requires sorting to perform queries.
    */
-  private boolean sorted;
+  private volatile boolean sorted;
 
   /**
    * Current number of blocks in index.
@@ -70,8 +76,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -100,23 +104,60 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getByResourceId(String resourceId) {
     ensureSorted();
 
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
-
-    int index = DataUtils.binarySearch(byResourceId);
+    int index = lowerBoundByResourceId(resourceId);
 
     List<Block> result = new ArrayList<>();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
-      result.add(getBlock(realIndex, resourceId));
-
+    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0) {
+      result.add(getBlock(resourceIdsIndex[index], resourceId));
       index++;
-      realIndex = resourceIdsIndex[index];
     }
     return result;
   }
 
+  /**
+   * Position of the first block, in order of resource ids, which resource id is not less than the given one.
+   */
+  private int lowerBoundByResourceId(String resourceId) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[mid]], resourceId) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  /**
+   * Position of the first block which hash is not less than the given one.
+   */
+  private int lowerBoundByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData[offset] != hash[k]) {
+        return blockData[offset] < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
   private Block createBlock(int index, String resourceId, @Nullable ByteArray byteHash) {
     int offset = index * blockInts;
     ByteArray blockHash;
@@ -138,7 +179,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     int startUnit = blockData[offset++];
     int endUnit = blockData[offset];
 
-    return blockBuilder
+    return Block.builder()
       .setResourceId(resourceId)
       .setBlockHash(blockHash)
       .setIndexInFile(indexInFile)
@@ -217,20 +258,15 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    int index = lowerBoundByHash(hash);
 
     List<Block> result = new ArrayList<>();
-    while (index < size && !isLessByHash(size, index)) {
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
       result.add(createBlock(index, resourceId, sequenceHash));
@@ -269,6 +305,18 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     size++;
   }
 
+  /**
+   * Writes the blocks of this index to a file, which can then be opened with {@link MappedCloneIndex#open(File)}.
+   */
+  public void writeTo(File file) throws IOException {
+    try (MappedCloneIndex.Writer writer = new MappedCloneIndex.Writer(file, hashInts * 4)) {
+      for (int i = 0; i < size; i++) {
+        writer.insert(createBlock(i, resourceIds[i], null));
+      }
+      writer.finish();
+    }
+  }
+
   /**
    * Increases the capacity, if necessary.
    */
@@ -297,16 +345,18 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     if (sorted) {
       return;
     }
+    synchronized (this) {
+      if (sorted) {
+        return;
+      }
+      DataUtils.sort(byBlockHash);
+      for (int i = 0; i < size; i++) {
+        resourceIdsIndex[i] = i;
+      }
+      DataUtils.sort(byResourceId);
 
-    ensureCapacity();
-
-    DataUtils.sort(byBlockHash);
-    for (int i = 0; i < size; i++) {
-      resourceIdsIndex[i] = i;
+      sorted = true;
     }
-    DataUtils.sort(byResourceId);
-
-    sorted = true;
   }
 
   private boolean isLessByHash(int i, int j) {
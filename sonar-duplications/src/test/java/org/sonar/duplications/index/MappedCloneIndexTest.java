@@ -0,0 +1,200 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedCloneIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void query_by_hash_and_by_resource() throws IOException {
+    MappedCloneIndex index = writeAndOpen(
+      newBlock("a", 1, 1),
+      newBlock("a", 2, 2),
+      newBlock("b", 1, 1),
+      newBlock("c", 1, 1),
+      newBlock("d", 1, 1),
+      newBlock("e", 1, 1),
+      newBlock("e", 2, 2),
+      newBlock("e", 3, 3));
+
+    assertThat(index.noResources()).isEqualTo(5);
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(5);
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).hasSize(2);
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).hasSize(1);
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).isEmpty();
+    assertThat(index.getBySequenceHash(new ByteArray(0L))).isEmpty();
+    assertThat(index.getByResourceId("a")).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+    assertThat(index.getByResourceId("e")).hasSize(3);
+    assertThat(index.getByResourceId("does not exist")).isEmpty();
+  }
+
+  @Test
+  public void blocks_are_restored() throws IOException {
+    MappedCloneIndex index = writeAndOpen(
+      Block.builder()
+        .setResourceId("éà")
+        .setBlockHash(new ByteArray(-42L))
+        .setIndexInFile(3)
+        .setLines(10, 20)
+        .setUnit(100, 200)
+        .build());
+
+    Collection<Block> blocks = index.getByResourceId("éà");
+    assertThat(blocks).hasSize(1);
+    Block block = blocks.iterator().next();
+    assertThat(block.getResourceId()).isEqualTo("éà");
+    assertThat(block.getBlockHash()).isEqualTo(new ByteArray(-42L));
+    assertThat(block.getIndexInFile()).isEqualTo(3);
+    assertThat(block.getStartLine()).isEqualTo(10);
+    assertThat(block.getEndLine()).isEqualTo(20);
+    assertThat(block.getStartUnit()).isEqualTo(100);
+    assertThat(block.getEndUnit()).isEqualTo(200);
+    assertThat(index.getBySequenceHash(new ByteArray(-42L))).containsExactly(block);
+  }
+
+  @Test
+  public void iterate_resources_in_same_order_than_packed_index() throws IOException {
+    PackedMemoryCloneIndex packed = new PackedMemoryCloneIndex();
+    packed.insert(newBlock("a", 1, 1));
+    packed.insert(newBlock("c", 1, 1));
+    packed.insert(newBlock("b", 1, 1));
+    packed.insert(newBlock("c", 2, 2));
+    packed.insert(newBlock("a", 2, 2));
+    MappedCloneIndex index = writeAndOpen(packed);
+
+    List<ResourceBlocks> resourcesBlocks = new ArrayList<>();
+    Iterator<ResourceBlocks> it = index.iterator();
+    while (it.hasNext()) {
+      resourcesBlocks.add(it.next());
+    }
+
+    assertThat(resourcesBlocks).extracting(ResourceBlocks::resourceId).containsExactly("a", "b", "c");
+    assertThat(resourcesBlocks.get(0).blocks()).hasSize(2);
+    assertThat(resourcesBlocks.get(1).blocks()).hasSize(1);
+    assertThat(resourcesBlocks.get(2).blocks()).hasSize(2);
+  }
+
+  @Test
+  public void writer_sorts_blocks_inserted_in_any_order() throws IOException {
+    Random random = new Random(42);
+    PackedMemoryCloneIndex packed = new PackedMemoryCloneIndex();
+    File file = temp.newFile();
+    try (MappedCloneIndex.Writer writer = new MappedCloneIndex.Writer(file, 8)) {
+      for (int i = 0; i < 1_000; i++) {
+        Block block = newBlock("resource" + random.nextInt(20), random.nextInt(50), i);
+        packed.insert(block);
+        writer.insert(block);
+      }
+      writer.finish();
+    }
+    MappedCloneIndex index = MappedCloneIndex.open(file);
+
+    assertThat(index.noResources()).isEqualTo(packed.noResources());
+    for (long hash = 0; hash < 50; hash++) {
+      Collection<Block> expected = packed.getBySequenceHash(new ByteArray(hash));
+      assertThat(index.getBySequenceHash(new ByteArray(hash))).hasSameSizeAs(expected).containsOnlyElementsOf(expected);
+    }
+    for (int i = 0; i < 20; i++) {
+      Collection<Block> expected = packed.getByResourceId("resource" + i);
+      assertThat(index.getByResourceId("resource" + i)).hasSameSizeAs(expected).containsOnlyElementsOf(expected);
+    }
+  }
+
+  @Test
+  public void empty_index() throws IOException {
+    MappedCloneIndex index = writeAndOpen();
+
+    assertThat(index.noResources()).isZero();
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).isEmpty();
+    assertThat(index.iterator().hasNext()).isFalse();
+  }
+
+  @Test
+  public void fail_to_insert() throws IOException {
+    MappedCloneIndex index = writeAndOpen();
+
+    expectedException.expect(UnsupportedOperationException.class);
+    index.insert(newBlock("a", 1, 1));
+  }
+
+  @Test
+  public void fail_to_find_hash_of_incorrect_size() throws IOException {
+    MappedCloneIndex index = writeAndOpen();
+
+    expectedException.expect(IllegalArgumentException.class);
+    index.getBySequenceHash(new ByteArray(1));
+  }
+
+  @Test
+  public void fail_to_open_file_of_unknown_format() throws IOException {
+    File file = temp.newFile();
+    Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20});
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Unsupported format of clone index");
+    MappedCloneIndex.open(file);
+  }
+
+  private MappedCloneIndex writeAndOpen(Block... blocks) throws IOException {
+    PackedMemoryCloneIndex packed = new PackedMemoryCloneIndex();
+    for (Block block : blocks) {
+      packed.insert(block);
+    }
+    return writeAndOpen(packed);
+  }
+
+  private MappedCloneIndex writeAndOpen(PackedMemoryCloneIndex packed) throws IOException {
+    File file = temp.newFile();
+    packed.writeTo(file);
+    return MappedCloneIndex.open(file);
+  }
+
+  private static Block newBlock(String resourceId, long hash, int indexInFile) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(indexInFile)
+      .setLines(1, 2)
+      .build();
+  }
+}
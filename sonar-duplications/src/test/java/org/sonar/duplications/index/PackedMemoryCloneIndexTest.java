@@ -28,6 +28,10 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.is;
@@ -65,6 +69,33 @@ public class PackedMemoryCloneIndexTest {
     assertThat(index.getByResourceId("does not exist").size(), is(0));
   }
 
+  @Test
+  public void query_from_several_threads() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("r" + (i % 10), i % 100));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        results.add(executor.submit(() -> {
+          boolean valid = true;
+          for (int i = 0; i < 100; i++) {
+            valid &= index.getBySequenceHash(new ByteArray((long) i)).size() == 10;
+            valid &= index.getByResourceId("r" + (i % 10)).size() == 100;
+          }
+          return valid;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get(), is(true));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(index.getBySequenceHash(new ByteArray(100L)).size(), is(0));
+  }
+
   /**
    * When: query by a hash value.
    * Expected: all blocks should have same hash, which presented in the form of the same object.
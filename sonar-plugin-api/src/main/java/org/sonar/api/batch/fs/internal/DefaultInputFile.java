@@ -54,6 +54,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   private Status status;
   private Charset charset;
   private Metadata metadata;
+  private volatile boolean metadataChecked;
   private boolean published;
   private boolean excludedForCoverage;
 
@@ -72,9 +73,21 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     this.contents = contents;
   }
 
+  /**
+   * Generates metadata, charset and status if they have not been set yet. Files can be used by several sensors
+   * at the same time (see {@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}), so metadata are
+   * generated only once and are visible to all threads once this method returns.
+   */
   public void checkMetadata() {
-    if (metadata == null) {
-      metadataGenerator.accept(this);
+    if (!metadataChecked) {
+      synchronized (this) {
+        if (!metadataChecked) {
+          if (metadata == null) {
+            metadataGenerator.accept(this);
+          }
+          metadataChecked = true;
+        }
+      }
     }
   }
 
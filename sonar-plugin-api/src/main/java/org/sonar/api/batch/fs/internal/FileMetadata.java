@@ -24,7 +24,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nullable;
@@ -47,6 +53,7 @@ import org.sonar.api.batch.fs.internal.charhandler.LineOffsetCounter;
 public class FileMetadata {
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int BUFFER_SIZE = 8192;
 
   /**
    * Compute hash of a file ignoring line ends differences.
@@ -57,17 +64,39 @@ public class FileMetadata {
     FileHashComputer fileHashComputer = new FileHashComputer(filePath);
     LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
 
-    if (otherHandler != null) {
-      CharHandler[] handlers = {lineCounter, fileHashComputer, lineOffsetCounter, otherHandler};
-      readFile(stream, encoding, filePath, handlers);
-    } else {
-      CharHandler[] handlers = {lineCounter, fileHashComputer, lineOffsetCounter};
-      readFile(stream, encoding, filePath, handlers);
+    readFile(stream, encoding, filePath, handlers(lineCounter, fileHashComputer, lineOffsetCounter, otherHandler));
+    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
+      lineOffsetCounter.getLastValidOffset());
+  }
+
+  /**
+   * Same as {@link #readMetadata(InputStream, Charset, String, CharHandler)}, but decodes the remaining bytes
+   * of the given buffer, for example a memory-mapped file, without copying them into an intermediate stream.
+   * Malformed input is replaced, like it is when reading a stream.
+   * @since 7.0
+   */
+  public Metadata readMetadata(ByteBuffer bytes, Charset encoding, String filePath, @Nullable CharHandler otherHandler) {
+    LineCounter lineCounter = new LineCounter(filePath, encoding);
+    FileHashComputer fileHashComputer = new FileHashComputer(filePath);
+    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+
+    try {
+      read(bytes, encoding, handlers(lineCounter, fileHashComputer, lineOffsetCounter, otherHandler));
+    } catch (CharacterCodingException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", filePath, encoding), e);
     }
     return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
       lineOffsetCounter.getLastValidOffset());
   }
 
+  private static CharHandler[] handlers(LineCounter lineCounter, FileHashComputer fileHashComputer, LineOffsetCounter lineOffsetCounter,
+    @Nullable CharHandler otherHandler) {
+    if (otherHandler != null) {
+      return new CharHandler[] {lineCounter, fileHashComputer, lineOffsetCounter, otherHandler};
+    }
+    return new CharHandler[] {lineCounter, fileHashComputer, lineOffsetCounter};
+  }
+
   public Metadata readMetadata(InputStream stream, Charset encoding, String filePath) {
     return readMetadata(stream, encoding, filePath, null);
   }
@@ -99,11 +128,47 @@ public class FileMetadata {
   }
 
   private static void read(Reader reader, CharHandler[] handlers) throws IOException {
-    char c;
-    int i = reader.read();
+    char[] buffer = new char[BUFFER_SIZE];
+    boolean afterCR = false;
+    int read = reader.read(buffer);
+    while (read != -1) {
+      afterCR = handle(buffer, read, afterCR, handlers);
+      read = reader.read(buffer);
+    }
+    eof(afterCR, handlers);
+  }
+
+  private static void read(ByteBuffer bytes, Charset encoding, CharHandler[] handlers) throws CharacterCodingException {
+    CharsetDecoder decoder = encoding.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
     boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
+    CoderResult result;
+    do {
+      result = decoder.decode(bytes, chars, true);
+      if (result.isError()) {
+        result.throwException();
+      }
+      afterCR = handle(chars.array(), chars.position(), afterCR, handlers);
+      chars.clear();
+    } while (result.isOverflow());
+    do {
+      result = decoder.flush(chars);
+      afterCR = handle(chars.array(), chars.position(), afterCR, handlers);
+      chars.clear();
+    } while (result.isOverflow());
+    eof(afterCR, handlers);
+  }
+
+  /**
+   * Feeds the first {@code length} chars of the buffer to the handlers.
+   * @return whether the last char was a carriage return, whose end of line is only known with the next char
+   */
+  private static boolean handle(char[] buffer, int length, boolean previousIsCR, CharHandler[] handlers) {
+    boolean afterCR = previousIsCR;
+    for (int i = 0; i < length; i++) {
+      char c = buffer[i];
       if (afterCR) {
         for (CharHandler handler : handlers) {
           if (c == CARRIAGE_RETURN) {
@@ -135,8 +200,11 @@ public class FileMetadata {
           handler.handleAll(c);
         }
       }
-      i = reader.read();
     }
+    return afterCR;
+  }
+
+  private static void eof(boolean afterCR, CharHandler[] handlers) {
     for (CharHandler handler : handlers) {
       if (afterCR) {
         handler.newLine();
@@ -20,6 +20,7 @@
 package org.sonar.api.batch.fs.internal;
 
 import java.nio.file.Path;
+import javax.annotation.CheckForNull;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
@@ -69,7 +70,7 @@ public abstract class PathPattern {
    * @deprecated since 6.6
    */
   @Deprecated
-  private static class AbsolutePathPattern extends PathPattern {
+  static class AbsolutePathPattern extends PathPattern {
     private AbsolutePathPattern(String pattern) {
       super(pattern);
     }
@@ -81,14 +82,7 @@ public abstract class PathPattern {
 
     @Override
     public boolean match(Path absolutePath, Path relativePath, boolean caseSensitiveFileExtension) {
-      String path = PathUtils.sanitize(absolutePath.toString());
-      if (!caseSensitiveFileExtension) {
-        String extension = sanitizeExtension(FilenameUtils.getExtension(path));
-        if (StringUtils.isNotBlank(extension)) {
-          path = StringUtils.removeEndIgnoreCase(path, extension);
-          path = path + extension;
-        }
-      }
+      String path = sanitizePath(absolutePath, caseSensitiveFileExtension);
       return pattern.match(path);
     }
 
@@ -101,7 +95,7 @@ public abstract class PathPattern {
   /**
    * Path relative to module basedir
    */
-  private static class RelativePathPattern extends PathPattern {
+  static class RelativePathPattern extends PathPattern {
     private RelativePathPattern(String pattern) {
       super(pattern);
     }
@@ -113,14 +107,7 @@ public abstract class PathPattern {
 
     @Override
     public boolean match(Path absolutePath, Path relativePath, boolean caseSensitiveFileExtension) {
-      String path = PathUtils.sanitize(relativePath.toString());
-      if (!caseSensitiveFileExtension) {
-        String extension = sanitizeExtension(FilenameUtils.getExtension(path));
-        if (StringUtils.isNotBlank(extension)) {
-          path = StringUtils.removeEndIgnoreCase(path, extension);
-          path = path + extension;
-        }
-      }
+      String path = sanitizePath(relativePath, caseSensitiveFileExtension);
       return path != null && pattern.match(path);
     }
 
@@ -130,6 +117,22 @@ public abstract class PathPattern {
     }
   }
 
+  /**
+   * Path with unix separators, and with lower-cased extension when extension is not case sensitive
+   */
+  @CheckForNull
+  static String sanitizePath(Path path, boolean caseSensitiveFileExtension) {
+    String sanitized = PathUtils.sanitize(path.toString());
+    if (sanitized != null && !caseSensitiveFileExtension) {
+      String extension = sanitizeExtension(FilenameUtils.getExtension(sanitized));
+      if (StringUtils.isNotBlank(extension)) {
+        sanitized = StringUtils.removeEndIgnoreCase(sanitized, extension);
+        sanitized = sanitized + extension;
+      }
+    }
+    return sanitized;
+  }
+
   static String sanitizeExtension(String suffix) {
     return StringUtils.lowerCase(StringUtils.removeStart(suffix, "."));
   }
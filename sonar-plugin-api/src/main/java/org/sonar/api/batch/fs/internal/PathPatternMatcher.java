@@ -0,0 +1,288 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.utils.WildcardPattern;
+
+/**
+ * Matches a path against many wildcard patterns at once. Patterns are compiled into a trie over path segments,
+ * so that patterns sharing a prefix (for example <code>**&#47;</code>) are evaluated only once, literal segments are
+ * resolved with a single lookup and <code>*suffix</code> segments (typically file extensions) with a lookup per distinct
+ * suffix length. Matching a path then costs roughly the number of its segments, instead of the number of patterns.
+ * <p>
+ * Result is the same as matching each {@link PathPattern} or {@link WildcardPattern} in turn. Patterns that can not be split
+ * on segments (like <code>src/**Foo.java</code>) and deprecated absolute path patterns are matched one by one.
+ *
+ * @since 7.0
+ */
+@ThreadSafe
+public class PathPatternMatcher {
+
+  private static final String ANY_DIRECTORIES = "**";
+  private static final String WILDCARDS = "*?";
+
+  private final Node root = new Node();
+  private final int size;
+  private final List<Fallback> fallbacks = new ArrayList<>();
+  private final boolean hasAbsolutePatterns;
+
+  private PathPatternMatcher(List<String> wildcardPatterns, BitSet absolutePatterns) {
+    this.size = wildcardPatterns.size();
+    this.hasAbsolutePatterns = !absolutePatterns.isEmpty();
+    for (int i = 0; i < wildcardPatterns.size(); i++) {
+      String wildcardPattern = wildcardPatterns.get(i);
+      boolean absolute = absolutePatterns.get(i);
+      if (absolute || !compile(wildcardPattern, i)) {
+        fallbacks.add(new Fallback(i, WildcardPattern.create(wildcardPattern), absolute));
+      }
+    }
+  }
+
+  public static PathPatternMatcher create(PathPattern[] patterns) {
+    List<String> wildcardPatterns = new ArrayList<>(patterns.length);
+    BitSet absolutePatterns = new BitSet(patterns.length);
+    for (int i = 0; i < patterns.length; i++) {
+      wildcardPatterns.add(patterns[i].pattern.toString());
+      absolutePatterns.set(i, patterns[i] instanceof PathPattern.AbsolutePathPattern);
+    }
+    return new PathPatternMatcher(wildcardPatterns, absolutePatterns);
+  }
+
+  /**
+   * Patterns are interpreted like {@link WildcardPattern#create(String)}
+   */
+  public static PathPatternMatcher createFromWildcardPatterns(List<String> patterns) {
+    return new PathPatternMatcher(patterns, new BitSet());
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Indexes of the patterns matching the file, in the order given at creation.
+   */
+  public BitSet match(Path absolutePath, Path relativePath, boolean caseSensitiveFileExtension) {
+    String relative = PathPattern.sanitizePath(relativePath, caseSensitiveFileExtension);
+    String absolute = hasAbsolutePatterns ? PathPattern.sanitizePath(absolutePath, caseSensitiveFileExtension) : null;
+    return match(relative, absolute);
+  }
+
+  public boolean matchAny(Path absolutePath, Path relativePath) {
+    return !match(absolutePath, relativePath, true).isEmpty();
+  }
+
+  /**
+   * Indexes of the patterns matching the path, in the order given at creation.
+   */
+  public BitSet match(@Nullable String path) {
+    return match(path, null);
+  }
+
+  public boolean matchAny(@Nullable String path) {
+    return !match(path).isEmpty();
+  }
+
+  private BitSet match(@Nullable String relativePath, @Nullable String absolutePath) {
+    BitSet result = new BitSet(size);
+    if (relativePath != null) {
+      matchSegments(split(relativePath), result);
+    }
+    for (Fallback fallback : fallbacks) {
+      String path = fallback.absolute ? absolutePath : relativePath;
+      if (path != null && fallback.pattern.match(path)) {
+        result.set(fallback.index);
+      }
+    }
+    return result;
+  }
+
+  private void matchSegments(String[] segments, BitSet result) {
+    NodeSet current = new NodeSet();
+    // nodes following "**/", that stay active whatever the next segments
+    NodeSet anyDirectories = new NodeSet();
+    current.add(root, anyDirectories);
+    for (String segment : segments) {
+      NodeSet next = new NodeSet();
+      for (Node node : current.nodes) {
+        node.trailingAny.forEach(result::set);
+        node.next(segment, next, anyDirectories);
+      }
+      for (Node node : new ArrayList<>(anyDirectories.nodes)) {
+        next.add(node, anyDirectories);
+      }
+      current = next;
+    }
+    for (Node node : current.nodes) {
+      node.terminals.forEach(result::set);
+    }
+  }
+
+  /**
+   * Same normalization as {@link WildcardPattern#match(String)}
+   */
+  private static String[] split(String path) {
+    String value = StringUtils.removeStart(path, "/");
+    value = StringUtils.removeEnd(value, "/");
+    return value.isEmpty() ? new String[] {""} : StringUtils.splitPreserveAllTokens(value, '/');
+  }
+
+  /**
+   * @return false if pattern can't be represented by segments. It must then be evaluated as a regular expression.
+   */
+  private boolean compile(String wildcardPattern, int index) {
+    String value = wildcardPattern.startsWith("/") || wildcardPattern.startsWith("\\") ? wildcardPattern.substring(1) : wildcardPattern;
+    String[] segments = value.isEmpty() ? new String[] {""} : StringUtils.splitPreserveAllTokens(value, "/\\");
+    for (String segment : segments) {
+      if (!ANY_DIRECTORIES.equals(segment) && segment.contains(ANY_DIRECTORIES)) {
+        return false;
+      }
+    }
+    Node node = root;
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      boolean last = i == segments.length - 1;
+      if (ANY_DIRECTORIES.equals(segment)) {
+        if (last) {
+          node.trailingAny.add(index);
+          return true;
+        }
+        if (node.anyDirectories == null) {
+          node.anyDirectories = new Node();
+        }
+        node = node.anyDirectories;
+      } else {
+        node = node.child(segment);
+      }
+    }
+    node.terminals.add(index);
+    return true;
+  }
+
+  private static class Node {
+    private final Map<String, Node> literals = new HashMap<>();
+    private final Map<String, Node> suffixes = new HashMap<>();
+    private final Set<Integer> suffixLengths = new TreeSet<>();
+    private final Map<String, Glob> globs = new LinkedHashMap<>();
+    @CheckForNull
+    private Node anyDirectories;
+    private final List<Integer> terminals = new ArrayList<>();
+    private final List<Integer> trailingAny = new ArrayList<>();
+
+    private Node child(String segment) {
+      if (StringUtils.indexOfAny(segment, WILDCARDS) < 0) {
+        return literals.computeIfAbsent(segment, s -> new Node());
+      }
+      String suffix = segment.substring(1);
+      if (segment.charAt(0) == '*' && StringUtils.indexOfAny(suffix, WILDCARDS) < 0) {
+        suffixLengths.add(suffix.length());
+        return suffixes.computeIfAbsent(suffix, s -> new Node());
+      }
+      return globs.computeIfAbsent(segment, Glob::new).node;
+    }
+
+    private void next(String segment, NodeSet next, NodeSet anyDirectories) {
+      Node literal = literals.get(segment);
+      if (literal != null) {
+        next.add(literal, anyDirectories);
+      }
+      for (int length : suffixLengths) {
+        if (length > segment.length()) {
+          break;
+        }
+        Node suffix = suffixes.get(segment.substring(segment.length() - length));
+        if (suffix != null) {
+          next.add(suffix, anyDirectories);
+        }
+      }
+      for (Glob glob : globs.values()) {
+        if (glob.pattern.matcher(segment).matches()) {
+          next.add(glob.node, anyDirectories);
+        }
+      }
+    }
+  }
+
+  /**
+   * Segment with wildcards, converted to a regular expression in the same way as {@link WildcardPattern}
+   */
+  private static class Glob {
+    private final Pattern pattern;
+    private final Node node = new Node();
+
+    private Glob(String segment) {
+      StringBuilder sb = new StringBuilder();
+      for (char ch : segment.toCharArray()) {
+        if (ch == '*') {
+          sb.append("[^/]*?");
+        } else if (ch == '?') {
+          sb.append("[^/]");
+        } else {
+          sb.append(Pattern.quote(String.valueOf(ch)));
+        }
+      }
+      this.pattern = Pattern.compile(sb.toString());
+    }
+  }
+
+  /**
+   * Active nodes, including the nodes reached through "**&#47;" without consuming any segment
+   */
+  private static class NodeSet {
+    private final Set<Node> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private void add(Node node, NodeSet anyDirectories) {
+      if (nodes.add(node) && node.anyDirectories != null) {
+        anyDirectories.nodes.add(node.anyDirectories);
+        add(node.anyDirectories, anyDirectories);
+      }
+    }
+  }
+
+  @Immutable
+  private static class Fallback {
+    private final int index;
+    private final WildcardPattern pattern;
+    private final boolean absolute;
+
+    private Fallback(int index, WildcardPattern pattern, boolean absolute) {
+      this.index = index;
+      this.pattern = pattern;
+      this.absolute = absolute;
+    }
+  }
+}
@@ -96,4 +96,13 @@ public interface SensorDescriptor {
    * @since 6.5
    */
   SensorDescriptor onlyWhenConfiguration(Predicate<Configuration> predicate);
+
+  /**
+   * This sensor can be executed concurrently with other thread-safe sensors, when parallel execution of sensors
+   * is enabled on the scanner side. Such a sensor must not rely on data saved by other sensors of the same phase,
+   * and must not share mutable state between executions without synchronization.
+   * Default is to execute sensor sequentially.
+   * @since 7.0
+   */
+  SensorDescriptor threadSafe();
 }
@@ -33,6 +33,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Rule;
@@ -94,6 +101,35 @@ public class DefaultInputFileTest {
     assertThat(new File(inputFile.relativePath())).isRelative();
   }
 
+  @Test
+  public void generate_metadata_once_when_used_concurrently() throws Exception {
+    AtomicInteger generations = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    DefaultInputFile inputFile = new DefaultInputFile(indexedFile, f -> {
+      generations.incrementAndGet();
+      f.setMetadata(new Metadata(42, 42, "", new int[0], 0));
+      f.setStatus(InputFile.Status.SAME);
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<InputFile.Status>> statuses = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        statuses.add(executor.submit(() -> {
+          start.await();
+          return inputFile.status();
+        }));
+      }
+      start.countDown();
+      for (Future<InputFile.Status> status : statuses) {
+        assertThat(status.get()).isEqualTo(InputFile.Status.SAME);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(generations.get()).isEqualTo(1);
+  }
+
   @Test
   public void test_content() throws IOException {
     Path testFile = baseDir.resolve(PROJECT_RELATIVE_PATH);
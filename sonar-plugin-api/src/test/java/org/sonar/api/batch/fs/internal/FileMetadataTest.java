@@ -21,12 +21,14 @@ package org.sonar.api.batch.fs.internal;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -299,4 +301,43 @@ public class FileMetadataTest {
       "glyphicons-halflings-regular.woff at line 1 for encoding UTF-8. Please fix file content or configure the encoding to be used using property 'sonar.sourceEncoding'.");
   }
 
+  @Test
+  public void read_buffer_gives_same_metadata_as_stream() throws Exception {
+    File tempFile = temp.newFile();
+    // carriage returns at the boundaries of the internal char buffer
+    String content = StringUtils.repeat("a", 8191) + "\r\nb\r" + StringUtils.repeat("c", 8190) + "\r\r\n\nend";
+    FileUtils.write(tempFile, content, StandardCharsets.UTF_8, true);
+
+    Metadata fromStream = new FileMetadata().readMetadata(new FileInputStream(tempFile), StandardCharsets.UTF_8, tempFile.getName());
+    Metadata fromBuffer = new FileMetadata().readMetadata(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, tempFile.getName(), null);
+
+    assertThat(fromBuffer.lines()).isEqualTo(fromStream.lines()).isEqualTo(6);
+    assertThat(fromBuffer.nonBlankLines()).isEqualTo(fromStream.nonBlankLines()).isEqualTo(4);
+    assertThat(fromBuffer.hash()).isEqualTo(fromStream.hash()).isEqualTo(md5Hex(content.replace("\r\n", "\n").replace('\r', '\n')));
+    assertThat(fromBuffer.originalLineOffsets()).isEqualTo(fromStream.originalLineOffsets());
+    assertThat(fromBuffer.lastValidOffset()).isEqualTo(fromStream.lastValidOffset());
+  }
+
+  @Test
+  public void read_buffer_from_its_position() throws Exception {
+    byte[] bytes = "\uFEFFfoo\nbar".getBytes(StandardCharsets.UTF_16BE);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    buffer.position(2);
+
+    Metadata metadata = new FileMetadata().readMetadata(buffer, StandardCharsets.UTF_16BE, "foo.txt", null);
+    assertThat(metadata.lines()).isEqualTo(2);
+    assertThat(metadata.hash()).isEqualTo(md5Hex("foo\nbar"));
+    assertThat(metadata.originalLineOffsets()).containsOnly(0, 4);
+  }
+
+  @Test
+  public void read_buffer_with_wrong_encoding() throws Exception {
+    byte[] bytes = "marker´s\n".getBytes(Charset.forName("cp1252"));
+
+    Metadata metadata = new FileMetadata().readMetadata(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8, "foo.txt", null);
+    assertThat(metadata.lines()).isEqualTo(2);
+    assertThat(metadata.hash()).isEqualTo(md5Hex("marker\ufffds\n"));
+    assertThat(metadata.originalLineOffsets()).containsOnly(0, 9);
+  }
+
 }
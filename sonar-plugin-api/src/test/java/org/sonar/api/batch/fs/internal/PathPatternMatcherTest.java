@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import org.junit.Test;
+import org.sonar.api.utils.WildcardPattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PathPatternMatcherTest {
+
+  private static final String[] PATTERNS = {"**", "**/*", "*", "**/*.java", "**/*Foo.java", "src/**", "src/**/*.js", "/src/main/**", "**/test/**",
+    "src/*/Foo.java", "**/*.d.ts", "src/**Foo.java", "**/**", "**/", "a/", "", "a//b", "**//b", "src\\main\\*.java", "**/?oo.java", "foo?/**/*.x",
+    "*.java", "src/main/java/Foo.java", "**/Foo*.java", "**/*Test*", "a/**/b/**/c", "**/[a].java", "**/a.b*", "***/x", "a/**/**/b", "**/.*", "**/*.*"};
+
+  private static final String[] PATHS = {"a", "a/b", "src", "src/Foo.java", "src/main/java/Foo.java", "src/main/java/org/MyFoo.java", "src/main/java/org/MyFoo.JAVA",
+    "Foo.java", "test/a.js", "src/test/a.js", "src/x/test/y", "a/b/c", "a/x/b/y/c", "a/b/b/c/c", "x/[a].java", "foo1/z/q.x", "fooo/q.x", "foo1/q.x",
+    "src/main/Bar.java", "lib/a.d.ts", "a.ts", "FooTest.java", "x/.git", ".java", "x/a.b", "x/a.bc/d", "src/mainFoo.java", "src/a/Foo.java"};
+
+  private Path baseDir = Paths.get("/tmp/project").toAbsolutePath();
+
+  @Test
+  public void same_result_as_path_patterns() {
+    PathPattern[] patterns = PathPattern.create(PATTERNS);
+    PathPatternMatcher matcher = PathPatternMatcher.create(patterns);
+
+    for (String path : PATHS) {
+      Path relativePath = Paths.get(path);
+      Path absolutePath = baseDir.resolve(path);
+      BitSet matching = matcher.match(absolutePath, relativePath, true);
+      BitSet matchingIgnoringCase = matcher.match(absolutePath, relativePath, false);
+      for (int i = 0; i < patterns.length; i++) {
+        assertThat(matching.get(i)).as(patterns[i] + " on " + path).isEqualTo(patterns[i].match(absolutePath, relativePath, true));
+        assertThat(matchingIgnoringCase.get(i)).as(patterns[i] + " on " + path).isEqualTo(patterns[i].match(absolutePath, relativePath, false));
+      }
+    }
+  }
+
+  @Test
+  public void same_result_as_wildcard_patterns() {
+    PathPatternMatcher matcher = PathPatternMatcher.createFromWildcardPatterns(Arrays.asList(PATTERNS));
+
+    for (String path : PATHS) {
+      BitSet matching = matcher.match(path);
+      for (int i = 0; i < PATTERNS.length; i++) {
+        assertThat(matching.get(i)).as(PATTERNS[i] + " on " + path).isEqualTo(WildcardPattern.create(PATTERNS[i]).match(path));
+      }
+    }
+  }
+
+  @Test
+  public void return_indexes_of_matching_patterns() {
+    PathPatternMatcher matcher = PathPatternMatcher.createFromWildcardPatterns(Arrays.asList("**/*.js", "src/**", "**/*.java", "src/**/Foo.*"));
+
+    assertThat(matcher.match("src/main/Foo.java").toString()).isEqualTo("{1, 2, 3}");
+    assertThat(matcher.match("lib/Foo.js").toString()).isEqualTo("{0}");
+    assertThat(matcher.matchAny("lib/Foo.ts")).isFalse();
+  }
+
+  @Test
+  public void match_absolute_path_patterns() {
+    PathPatternMatcher matcher = PathPatternMatcher.create(PathPattern.create(new String[] {"file:**/src/main/**Foo.java", "**/*.java"}));
+
+    assertThat(matcher.match(baseDir.resolve("src/main/java/org/MyFoo.java"), Paths.get("src/main/java/org/MyFoo.java"), true).toString()).isEqualTo("{0, 1}");
+    assertThat(matcher.match(baseDir.resolve("src/main/java/org/MyFoo.JAVA"), Paths.get("src/main/java/org/MyFoo.JAVA"), false).toString()).isEqualTo("{0, 1}");
+    assertThat(matcher.matchAny(baseDir.resolve("src/main/java/org/MyFoo.JAVA"), Paths.get("src/main/java/org/MyFoo.JAVA"))).isFalse();
+  }
+
+  @Test
+  public void no_patterns() {
+    PathPatternMatcher matcher = PathPatternMatcher.createFromWildcardPatterns(Collections.emptyList());
+
+    assertThat(matcher.isEmpty()).isTrue();
+    assertThat(matcher.matchAny("src/Foo.java")).isFalse();
+  }
+}
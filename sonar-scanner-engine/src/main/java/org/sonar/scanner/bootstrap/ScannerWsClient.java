@@ -42,6 +42,7 @@ import org.sonarqube.ws.client.WsResponse;
 import static java.lang.String.format;
 import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 
 public class ScannerWsClient {
@@ -65,7 +66,8 @@ public class ScannerWsClient {
    *     a connectivity problem or timeout. Because networks can
    *     fail during an exchange, it is possible that the remote server
    *     accepted the request before the failure
-   * @throws HttpException if the response code is not in range [200..300)
+   * @throws HttpException if the response code is not in range [200..300), excepted 304 which is returned to
+   *     clients of conditional requests
    */
   public WsResponse call(WsRequest request) {
     Preconditions.checkState(!globalMode.isMediumTest(), "No WS call should be made in medium test mode");
@@ -103,7 +105,9 @@ public class ScannerWsClient {
       // SONAR-4397 Details are in response content
       throw MessageException.of(tryParseAsJsonError(response.content()));
     }
-    response.failIfNotSuccessful();
+    if (code != HTTP_NOT_MODIFIED) {
+      response.failIfNotSuccessful();
+    }
   }
 
   public static String tryParseAsJsonError(String responseContent) {
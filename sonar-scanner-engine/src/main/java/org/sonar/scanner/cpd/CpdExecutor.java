@@ -22,7 +22,10 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,6 +33,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -55,6 +59,10 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection of duplications of files runs in parallel on a pool of {@link CpdSettings#getNumberOfThreads()} threads, against
+ * the read-only index. Results are saved in the order of the index, so the report is the same whatever the number of threads.
+ * </p>
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -98,21 +106,36 @@ public class CpdExecutor {
       LOG.info("{} {} had no CPD blocks", filesWithoutBlocks, pluralize(filesWithoutBlocks));
     }
     progressReport.start(String.format("Calculating CPD for %d %s", total, pluralize(total)));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    int threads = settings.getNumberOfThreads();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CPD-%d")
+      .setDaemon(true)
+      .build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      // detections are completed in the order they have been submitted
+      Deque<FileDetection> pendingDetections = new ArrayDeque<>();
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        FileDetection detection = submitDetection(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection != null) {
+          pendingDetections.add(detection);
+        }
+        if (pendingDetections.size() >= threads) {
+          completeDetection(pendingDetections.poll(), timeout);
+        }
         count++;
       }
+      while (!pendingDetections.isEmpty()) {
+        completeDetection(pendingDetections.poll(), timeout);
+      }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
@@ -122,23 +145,41 @@ public class CpdExecutor {
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    FileDetection detection = submitDetection(executorService, componentKey, fileBlocks);
+    if (detection != null) {
+      completeDetection(detection, timeout);
+    }
+  }
+
+  @CheckForNull
+  private FileDetection submitDetection(ExecutorService executorService, String componentKey, Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
     InputFile inputFile = (InputFile) component;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
+    FileDetection detection = new FileDetection(component);
+    detection.future = executorService.submit(() -> {
+      detection.startedAt = System.currentTimeMillis();
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    });
+    return detection;
+  }
+
+  private void completeDetection(FileDetection detection, long timeout) {
+    DefaultInputComponent component = detection.component;
+    InputFile inputFile = (InputFile) component;
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      duplications = detection.future.get(detection.remainingTime(timeout), TimeUnit.MILLISECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      detection.future.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -156,6 +197,28 @@ public class CpdExecutor {
     saveDuplications(component, filtered);
   }
 
+  private static class FileDetection {
+    private final DefaultInputComponent component;
+    private Future<List<CloneGroup>> future;
+    // set by the thread executing the detection, 0 until the detection starts
+    private volatile long startedAt = 0L;
+
+    private FileDetection(DefaultInputComponent component) {
+      this.component = component;
+    }
+
+    /**
+     * The timeout applies to the execution of the detection, not to the time spent waiting for a thread of the pool
+     */
+    private long remainingTime(long timeout) {
+      long started = startedAt;
+      if (started == 0L) {
+        return timeout;
+      }
+      return Math.max(0L, timeout - (System.currentTimeMillis() - started));
+    }
+  }
+
   @VisibleForTesting
   final void saveDuplications(final DefaultInputComponent component, List<CloneGroup> duplications) {
     if (duplications.size() > MAX_CLONE_GROUP_PER_FILE) {
@@ -26,6 +26,11 @@ import org.sonar.api.config.Configuration;
 import org.sonar.duplications.block.BlockChunker;
 
 public class CpdSettings {
+  /**
+   * Number of threads used to detect duplications of files in parallel
+   */
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
+
   private final Configuration settings;
   private final String branch;
 
@@ -49,4 +54,11 @@ public class CpdSettings {
   int getMinimumTokens(String languageKey) {
     return settings.getInt("sonar.cpd." + languageKey + ".minimumTokens").orElse(100);
   }
+
+  /**
+   * Number of threads used to detect duplications. Always greater than zero.
+   */
+  int getNumberOfThreads() {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY).orElse(1));
+  }
 }
@@ -53,7 +53,10 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     this.settings = settings;
   }
 
-  public void insert(InputFile inputFile, Collection<Block> blocks) {
+  /**
+   * Files of modules scanned concurrently may be inserted at the same time
+   */
+  public synchronized void insert(InputFile inputFile, Collection<Block> blocks) {
     if (settings.isCrossProjectDuplicationEnabled()) {
       int id = ((DefaultInputFile) inputFile).batchId();
       if (publisher.getWriter().hasComponentData(FileStructure.Domain.CPD_TEXT_BLOCKS, id)) {
@@ -79,11 +82,11 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     indexedFiles.add(inputFile);
   }
 
-  public int noIndexedFiles() {
+  public synchronized int noIndexedFiles() {
     return indexedFiles.size();
   }
 
-  public boolean isIndexed(InputFile inputFile) {
+  public synchronized boolean isIndexed(InputFile inputFile) {
     return indexedFiles.contains(inputFile);
   }
 
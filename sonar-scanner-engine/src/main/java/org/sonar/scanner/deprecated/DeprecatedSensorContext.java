@@ -30,7 +30,6 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputModule;
 import org.sonar.api.batch.fs.InputPath;
 import org.sonar.api.batch.rule.ActiveRules;
-import org.sonar.api.batch.sensor.internal.SensorStorage;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.design.Dependency;
 import org.sonar.api.measures.Measure;
@@ -42,17 +41,20 @@ import org.sonar.core.component.ComponentKeys;
 import org.sonar.scanner.index.DefaultIndex;
 import org.sonar.scanner.scan.branch.BranchConfiguration;
 import org.sonar.scanner.sensor.DefaultSensorContext;
+import org.sonar.scanner.sensor.DefaultSensorStorage;
 
 public class DeprecatedSensorContext extends DefaultSensorContext implements SensorContext {
   private final DefaultIndex index;
   private final InputModule module;
+  private final DefaultSensorStorage sensorStorage;
 
   public DeprecatedSensorContext(InputModule module, DefaultIndex index, Configuration config, org.sonar.api.config.Settings mutableSettings,
-    FileSystem fs, ActiveRules activeRules, AnalysisMode analysisMode, SensorStorage sensorStorage, SonarRuntime sonarRuntime,
+    FileSystem fs, ActiveRules activeRules, AnalysisMode analysisMode, DefaultSensorStorage sensorStorage, SonarRuntime sonarRuntime,
     BranchConfiguration branchConfiguration) {
     super(module, config, mutableSettings, fs, activeRules, analysisMode, sensorStorage, sonarRuntime, branchConfiguration);
     this.index = index;
     this.module = module;
+    this.sensorStorage = sensorStorage;
   }
 
   @Override
@@ -88,12 +90,12 @@ public class DeprecatedSensorContext extends DefaultSensorContext implements Sen
 
   @Override
   public Measure saveMeasure(Measure measure) {
-    return index.addMeasure(module.key(), measure);
+    return index.addMeasure(module.key(), measure, sensorStorage);
   }
 
   @Override
   public Measure saveMeasure(Metric metric, Double value) {
-    return index.addMeasure(module.key(), new Measure(metric, value));
+    return index.addMeasure(module.key(), new Measure(metric, value), sensorStorage);
   }
 
   @Override
@@ -125,7 +127,7 @@ public class DeprecatedSensorContext extends DefaultSensorContext implements Sen
   @Override
   public Measure saveMeasure(@Nullable Resource resource, Measure measure) {
     Resource resourceOrProject = resourceOrProject(resource);
-    return index.addMeasure(getComponentKey(resourceOrProject), measure);
+    return index.addMeasure(getComponentKey(resourceOrProject), measure, sensorStorage);
   }
 
   @Override
@@ -149,7 +151,7 @@ public class DeprecatedSensorContext extends DefaultSensorContext implements Sen
 
   @Override
   public Measure saveMeasure(InputFile inputFile, Measure measure) {
-    return index.addMeasure(inputFile.key(), measure);
+    return index.addMeasure(inputFile.key(), measure, sensorStorage);
   }
 
   @Override
@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.events;
 
+import javax.annotation.CheckForNull;
 import org.sonar.scanner.phases.AbstractPhaseEvent;
 
 /**
@@ -30,17 +31,32 @@ public class BatchStepEvent extends AbstractPhaseEvent<BatchStepHandler>
     implements BatchStepHandler.BatchStepEvent {
 
   private String stepName;
+  private Long totalTime;
 
   public BatchStepEvent(String stepName, boolean start) {
     super(start);
     this.stepName = stepName;
   }
 
+  /**
+   * Reports a step whose duration was measured by its producer.
+   */
+  public BatchStepEvent(String stepName, long totalTime) {
+    this(stepName, false);
+    this.totalTime = totalTime;
+  }
+
   @Override
   public String stepName() {
     return stepName;
   }
 
+  @Override
+  @CheckForNull
+  public Long totalTime() {
+    return totalTime;
+  }
+
   @Override
   protected void dispatch(BatchStepHandler handler) {
     handler.onBatchStep(this);
@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.events;
 
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.events.EventHandler;
 
 /**
@@ -38,6 +39,14 @@ public interface BatchStepHandler extends EventHandler {
 
     boolean isEnd();
 
+    /**
+     * Duration in milliseconds of a step which is not delimited by start and end events, for example because
+     * it is spread over the whole module analysis. Such an event is an end event.
+     * @since 7.0
+     */
+    @CheckForNull
+    Long totalTime();
+
   }
 
   /**
@@ -48,8 +48,6 @@ public class DefaultIndex {
   private final InputComponentStore componentStore;
   private final MeasureCache measureCache;
   private final MetricFinder metricFinder;
-  // caches
-  private DefaultSensorStorage sensorStorage;
 
   private InputComponentTree tree;
 
@@ -60,11 +58,6 @@ public class DefaultIndex {
     this.metricFinder = metricFinder;
   }
 
-  public void setCurrentStorage(DefaultSensorStorage sensorStorage) {
-    // the following components depend on the current module, so they need to be reloaded.
-    this.sensorStorage = sensorStorage;
-  }
-
   @CheckForNull
   public Measure getMeasure(String key, org.sonar.api.batch.measure.Metric<?> metric) {
     return getMeasures(key, MeasuresFilters.metric(metric));
@@ -118,7 +111,10 @@ public class DefaultIndex {
     }
   }
 
-  public Measure addMeasure(String key, Measure measure) {
+  /**
+   * @param sensorStorage storage of the module being analyzed, as modules may be analyzed concurrently
+   */
+  public Measure addMeasure(String key, Measure measure, DefaultSensorStorage sensorStorage) {
     InputComponent component = componentStore.getByKey(key);
     if (component == null) {
       throw new IllegalStateException("Invalid component key: " + key);
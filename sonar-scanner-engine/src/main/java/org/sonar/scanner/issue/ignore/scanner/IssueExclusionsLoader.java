@@ -20,9 +20,11 @@
 package org.sonar.scanner.issue.ignore.scanner;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.api.batch.fs.internal.PathPatternMatcher;
 import org.sonar.api.batch.fs.internal.charhandler.CharHandler;
 import org.sonar.scanner.issue.ignore.pattern.BlockIssuePattern;
 import org.sonar.scanner.issue.ignore.pattern.IssueExclusionPatternInitializer;
@@ -32,6 +34,10 @@ import org.sonar.scanner.issue.ignore.pattern.PatternMatcher;
 public final class IssueExclusionsLoader {
   private final List<java.util.regex.Pattern> allFilePatterns;
   private final List<DoubleRegexpMatcher> blockMatchers;
+  private final MultiRegexpMatcher allFilePatternsMatcher;
+  private final MultiRegexpMatcher blockStartPatterns;
+  private final List<IssuePattern> multicriteriaPatterns;
+  private final PathPatternMatcher multicriteriaResourceMatcher;
   private final PatternMatcher patternMatcher;
   private final IssueExclusionPatternInitializer patternsInitializer;
   private final boolean enableCharHandler;
@@ -50,7 +56,16 @@ public final class IssueExclusionsLoader {
         java.util.regex.Pattern.compile(pattern.getBeginBlockRegexp()),
         java.util.regex.Pattern.compile(pattern.getEndBlockRegexp())));
     }
+    allFilePatternsMatcher = new MultiRegexpMatcher(allFilePatterns);
+    blockStartPatterns = blockStartPatterns(blockMatchers);
     enableCharHandler = !allFilePatterns.isEmpty() || !blockMatchers.isEmpty();
+
+    multicriteriaPatterns = new ArrayList<>(patternsInitializer.getMulticriteriaPatterns());
+    List<String> resourcePatterns = new ArrayList<>();
+    for (IssuePattern pattern : multicriteriaPatterns) {
+      resourcePatterns.add(pattern.getResourcePattern().toString());
+    }
+    multicriteriaResourceMatcher = PathPatternMatcher.createFromWildcardPatterns(resourcePatterns);
   }
 
   public boolean shouldExecute() {
@@ -58,21 +73,28 @@ public final class IssueExclusionsLoader {
   }
 
   public void addMulticriteriaPatterns(String relativePath, String componentKey) {
-    for (IssuePattern pattern : patternsInitializer.getMulticriteriaPatterns()) {
-      if (pattern.matchResource(relativePath)) {
-        patternMatcher.addPatternForComponent(componentKey, pattern);
-      }
+    BitSet matchingPatterns = multicriteriaResourceMatcher.match(relativePath);
+    for (int i = matchingPatterns.nextSetBit(0); i >= 0; i = matchingPatterns.nextSetBit(i + 1)) {
+      patternMatcher.addPatternForComponent(componentKey, multicriteriaPatterns.get(i));
     }
   }
 
   @CheckForNull
   public CharHandler createCharHandlerFor(String componentKey) {
     if (enableCharHandler) {
-      return new IssueExclusionsRegexpScanner(componentKey, allFilePatterns, blockMatchers, patternMatcher);
+      return new IssueExclusionsRegexpScanner(componentKey, allFilePatternsMatcher, blockMatchers, blockStartPatterns, patternMatcher);
     }
     return null;
   }
 
+  static MultiRegexpMatcher blockStartPatterns(List<DoubleRegexpMatcher> blockMatchers) {
+    List<java.util.regex.Pattern> firstPatterns = new ArrayList<>(blockMatchers.size());
+    for (DoubleRegexpMatcher blockMatcher : blockMatchers) {
+      firstPatterns.add(blockMatcher.firstPattern);
+    }
+    return new MultiRegexpMatcher(firstPatterns);
+  }
+
   public static class DoubleRegexpMatcher {
 
     private java.util.regex.Pattern firstPattern;
@@ -83,10 +105,6 @@ public final class IssueExclusionsLoader {
       this.secondPattern = secondPattern;
     }
 
-    boolean matchesFirstPattern(String line) {
-      return firstPattern.matcher(line).find();
-    }
-
     boolean matchesSecondPattern(String line) {
       return hasSecondPattern() && secondPattern.matcher(line).find();
     }
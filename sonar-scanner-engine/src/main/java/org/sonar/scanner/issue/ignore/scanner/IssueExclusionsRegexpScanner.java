@@ -36,8 +36,9 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
   private static final Logger LOG = LoggerFactory.getLogger(IssueExclusionsLoader.class);
 
   private final StringBuilder sb = new StringBuilder();
-  private final List<Pattern> allFilePatterns;
+  private final MultiRegexpMatcher allFilePatterns;
   private final List<DoubleRegexpMatcher> blockMatchers;
+  private final MultiRegexpMatcher blockStartPatterns;
   private final String componentKey;
   private final PatternMatcher patternMatcher;
 
@@ -48,8 +49,17 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
   private DoubleRegexpMatcher currentMatcher;
 
   IssueExclusionsRegexpScanner(String componentKey, List<Pattern> allFilePatterns, List<DoubleRegexpMatcher> blockMatchers, PatternMatcher patternMatcher) {
+    this(componentKey, new MultiRegexpMatcher(allFilePatterns), blockMatchers, IssueExclusionsLoader.blockStartPatterns(blockMatchers), patternMatcher);
+  }
+
+  /**
+   * Patterns are compiled once by {@link IssueExclusionsLoader}, and shared by the scanners of all files
+   */
+  IssueExclusionsRegexpScanner(String componentKey, MultiRegexpMatcher allFilePatterns, List<DoubleRegexpMatcher> blockMatchers,
+    MultiRegexpMatcher blockStartPatterns, PatternMatcher patternMatcher) {
     this.allFilePatterns = allFilePatterns;
     this.blockMatchers = blockMatchers;
+    this.blockStartPatterns = blockStartPatterns;
     this.patternMatcher = patternMatcher;
     this.componentKey = componentKey;
     String relativePath = StringUtils.substringAfterLast(componentKey, ":");
@@ -92,13 +102,12 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
     }
 
     // first check the single regexp patterns that can be used to totally exclude a file
-    for (Pattern pattern : allFilePatterns) {
-      if (pattern.matcher(line).find()) {
-        patternMatcher.addPatternToExcludeResource(componentKey);
-        // nothing more to do on this file
-        LOG.debug("- Exclusion pattern '{}': every issue in this file will be ignored.", pattern);
-        return;
-      }
+    int allFilePattern = allFilePatterns.find(line);
+    if (allFilePattern >= 0) {
+      patternMatcher.addPatternToExcludeResource(componentKey);
+      // nothing more to do on this file
+      LOG.debug("- Exclusion pattern '{}': every issue in this file will be ignored.", allFilePatterns.get(allFilePattern));
+      return;
     }
 
     // then check the double regexps if we're still here
@@ -115,12 +124,10 @@ public class IssueExclusionsRegexpScanner extends CharHandler {
 
   private void checkDoubleRegexps(String line, int lineIndex) {
     if (currentMatcher == null) {
-      for (DoubleRegexpMatcher matcher : blockMatchers) {
-        if (matcher.matchesFirstPattern(line)) {
-          startExclusion(lineIndex);
-          currentMatcher = matcher;
-          break;
-        }
+      int blockStartPattern = blockStartPatterns.find(line);
+      if (blockStartPattern >= 0) {
+        startExclusion(lineIndex);
+        currentMatcher = blockMatchers.get(blockStartPattern);
       }
     } else {
       if (currentMatcher.matchesSecondPattern(line)) {
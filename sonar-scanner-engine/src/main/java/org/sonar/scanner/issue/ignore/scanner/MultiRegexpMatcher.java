@@ -0,0 +1,92 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.ignore.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.CheckForNull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Finds the first of several regular expressions, in declaration order, that can be found in a line.
+ * <p>
+ * All expressions are combined into a single alternation, so that a line matching none of them (by far the most
+ * frequent case) is scanned only once instead of once per expression. Expressions are evaluated one by one only
+ * when the alternation is found, to keep the declaration order. Expressions that can't be safely embedded in an
+ * alternation (back references, quotes or comments) disable the combination.
+ */
+@Immutable
+class MultiRegexpMatcher {
+
+  private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\\\Q|\\(\\?[a-zA-Z-]*x");
+
+  private final List<Pattern> patterns;
+  @CheckForNull
+  private final Pattern alternation;
+
+  MultiRegexpMatcher(List<Pattern> patterns) {
+    this.patterns = new ArrayList<>(patterns);
+    this.alternation = combine(patterns);
+  }
+
+  @CheckForNull
+  private static Pattern combine(List<Pattern> patterns) {
+    if (patterns.size() < 2) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Pattern pattern : patterns) {
+      if (pattern.flags() != 0 || NOT_COMBINABLE.matcher(pattern.pattern()).find()) {
+        return null;
+      }
+      if (sb.length() > 0) {
+        sb.append('|');
+      }
+      sb.append("(?:").append(pattern.pattern()).append(')');
+    }
+    try {
+      return Pattern.compile(sb.toString());
+    } catch (PatternSyntaxException e) {
+      // for example the same named group in two expressions
+      return null;
+    }
+  }
+
+  /**
+   * @return index of the first pattern found in the line, or -1 if none is found
+   */
+  int find(String line) {
+    if (alternation != null && !alternation.matcher(line).find()) {
+      return -1;
+    }
+    for (int i = 0; i < patterns.size(); i++) {
+      if (patterns.get(i).matcher(line).find()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  Pattern get(int index) {
+    return patterns.get(index);
+  }
+}
@@ -32,6 +32,7 @@ import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader;
 import org.sonar.scanner.rule.QProfileVerifier;
 import org.sonar.scanner.scan.filesystem.DefaultModuleFileSystem;
 import org.sonar.scanner.scan.filesystem.FileIndexer;
+import org.sonar.scanner.scan.filesystem.MetadataGenerator;
 
 public abstract class AbstractPhaseExecutor {
 
@@ -48,10 +49,12 @@ public abstract class AbstractPhaseExecutor {
   private final InputModuleHierarchy hierarchy;
   private final FileIndexer fileIndexer;
   private final CoverageExclusions coverageExclusions;
+  private final MetadataGenerator metadataGenerator;
 
   public AbstractPhaseExecutor(InitializersExecutor initializersExecutor, PostJobsExecutor postJobsExecutor, SensorsExecutor sensorsExecutor,
     SensorContext sensorContext, InputModuleHierarchy hierarchy, EventBus eventBus, DefaultModuleFileSystem fs, QProfileVerifier profileVerifier,
-    IssueExclusionsLoader issueExclusionsLoader, FileIndexer fileIndexer, CoverageExclusions coverageExclusions) {
+    IssueExclusionsLoader issueExclusionsLoader, FileIndexer fileIndexer, CoverageExclusions coverageExclusions,
+    MetadataGenerator metadataGenerator) {
     this.postJobsExecutor = postJobsExecutor;
     this.initializersExecutor = initializersExecutor;
     this.sensorsExecutor = sensorsExecutor;
@@ -63,6 +66,7 @@ public abstract class AbstractPhaseExecutor {
     this.hierarchy = hierarchy;
     this.fileIndexer = fileIndexer;
     this.coverageExclusions = coverageExclusions;
+    this.metadataGenerator = metadataGenerator;
   }
 
   /**
@@ -93,6 +97,7 @@ public abstract class AbstractPhaseExecutor {
       executeOnRoot();
       postJobsExecutor.execute(sensorContext);
     }
+    reportFileMetadataSteps();
     eventBus.fireEvent(new ProjectAnalysisEvent(module, false));
   }
 
@@ -140,6 +145,13 @@ public abstract class AbstractPhaseExecutor {
     eventBus.fireEvent(new BatchStepEvent(stepName, false));
   }
 
+  /**
+   * Metadata of files is lazily computed during the whole analysis of the module, so its steps are reported at the end.
+   */
+  private void reportFileMetadataSteps() {
+    metadataGenerator.timePerStep().forEach((stepName, time) -> eventBus.fireEvent(new BatchStepEvent(stepName, time)));
+  }
+
   private void executeInitializersPhase() {
     initializersExecutor.execute();
   }
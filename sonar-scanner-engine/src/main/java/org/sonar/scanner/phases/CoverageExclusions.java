@@ -21,13 +21,14 @@ package org.sonar.scanner.phases;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import javax.annotation.concurrent.Immutable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.PathPatternMatcher;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.WildcardPattern;
 
@@ -36,13 +37,16 @@ public class CoverageExclusions {
   private static final Logger LOG = LoggerFactory.getLogger(CoverageExclusions.class);
 
   private Collection<WildcardPattern> exclusionPatterns;
+  private PathPatternMatcher exclusionMatcher;
 
   public CoverageExclusions(Configuration settings) {
     Builder<WildcardPattern> builder = ImmutableList.builder();
-    for (String pattern : settings.getStringArray(CoreProperties.PROJECT_COVERAGE_EXCLUSIONS_PROPERTY)) {
+    String[] patterns = settings.getStringArray(CoreProperties.PROJECT_COVERAGE_EXCLUSIONS_PROPERTY);
+    for (String pattern : patterns) {
       builder.add(WildcardPattern.create(pattern));
     }
     exclusionPatterns = builder.build();
+    exclusionMatcher = PathPatternMatcher.createFromWildcardPatterns(Arrays.asList(patterns));
   }
 
   void log() {
@@ -50,12 +54,7 @@ public class CoverageExclusions {
   }
 
   boolean isExcluded(DefaultInputFile file) {
-    boolean found = false;
-    Iterator<WildcardPattern> iterator = exclusionPatterns.iterator();
-    while (!found && iterator.hasNext()) {
-      found = iterator.next().match(file.getModuleRelativePath());
-    }
-    return found;
+    return exclusionMatcher.matchAny(file.getModuleRelativePath());
   }
 
   private static void log(String title, Collection<WildcardPattern> patterns) {
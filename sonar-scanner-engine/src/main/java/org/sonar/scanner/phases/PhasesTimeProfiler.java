@@ -19,10 +19,14 @@
  */
 package org.sonar.scanner.phases;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.events.SensorExecutionHandler;
 import org.sonar.api.batch.events.SensorsPhaseHandler;
+import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
@@ -30,35 +34,53 @@ import org.sonar.scanner.bootstrap.ScannerPluginRepository;
 import org.sonar.scanner.sensor.SensorWrapper;
 import org.sonar.scanner.util.ScannerUtils;
 
+/**
+ * Logs the execution time of each sensor. As thread-safe sensors may be executed concurrently, the wall-clock time
+ * of the sensors phase is logged along with the cumulative time of its sensors.
+ */
 public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseHandler {
 
   private static final Logger LOG = Loggers.get(PhasesTimeProfiler.class);
-  private Profiler profiler = Profiler.create(LOG);
   private final ScannerPluginRepository pluginRepo;
+  private final System2 system;
+  private final Map<Sensor, SensorProfiling> profilingBySensor = new ConcurrentHashMap<>();
+  private final AtomicLong sensorsTime = new AtomicLong();
+  private long phaseStartedAt;
 
-  public PhasesTimeProfiler(ScannerPluginRepository pluginRepo) {
+  public PhasesTimeProfiler(ScannerPluginRepository pluginRepo, System2 system) {
     this.pluginRepo = pluginRepo;
+    this.system = system;
   }
 
   @Override
   public void onSensorsPhase(SensorsPhaseEvent event) {
     if (event.isStart()) {
       LOG.debug("Sensors : {}", StringUtils.join(event.getSensors(), " -> "));
+      phaseStartedAt = system.now();
+      sensorsTime.set(0L);
+    } else if (!event.getSensors().isEmpty()) {
+      LOG.info("Sensors (done) | time={}ms | cumulative sensors time={}ms", system.now() - phaseStartedAt, sensorsTime.get());
     }
   }
 
   @Override
   public void onSensorExecution(SensorExecutionEvent event) {
+    Sensor sensor = event.getSensor();
     if (event.isStart()) {
-      ClassLoader cl = getSensorClassLoader(event.getSensor());
+      ClassLoader cl = getSensorClassLoader(sensor);
       String pluginKey = pluginRepo.getPluginKey(cl);
       String suffix = "";
       if (pluginKey != null) {
         suffix = " [" + pluginKey + "]";
       }
-      profiler.startInfo("Sensor " + ScannerUtils.describe(event.getSensor()) + suffix);
+      Profiler profiler = Profiler.create(LOG).startInfo("Sensor " + ScannerUtils.describe(sensor) + suffix);
+      profilingBySensor.put(sensor, new SensorProfiling(profiler, system.now()));
     } else {
-      profiler.stopInfo();
+      SensorProfiling profiling = profilingBySensor.remove(sensor);
+      if (profiling != null) {
+        profiling.profiler.stopInfo();
+        sensorsTime.addAndGet(system.now() - profiling.startedAt);
+      }
     }
   }
 
@@ -71,4 +93,14 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
     }
   }
 
+  private static class SensorProfiling {
+    private final Profiler profiler;
+    private final long startedAt;
+
+    private SensorProfiling(Profiler profiler, long startedAt) {
+      this.profiler = profiler;
+      this.startedAt = startedAt;
+    }
+  }
+
 }
@@ -20,9 +20,15 @@
 package org.sonar.scanner.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -32,21 +38,36 @@ import org.sonar.api.batch.fs.internal.SensorStrategy;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.scan.ThreadBudget;
+import org.sonar.scanner.sensor.SensorWrapper;
 
+/**
+ * Executes the sensors of a module, then the global sensors when the module is the root one.
+ * <p/>
+ * When {@link ThreadBudget#getSensorsThreads()} is greater than 1, consecutive sensors declared as thread-safe
+ * (see {@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}) are executed concurrently on a pool
+ * of at most this number of threads, depending on the threads left by the modules scanned concurrently.
+ * Other sensors are still executed one at a time, in the order of their dependencies, once all the previous
+ * sensors are done.
+ */
 @ScannerSide
 public class SensorsExecutor {
+
   private final ScannerExtensionDictionnary selector;
   private final DefaultInputModule module;
   private final EventBus eventBus;
   private final SensorStrategy strategy;
   private final boolean isRoot;
+  private final ThreadBudget threadBudget;
 
-  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy) {
+  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, InputModuleHierarchy hierarchy, EventBus eventBus, SensorStrategy strategy,
+    ThreadBudget threadBudget) {
     this.selector = selector;
     this.module = module;
     this.eventBus = eventBus;
     this.strategy = strategy;
     this.isRoot = hierarchy.isRoot(module);
+    this.threadBudget = threadBudget;
   }
 
   public void execute(SensorContext context) {
@@ -78,14 +99,76 @@ public class SensorsExecutor {
   }
 
   private void execute(SensorContext context, Collection<Sensor> sensors) {
+    List<Sensor> threadSafeSensors = new ArrayList<>();
     for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+      if (threadBudget.getSensorsThreads() > 1 && isThreadSafe(sensor)) {
+        threadSafeSensors.add(sensor);
+      } else {
+        executeConcurrently(context, threadSafeSensors);
+        threadSafeSensors.clear();
+        executeSensor(context, sensor);
+      }
+    }
+    executeConcurrently(context, threadSafeSensors);
+  }
+
+  private static boolean isThreadSafe(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).isThreadSafe();
+  }
+
+  private void executeConcurrently(SensorContext context, List<Sensor> sensors) {
+    // the current thread waits for the sensors, so it is lent to the pool
+    int borrowedThreads = sensors.size() > 1 ? threadBudget.tryAcquire(Math.min(threadBudget.getSensorsThreads(), sensors.size()) - 1) : 0;
+    if (borrowedThreads == 0) {
+      sensors.forEach(sensor -> executeSensor(context, sensor));
+      return;
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(1 + borrowedThreads, new ThreadFactoryBuilder()
+      .setNameFormat("Sensor-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<?>> futures = new ArrayList<>(sensors.size());
+      for (Sensor sensor : sensors) {
+        futures.add(executorService.submit(() -> executeSensor(context, sensor)));
+      }
+      for (Future<?> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      executorService.shutdownNow();
+      threadBudget.release(borrowedThreads);
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing sensors", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to execute sensor", cause);
     }
   }
 
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(new Project(module), context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  /**
+   * Handlers of sensor events are not expected to be thread-safe
+   */
+  private synchronized void fireEvent(SensorExecutionEvent event) {
+    eventBus.fireEvent(event);
   }
 }
@@ -205,6 +205,9 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
   public void onBatchStep(BatchStepEvent event) {
     if (event.isStart()) {
       currentModuleProfiling.addBatchStepProfiling(event.stepName());
+    } else if (event.totalTime() != null) {
+      currentModuleProfiling.addBatchStepProfiling(event.stepName());
+      currentModuleProfiling.getProfilingPerBatchStep(event.stepName()).setTotalTime(event.totalTime());
     } else {
       currentModuleProfiling.getProfilingPerBatchStep(event.stepName()).stop();
     }
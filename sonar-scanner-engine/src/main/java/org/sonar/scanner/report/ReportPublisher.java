@@ -41,7 +41,6 @@ import org.sonar.api.config.Configuration;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.bootstrap.GlobalAnalysisMode;
@@ -64,6 +63,10 @@ public class ReportPublisher implements Startable {
   private static final Logger LOG = Loggers.get(ReportPublisher.class);
 
   public static final String KEEP_REPORT_PROP_KEY = "sonar.scanner.keepReport";
+  /**
+   * Packing can be disabled to inspect the files of each component when the report is kept
+   */
+  public static final String PACK_REPORT_PROP_KEY = "sonar.scanner.packReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
   private static final String CHARACTERISTIC = "characteristic";
@@ -143,23 +146,22 @@ public class ReportPublisher implements Startable {
   }
 
   private File generateReportFile() {
-    try {
-      long startTime = System.currentTimeMillis();
-      for (ReportPublisherStep publisher : publishers) {
-        publisher.publish(writer);
-      }
-      long stopTime = System.currentTimeMillis();
-      LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir.toFile())));
-
-      startTime = System.currentTimeMillis();
-      File reportZip = temp.newFile("scanner-report", ".zip");
-      ZipUtils.zipDir(reportDir.toFile(), reportZip);
-      stopTime = System.currentTimeMillis();
-      LOG.info("Analysis reports compressed in {}ms, zip size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
-      return reportZip;
-    } catch (IOException e) {
-      throw new IllegalStateException("Unable to prepare analysis report", e);
+    long startTime = System.currentTimeMillis();
+    for (ReportPublisherStep publisher : publishers) {
+      publisher.publish(writer);
     }
+    if (settings.getBoolean(PACK_REPORT_PROP_KEY).orElse(true)) {
+      writer.pack();
+    }
+    long stopTime = System.currentTimeMillis();
+    LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir.toFile())));
+
+    startTime = System.currentTimeMillis();
+    File reportZip = temp.newFile("scanner-report", ".zip");
+    writer.zip(reportZip);
+    stopTime = System.currentTimeMillis();
+    LOG.info("Analysis reports compressed in {}ms, zip size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
+    return reportZip;
   }
 
   /**
@@ -21,15 +21,15 @@ package org.sonar.scanner.repository;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.sonar.api.batch.ScannerSide;
 
 @ScannerSide
 public class ContextPropertiesCache {
 
-  private final Map<String, String> props = new HashMap<>();
+  private final Map<String, String> props = new ConcurrentHashMap<>();
 
   /**
    * Value is overridden if the key was already stored.
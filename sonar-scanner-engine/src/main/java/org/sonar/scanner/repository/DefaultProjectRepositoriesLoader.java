@@ -22,11 +22,13 @@ package org.sonar.scanner.repository;
 import com.google.common.base.Throwables;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -42,21 +44,43 @@ import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsResponse;
 
+/**
+ * Only the file data are cached between analyses (see {@link WsResponseCache}), as settings may contain secured values.
+ * The server always returns the settings, and does not return the file data when they have not changed.
+ */
 public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoader {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultProjectRepositoriesLoader.class);
   private static final String BATCH_PROJECT_URL = "/batch/project.protobuf";
+  private static final String FILE_DATA_NOT_MODIFIED_HEADER = "X-Sonar-File-Data-Not-Modified";
   private ScannerWsClient wsClient;
+  private final WsResponseCache cache;
 
-  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient) {
+  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient, WsResponseCache cache) {
     this.wsClient = wsClient;
+    this.cache = cache;
   }
 
   @Override
   public ProjectRepositories load(String projectKey, boolean issuesMode, @Nullable String branchBase) {
-    GetRequest request = new GetRequest(getUrl(projectKey, issuesMode, branchBase));
+    String url = getUrl(projectKey, issuesMode, branchBase);
+    Optional<WsResponseCache.CachedResponse> cached = cache.get(url);
+    GetRequest request = new GetRequest(url);
+    cached.ifPresent(c -> request.setHeader("If-None-Match", c.etag()));
     try (WsResponse response = wsClient.call(request)) {
-      InputStream is = response.contentStream();
-      return processStream(is, projectKey);
+      WsProjectResponse projectResponse = parse(response.contentStream(), projectKey);
+      if (cached.isPresent() && response.header(FILE_DATA_NOT_MODIFIED_HEADER).isPresent()) {
+        LOG.debug("File data not modified since previous analysis");
+        WsProjectResponse cachedFileData = parse(new ByteArrayInputStream(cached.get().content()), projectKey);
+        projectResponse = projectResponse.toBuilder()
+          .putAllFileDataByModuleAndPath(cachedFileData.getFileDataByModuleAndPath())
+          .build();
+      } else {
+        WsProjectResponse fileData = WsProjectResponse.newBuilder()
+          .putAllFileDataByModuleAndPath(projectResponse.getFileDataByModuleAndPath())
+          .build();
+        response.header("ETag").ifPresent(etag -> cache.put(url, etag, null, fileData.toByteArray()));
+      }
+      return toProjectRepositories(projectResponse);
     } catch (RuntimeException e) {
       if (shouldThrow(e)) {
         throw e;
@@ -95,33 +119,35 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     return false;
   }
 
-  private static ProjectRepositories processStream(InputStream is, String projectKey) {
+  private static WsProjectResponse parse(InputStream is, String projectKey) {
     try {
-      WsProjectResponse response = WsProjectResponse.parseFrom(is);
+      return WsProjectResponse.parseFrom(is);
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't load project repository for " + projectKey, e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
 
-      Table<String, String, FileData> fileDataTable = HashBasedTable.create();
-      Table<String, String, String> settings = HashBasedTable.create();
+  private static ProjectRepositories toProjectRepositories(WsProjectResponse response) {
+    Table<String, String, FileData> fileDataTable = HashBasedTable.create();
+    Table<String, String, String> settings = HashBasedTable.create();
 
-      Map<String, Settings> settingsByModule = response.getSettingsByModule();
-      for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
-        for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
-          settings.put(e1.getKey(), e2.getKey(), e2.getValue());
-        }
+    Map<String, Settings> settingsByModule = response.getSettingsByModule();
+    for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
+      for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
+        settings.put(e1.getKey(), e2.getKey(), e2.getValue());
       }
+    }
 
-      Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
-      for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
-        for (Map.Entry<String, Batch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
-          FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
-          fileDataTable.put(e1.getKey(), e2.getKey(), fd);
-        }
+    Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
+    for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
+      for (Map.Entry<String, Batch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
+        FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
+        fileDataTable.put(e1.getKey(), e2.getKey(), fd);
       }
-
-      return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
-    } catch (IOException e) {
-      throw new IllegalStateException("Couldn't load project repository for " + projectKey, e);
-    } finally {
-      IOUtils.closeQuietly(is);
     }
+
+    return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
   }
 }
@@ -19,28 +19,109 @@
  */
 package org.sonar.scanner.repository;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.sonar.api.issue.Issue;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonar.scanner.util.ScannerUtils;
 import org.sonarqube.ws.client.GetRequest;
+import org.sonarqube.ws.client.WsResponse;
 
+/**
+ * Issues are cached between analyses (see {@link WsResponseCache}). The server is asked for the issues updated since
+ * the cached response, which are merged into it.
+ */
 public class DefaultServerIssuesLoader implements ServerIssuesLoader {
 
+  private static final String DELTA_HEADER = "X-Sonar-Delta";
+
   private final ScannerWsClient wsClient;
+  private final WsResponseCache cache;
 
-  public DefaultServerIssuesLoader(ScannerWsClient wsClient) {
+  public DefaultServerIssuesLoader(ScannerWsClient wsClient, WsResponseCache cache) {
     this.wsClient = wsClient;
+    this.cache = cache;
   }
 
   @Override
   public void load(String componentKey, Consumer<ServerIssue> consumer) {
-    GetRequest getRequest = new GetRequest("/batch/issues.protobuf?key=" + ScannerUtils.encodeForUrl(componentKey));
-    InputStream is = wsClient.call(getRequest).contentStream();
-    parseIssues(is, consumer);
+    String path = "/batch/issues.protobuf?key=" + ScannerUtils.encodeForUrl(componentKey);
+    Optional<WsResponseCache.CachedResponse> cached = cache.get(path);
+    try (WsResponse response = wsClient.call(newRequest(path, cached.orElse(null)))) {
+      Optional<String> etag = response.header("ETag");
+      if (!etag.isPresent()) {
+        parseIssues(response.contentStream(), consumer);
+        return;
+      }
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      if (cached.isPresent() && response.header(DELTA_HEADER).isPresent()) {
+        merge(cached.get(), response.contentStream(), content, consumer);
+      } else {
+        parseIssues(new TeeInputStream(response.contentStream(), content), consumer);
+      }
+      cache.put(path, etag.get(), response.header("Last-Modified").orElse(null), content.toByteArray());
+    }
+  }
+
+  private static GetRequest newRequest(String path, @Nullable WsResponseCache.CachedResponse cached) {
+    if (cached == null) {
+      return new GetRequest(path);
+    }
+    StringBuilder url = new StringBuilder(path);
+    Long changedSince = parseHttpDate(cached.lastModified());
+    if (changedSince != null) {
+      url.append("&changedSince=").append(changedSince);
+    }
+    return new GetRequest(url.toString()).setHeader("If-None-Match", cached.etag());
+  }
+
+  @CheckForNull
+  private static Long parseHttpDate(@Nullable String date) {
+    if (date == null) {
+      return null;
+    }
+    try {
+      return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The delta contains the issues updated since the cached response, including the ones which have been closed
+   */
+  private static void merge(WsResponseCache.CachedResponse cached, InputStream delta, ByteArrayOutputStream content, Consumer<ServerIssue> consumer) {
+    Map<String, ServerIssue> issuesByKey = new LinkedHashMap<>();
+    parseIssues(new ByteArrayInputStream(cached.content()), issue -> issuesByKey.put(issue.getKey(), issue));
+    parseIssues(delta, issue -> {
+      if (Issue.STATUS_CLOSED.equals(issue.getStatus())) {
+        issuesByKey.remove(issue.getKey());
+      } else {
+        issuesByKey.put(issue.getKey(), issue);
+      }
+    });
+    try {
+      for (ServerIssue issue : issuesByKey.values()) {
+        issue.writeDelimitedTo(content);
+        consumer.accept(issue);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to cache previous issues", e);
+    }
   }
 
   private static void parseIssues(InputStream is, Consumer<ServerIssue> consumer) {
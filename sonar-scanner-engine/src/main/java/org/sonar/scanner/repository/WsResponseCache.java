@@ -0,0 +1,132 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.repository;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.home.cache.FileCache;
+import org.sonar.scanner.bootstrap.ScannerWsClient;
+
+/**
+ * Responses of web services which support conditional requests, kept between analyses so that the parts which have not
+ * been modified are not downloaded again. Callers must not store secured values.
+ * <p/>
+ * Responses are stored in the user cache (see {@link FileCache}), as the working directory of the project is
+ * cleaned at the beginning of each analysis. Entries are written to a temporary file then moved, so that concurrent
+ * analyses never read a partially written entry.
+ */
+public class WsResponseCache {
+
+  private static final Logger LOG = Loggers.get(WsResponseCache.class);
+
+  private final Path dir;
+  private final String baseUrl;
+
+  public WsResponseCache(FileCache fileCache, ScannerWsClient wsClient) {
+    this.dir = fileCache.getDir().toPath().resolve("ws");
+    this.baseUrl = wsClient.baseUrl();
+  }
+
+  public Optional<CachedResponse> get(String path) {
+    Path file = fileOf(path);
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    try (DataInputStream input = new DataInputStream(Files.newInputStream(file))) {
+      String etag = input.readUTF();
+      String lastModified = input.readUTF();
+      byte[] content = new byte[input.readInt()];
+      input.readFully(content);
+      return Optional.of(new CachedResponse(etag, lastModified.isEmpty() ? null : lastModified, content));
+    } catch (IOException e) {
+      LOG.debug("Ignore unreadable cached response of " + path, e);
+      return Optional.empty();
+    }
+  }
+
+  public void put(String path, String etag, @Nullable String lastModified, byte[] content) {
+    try {
+      Files.createDirectories(dir);
+      Path tempFile = Files.createTempFile(dir, "response", ".tmp");
+      try {
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(tempFile))) {
+          output.writeUTF(etag);
+          output.writeUTF(lastModified == null ? "" : lastModified);
+          output.writeInt(content.length);
+          output.write(content);
+        }
+        move(tempFile, fileOf(path));
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    } catch (IOException e) {
+      // the response is downloaded again by the next analysis
+      LOG.debug("Unable to cache response of " + path, e);
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private Path fileOf(String path) {
+    return dir.resolve(DigestUtils.sha1Hex(baseUrl + path));
+  }
+
+  public static class CachedResponse {
+    private final String etag;
+    private final String lastModified;
+    private final byte[] content;
+
+    CachedResponse(String etag, @Nullable String lastModified, byte[] content) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.content = content;
+    }
+
+    public String etag() {
+      return etag;
+    }
+
+    @CheckForNull
+    public String lastModified() {
+      return lastModified;
+    }
+
+    public byte[] content() {
+      return content;
+    }
+  }
+}
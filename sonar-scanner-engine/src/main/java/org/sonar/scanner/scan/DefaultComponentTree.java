@@ -20,21 +20,27 @@
 package org.sonar.scanner.scan;
 
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.internal.InputComponentTree;
 
+/**
+ * Modules may be scanned concurrently, so the tree can be read while other components are being indexed
+ */
 public class DefaultComponentTree implements InputComponentTree {
-  private Map<InputComponent, InputComponent> parents = new HashMap<>();
+  private Map<InputComponent, InputComponent> parents = new ConcurrentHashMap<>();
+  // guarded by this
   private Map<InputComponent, Set<InputComponent>> children = new HashMap<>();
 
-  public void index(InputComponent component, InputComponent parent) {
+  public synchronized void index(InputComponent component, InputComponent parent) {
     Preconditions.checkNotNull(component);
     Preconditions.checkNotNull(parent);
     parents.put(component, parent);
@@ -42,8 +48,12 @@ public class DefaultComponentTree implements InputComponentTree {
   }
 
   @Override
-  public Collection<InputComponent> getChildren(InputComponent component) {
-    return children.getOrDefault(component, Collections.emptySet());
+  public synchronized Collection<InputComponent> getChildren(InputComponent component) {
+    Set<InputComponent> childrenOfComponent = children.get(component);
+    if (childrenOfComponent == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(childrenOfComponent);
   }
 
   @CheckForNull
@@ -19,13 +19,18 @@
  */
 package org.sonar.scanner.scan;
 
+import java.util.Arrays;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.Initializer;
 import org.sonar.api.batch.InstantiationStrategy;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
+import org.sonar.api.batch.postjob.PostJob;
 import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.issue.NoSonarFilter;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.FileExclusions;
@@ -38,7 +43,6 @@ import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.deprecated.DeprecatedSensorContext;
 import org.sonar.scanner.deprecated.perspectives.ScannerPerspectives;
 import org.sonar.scanner.events.EventBus;
-import org.sonar.scanner.index.DefaultIndex;
 import org.sonar.scanner.issue.IssuableFactory;
 import org.sonar.scanner.issue.IssueFilters;
 import org.sonar.scanner.issue.ModuleIssues;
@@ -52,6 +56,7 @@ import org.sonar.scanner.phases.AbstractPhaseExecutor;
 import org.sonar.scanner.phases.CoverageExclusions;
 import org.sonar.scanner.phases.InitializersExecutor;
 import org.sonar.scanner.phases.IssuesPhaseExecutor;
+import org.sonar.scanner.phases.PhasesTimeProfiler;
 import org.sonar.scanner.phases.PostJobsExecutor;
 import org.sonar.scanner.phases.PublishPhaseExecutor;
 import org.sonar.scanner.phases.SensorsExecutor;
@@ -76,13 +81,29 @@ import org.sonar.scanner.source.SymbolizableBuilder;
 
 public class ModuleScanContainer extends ComponentContainer {
   private static final Logger LOG = LoggerFactory.getLogger(ModuleScanContainer.class);
+  /**
+   * Types of the extensions looked up by {@link ScannerExtensionDictionnary} during phases
+   */
+  private static final List<Class<?>> PHASES_EXTENSION_TYPES = Arrays.asList(Initializer.class, org.sonar.api.batch.Sensor.class, Sensor.class,
+    org.sonar.api.batch.PostJob.class, PostJob.class);
+
   private final DefaultInputModule module;
   private final GlobalAnalysisMode analysisMode;
+  private final boolean concurrentModules;
 
   public ModuleScanContainer(ProjectScanContainer parent, DefaultInputModule module, GlobalAnalysisMode analysisMode) {
+    this(parent, module, analysisMode, false);
+  }
+
+  /**
+   * @param concurrentModules whether phases are executed by {@link #executePhases()} once started, instead of
+   * being executed when started
+   */
+  ModuleScanContainer(ProjectScanContainer parent, DefaultInputModule module, GlobalAnalysisMode analysisMode, boolean concurrentModules) {
     super(parent);
     this.module = module;
     this.analysisMode = analysisMode;
+    this.concurrentModules = concurrentModules;
   }
 
   @Override
@@ -112,6 +133,7 @@ public class ModuleScanContainer extends ComponentContainer {
 
     add(
       EventBus.class,
+      PhasesTimeProfiler.class,
       RuleFinderCompatibility.class,
       PostJobsExecutor.class,
       SensorsExecutor.class,
@@ -174,9 +196,28 @@ public class ModuleScanContainer extends ComponentContainer {
 
   @Override
   protected void doAfterStart() {
-    DefaultIndex index = getComponentByType(DefaultIndex.class);
-    index.setCurrentStorage(getComponentByType(DefaultSensorStorage.class));
+    if (concurrentModules) {
+      instantiatePhasesComponents();
+    } else {
+      executePhases();
+    }
+  }
+
+  /**
+   * Instantiates the components that phases look up, along with the components of the project they depend on.
+   * Picocontainer instantiates components lazily and is not thread-safe, so containers of modules scanned
+   * concurrently are started one at a time, and only the execution of phases is concurrent.
+   */
+  private void instantiatePhasesComponents() {
+    getComponentByType(AbstractPhaseExecutor.class);
+    for (ComponentContainer container = this; container != null; container = container.getParent()) {
+      for (Class<?> extensionType : PHASES_EXTENSION_TYPES) {
+        container.getComponentsByType(extensionType);
+      }
+    }
+  }
 
+  void executePhases() {
     getComponentByType(AbstractPhaseExecutor.class).execute(module);
   }
 
@@ -20,6 +20,11 @@
 package org.sonar.scanner.scan;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.InstantiationStrategy;
@@ -58,7 +63,6 @@ import org.sonar.scanner.issue.tracking.LocalIssueTracking;
 import org.sonar.scanner.issue.tracking.ServerIssueRepository;
 import org.sonar.scanner.issue.tracking.ServerLineHashesLoader;
 import org.sonar.scanner.mediumtest.ScanTaskObservers;
-import org.sonar.scanner.phases.PhasesTimeProfiler;
 import org.sonar.scanner.profiling.PhasesSumUpTimeProfiler;
 import org.sonar.scanner.report.ActiveRulesPublisher;
 import org.sonar.scanner.report.AnalysisContextReportPublisher;
@@ -80,6 +84,7 @@ import org.sonar.scanner.repository.ProjectRepositoriesProvider;
 import org.sonar.scanner.repository.QualityProfileLoader;
 import org.sonar.scanner.repository.QualityProfileProvider;
 import org.sonar.scanner.repository.ServerIssuesLoader;
+import org.sonar.scanner.repository.WsResponseCache;
 import org.sonar.scanner.repository.language.DefaultLanguagesRepository;
 import org.sonar.scanner.rule.ActiveRulesLoader;
 import org.sonar.scanner.rule.ActiveRulesProvider;
@@ -136,7 +141,7 @@ public class ProjectScanContainer extends ComponentContainer {
       ProjectBuildersExecutor.class,
       ProjectLock.class,
       EventBus.class,
-      PhasesTimeProfiler.class,
+      ThreadBudget.class,
       ResourceTypes.class,
       ProjectReactorValidator.class,
       MetricProvider.class,
@@ -147,6 +152,7 @@ public class ProjectScanContainer extends ComponentContainer {
       new BranchConfigurationProvider(),
       new ProjectBranchesProvider(),
       DefaultAnalysisMode.class,
+      WsResponseCache.class,
       new ProjectRepositoriesProvider(),
 
       // temp
@@ -258,7 +264,15 @@ public class ProjectScanContainer extends ComponentContainer {
     }
 
     LOG.debug("Start recursive analysis of project modules");
-    scanRecursively(tree, tree.root(), analysisMode);
+    ThreadBudget threadBudget = getComponentByType(ThreadBudget.class);
+    if (threadBudget.getModulesThreads() == 1) {
+      scanRecursively(tree, tree.root(), analysisMode);
+    } else if (getComponentByType(PhasesSumUpTimeProfiler.class) != null) {
+      LOG.warn("Modules are scanned sequentially when profiling is enabled");
+      scanRecursively(tree, tree.root(), analysisMode);
+    } else {
+      scanConcurrently(tree, analysisMode, threadBudget);
+    }
 
     if (analysisMode.isMediumTest()) {
       getComponentByType(ScanTaskObservers.class).notifyEndOfScanTask();
@@ -283,11 +297,87 @@ public class ProjectScanContainer extends ComponentContainer {
     scan(module, analysisMode);
   }
 
+  /**
+   * Modules are scanned on a pool of threads, each one once all its children are scanned, as when they are scanned
+   * recursively. The root module, which publishes the report, is still the last one to be scanned.
+   */
+  private void scanConcurrently(InputModuleHierarchy tree, GlobalAnalysisMode analysisMode, ThreadBudget threadBudget) {
+    LOG.debug("Scan modules concurrently on {} threads", threadBudget.getModulesThreads());
+    ExecutorService executorService = Executors.newFixedThreadPool(threadBudget.getModulesThreads(), new ThreadFactoryBuilder()
+      .setNameFormat("Module-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      scanAfterChildren(tree, tree.root(), analysisMode, executorService, threadBudget).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while scanning modules", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to scan modules", cause);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private CompletableFuture<Void> scanAfterChildren(InputModuleHierarchy tree, DefaultInputModule module, GlobalAnalysisMode analysisMode,
+    ExecutorService executorService, ThreadBudget threadBudget) {
+    CompletableFuture<?>[] children = tree.children(module).stream()
+      .map(child -> scanAfterChildren(tree, child, analysisMode, executorService, threadBudget))
+      .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(children).thenRunAsync(() -> {
+      threadBudget.acquire();
+      try {
+        scanConcurrently(module, analysisMode);
+      } finally {
+        threadBudget.release(1);
+      }
+    }, executorService);
+  }
+
   @VisibleForTesting
   void scan(DefaultInputModule module, GlobalAnalysisMode analysisMode) {
     new ModuleScanContainer(this, module, analysisMode).execute();
   }
 
+  private void scanConcurrently(DefaultInputModule module, GlobalAnalysisMode analysisMode) {
+    ModuleScanContainer moduleContainer = startModuleContainer(module, analysisMode);
+    try {
+      moduleContainer.executePhases();
+    } finally {
+      moduleContainer.stopComponents();
+    }
+  }
+
+  /**
+   * Containers of modules scanned concurrently are added to this container and started one at a time, because
+   * starting a module instantiates the components of the project it depends on
+   */
+  private synchronized ModuleScanContainer startModuleContainer(DefaultInputModule module, GlobalAnalysisMode analysisMode) {
+    ModuleScanContainer moduleContainer = new ModuleScanContainer(this, module, analysisMode, true);
+    try {
+      moduleContainer.startComponents();
+    } catch (RuntimeException e) {
+      moduleContainer.stopComponents();
+      throw e;
+    }
+    return moduleContainer;
+  }
+
+  /**
+   * Containers of modules scanned concurrently are removed from this container while others are added
+   */
+  @Override
+  public synchronized ComponentContainer removeChild(ComponentContainer childToBeRemoved) {
+    return super.removeChild(childToBeRemoved);
+  }
+
   static class BatchExtensionFilter implements ExtensionMatcher {
     @Override
     public boolean accept(Object extension) {
@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan;
+
+import java.util.concurrent.Semaphore;
+import org.sonar.api.config.Configuration;
+
+/**
+ * Threads shared by the concurrent scan of modules and the parallel execution of sensors. Each module being scanned
+ * concurrently holds a thread, and sensors borrow the threads which are not used by modules. The analysis of a project
+ * never uses more than the greatest of {@link #MODULES_THREADS_PROPERTY} and {@link #SENSORS_THREADS_PROPERTY} threads
+ * to scan modules and execute sensors.
+ */
+public class ThreadBudget {
+
+  /**
+   * Number of threads used to scan modules concurrently. Modules are scanned sequentially by default.
+   * <p>
+   * Components of the project, including the project-level extensions of all plugins, are shared by the modules
+   * scanned concurrently, so they must be thread-safe. Only the extensions instantiated per module are isolated.
+   * </p>
+   */
+  static final String MODULES_THREADS_PROPERTY = "sonar.modules.threads";
+
+  /**
+   * Number of threads used to execute thread-safe sensors of a module. Sensors are executed sequentially by default.
+   */
+  static final String SENSORS_THREADS_PROPERTY = "sonar.sensors.threads";
+
+  private final int modulesThreads;
+  private final int sensorsThreads;
+  private final Semaphore available;
+
+  public ThreadBudget(Configuration settings) {
+    this.modulesThreads = Math.max(1, settings.getInt(MODULES_THREADS_PROPERTY).orElse(1));
+    this.sensorsThreads = Math.max(1, settings.getInt(SENSORS_THREADS_PROPERTY).orElse(1));
+    this.available = new Semaphore(Math.max(modulesThreads, sensorsThreads));
+  }
+
+  /**
+   * Number of threads used to scan modules. Always greater than zero.
+   */
+  public int getModulesThreads() {
+    return modulesThreads;
+  }
+
+  /**
+   * Number of threads used to execute the sensors of a module. Always greater than zero.
+   */
+  public int getSensorsThreads() {
+    return sensorsThreads;
+  }
+
+  /**
+   * Takes a thread, waiting for one to be released if needed.
+   */
+  public void acquire() {
+    try {
+      available.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a thread", e);
+    }
+  }
+
+  /**
+   * Takes up to the given number of threads, without waiting.
+   * @return the number of threads taken, which must be released later
+   */
+  public int tryAcquire(int max) {
+    int acquired = 0;
+    while (acquired < max && available.tryAcquire()) {
+      acquired++;
+    }
+    return acquired;
+  }
+
+  public void release(int count) {
+    available.release(count);
+  }
+}
@@ -20,17 +20,20 @@
 package org.sonar.scanner.scan.filesystem;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
-import com.google.common.collect.Table;
-import com.google.common.collect.TreeBasedTable;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import javax.annotation.CheckForNull;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.fs.InputComponent;
@@ -46,23 +49,24 @@ import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.scanner.scan.branch.BranchConfiguration;
 
 /**
- * Store of all files and dirs. This cache is shared amongst all project modules. Inclusion and
- * exclusion patterns are already applied.
+ * Store of all files and dirs. This cache is shared amongst all project modules, which may be scanned concurrently.
+ * Inclusion and exclusion patterns are already applied.
  */
 @ScannerSide
 public class InputComponentStore {
 
-  private final SortedSet<String> globalLanguagesCache = new TreeSet<>();
-  private final Map<String, SortedSet<String>> languagesCache = new HashMap<>();
-  private final Map<String, InputFile> globalInputFileCache = new HashMap<>();
-  private final Table<String, String, InputFile> inputFileCache = TreeBasedTable.create();
-  private final Map<String, InputDir> globalInputDirCache = new HashMap<>();
-  private final Table<String, String, InputDir> inputDirCache = TreeBasedTable.create();
+  private final SortedSet<String> globalLanguagesCache = new ConcurrentSkipListSet<>();
+  private final Map<String, SortedSet<String>> languagesCache = new ConcurrentHashMap<>();
+  private final Map<String, InputFile> globalInputFileCache = new ConcurrentHashMap<>();
+  // sorted by module key, then by relative path
+  private final SortedMap<String, SortedMap<String, InputFile>> inputFileCache = new ConcurrentSkipListMap<>();
+  private final Map<String, InputDir> globalInputDirCache = new ConcurrentHashMap<>();
+  private final SortedMap<String, SortedMap<String, InputDir>> inputDirCache = new ConcurrentSkipListMap<>();
   // indexed by key with branch
-  private final Map<String, InputModule> inputModuleCache = new HashMap<>();
-  private final Map<String, InputComponent> inputComponents = new HashMap<>();
-  private final SetMultimap<String, InputFile> filesByNameCache = LinkedHashMultimap.create();
-  private final SetMultimap<String, InputFile> filesByExtensionCache = LinkedHashMultimap.create();
+  private final Map<String, InputModule> inputModuleCache = new ConcurrentHashMap<>();
+  private final Map<String, InputComponent> inputComponents = new ConcurrentHashMap<>();
+  private final SetMultimap<String, InputFile> filesByNameCache = Multimaps.synchronizedSetMultimap(LinkedHashMultimap.create());
+  private final SetMultimap<String, InputFile> filesByExtensionCache = Multimaps.synchronizedSetMultimap(LinkedHashMultimap.create());
   private final InputModule root;
   private final BranchConfiguration branchConfiguration;
 
@@ -78,17 +82,18 @@ public class InputComponentStore {
 
   public Iterable<DefaultInputFile> allFilesToPublish() {
     return inputFileCache.values().stream()
+      .flatMap(filesOfModule -> filesOfModule.values().stream())
       .map(f -> (DefaultInputFile) f)
       .filter(DefaultInputFile::isPublished)
       .filter(f -> (!branchConfiguration.isShortLivingBranch()) || f.status() != Status.SAME)::iterator;
   }
 
   public Iterable<InputFile> allFiles() {
-    return inputFileCache.values();
+    return Iterables.concat(Iterables.transform(inputFileCache.values(), Map::values));
   }
 
   public Iterable<InputDir> allDirs() {
-    return inputDirCache.values();
+    return Iterables.concat(Iterables.transform(inputDirCache.values(), Map::values));
   }
 
   public InputComponent getByKey(String key) {
@@ -100,35 +105,41 @@ public class InputComponentStore {
   }
 
   public Iterable<InputFile> filesByModule(String moduleKey) {
-    return inputFileCache.row(moduleKey).values();
+    return inputFileCache.getOrDefault(moduleKey, Collections.emptySortedMap()).values();
   }
 
   public Iterable<InputDir> dirsByModule(String moduleKey) {
-    return inputDirCache.row(moduleKey).values();
+    return inputDirCache.getOrDefault(moduleKey, Collections.emptySortedMap()).values();
   }
 
   public InputComponentStore removeModule(String moduleKey) {
-    inputFileCache.row(moduleKey).clear();
-    inputDirCache.row(moduleKey).clear();
+    inputFileCache.remove(moduleKey);
+    inputDirCache.remove(moduleKey);
     return this;
   }
 
   public InputComponentStore remove(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
-    inputFileCache.remove(file.moduleKey(), file.getModuleRelativePath());
+    SortedMap<String, InputFile> filesOfModule = inputFileCache.get(file.moduleKey());
+    if (filesOfModule != null) {
+      filesOfModule.remove(file.getModuleRelativePath());
+    }
     return this;
   }
 
   public InputComponentStore remove(InputDir inputDir) {
     DefaultInputDir dir = (DefaultInputDir) inputDir;
-    inputDirCache.remove(dir.moduleKey(), inputDir.relativePath());
+    SortedMap<String, InputDir> dirsOfModule = inputDirCache.get(dir.moduleKey());
+    if (dirsOfModule != null) {
+      dirsOfModule.remove(inputDir.relativePath());
+    }
     return this;
   }
 
   public InputComponentStore put(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
     addToLanguageCache(file);
-    inputFileCache.put(file.moduleKey(), file.getModuleRelativePath(), inputFile);
+    inputFileCache.computeIfAbsent(file.moduleKey(), k -> new ConcurrentSkipListMap<>()).put(file.getModuleRelativePath(), inputFile);
     globalInputFileCache.put(file.getProjectRelativePath(), inputFile);
     inputComponents.put(inputFile.key(), inputFile);
     filesByNameCache.put(inputFile.filename(), inputFile);
@@ -140,13 +151,13 @@ public class InputComponentStore {
     String language = inputFile.language();
     if (language != null) {
       globalLanguagesCache.add(language);
-      languagesCache.computeIfAbsent(inputFile.moduleKey(), k -> new TreeSet<>()).add(language);
+      languagesCache.computeIfAbsent(inputFile.moduleKey(), k -> new ConcurrentSkipListSet<>()).add(language);
     }
   }
 
   public InputComponentStore put(InputDir inputDir) {
     DefaultInputDir dir = (DefaultInputDir) inputDir;
-    inputDirCache.put(dir.moduleKey(), inputDir.relativePath(), inputDir);
+    inputDirCache.computeIfAbsent(dir.moduleKey(), k -> new ConcurrentSkipListMap<>()).put(inputDir.relativePath(), inputDir);
     // FIXME an InputDir can be already indexed by another module
     globalInputDirCache.put(getProjectRelativePath(dir), inputDir);
     inputComponents.put(inputDir.key(), inputDir);
@@ -163,7 +174,7 @@ public class InputComponentStore {
 
   @CheckForNull
   public InputFile getFile(String moduleKey, String relativePath) {
-    return inputFileCache.get(moduleKey, relativePath);
+    return inputFileCache.getOrDefault(moduleKey, Collections.emptySortedMap()).get(relativePath);
   }
 
   @CheckForNull
@@ -173,7 +184,7 @@ public class InputComponentStore {
 
   @CheckForNull
   public InputDir getDir(String moduleKey, String relativePath) {
-    return inputDirCache.get(moduleKey, relativePath);
+    return inputDirCache.getOrDefault(moduleKey, Collections.emptySortedMap()).get(relativePath);
   }
 
   @CheckForNull
@@ -197,11 +208,15 @@ public class InputComponentStore {
   }
 
   public Iterable<InputFile> getFilesByName(String filename) {
-    return filesByNameCache.get(filename);
+    synchronized (filesByNameCache) {
+      return new ArrayList<>(filesByNameCache.get(filename));
+    }
   }
 
   public Iterable<InputFile> getFilesByExtension(String extension) {
-    return filesByExtensionCache.get(extension);
+    synchronized (filesByExtensionCache) {
+      return new ArrayList<>(filesByExtensionCache.get(extension));
+    }
   }
 
   public SortedSet<String> getLanguages() {
@@ -23,6 +23,7 @@ import com.google.common.base.Joiner;
 import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -35,6 +36,7 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.fs.internal.PathPattern;
+import org.sonar.api.batch.fs.internal.PathPatternMatcher;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.MessageException;
 import org.sonar.scanner.repository.language.Language;
@@ -55,6 +57,14 @@ public class LanguageDetection {
   private final Map<String, PathPattern[]> patternsByLanguage;
   private final List<String> languagesToConsider;
   private final String forcedLanguage;
+  /**
+   * Patterns of all languages to consider, compiled together so that a file is matched only once
+   */
+  private final PathPatternMatcher matcher;
+  /**
+   * Index of pattern in {@link #matcher} -> language
+   */
+  private final String[] languageByPattern;
 
   public LanguageDetection(Configuration settings, LanguagesRepository languages) {
     Map<String, PathPattern[]> patternsByLanguageBuilder = new LinkedHashMap<>();
@@ -90,6 +100,17 @@ public class LanguageDetection {
     }
 
     patternsByLanguage = Collections.unmodifiableMap(patternsByLanguageBuilder);
+
+    List<PathPattern> patterns = new ArrayList<>();
+    List<String> languageByPatternBuilder = new ArrayList<>();
+    for (String languageKey : languagesToConsider) {
+      for (PathPattern pattern : patternsByLanguage.get(languageKey)) {
+        patterns.add(pattern);
+        languageByPatternBuilder.add(languageKey);
+      }
+    }
+    matcher = PathPatternMatcher.create(patterns.toArray(new PathPattern[patterns.size()]));
+    languageByPattern = languageByPatternBuilder.toArray(new String[languageByPatternBuilder.size()]);
   }
 
   public String getForcedLanguage() {
@@ -103,15 +124,15 @@ public class LanguageDetection {
   @CheckForNull
   String language(Path absolutePath, Path relativePath) {
     String detectedLanguage = null;
-    for (String languageKey : languagesToConsider) {
-      if (isCandidateForLanguage(absolutePath, relativePath, languageKey)) {
-        if (detectedLanguage == null) {
-          detectedLanguage = languageKey;
-        } else {
-          // Language was already forced by another pattern
-          throw MessageException.of(MessageFormat.format("Language of file ''{0}'' can not be decided as the file matches patterns of both {1} and {2}",
-            relativePath, getDetails(detectedLanguage), getDetails(languageKey)));
-        }
+    BitSet matchingPatterns = matcher.match(absolutePath, relativePath, false);
+    for (int i = matchingPatterns.nextSetBit(0); i >= 0; i = matchingPatterns.nextSetBit(i + 1)) {
+      String languageKey = languageByPattern[i];
+      if (detectedLanguage == null) {
+        detectedLanguage = languageKey;
+      } else if (!detectedLanguage.equals(languageKey)) {
+        // Language was already forced by another pattern
+        throw MessageException.of(MessageFormat.format("Language of file ''{0}'' can not be decided as the file matches patterns of both {1} and {2}",
+          relativePath, getDetails(detectedLanguage), getDetails(languageKey)));
       }
     }
     if (detectedLanguage != null) {
@@ -126,18 +147,6 @@ public class LanguageDetection {
     return null;
   }
 
-  private boolean isCandidateForLanguage(Path absolutePath, Path relativePath, String languageKey) {
-    PathPattern[] patterns = patternsByLanguage.get(languageKey);
-    if (patterns != null) {
-      for (PathPattern pathPattern : patterns) {
-        if (pathPattern.match(absolutePath, relativePath, false)) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
   private static String getFileLangPatternPropKey(String languageKey) {
     return "sonar.lang.patterns." + languageKey;
   }
@@ -20,8 +20,19 @@
 package org.sonar.scanner.scan.filesystem;
 
 import com.google.common.annotations.VisibleForTesting;
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.ByteOrderMark;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.InputFile.Type;
@@ -39,41 +50,115 @@ public class MetadataGenerator {
   @VisibleForTesting
   static final Charset UTF_32LE = Charset.forName("UTF-32LE");
 
+  private static final int BYTES_TO_DECODE = 4192;
+
+  /**
+   * Files at least this large are memory-mapped rather than read into the heap. Mapping has a fixed cost
+   * which is only worth paying for big files.
+   */
+  @VisibleForTesting
+  static final long MAPPING_THRESHOLD = 256 * 1024L;
+
+  static final String READ_STEP = "Read files for metadata";
+  static final String CHARSET_STEP = "Detect charset of files";
+  static final String METADATA_STEP = "Compute metadata of files";
+  static final String STATUS_STEP = "Detect status of files";
+
   private final StatusDetection statusDetection;
   private final FileMetadata fileMetadata;
   private final DefaultInputModule inputModule;
   private final IssueExclusionsLoader exclusionsScanner;
+  private final Map<String, LongAdder> nanosPerStep = new LinkedHashMap<>();
 
   public MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, IssueExclusionsLoader exclusionsScanner) {
     this.inputModule = inputModule;
     this.statusDetection = statusDetection;
     this.fileMetadata = fileMetadata;
     this.exclusionsScanner = exclusionsScanner;
+    for (String step : Arrays.asList(READ_STEP, CHARSET_STEP, METADATA_STEP, STATUS_STEP)) {
+      nanosPerStep.put(step, new LongAdder());
+    }
   }
 
   /**
    * Sets all metadata in the file, including charset and status.
-   * It is an expensive computation, reading the entire file.
+   * It is an expensive computation, reading the entire file. The file is read only once: charset detection
+   * and metadata computation both work on the same buffer, which is memory-mapped for large files.
    */
   public void setMetadata(final DefaultInputFile inputFile, Charset defaultEncoding) {
-    CharsetDetector charsetDetector = new CharsetDetector(inputFile.path(), defaultEncoding);
     try {
-      Charset charset;
-      if (charsetDetector.run()) {
-        charset = charsetDetector.charset();
-      } else {
+      long start = System.nanoTime();
+      ByteBuffer bytes = read(inputFile.path());
+      start = record(READ_STEP, start);
+
+      Charset charset = detectCharset(bytes, defaultEncoding);
+      if (charset == null) {
         LOG.debug("Failed to detect a valid charset for file '{}'. Using default charset.", inputFile);
         charset = defaultEncoding;
       }
-      InputStream is = charsetDetector.inputStream();
       inputFile.setCharset(charset);
-      Metadata metadata = fileMetadata.readMetadata(is, charset, inputFile.absolutePath(), exclusionsScanner.createCharHandlerFor(inputFile.key()));
+      start = record(CHARSET_STEP, start);
+
+      Metadata metadata = fileMetadata.readMetadata(bytes, charset, inputFile.absolutePath(), exclusionsScanner.createCharHandlerFor(inputFile.key()));
       inputFile.setMetadata(metadata);
+      start = record(METADATA_STEP, start);
+
       inputFile.setStatus(statusDetection.status(inputModule.definition().getKeyWithBranch(), inputFile, metadata.hash()));
+      record(STATUS_STEP, start);
       LOG.debug("'{}' generated metadata {} with charset '{}'", inputFile, inputFile.type() == Type.TEST ? "as test " : "", charset);
     } catch (Exception e) {
       throw new IllegalStateException(e);
     }
   }
 
+  /**
+   * Time spent in each step of metadata generation since the start of the module analysis, in milliseconds.
+   * Files are processed concurrently, so the durations are cumulated over all threads.
+   */
+  public Map<String, Long> timePerStep() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    nanosPerStep.forEach((step, nanos) -> result.put(step, TimeUnit.NANOSECONDS.toMillis(nanos.sum())));
+    return result;
+  }
+
+  private long record(String step, long start) {
+    long now = System.nanoTime();
+    nanosPerStep.get(step).add(now - start);
+    return now;
+  }
+
+  private static ByteBuffer read(Path filePath) {
+    try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size >= MAPPING_THRESHOLD) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+        // keep reading, the size of the file may have changed since it was read
+      }
+      buffer.flip();
+      return buffer;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read file " + filePath.toAbsolutePath().toString(), e);
+    }
+  }
+
+  /**
+   * Detects the charset from the beginning of the file. When the file starts with a BOM, the position of the
+   * buffer is moved after it.
+   */
+  @CheckForNull
+  private static Charset detectCharset(ByteBuffer bytes, Charset defaultEncoding) {
+    byte[] buf = new byte[Math.min(BYTES_TO_DECODE, bytes.remaining())];
+    bytes.duplicate().get(buf);
+    ByteCharsetDetector detector = new ByteCharsetDetector(new CharsetValidation(), defaultEncoding);
+    ByteOrderMark bom = detector.detectBOM(buf);
+    if (bom != null) {
+      bytes.position(bytes.position() + bom.length());
+      return Charset.forName(bom.getCharsetName());
+    }
+    return detector.detect(buf);
+  }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Append-only log of records in a memory-mapped file. The file is mapped by segments, and a record never spans
+ * two segments. A record is identified by its position in the file.
+ * <p>
+ * This class is not thread-safe. The file is deleted when the log is closed.
+ * </p>
+ */
+class MappedLog implements Closeable {
+
+  static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+  private final File file;
+  private final int segmentSize;
+  private final RandomAccessFile randomAccessFile;
+  private final TreeMap<Long, MappedByteBuffer> segmentsByPosition = new TreeMap<>();
+  private MappedByteBuffer currentSegment;
+  private long currentSegmentPosition;
+
+  MappedLog(File file, int segmentSize) throws IOException {
+    this.file = file;
+    this.segmentSize = segmentSize;
+    this.randomAccessFile = new RandomAccessFile(file, "rw");
+  }
+
+  /**
+   * @return the position of the record, to be used by {@link #read(long)}
+   */
+  long append(byte[] bytes, int length) throws IOException {
+    int recordSize = Integer.BYTES + length;
+    if (currentSegment == null || currentSegment.remaining() < recordSize) {
+      mapNewSegment(recordSize);
+    }
+    long position = currentSegmentPosition + currentSegment.position();
+    currentSegment.putInt(length);
+    currentSegment.put(bytes, 0, length);
+    return position;
+  }
+
+  private void mapNewSegment(int minSize) throws IOException {
+    long position = currentSegment == null ? 0L : (currentSegmentPosition + currentSegment.position());
+    currentSegment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, position, Math.max(segmentSize, minSize));
+    currentSegmentPosition = position;
+    segmentsByPosition.put(position, currentSegment);
+  }
+
+  byte[] read(long position) {
+    Map.Entry<Long, MappedByteBuffer> segment = segmentsByPosition.floorEntry(position);
+    if (segment == null) {
+      throw new IllegalArgumentException("No record at position " + position + " in " + file);
+    }
+    ByteBuffer buffer = segment.getValue().duplicate();
+    buffer.position((int) (position - segment.getKey()));
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public void close() throws IOException {
+    segmentsByPosition.clear();
+    currentSegment = null;
+    randomAccessFile.close();
+    deleteQuietly(file);
+  }
+}
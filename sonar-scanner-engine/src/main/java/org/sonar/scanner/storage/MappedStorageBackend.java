@@ -0,0 +1,244 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.persistit.Persistit;
+import com.persistit.Value;
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Values are appended to a {@link MappedLog} and keys are kept in memory, sorted, with the position of their
+ * latest value in the log. The space of removed or overridden values is not reclaimed.
+ * <p>
+ * Values are encoded by the {@link com.persistit.encoding.ValueCoder}s registered in {@link Storages}, so
+ * that both backends support the same types of values.
+ * </p>
+ * <p>
+ * This backend is not thread-safe. Iterators are weakly consistent: they never fail when the storage is
+ * modified during iteration.
+ * </p>
+ */
+class MappedStorageBackend<V> implements StorageBackend<V> {
+
+  private static final Comparator<Object[]> KEY_COMPARATOR = MappedStorageBackend::compareKeys;
+
+  private final Persistit persistit;
+  private final MappedLog log;
+  private final Value value;
+  private final ConcurrentSkipListMap<Object[], Long> positionsByKey = new ConcurrentSkipListMap<>(KEY_COMPARATOR);
+
+  MappedStorageBackend(Persistit persistit, File file) throws IOException {
+    this.persistit = persistit;
+    this.log = new MappedLog(file, MappedLog.DEFAULT_SEGMENT_SIZE);
+    this.value = newValue(persistit);
+  }
+
+  @Override
+  public void put(Object[] key, V v) throws IOException {
+    value.clear();
+    value.put(v);
+    long position = log.append(value.getEncodedBytes(), value.getEncodedSize());
+    positionsByKey.put(key.clone(), position);
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object[] key) {
+    Long position = positionsByKey.get(key);
+    if (position == null) {
+      return null;
+    }
+    return read(value, position);
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return positionsByKey.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    return positionsByKey.remove(key) != null;
+  }
+
+  @Override
+  public void clear(Object[] key) {
+    Iterator<Object[]> keys = positionsByKey.tailMap(key, true).keySet().iterator();
+    while (keys.hasNext() && startsWith(keys.next(), key)) {
+      keys.remove();
+    }
+  }
+
+  @Override
+  public void clear() {
+    positionsByKey.clear();
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) {
+    Set<Object> keys = new LinkedHashSet<>();
+    for (Object[] key : positionsByKey.tailMap(prefix, false).keySet()) {
+      if (!startsWith(key, prefix)) {
+        break;
+      }
+      keys.add(key[prefix.length]);
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterator<V> values(Object[] prefix) {
+    Value iteratorValue = newValue(persistit);
+    return new PrefixIterator<V>(prefix) {
+      @Override
+      V toElement(Map.Entry<Object[], Long> entry) {
+        return read(iteratorValue, entry.getValue());
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Storage.Entry<V>> entries(Object[] prefix) {
+    Value iteratorValue = newValue(persistit);
+    return new PrefixIterator<Storage.Entry<V>>(prefix) {
+      @Override
+      Storage.Entry<V> toElement(Map.Entry<Object[], Long> entry) {
+        return new Storage.Entry<>(entry.getKey().clone(), read(iteratorValue, entry.getValue()));
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    positionsByKey.clear();
+    log.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  private V read(Value target, long position) {
+    byte[] bytes = log.read(position);
+    target.clear();
+    target.putEncodedBytes(bytes, 0, bytes.length);
+    return (V) target.get();
+  }
+
+  private static Value newValue(Persistit persistit) {
+    Value value = new Value(persistit);
+    value.setMaximumSize(Value.MAXIMUM_SIZE);
+    return value;
+  }
+
+  /**
+   * Iterates on the keys which the prefix is a strict prefix of, in order
+   */
+  private abstract class PrefixIterator<T> implements Iterator<T> {
+    private final Object[] prefix;
+    private final Iterator<Map.Entry<Object[], Long>> delegate;
+    private Map.Entry<Object[], Long> nextEntry;
+    private boolean done = false;
+
+    PrefixIterator(Object[] prefix) {
+      this.prefix = prefix;
+      this.delegate = positionsByKey.tailMap(prefix, false).entrySet().iterator();
+    }
+
+    abstract T toElement(Map.Entry<Object[], Long> entry);
+
+    @Override
+    public boolean hasNext() {
+      if (nextEntry == null && !done && delegate.hasNext()) {
+        Map.Entry<Object[], Long> entry = delegate.next();
+        if (startsWith(entry.getKey(), prefix)) {
+          nextEntry = entry;
+        } else {
+          done = true;
+        }
+      }
+      return nextEntry != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T element = toElement(nextEntry);
+      nextEntry = null;
+      return element;
+    }
+  }
+
+  private static boolean startsWith(Object[] key, Object[] prefix) {
+    if (key.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (compareObjects(key[i], prefix[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Keys are compared object by object, and a key is lower than all the keys it is a prefix of.
+   */
+  private static int compareKeys(Object[] key1, Object[] key2) {
+    int length = Math.min(key1.length, key2.length);
+    for (int i = 0; i < length; i++) {
+      int c = compareObjects(key1[i], key2[i]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return Integer.compare(key1.length, key2.length);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static int compareObjects(@Nullable Object o1, @Nullable Object o2) {
+    if (o1 == o2) {
+      return 0;
+    }
+    if (o1 == null) {
+      return -1;
+    }
+    if (o2 == null) {
+      return 1;
+    }
+    if (o1.getClass() != o2.getClass()) {
+      // objects of different types are grouped by type
+      return o1.getClass().getName().compareTo(o2.getClass().getName());
+    }
+    if (!(o1 instanceof Comparable)) {
+      throw new IllegalArgumentException("Type of key is not supported: " + o1.getClass());
+    }
+    return ((Comparable) o1).compareTo(o2);
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.persistit.Exchange;
+import com.persistit.Key;
+import com.persistit.KeyFilter;
+import com.persistit.Persistit;
+import com.persistit.exception.PersistitException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * <p>
+ * This backend is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * </p>
+ */
+class PersistitStorageBackend<V> implements StorageBackend<V> {
+
+  private final Persistit persistit;
+  private final Exchange exchange;
+
+  PersistitStorageBackend(Persistit persistit, Exchange exchange) {
+    this.persistit = persistit;
+    this.exchange = exchange;
+  }
+
+  @Override
+  public void put(Object[] key, V value) throws PersistitException {
+    resetKey(key);
+    exchange.getValue().put(value);
+    exchange.store();
+  }
+
+  @SuppressWarnings("unchecked")
+  @CheckForNull
+  @Override
+  public V get(Object[] key) throws PersistitException {
+    resetKey(key);
+    exchange.fetch();
+    if (!exchange.getValue().isDefined()) {
+      return null;
+    }
+    return (V) exchange.getValue().get();
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) throws PersistitException {
+    resetKey(key);
+    exchange.fetch();
+    return exchange.isValueDefined();
+  }
+
+  @Override
+  public boolean remove(Object[] key) throws PersistitException {
+    resetKey(key);
+    return exchange.remove();
+  }
+
+  @Override
+  public void clear(Object[] key) throws PersistitException {
+    resetKey(key);
+    Key to = new Key(exchange.getKey());
+    to.append(Key.AFTER);
+    exchange.removeKeyRange(exchange.getKey(), to);
+  }
+
+  @Override
+  public void clear() throws PersistitException {
+    exchange.clear();
+    exchange.removeAll();
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) throws PersistitException {
+    Set<Object> keys = new LinkedHashSet<>();
+    exchange.clear();
+    Exchange iteratorExchange = new Exchange(exchange);
+    for (Object o : prefix) {
+      iteratorExchange.append(o);
+    }
+    iteratorExchange.append(Key.BEFORE);
+    while (iteratorExchange.next(false)) {
+      keys.add(iteratorExchange.getKey().indexTo(-1).decode());
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterator<V> values(Object[] prefix) {
+    KeyFilter filter = resetKeyForIteration(prefix);
+    return new ValueIterator<>(new Exchange(exchange), filter);
+  }
+
+  @Override
+  public Iterator<Storage.Entry<V>> entries(Object[] prefix) {
+    KeyFilter filter = resetKeyForIteration(prefix);
+    return new EntryIterator<>(new Exchange(exchange), filter);
+  }
+
+  @Override
+  public void close() {
+    persistit.releaseExchange(exchange);
+  }
+
+  private void resetKey(Object[] keys) {
+    exchange.clear();
+    for (Object o : keys) {
+      exchange.append(o);
+    }
+  }
+
+  private KeyFilter resetKeyForIteration(Object[] keys) {
+    exchange.clear();
+    KeyFilter filter = new KeyFilter();
+    for (Object key : keys) {
+      exchange.append(key);
+      filter = filter.append(KeyFilter.simpleTerm(key));
+    }
+    exchange.append(Key.BEFORE);
+    return filter;
+  }
+
+  private static class ValueIterator<T> implements Iterator<T> {
+    private final Exchange exchange;
+    private final KeyFilter keyFilter;
+
+    private ValueIterator(Exchange exchange, KeyFilter keyFilter) {
+      this.exchange = exchange;
+      this.keyFilter = keyFilter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        return exchange.hasNext(keyFilter);
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+      try {
+        exchange.next(keyFilter);
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+      if (exchange.getValue().isDefined()) {
+        return (T) exchange.getValue().get();
+      }
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Removing an item is not supported");
+    }
+  }
+
+  private static class EntryIterator<T> implements Iterator<Storage.Entry<T>> {
+    private final Exchange exchange;
+    private final KeyFilter keyFilter;
+
+    private EntryIterator(Exchange exchange, KeyFilter keyFilter) {
+      this.exchange = exchange;
+      this.keyFilter = keyFilter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        return exchange.hasNext(keyFilter);
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Storage.Entry<T> next() {
+      try {
+        exchange.next(keyFilter);
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+      if (exchange.getValue().isDefined()) {
+        T value = (T) exchange.getValue().get();
+        Key key = exchange.getKey();
+        Object[] array = new Object[key.getDepth()];
+        for (int i = 0; i < key.getDepth(); i++) {
+          array[i] = key.indexTo(i - key.getDepth()).decode();
+        }
+        return new Storage.Entry<>(array, value);
+      }
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Removing an item is not supported");
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Iterator;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * Implementation of a {@link Storage}. Keys are paths of objects: a key is a prefix of all the keys that start
+ * with the same objects, and iteration follows the order of keys.
+ */
+interface StorageBackend<V> {
+
+  void put(Object[] key, V value) throws Exception;
+
+  @CheckForNull
+  V get(Object[] key) throws Exception;
+
+  boolean containsKey(Object[] key) throws Exception;
+
+  boolean remove(Object[] key) throws Exception;
+
+  /**
+   * Removes the value of the key and the values of all the keys it is a prefix of
+   */
+  void clear(Object[] key) throws Exception;
+
+  void clear() throws Exception;
+
+  /**
+   * Objects following the given prefix in the keys it is a prefix of
+   */
+  Set<Object> keySet(Object[] prefix) throws Exception;
+
+  /**
+   * Lazy iterator on the values of the keys the given prefix is a prefix of
+   */
+  Iterator<V> values(Object[] prefix);
+
+  /**
+   * Lazy iterator on the entries of the keys the given prefix is a prefix of
+   */
+  Iterator<Storage.Entry<V>> entries(Object[] prefix);
+
+  /**
+   * Releases resources. The backend can't be used anymore.
+   */
+  void close() throws Exception;
+}
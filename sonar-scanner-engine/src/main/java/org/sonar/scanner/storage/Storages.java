@@ -27,20 +27,25 @@ import com.persistit.Volume;
 import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
+import java.io.File;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
 
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = new HashMap<>();
+  private final Map<String, StorageBackend<?>> cacheMap = new HashMap<>();
+  private final String backend;
+  private final File tempDir;
   private Persistit persistit;
   private Volume volume;
 
   public Storages(StoragesManager storagesManager) {
     persistit = storagesManager.persistit();
+    backend = storagesManager.backend();
+    tempDir = storagesManager.tempDir();
     doStart();
   }
 
@@ -67,20 +72,33 @@ public class Storages implements Startable {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
     try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
+      StorageBackend<V> storageBackend = createBackend(cacheName);
+      cacheMap.put(cacheName, storageBackend);
+      return new Storage<>(cacheName, storageBackend);
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
     }
   }
 
+  private <V> StorageBackend<V> createBackend(String cacheName) throws Exception {
+    if (StoragesManager.BACKEND_MMAP.equals(backend)) {
+      // values are still encoded by the value coders registered in Persistit
+      File file = Files.createTempFile(tempDir.toPath(), cacheName, ".log").toFile();
+      return new MappedStorageBackend<>(persistit, file);
+    }
+    Exchange exchange = persistit.getExchange(volume, cacheName, true);
+    exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+    return new PersistitStorageBackend<>(persistit, exchange);
+  }
+
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+    for (StorageBackend<?> storageBackend : cacheMap.values()) {
+      try {
+        storageBackend.close();
+      } catch (Exception e) {
+        throw new IllegalStateException("Fail to close caches", e);
+      }
     }
 
     cacheMap.clear();
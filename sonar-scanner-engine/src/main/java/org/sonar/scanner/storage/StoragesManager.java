@@ -27,7 +27,9 @@ import java.util.Properties;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
@@ -38,15 +40,44 @@ import static org.sonar.core.util.FileUtils.deleteQuietly;
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+  /**
+   * Backend of storages: {@value #BACKEND_PERSISTIT} (default) or {@value #BACKEND_MMAP}
+   */
+  public static final String BACKEND_PROPERTY = "sonar.scanner.storage.backend";
+  public static final String BACKEND_PERSISTIT = "persistit";
+  public static final String BACKEND_MMAP = "mmap";
+
   private File tempDir;
   private Persistit persistit;
   private final TempFolder tempFolder;
+  private final String backend;
 
   public StoragesManager(TempFolder tempFolder) {
+    this(tempFolder, BACKEND_PERSISTIT);
+  }
+
+  public StoragesManager(TempFolder tempFolder, GlobalProperties globalProperties) {
+    this(tempFolder, backend(globalProperties));
+  }
+
+  StoragesManager(TempFolder tempFolder, String backend) {
     this.tempFolder = tempFolder;
+    this.backend = backend;
     initPersistit();
   }
 
+  private static String backend(GlobalProperties globalProperties) {
+    String backend = globalProperties.property(BACKEND_PROPERTY);
+    if (backend == null) {
+      return BACKEND_PERSISTIT;
+    }
+    if (!BACKEND_PERSISTIT.equals(backend) && !BACKEND_MMAP.equals(backend)) {
+      throw MessageException.of(String.format("Unsupported value of property '%s': '%s'. Supported values are '%s' and '%s'",
+        BACKEND_PROPERTY, backend, BACKEND_PERSISTIT, BACKEND_MMAP));
+    }
+    return backend;
+  }
+
   private void initPersistit() {
     try {
       tempDir = tempFolder.newDir("caches");
@@ -95,4 +126,8 @@ public class StoragesManager implements Startable {
   Persistit persistit() {
     return persistit;
   }
+
+  String backend() {
+    return backend;
+  }
 }
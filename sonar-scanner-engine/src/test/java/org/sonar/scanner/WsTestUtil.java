@@ -21,6 +21,7 @@ package org.sonar.scanner;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Optional;
 import org.apache.commons.lang.StringUtils;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
@@ -29,6 +30,7 @@ import org.sonarqube.ws.client.WsRequest;
 import org.sonarqube.ws.client.WsResponse;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -38,12 +40,14 @@ public class WsTestUtil {
   public static void mockStream(ScannerWsClient mock, String path, InputStream is) {
     WsResponse response = mock(WsResponse.class);
     when(response.contentStream()).thenReturn(is);
+    when(response.header(anyString())).thenReturn(Optional.empty());
     when(mock.call(argThat(new RequestMatcher(path)))).thenReturn(response);
   }
 
   public static void mockStream(ScannerWsClient mock, InputStream is) {
     WsResponse response = mock(WsResponse.class);
     when(response.contentStream()).thenReturn(is);
+    when(response.header(anyString())).thenReturn(Optional.empty());
     when(mock.call(any(WsRequest.class))).thenReturn(response);
   }
 
@@ -29,6 +29,7 @@ import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonarqube.ws.client.GetRequest;
+import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.MockWsResponse;
 import org.sonarqube.ws.client.WsClient;
 import org.sonarqube.ws.client.WsRequest;
@@ -121,6 +122,28 @@ public class ScannerWsClientTest {
     new ScannerWsClient(wsClient, true, new GlobalAnalysisMode(new GlobalProperties(Collections.emptyMap()))).call(request);
   }
 
+  @Test
+  public void do_not_fail_if_not_modified() {
+    WsRequest request = newRequest();
+    WsResponse response = newResponse().setCode(304);
+    when(wsClient.wsConnector().call(request)).thenReturn(response);
+
+    WsResponse result = new ScannerWsClient(wsClient, true, new GlobalAnalysisMode(new GlobalProperties(Collections.emptyMap()))).call(request);
+
+    assertThat(result.code()).isEqualTo(304);
+  }
+
+  @Test
+  public void fail_if_not_successful() {
+    expectedException.expect(HttpException.class);
+
+    WsRequest request = newRequest();
+    WsResponse response = newResponse().setCode(500).setContent("error");
+    when(wsClient.wsConnector().call(request)).thenReturn(response);
+
+    new ScannerWsClient(wsClient, true, new GlobalAnalysisMode(new GlobalProperties(Collections.emptyMap()))).call(request);
+  }
+
   private MockWsResponse newResponse() {
     return new MockWsResponse().setRequestUrl("https://local/api/issues/search");
   }
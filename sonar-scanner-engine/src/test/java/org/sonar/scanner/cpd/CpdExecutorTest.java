@@ -235,6 +235,55 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void timeout_with_multiple_threads() {
+    when(settings.getNumberOfThreads()).thenReturn(2);
+    for (int i = 1; i <= 3; i++) {
+      DefaultInputFile component = createComponent("src/Foo" + i + ".php", 100);
+      index.insert((InputFile) component, newBlocks(component, 10000));
+    }
+    executor.execute(1);
+
+    readDuplications(0);
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .usingElementComparator((l, r) -> l.matches(r) ? 0 : 1)
+      .containsOnly(
+        "Timeout during detection of duplications for .*Foo1.php",
+        "Timeout during detection of duplications for .*Foo2.php",
+        "Timeout during detection of duplications for .*Foo3.php");
+  }
+
+  @Test
+  public void detect_duplications_with_multiple_threads() {
+    when(settings.getNumberOfThreads()).thenReturn(4);
+    List<DefaultInputFile> components = new ArrayList<>();
+    for (int i = 1; i <= 6; i++) {
+      DefaultInputFile component = createComponent("src/Bar" + i + ".php", 100);
+      index.insert((InputFile) component, newBlocks(component, 10));
+      components.add(component);
+    }
+    executor.execute();
+
+    for (DefaultInputFile component : components) {
+      assertThat(reader.readComponentDuplications(component.batchId())).hasSize(1);
+    }
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+  }
+
+  private static List<Block> newBlocks(DefaultInputFile component, int count) {
+    List<Block> blocks = new ArrayList<>();
+    for (int j = 1; j <= count; j++) {
+      blocks.add(Block.builder()
+        .setResourceId(component.key())
+        .setIndexInFile(j)
+        .setLines(j, j + 1)
+        .setUnit(j, j + 1)
+        .setBlockHash(new ByteArray(("hash" + j).getBytes()))
+        .build());
+    }
+    return blocks;
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
@@ -59,4 +59,19 @@ public class CpdSettingsTest {
     assertThat(cpdSettings.getMinimumTokens("java")).isEqualTo(42);
     assertThat(cpdSettings.getMinimumTokens("php")).isEqualTo(33);
   }
+
+  @Test
+  public void defaultNumberOfThreads() {
+    when(configuration.getInt(anyString())).thenReturn(Optional.empty());
+    assertThat(cpdSettings.getNumberOfThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void numberOfThreadsIsAtLeastOne() {
+    when(configuration.getInt("sonar.cpd.threads")).thenReturn(Optional.of(4));
+    assertThat(cpdSettings.getNumberOfThreads()).isEqualTo(4);
+
+    when(configuration.getInt("sonar.cpd.threads")).thenReturn(Optional.of(0));
+    assertThat(cpdSettings.getNumberOfThreads()).isEqualTo(1);
+  }
 }
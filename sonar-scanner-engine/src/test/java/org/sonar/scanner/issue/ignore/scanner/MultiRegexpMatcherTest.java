@@ -0,0 +1,66 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.ignore.scanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MultiRegexpMatcherTest {
+
+  @Test
+  public void find_first_pattern_in_declaration_order() {
+    MultiRegexpMatcher matcher = new MultiRegexpMatcher(Arrays.asList(Pattern.compile("// FOO-OFF"), Pattern.compile("OFF"), Pattern.compile("^\\s*@Generated")));
+
+    assertThat(matcher.find("int a = 1; // FOO-OFF")).isEqualTo(0);
+    assertThat(matcher.find("OFF // FOO-OFF")).isEqualTo(0);
+    assertThat(matcher.find("// BAR-OFF")).isEqualTo(1);
+    assertThat(matcher.find("  @Generated")).isEqualTo(2);
+    assertThat(matcher.find("int a = 1; @Generated")).isEqualTo(-1);
+    assertThat(matcher.get(1).pattern()).isEqualTo("OFF");
+  }
+
+  @Test
+  public void patterns_are_evaluated_independently() {
+    MultiRegexpMatcher matcher = new MultiRegexpMatcher(Arrays.asList(Pattern.compile("(?i)sonar-off"), Pattern.compile("foo$"), Pattern.compile("(a)\\1")));
+
+    assertThat(matcher.find("// SONAR-OFF")).isEqualTo(0);
+    assertThat(matcher.find("// FOO")).isEqualTo(-1);
+    assertThat(matcher.find("// foo")).isEqualTo(1);
+    assertThat(matcher.find("aa")).isEqualTo(2);
+    assertThat(matcher.find("ab")).isEqualTo(-1);
+  }
+
+  @Test
+  public void same_group_name_in_several_patterns() {
+    MultiRegexpMatcher matcher = new MultiRegexpMatcher(Arrays.asList(Pattern.compile("(?<tag>FOO)-OFF"), Pattern.compile("(?<tag>BAR)-OFF")));
+
+    assertThat(matcher.find("// BAR-OFF")).isEqualTo(1);
+    assertThat(matcher.find("// BAZ-OFF")).isEqualTo(-1);
+  }
+
+  @Test
+  public void no_patterns() {
+    assertThat(new MultiRegexpMatcher(Collections.emptyList()).find("// SONAR-OFF")).isEqualTo(-1);
+  }
+}
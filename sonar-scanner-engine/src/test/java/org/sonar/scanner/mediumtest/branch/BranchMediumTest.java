@@ -77,14 +77,14 @@ public class BranchMediumTest {
     int fileId = 2;
     assertThat(result.getReportReader().readChangesets(fileId)).isNotNull();
     assertThat(result.getReportReader().hasCoverage(fileId)).isTrue();
-    assertThat(result.getReportReader().readFileSource(fileId)).isNotNull();
+    assertThat(result.getReportReader().openFileSource(fileId)).isNotNull();
 
     // file is skipped for short branches (no report, no coverage, no duplications)
     TaskResult result2 = getResult(tester.setBranchType(BranchType.SHORT));
     assertThat(result2.getReportComponent(result2.inputFile(FILE_PATH).key())).isNull();
     assertThat(result2.getReportReader().readChangesets(fileId)).isNull();
     assertThat(result2.getReportReader().hasCoverage(fileId)).isFalse();
-    assertThat(result.getReportReader().readFileSource(fileId)).isNull();
+    assertThat(result2.getReportReader().openFileSource(fileId)).isNull();
   }
 
   @Test
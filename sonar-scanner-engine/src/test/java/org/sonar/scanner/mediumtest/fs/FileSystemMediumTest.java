@@ -26,6 +26,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -42,6 +47,8 @@ import org.sonar.api.utils.System2;
 import org.sonar.scanner.mediumtest.LogOutputRecorder;
 import org.sonar.scanner.mediumtest.ScannerMediumTester;
 import org.sonar.scanner.mediumtest.TaskResult;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReport.Component;
 import org.sonar.xoo.XooPlugin;
 import org.sonar.xoo.rule.XooRulesDefinition;
 
@@ -680,6 +687,46 @@ public class FileSystemMediumTest {
     assertThat(result.inputDirs()).hasSize(4);
   }
 
+  @Test
+  public void scanMultiModuleProjectConcurrently() {
+    tester
+      .addRules(new XooRulesDefinition())
+      .addActiveRule("xoo", "OneIssuePerLine", null, "One issue per line", "MAJOR", "OneIssuePerLine.internal", "xoo");
+    File projectDir = new File("src/test/resources/mediumtest/xoo/multi-modules-sample");
+    // read before the next scan, which replaces the report
+    Map<String, List<Object>> sequentialReport = reportContent(tester
+      .newScanTask(new File(projectDir, "sonar-project.properties"))
+      .execute());
+
+    TaskResult result = tester
+      .newScanTask(new File(projectDir, "sonar-project.properties"))
+      .property("sonar.modules.threads", "3")
+      .execute();
+
+    assertThat(result.inputFiles()).hasSize(4);
+    assertThat(result.inputDirs()).hasSize(4);
+    assertThat(result.getReportComponent("com.sonarsource.it.samples:multi-modules-sample").getChildRefList()).hasSize(2);
+    assertThat(result.issuesFor(result.inputFile("module_a/module_a1/src/main/xoo/com/sonar/it/samples/modules/a1/HelloA1.xoo"))).isNotEmpty();
+    assertThat(reportContent(result)).isEqualTo(sequentialReport);
+  }
+
+  /**
+   * Components of the report, with their measures and issues, by key. Refs are ignored, as they depend on the order in
+   * which files are indexed.
+   */
+  private static Map<String, List<Object>> reportContent(TaskResult result) {
+    Map<String, List<Object>> content = new HashMap<>();
+    for (Map.Entry<String, List<ScannerReport.Measure>> measures : result.allMeasures().entrySet()) {
+      Component component = result.getReportComponent(measures.getKey());
+      content.put(measures.getKey(), Arrays.asList(
+        component.toBuilder().clearRef().clearChildRef().build(),
+        component.getChildRefCount(),
+        new HashSet<>(measures.getValue()),
+        result.issuesFor(component)));
+    }
+    return content;
+  }
+
   @Test
   public void scanProjectWithCommaInSourcePath() throws IOException {
     File srcDir = new File(baseDir, "src");
@@ -0,0 +1,69 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.phases;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.scanner.bootstrap.ScannerPluginRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PhasesTimeProfilerTest {
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private System2 system = mock(System2.class);
+  private PhasesTimeProfiler underTest = new PhasesTimeProfiler(mock(ScannerPluginRepository.class), system);
+
+  @Test
+  public void log_wall_clock_and_cumulative_time_of_sensors() {
+    Sensor sensor1 = mock(Sensor.class);
+    Sensor sensor2 = mock(Sensor.class);
+
+    when(system.now()).thenReturn(1_000L);
+    underTest.onSensorsPhase(new SensorsPhaseEvent(Arrays.asList(sensor1, sensor2), true));
+    underTest.onSensorExecution(new SensorExecutionEvent(sensor1, true));
+    underTest.onSensorExecution(new SensorExecutionEvent(sensor2, true));
+    when(system.now()).thenReturn(1_300L);
+    underTest.onSensorExecution(new SensorExecutionEvent(sensor2, false));
+    when(system.now()).thenReturn(1_500L);
+    underTest.onSensorExecution(new SensorExecutionEvent(sensor1, false));
+    underTest.onSensorsPhase(new SensorsPhaseEvent(Arrays.asList(sensor1, sensor2), false));
+
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("Sensors (done) | time=500ms | cumulative sensors time=800ms");
+  }
+
+  @Test
+  public void do_not_log_time_of_sensors_phase_without_sensors() {
+    underTest.onSensorsPhase(new SensorsPhaseEvent(Collections.emptyList(), true));
+    underTest.onSensorsPhase(new SensorsPhaseEvent(Collections.emptyList(), false));
+
+    assertThat(logTester.logs(LoggerLevel.INFO)).isEmpty();
+  }
+}
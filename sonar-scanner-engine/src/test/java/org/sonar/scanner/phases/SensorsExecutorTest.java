@@ -20,10 +20,14 @@
 package org.sonar.scanner.phases;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -32,9 +36,14 @@ import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.scan.ThreadBudget;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -45,10 +54,15 @@ import static org.mockito.Mockito.when;
 public class SensorsExecutorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   private SensorsExecutor rootModuleExecutor;
   private SensorsExecutor subModuleExecutor;
   private SensorContext context;
+  private ScannerExtensionDictionnary selector;
+  private InputModuleHierarchy hierarchy;
+  private DefaultInputModule rootModule;
 
   private SensorStrategy strategy = new SensorStrategy();
 
@@ -81,21 +95,21 @@ public class SensorsExecutorTest {
   public void setUp() throws IOException {
     context = mock(SensorContext.class);
 
-    ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+    selector = mock(ScannerExtensionDictionnary.class);
     when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Collections.singleton(perModuleSensor));
     when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.singleton(globalSensor));
 
     ProjectDefinition childDef = ProjectDefinition.create().setKey("sub").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder());
     ProjectDefinition rootDef = ProjectDefinition.create().setKey("root").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder());
 
-    DefaultInputModule rootModule = TestInputFileBuilder.newDefaultInputModule(rootDef);
+    rootModule = TestInputFileBuilder.newDefaultInputModule(rootDef);
     DefaultInputModule subModule = TestInputFileBuilder.newDefaultInputModule(childDef);
 
-    InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
+    hierarchy = mock(InputModuleHierarchy.class);
     when(hierarchy.isRoot(rootModule)).thenReturn(true);
 
-    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy);
-    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy);
+    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new ThreadBudget(new MapSettings().asConfig()));
+    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy, new ThreadBudget(new MapSettings().asConfig()));
   }
 
   @Test
@@ -116,4 +130,130 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isTrue();
     assertThat(globalSensor.global).isTrue();
   }
+
+  @Test
+  public void should_execute_thread_safe_sensors_concurrently_when_enabled() {
+    CountDownLatch latch = new CountDownLatch(2);
+    AwaitingSensor sensor1 = new AwaitingSensor(latch, true);
+    AwaitingSensor sensor2 = new AwaitingSensor(latch, true);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(sensor1), wrap(sensor2)));
+
+    MapSettings settings = new MapSettings().setProperty("sonar.sensors.threads", 2);
+    new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new ThreadBudget(settings.asConfig())).execute(context);
+
+    assertThat(sensor1.concurrent).isTrue();
+    assertThat(sensor2.concurrent).isTrue();
+    assertThat(globalSensor.called).isTrue();
+  }
+
+  @Test
+  public void should_execute_sensors_sequentially_by_default() {
+    CountDownLatch latch = new CountDownLatch(2);
+    AwaitingSensor sensor1 = new AwaitingSensor(latch, true);
+    AwaitingSensor sensor2 = new AwaitingSensor(latch, true);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(sensor1), wrap(sensor2)));
+
+    rootModuleExecutor.execute(context);
+
+    assertThat(sensor1.executed).isTrue();
+    assertThat(sensor1.concurrent).isFalse();
+    assertThat(sensor2.executed).isTrue();
+  }
+
+  @Test
+  public void should_not_execute_sensors_which_are_not_thread_safe_concurrently() {
+    CountDownLatch latch = new CountDownLatch(2);
+    AwaitingSensor sensor1 = new AwaitingSensor(latch, true);
+    AwaitingSensor sensor2 = new AwaitingSensor(latch, false);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(sensor1), wrap(sensor2)));
+
+    MapSettings settings = new MapSettings().setProperty("sonar.sensors.threads", 2);
+    new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new ThreadBudget(settings.asConfig())).execute(context);
+
+    assertThat(sensor1.executed).isTrue();
+    assertThat(sensor1.concurrent).isFalse();
+    assertThat(sensor2.executed).isTrue();
+  }
+
+  @Test
+  public void should_execute_sensors_sequentially_when_threads_are_used_by_other_modules() {
+    CountDownLatch latch = new CountDownLatch(2);
+    AwaitingSensor sensor1 = new AwaitingSensor(latch, true);
+    AwaitingSensor sensor2 = new AwaitingSensor(latch, true);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(sensor1), wrap(sensor2)));
+
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.sensors.threads", 2)
+      .setProperty("sonar.modules.threads", 2);
+    ThreadBudget threadBudget = new ThreadBudget(settings.asConfig());
+    threadBudget.acquire();
+    threadBudget.acquire();
+    new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, threadBudget).execute(context);
+
+    assertThat(sensor1.executed).isTrue();
+    assertThat(sensor1.concurrent).isFalse();
+    assertThat(sensor2.executed).isTrue();
+  }
+
+  @Test
+  public void should_propagate_failure_of_sensor_executed_concurrently() {
+    org.sonar.api.batch.sensor.Sensor failingSensor = new org.sonar.api.batch.sensor.Sensor() {
+      @Override
+      public void describe(SensorDescriptor descriptor) {
+        descriptor.threadSafe();
+      }
+
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        throw new IllegalStateException("Boom");
+      }
+    };
+    AwaitingSensor otherSensor = new AwaitingSensor(new CountDownLatch(0), true);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(failingSensor), wrap(otherSensor)));
+
+    MapSettings settings = new MapSettings().setProperty("sonar.sensors.threads", 2);
+    SensorsExecutor executor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new ThreadBudget(settings.asConfig()));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Boom");
+
+    executor.execute(context);
+  }
+
+  private static Sensor wrap(org.sonar.api.batch.sensor.Sensor sensor) {
+    return new SensorWrapper(sensor, mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class));
+  }
+
+  /**
+   * Waits for the other sensors sharing the same latch, to detect whether they are executed at the same time
+   */
+  private static class AwaitingSensor implements org.sonar.api.batch.sensor.Sensor {
+    private final CountDownLatch latch;
+    private final boolean threadSafe;
+    volatile boolean executed;
+    volatile boolean concurrent;
+
+    AwaitingSensor(CountDownLatch latch, boolean threadSafe) {
+      this.latch = latch;
+      this.threadSafe = threadSafe;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      if (threadSafe) {
+        descriptor.threadSafe();
+      }
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      latch.countDown();
+      try {
+        concurrent = latch.await(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      executed = true;
+    }
+  }
 }
@@ -78,6 +78,7 @@ public class PhasesSumUpTimeProfilerTest {
     assertThat(profiler.currentModuleProfiling.getProfilingPerPhase(Phase.SENSOR).getProfilingPerItem(new FakeSensor()).totalTime()).isEqualTo(10L);
     assertThat(profiler.currentModuleProfiling.getProfilingPerPhase(Phase.POSTJOB).getProfilingPerItem(new FakePostJob()).totalTime()).isEqualTo(30L);
     assertThat(profiler.currentModuleProfiling.getProfilingPerBatchStep("Free memory").totalTime()).isEqualTo(9L);
+    assertThat(profiler.currentModuleProfiling.getProfilingPerBatchStep("Compute metadata of files").totalTime()).isEqualTo(15L);
   }
 
   @Test
@@ -100,6 +101,7 @@ public class PhasesSumUpTimeProfilerTest {
     assertThat(profiler.totalProfiling.getProfilingPerPhase(Phase.INIT).getProfilingPerItem(new FakeInitializer()).totalTime()).isEqualTo(21L);
     assertThat(profiler.totalProfiling.getProfilingPerPhase(Phase.SENSOR).getProfilingPerItem(new FakeSensor()).totalTime()).isEqualTo(30L);
     assertThat(profiler.totalProfiling.getProfilingPerPhase(Phase.POSTJOB).getProfilingPerItem(new FakePostJob()).totalTime()).isEqualTo(90L);
+    assertThat(profiler.totalProfiling.getProfilingPerBatchStep("Compute metadata of files").totalTime()).isEqualTo(45L);
   }
 
   @Test
@@ -154,6 +156,8 @@ public class PhasesSumUpTimeProfilerTest {
     clock.sleep(9);
     // End of batch step
     profiler.onBatchStep(new BatchStepEvent("Free memory", false));
+    // Batch step measured by its producer
+    profiler.onBatchStep(new BatchStepEvent("Compute metadata of files", 15L));
   }
 
   private void initializerPhase(PhasesSumUpTimeProfiler profiler) {
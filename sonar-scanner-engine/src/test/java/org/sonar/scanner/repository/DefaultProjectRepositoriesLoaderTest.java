@@ -24,20 +24,27 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.utils.MessageException;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonarqube.ws.Batch.WsProjectResponse;
 import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.MockWsResponse;
 import org.sonarqube.ws.client.WsRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultProjectRepositoriesLoaderTest {
@@ -47,13 +54,16 @@ public class DefaultProjectRepositoriesLoaderTest {
 
   private DefaultProjectRepositoriesLoader loader;
   private ScannerWsClient wsClient;
+  private WsResponseCache cache;
 
   @Before
   public void prepare() throws IOException {
     wsClient = mock(ScannerWsClient.class);
     InputStream is = mockData();
     WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", is);
-    loader = new DefaultProjectRepositoriesLoader(wsClient);
+    cache = mock(WsResponseCache.class);
+    when(cache.get(anyString())).thenReturn(Optional.empty());
+    loader = new DefaultProjectRepositoriesLoader(wsClient, cache);
   }
 
   @Test
@@ -110,6 +120,55 @@ public class DefaultProjectRepositoriesLoaderTest {
     WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F");
   }
 
+  @Test
+  public void cache_only_file_data_if_versioned() throws IOException {
+    WsProjectResponse projectResponse = WsProjectResponse.newBuilder()
+      .setTimestamp(123L)
+      .putSettingsByModule("foo", WsProjectResponse.Settings.newBuilder().putSettings("sonar.foo.secured", "secret").build())
+      .putFileDataByModuleAndPath("foo", fileDataByPath("src/Foo.java", "abc"))
+      .build();
+    when(wsClient.call(any(WsRequest.class))).thenReturn(new MockWsResponse()
+      .setContent(projectResponse.toByteArray())
+      .setHeader("ETag", "\"abc\""));
+
+    loader.load(PROJECT_KEY, false, null);
+
+    byte[] fileData = WsProjectResponse.newBuilder()
+      .putFileDataByModuleAndPath("foo", fileDataByPath("src/Foo.java", "abc"))
+      .build().toByteArray();
+    verify(cache).put("/batch/project.protobuf?key=foo%3F", "\"abc\"", null, fileData);
+  }
+
+  @Test
+  public void use_cached_file_data_if_not_modified() {
+    WsProjectResponse cachedResponse = WsProjectResponse.newBuilder()
+      .putFileDataByModuleAndPath("foo", fileDataByPath("src/Foo.java", "abc"))
+      .build();
+    when(cache.get("/batch/project.protobuf?key=foo%3F"))
+      .thenReturn(Optional.of(new WsResponseCache.CachedResponse("\"abc\"", null, cachedResponse.toByteArray())));
+    WsProjectResponse projectResponse = WsProjectResponse.newBuilder()
+      .putSettingsByModule("foo", WsProjectResponse.Settings.newBuilder().putSettings("sonar.foo", "bar").build())
+      .build();
+    ArgumentCaptor<WsRequest> requestCaptor = ArgumentCaptor.forClass(WsRequest.class);
+    when(wsClient.call(requestCaptor.capture())).thenReturn(new MockWsResponse()
+      .setContent(projectResponse.toByteArray())
+      .setHeader("ETag", "\"abc\"")
+      .setHeader("X-Sonar-File-Data-Not-Modified", "true"));
+
+    ProjectRepositories proj = loader.load(PROJECT_KEY, false, null);
+
+    assertThat(requestCaptor.getValue().getHeaders().getValue("If-None-Match")).contains("\"abc\"");
+    assertThat(proj.settings("foo")).containsOnly(entry("sonar.foo", "bar"));
+    assertThat(proj.fileData("foo", "src/Foo.java").hash()).isEqualTo("abc");
+    verify(cache, never()).put(anyString(), anyString(), anyString(), any(byte[].class));
+  }
+
+  private static WsProjectResponse.FileDataByPath fileDataByPath(String path, String hash) {
+    return WsProjectResponse.FileDataByPath.newBuilder()
+      .putFileDataByPath(path, WsProjectResponse.FileData.newBuilder().setHash(hash).build())
+      .build();
+  }
+
   private InputStream mockData() throws IOException {
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     WsProjectResponse.Builder projectResponseBuilder = WsProjectResponse.newBuilder();
@@ -25,25 +25,36 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Consumer;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonarqube.ws.client.MockWsResponse;
+import org.sonarqube.ws.client.WsRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultServerIssuesLoaderTest {
   private DefaultServerIssuesLoader loader;
   private ScannerWsClient wsClient;
+  private WsResponseCache cache;
 
   @Before
   public void prepare() {
     wsClient = mock(ScannerWsClient.class);
-    loader = new DefaultServerIssuesLoader(wsClient);
+    cache = mock(WsResponseCache.class);
+    when(cache.get(anyString())).thenReturn(Optional.empty());
+    loader = new DefaultServerIssuesLoader(wsClient, cache);
   }
 
   @Test
@@ -66,6 +77,72 @@ public class DefaultServerIssuesLoaderTest {
     assertThat(result).extracting("key").containsExactly("ab1", "ab2");
   }
 
+  @Test
+  public void cache_response_if_versioned() throws Exception {
+    byte[] issues = serialize(ServerIssue.newBuilder().setKey("ab1").build(), ServerIssue.newBuilder().setKey("ab2").build());
+    when(wsClient.call(any(WsRequest.class))).thenReturn(new MockWsResponse()
+      .setContent(issues)
+      .setHeader("ETag", "\"abc-1000\"")
+      .setHeader("Last-Modified", "Wed, 18 Oct 2017 10:00:00 GMT"));
+
+    List<ServerIssue> result = new ArrayList<>();
+    loader.load("foo", result::add);
+
+    assertThat(result).extracting("key").containsExactly("ab1", "ab2");
+    verify(cache).put("/batch/issues.protobuf?key=foo", "\"abc-1000\"", "Wed, 18 Oct 2017 10:00:00 GMT", issues);
+  }
+
+  @Test
+  public void request_issues_updated_since_cached_response() throws Exception {
+    byte[] issues = serialize(ServerIssue.newBuilder().setKey("ab1").build());
+    when(cache.get("/batch/issues.protobuf?key=foo"))
+      .thenReturn(Optional.of(new WsResponseCache.CachedResponse("\"abc-1000\"", "Wed, 18 Oct 2017 10:00:00 GMT", issues)));
+    ArgumentCaptor<WsRequest> requestCaptor = ArgumentCaptor.forClass(WsRequest.class);
+    when(wsClient.call(requestCaptor.capture())).thenReturn(new MockWsResponse()
+      .setContent(new byte[0])
+      .setHeader("ETag", "\"abc-1000\"")
+      .setHeader("X-Sonar-Delta", "true"));
+
+    List<ServerIssue> result = new ArrayList<>();
+    loader.load("foo", result::add);
+
+    assertThat(requestCaptor.getValue().getPath()).isEqualTo("/batch/issues.protobuf?key=foo&changedSince=1508320800000");
+    assertThat(requestCaptor.getValue().getHeaders().getValue("If-None-Match")).contains("\"abc-1000\"");
+    assertThat(result).extracting("key").containsExactly("ab1");
+    verify(cache).put("/batch/issues.protobuf?key=foo", "\"abc-1000\"", null, issues);
+  }
+
+  @Test
+  public void merge_issues_updated_since_cached_response() throws Exception {
+    byte[] cachedIssues = serialize(
+      ServerIssue.newBuilder().setKey("ab1").setStatus("OPEN").build(),
+      ServerIssue.newBuilder().setKey("ab2").setStatus("OPEN").build(),
+      ServerIssue.newBuilder().setKey("ab3").setStatus("OPEN").build());
+    when(cache.get("/batch/issues.protobuf?key=foo"))
+      .thenReturn(Optional.of(new WsResponseCache.CachedResponse("\"abc-1000\"", "Wed, 18 Oct 2017 10:00:00 GMT", cachedIssues)));
+    when(wsClient.call(any(WsRequest.class))).thenReturn(new MockWsResponse()
+      .setContent(serialize(
+        ServerIssue.newBuilder().setKey("ab2").setStatus("CONFIRMED").build(),
+        ServerIssue.newBuilder().setKey("ab3").setStatus("CLOSED").build(),
+        ServerIssue.newBuilder().setKey("ab4").setStatus("OPEN").build()))
+      .setHeader("ETag", "\"abc-2000\"")
+      .setHeader("X-Sonar-Delta", "true"));
+
+    List<ServerIssue> result = new ArrayList<>();
+    loader.load("foo", result::add);
+
+    assertThat(result).extracting("key", "status").containsExactly(tuple("ab1", "OPEN"), tuple("ab2", "CONFIRMED"), tuple("ab4", "OPEN"));
+    verify(cache).put("/batch/issues.protobuf?key=foo", "\"abc-2000\"", null, serialize(result.toArray(new ServerIssue[0])));
+  }
+
+  private static byte[] serialize(ServerIssue... issues) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for (ServerIssue issue : issues) {
+      issue.writeDelimitedTo(bos);
+    }
+    return bos.toByteArray();
+  }
+
   @Test(expected = IllegalStateException.class)
   public void testError() throws IOException {
     InputStream is = mock(InputStream.class);
@@ -0,0 +1,103 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.home.cache.FileCache;
+import org.sonar.scanner.bootstrap.ScannerWsClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WsResponseCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private FileCache fileCache = mock(FileCache.class);
+  private ScannerWsClient wsClient = mock(ScannerWsClient.class);
+  private File cacheDir;
+  private WsResponseCache underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = temp.newFolder();
+    when(fileCache.getDir()).thenReturn(cacheDir);
+    when(wsClient.baseUrl()).thenReturn("http://localhost:9000");
+    underTest = new WsResponseCache(fileCache, wsClient);
+  }
+
+  @Test
+  public void get_returns_empty_if_response_is_not_cached() {
+    assertThat(underTest.get("/batch/issues.protobuf?key=foo")).isEmpty();
+  }
+
+  @Test
+  public void get_returns_cached_response() {
+    underTest.put("/batch/issues.protobuf?key=foo", "\"abc\"", "Wed, 18 Oct 2017 10:00:00 GMT", "foo".getBytes(StandardCharsets.UTF_8));
+    underTest.put("/batch/issues.protobuf?key=bar", "\"def\"", null, "bar".getBytes(StandardCharsets.UTF_8));
+
+    WsResponseCache.CachedResponse foo = underTest.get("/batch/issues.protobuf?key=foo").get();
+    assertThat(foo.etag()).isEqualTo("\"abc\"");
+    assertThat(foo.lastModified()).isEqualTo("Wed, 18 Oct 2017 10:00:00 GMT");
+    assertThat(new String(foo.content(), StandardCharsets.UTF_8)).isEqualTo("foo");
+    WsResponseCache.CachedResponse bar = underTest.get("/batch/issues.protobuf?key=bar").get();
+    assertThat(bar.etag()).isEqualTo("\"def\"");
+    assertThat(bar.lastModified()).isNull();
+    assertThat(new String(bar.content(), StandardCharsets.UTF_8)).isEqualTo("bar");
+  }
+
+  @Test
+  public void put_replaces_cached_response() {
+    underTest.put("/batch/issues.protobuf?key=foo", "\"abc\"", null, "foo".getBytes(StandardCharsets.UTF_8));
+    underTest.put("/batch/issues.protobuf?key=foo", "\"def\"", null, "bar".getBytes(StandardCharsets.UTF_8));
+
+    Optional<WsResponseCache.CachedResponse> cached = underTest.get("/batch/issues.protobuf?key=foo");
+    assertThat(cached.get().etag()).isEqualTo("\"def\"");
+    assertThat(new File(cacheDir, "ws").listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void responses_of_different_servers_are_not_shared() {
+    underTest.put("/batch/issues.protobuf?key=foo", "\"abc\"", null, "foo".getBytes(StandardCharsets.UTF_8));
+    when(wsClient.baseUrl()).thenReturn("http://other:9000");
+
+    assertThat(new WsResponseCache(fileCache, wsClient).get("/batch/issues.protobuf?key=foo")).isEmpty();
+  }
+
+  @Test
+  public void get_ignores_corrupted_response() throws IOException {
+    underTest.put("/batch/issues.protobuf?key=foo", "\"abc\"", null, "foo".getBytes(StandardCharsets.UTF_8));
+    for (File file : new File(cacheDir, "ws").listFiles()) {
+      FileUtils.write(file, "x", StandardCharsets.UTF_8);
+    }
+
+    assertThat(underTest.get("/batch/issues.protobuf?key=foo")).isEmpty();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan;
+
+import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThreadBudgetTest {
+
+  private MapSettings settings = new MapSettings();
+
+  @Test
+  public void use_single_thread_by_default() {
+    ThreadBudget underTest = new ThreadBudget(settings.asConfig());
+
+    assertThat(underTest.getModulesThreads()).isEqualTo(1);
+    assertThat(underTest.getSensorsThreads()).isEqualTo(1);
+    assertThat(underTest.tryAcquire(2)).isEqualTo(1);
+  }
+
+  @Test
+  public void number_of_threads_is_always_greater_than_zero() {
+    settings.setProperty(ThreadBudget.MODULES_THREADS_PROPERTY, 0);
+    settings.setProperty(ThreadBudget.SENSORS_THREADS_PROPERTY, -1);
+    ThreadBudget underTest = new ThreadBudget(settings.asConfig());
+
+    assertThat(underTest.getModulesThreads()).isEqualTo(1);
+    assertThat(underTest.getSensorsThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void sensors_borrow_threads_which_are_not_used_by_modules() {
+    settings.setProperty(ThreadBudget.MODULES_THREADS_PROPERTY, 4);
+    settings.setProperty(ThreadBudget.SENSORS_THREADS_PROPERTY, 2);
+    ThreadBudget underTest = new ThreadBudget(settings.asConfig());
+
+    underTest.acquire();
+    underTest.acquire();
+    assertThat(underTest.tryAcquire(3)).isEqualTo(2);
+    assertThat(underTest.tryAcquire(1)).isZero();
+
+    underTest.release(1);
+    assertThat(underTest.tryAcquire(3)).isEqualTo(1);
+  }
+
+  @Test
+  public void budget_is_the_greatest_number_of_threads() {
+    settings.setProperty(ThreadBudget.MODULES_THREADS_PROPERTY, 2);
+    settings.setProperty(ThreadBudget.SENSORS_THREADS_PROPERTY, 3);
+    ThreadBudget underTest = new ThreadBudget(settings.asConfig());
+
+    assertThat(underTest.tryAcquire(5)).isEqualTo(3);
+  }
+}
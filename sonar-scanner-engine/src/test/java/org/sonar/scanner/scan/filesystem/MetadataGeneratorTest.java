@@ -110,6 +110,36 @@ public class MetadataGeneratorTest {
     assertThat(inputFile.originalLineOffsets()).containsOnly(0, 4, 9);
   }
 
+  @Test
+  public void map_large_file_in_memory() throws Exception {
+    Path tempFile = temp.newFile().toPath();
+    StringBuilder content = new StringBuilder("\uFEFF");
+    int lines = 0;
+    while (content.length() < MetadataGenerator.MAPPING_THRESHOLD) {
+      content.append("line ").append(lines).append("\r\n");
+      lines++;
+    }
+    FileUtils.write(tempFile.toFile(), content, StandardCharsets.UTF_16LE);
+
+    DefaultInputFile inputFile = createInputFileWithMetadata(tempFile);
+    assertThat(inputFile.charset()).isEqualTo(StandardCharsets.UTF_16LE);
+    assertThat(inputFile.lines()).isEqualTo(lines + 1);
+    assertThat(inputFile.nonBlankLines()).isEqualTo(lines);
+    assertThat(inputFile.hash()).isEqualTo(md5Hex(content.substring(1).replace("\r\n", "\n")));
+    assertThat(inputFile.originalLineOffsets()[1]).isEqualTo(8);
+  }
+
+  @Test
+  public void cumulate_time_per_step() throws Exception {
+    Path tempFile = temp.newFile().toPath();
+    FileUtils.write(tempFile.toFile(), "foo\nbar", StandardCharsets.UTF_8);
+
+    createInputFileWithMetadata(tempFile);
+
+    assertThat(generator.timePerStep()).containsOnlyKeys(MetadataGenerator.READ_STEP, MetadataGenerator.CHARSET_STEP, MetadataGenerator.METADATA_STEP,
+      MetadataGenerator.STATUS_STEP);
+  }
+
   @Test
   public void use_default_charset_if_detection_fails() throws IOException {
     Path tempFile = temp.newFile().toPath();
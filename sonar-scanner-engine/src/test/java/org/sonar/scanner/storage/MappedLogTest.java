@@ -0,0 +1,89 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedLogTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_appended_records_of_several_segments() throws IOException {
+    MappedLog underTest = new MappedLog(temp.newFile(), 64);
+    long[] positions = new long[100];
+    for (int i = 0; i < positions.length; i++) {
+      byte[] bytes = ("record " + i).getBytes(UTF_8);
+      positions[i] = underTest.append(bytes, bytes.length);
+    }
+
+    for (int i = 0; i < positions.length; i++) {
+      assertThat(new String(underTest.read(positions[i]), UTF_8)).isEqualTo("record " + i);
+    }
+    underTest.close();
+  }
+
+  @Test
+  public void read_record_bigger_than_segment() throws IOException {
+    MappedLog underTest = new MappedLog(temp.newFile(), 64);
+    byte[] small = "small".getBytes(UTF_8);
+    byte[] big = new byte[1_000];
+    big[999] = 42;
+
+    long smallPosition = underTest.append(small, small.length);
+    long bigPosition = underTest.append(big, big.length);
+    long lastPosition = underTest.append(small, small.length);
+
+    assertThat(underTest.read(smallPosition)).isEqualTo(small);
+    assertThat(underTest.read(bigPosition)).isEqualTo(big);
+    assertThat(underTest.read(lastPosition)).isEqualTo(small);
+    underTest.close();
+  }
+
+  @Test
+  public void append_part_of_array() throws IOException {
+    MappedLog underTest = new MappedLog(temp.newFile(), 64);
+    byte[] bytes = "abcdef".getBytes(UTF_8);
+
+    long position = underTest.append(bytes, 3);
+
+    assertThat(underTest.read(position)).isEqualTo("abc".getBytes(UTF_8));
+    underTest.close();
+  }
+
+  @Test
+  public void delete_file_when_closed() throws IOException {
+    File file = temp.newFile();
+    MappedLog underTest = new MappedLog(file, 64);
+    underTest.append(new byte[10], 10);
+
+    underTest.close();
+
+    assertThat(file).doesNotExist();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
+import org.sonar.scanner.bootstrap.GlobalTempFolderProvider;
+import org.sonar.scanner.issue.tracking.ServerIssueValueCoder;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Same tests as {@link StorageTest}, with the {@link MappedStorageBackend}
+ */
+public class MappedStorageTest extends StorageTest {
+
+  private static StoragesManager mappedCachesManager;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @BeforeClass
+  public static void startMappedClass() {
+    Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      StoragesManager.BACKEND_PROPERTY, StoragesManager.BACKEND_MMAP);
+    GlobalProperties globalProperties = new GlobalProperties(props);
+    mappedCachesManager = new StoragesManager(new GlobalTempFolderProvider().provide(globalProperties), globalProperties);
+    mappedCachesManager.start();
+  }
+
+  @Override
+  public void start() {
+    caches = new Storages(mappedCachesManager);
+    caches.start();
+  }
+
+  @AfterClass
+  public static void stopMappedClass() {
+    if (mappedCachesManager != null) {
+      mappedCachesManager.stop();
+    }
+  }
+
+  @Test
+  public void values_are_encoded_by_registered_value_coders() {
+    caches.registerValueCoder(ServerIssue.class, new ServerIssueValueCoder());
+    Storage<ServerIssue> cache = caches.createCache("issues");
+
+    cache.put("component", "key1", ServerIssue.newBuilder().setKey("key1").setMsg("message").build());
+
+    assertThat(cache.get("component", "key1").getMsg()).isEqualTo("message");
+    assertThat(cache.values("component")).extracting(ServerIssue::getKey).containsExactly("key1");
+  }
+
+  @Test
+  public void override_value() {
+    Storage<String> cache = caches.createCache("capitals");
+
+    cache.put("europe", "france", "lyon");
+    cache.put("europe", "france", "paris");
+
+    assertThat(cache.get("europe", "france")).isEqualTo("paris");
+    assertThat(cache.values()).containsExactly("paris");
+  }
+
+  @Test
+  public void keys_of_different_types_are_supported() {
+    Storage<String> cache = caches.createCache("mixed");
+
+    cache.put("component", 2, "two");
+    cache.put("component", 1, "one");
+    cache.put("component", "one", "string");
+
+    assertThat(cache.get("component", 1)).isEqualTo("one");
+    assertThat(cache.get("component", "one")).isEqualTo("string");
+    assertThat(cache.values("component")).containsExactly("one", "two", "string");
+  }
+
+  @Test
+  public void clean_files_when_stopped() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("france", "paris");
+
+    caches.stop();
+    caches = null;
+
+    assertThat(mappedCachesManager.tempDir().listFiles((dir, name) -> name.endsWith(".log"))).isEmpty();
+  }
+
+  @Test
+  public void fail_if_backend_is_not_supported() {
+    GlobalProperties props = new GlobalProperties(ImmutableMap.of(StoragesManager.BACKEND_PROPERTY, "unknown"));
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("Unsupported value of property 'sonar.scanner.storage.backend': 'unknown'. Supported values are 'persistit' and 'mmap'");
+
+    new StoragesManager(mock(TempFolder.class), props);
+  }
+}
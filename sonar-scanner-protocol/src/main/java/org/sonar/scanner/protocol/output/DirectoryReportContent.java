@@ -0,0 +1,94 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.CheckForNull;
+
+/**
+ * Report extracted in a directory
+ */
+class DirectoryReportContent implements ReportContent {
+
+  private final FileStructure fileStructure;
+
+  DirectoryReportContent(FileStructure fileStructure) {
+    this.fileStructure = fileStructure;
+  }
+
+  @Override
+  public boolean exists(String fileName) {
+    return toFile(fileName).isFile();
+  }
+
+  @Override
+  @CheckForNull
+  public InputStream open(String fileName) {
+    File file = toFile(fileName);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to open file of analysis report: " + file, e);
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public ByteBuffer map(String fileName) {
+    File file = toFile(fileName);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File of analysis report is too large to be mapped: " + file);
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to map file of analysis report: " + file, e);
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public File file(String fileName) {
+    File file = toFile(fileName);
+    return file.isFile() ? file : null;
+  }
+
+  @Override
+  public String describe(String fileName) {
+    return toFile(fileName).toString();
+  }
+
+  private File toFile(String fileName) {
+    return new File(fileStructure.root(), fileName);
+  }
+}
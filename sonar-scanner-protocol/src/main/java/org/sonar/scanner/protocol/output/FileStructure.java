@@ -44,6 +44,7 @@ public class FileStructure {
     SOURCE("source-", ".txt");
 
     private static final String PB = ".pb";
+    private static final String PACK = ".pack";
     private final String filePrefix;
     private final String fileSuffix;
 
@@ -51,8 +52,40 @@ public class FileStructure {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
     }
+
+    /**
+     * Ref of the component whose data is stored in the file of the given name, or -1 if
+     * the file does not belong to this domain.
+     */
+    int componentRefOf(String fileName) {
+      if (fileName.length() <= filePrefix.length() + fileSuffix.length() || !fileName.startsWith(filePrefix) || !fileName.endsWith(fileSuffix)) {
+        return -1;
+      }
+      try {
+        return Math.max(-1, Integer.parseInt(fileName.substring(filePrefix.length(), fileName.length() - fileSuffix.length())));
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+
+    String fileName(int componentRef) {
+      return filePrefix + componentRef + fileSuffix;
+    }
+
+    String packedFileName() {
+      return filePrefix.substring(0, filePrefix.length() - 1) + PACK;
+    }
+
+    static boolean isPackedFileName(String fileName) {
+      return fileName.endsWith(PACK);
+    }
   }
 
+  static final String METADATA_FILE_NAME = "metadata.pb";
+  static final String ANALYSIS_LOG_FILE_NAME = "analysis.log";
+  static final String ACTIVE_RULES_FILE_NAME = "activerules.pb";
+  static final String CONTEXT_PROPERTIES_FILE_NAME = "context-props.pb";
+
   private final File dir;
 
   public FileStructure(File dir) {
@@ -63,23 +96,40 @@ public class FileStructure {
   }
 
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, METADATA_FILE_NAME);
   }
 
   public File analysisLog() {
-    return new File(dir, "analysis.log");
+    return new File(dir, ANALYSIS_LOG_FILE_NAME);
   }
 
   public File activeRules() {
-    return new File(dir, "activerules.pb");
+    return new File(dir, ACTIVE_RULES_FILE_NAME);
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
+    return new File(dir, domain.fileName(componentRef));
+  }
+
+  /**
+   * Segment containing the data of all the components of a domain, once the report is packed.
+   * @see ScannerReportWriter#pack()
+   */
+  public File packedFileFor(Domain domain) {
+    return new File(dir, domain.packedFileName());
+  }
+
+  /**
+   * Whether the data of components is stored in a segment per domain rather than in a file per
+   * component and per domain. Components are always written, so their segment exists in all
+   * packed reports.
+   */
+  public boolean isPacked() {
+    return packedFileFor(Domain.COMPONENT).isFile();
   }
 
   public File contextProperties() {
-    return new File(dir, "context-props.pb");
+    return new File(dir, CONTEXT_PROPERTIES_FILE_NAME);
   }
   
   public File root() {
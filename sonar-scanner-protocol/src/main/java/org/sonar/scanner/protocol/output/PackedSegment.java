@@ -0,0 +1,166 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.CheckForNull;
+
+/**
+ * Data of all the components of a domain, stored in a single file:
+ * <pre>
+ *   data of component #1 | data of component #2 | ... | index | footer
+ * </pre>
+ * The index contains, for each component, its ref, the offset and the length of its data. The footer
+ * contains the offset of the index, the number of components and a magic number.
+ * <p/>
+ * Data of a component is the content of the file it would have in a report which is not packed, compressed
+ * with zlib. As each component is compressed on its own, segments do not need to be compressed again when
+ * zipping the report, so that they can be read in place from the zip file.
+ * <p/>
+ * Segments are read from a single {@link ByteBuffer}, so their size is limited to 2GB.
+ */
+class PackedSegment {
+
+  private static final int MAGIC = 0x50414B32;
+  private static final int INDEX_ENTRY_SIZE = 4 + 8 + 8;
+  private static final int FOOTER_SIZE = 8 + 4 + 4;
+  private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+  private final String description;
+  private final ByteBuffer data;
+  private final Map<Integer, long[]> offsetAndLengthByRef;
+
+  private PackedSegment(String description, ByteBuffer data, Map<Integer, long[]> offsetAndLengthByRef) {
+    this.description = description;
+    this.data = data;
+    this.offsetAndLengthByRef = offsetAndLengthByRef;
+  }
+
+  /**
+   * Writes the content of the given files, sorted by component ref, to a new segment.
+   */
+  static void write(File segment, SortedMap<Integer, File> filesByRef) {
+    write(segment, filesByRef, MAX_SIZE);
+  }
+
+  static void write(File segment, SortedMap<Integer, File> filesByRef, long maxSize) {
+    long indexAndFooterSize = (long) filesByRef.size() * INDEX_ENTRY_SIZE + FOOTER_SIZE;
+    Deflater deflater = new Deflater();
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment)))) {
+      long[] offsets = new long[filesByRef.size()];
+      long[] lengths = new long[filesByRef.size()];
+      long offset = 0L;
+      int i = 0;
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      for (File file : filesByRef.values()) {
+        deflater.reset();
+        compressed.reset();
+        try (DeflaterOutputStream deflated = new DeflaterOutputStream(compressed, deflater)) {
+          Files.copy(file.toPath(), deflated);
+        }
+        if (offset + compressed.size() + indexAndFooterSize > maxSize) {
+          throw new IllegalStateException("Packed report file would exceed the maximum size of " + maxSize + " bytes: " + segment);
+        }
+        compressed.writeTo(output);
+        offsets[i] = offset;
+        lengths[i] = compressed.size();
+        offset += lengths[i];
+        i++;
+      }
+      i = 0;
+      for (Integer ref : filesByRef.keySet()) {
+        output.writeInt(ref);
+        output.writeLong(offsets[i]);
+        output.writeLong(lengths[i]);
+        i++;
+      }
+      output.writeLong(offset);
+      output.writeInt(filesByRef.size());
+      output.writeInt(MAGIC);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write packed report file: " + segment, e);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Loads the index of an existing segment, which content is provided by the given buffer.
+   *
+   * @param description location of the segment, for error messages
+   */
+  static PackedSegment open(ByteBuffer segment, String description) {
+    ByteBuffer buffer = segment.duplicate();
+    int length = buffer.limit();
+    if (length < FOOTER_SIZE) {
+      throw new IllegalStateException("Packed report file is corrupted: " + description);
+    }
+    buffer.position(length - FOOTER_SIZE);
+    long indexOffset = buffer.getLong();
+    int count = buffer.getInt();
+    if (buffer.getInt() != MAGIC || count < 0 || indexOffset + (long) count * INDEX_ENTRY_SIZE != length - FOOTER_SIZE) {
+      throw new IllegalStateException("Packed report file is corrupted: " + description);
+    }
+    buffer.position((int) indexOffset);
+    Map<Integer, long[]> offsetAndLengthByRef = new HashMap<>(count * 2);
+    for (int i = 0; i < count; i++) {
+      offsetAndLengthByRef.put(buffer.getInt(), new long[] {buffer.getLong(), buffer.getLong()});
+    }
+    return new PackedSegment(description, segment, offsetAndLengthByRef);
+  }
+
+  boolean contains(int componentRef) {
+    return offsetAndLengthByRef.containsKey(componentRef);
+  }
+
+  /**
+   * Opens the data of the given component, or returns {@code null} if the component has no data
+   * in this segment. The caller is responsible for closing the stream.
+   */
+  @CheckForNull
+  InputStream open(int componentRef) {
+    long[] offsetAndLength = offsetAndLengthByRef.get(componentRef);
+    if (offsetAndLength == null) {
+      return null;
+    }
+    long end = offsetAndLength[0] + offsetAndLength[1];
+    if (offsetAndLength[0] < 0 || end > data.limit()) {
+      throw new IllegalStateException("Data of component #" + componentRef + " is corrupted in packed report file: " + description);
+    }
+    ByteBuffer componentData = data.duplicate();
+    componentData.limit((int) end);
+    componentData.position((int) offsetAndLength[0]);
+    return new InflaterInputStream(new ByteBufferInputStream(componentData));
+  }
+}
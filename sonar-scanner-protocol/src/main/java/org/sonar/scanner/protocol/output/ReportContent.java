@@ -0,0 +1,60 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import javax.annotation.CheckForNull;
+
+/**
+ * Files of an analysis report, whether the report is a directory or a zip file.
+ */
+interface ReportContent {
+
+  boolean exists(String fileName);
+
+  /**
+   * The caller is responsible for closing the stream.
+   * @return {@code null} if the file does not exist
+   */
+  @CheckForNull
+  InputStream open(String fileName);
+
+  /**
+   * Content of the file, memory-mapped when possible.
+   * @return {@code null} if the file does not exist
+   */
+  @CheckForNull
+  ByteBuffer map(String fileName);
+
+  /**
+   * @return {@code null} if the file does not exist
+   * @throws IllegalStateException if files of the report are not stored on the file system
+   */
+  @CheckForNull
+  File file(String fileName);
+
+  /**
+   * Location of the file, for error messages
+   */
+  String describe(String fileName);
+
+}
@@ -19,162 +19,263 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads reports which are packed (see {@link ScannerReportWriter#pack()}) as well as reports
+ * which are not, for example when they were generated by older scanners.
+ * <p/>
+ * Reports are usually extracted in a directory, but can also be read directly from their zip file
+ * (see {@link ScannerReportWriter#zip(File)}), in which case nothing is written on the file system.
+ */
 public class ScannerReportReader {
 
   private final FileStructure fileStructure;
+  private final ReportContent content;
+  private final Map<FileStructure.Domain, PackedSegment> packedSegments = new EnumMap<>(FileStructure.Domain.class);
+  private boolean packed = false;
+
+  /**
+   * @param report directory in which the report is extracted, or zip file of the report
+   */
+  public ScannerReportReader(File report) {
+    if (report.isFile()) {
+      this.fileStructure = null;
+      this.content = new ZipReportContent(report);
+    } else {
+      this.fileStructure = new FileStructure(report);
+      this.content = new DirectoryReportContent(fileStructure);
+    }
+  }
 
-  public ScannerReportReader(File dir) {
-    this.fileStructure = new FileStructure(dir);
+  /**
+   * Whether the zip file of a report can be read by {@link #ScannerReportReader(File)} without
+   * being extracted. Zip files larger than 2GB are not supported.
+   */
+  public static boolean canReadZip(File zipFile) {
+    return ZipReportContent.canRead(zipFile);
   }
 
   public ScannerReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    try (InputStream input = content.open(FileStructure.METADATA_FILE_NAME)) {
+      if (input == null) {
+        throw new IllegalStateException("Metadata file is missing in analysis report: " + content.describe(FileStructure.METADATA_FILE_NAME));
+      }
+      return Protobuf.read(input, ScannerReport.Metadata.parser());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read " + content.describe(FileStructure.METADATA_FILE_NAME), e);
     }
-    return Protobuf.read(file, ScannerReport.Metadata.parser());
   }
 
   public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
-    File file = fileStructure.activeRules();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
-    }
-    return Protobuf.readStream(file, ScannerReport.ActiveRule.parser());
+    return readStream(FileStructure.ACTIVE_RULES_FILE_NAME, ScannerReport.ActiveRule.parser());
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.MEASURES, componentRef, ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
-    }
-    return null;
+    return read(FileStructure.Domain.CHANGESETS, componentRef, ScannerReport.Changesets.parser());
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    ScannerReport.Component component = read(FileStructure.Domain.COMPONENT, componentRef, ScannerReport.Component.parser());
+    if (component == null) {
+      if (isPacked()) {
+        throw new IllegalStateException("Unable to find report for component #" + componentRef + " in "
+          + content.describe(FileStructure.Domain.COMPONENT.packedFileName()));
+      }
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + content.describe(FileStructure.Domain.COMPONENT.fileName(componentRef)));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return component;
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.ISSUES, componentRef, ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.DUPLICATIONS, componentRef, ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYMBOLS, componentRef, ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef, ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasData(FileStructure.Domain.COVERAGES, componentRef);
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.COVERAGES, fileRef, ScannerReport.LineCoverage.parser());
   }
 
+  /**
+   * Only supported by reports which are extracted and not packed.
+   * @see #openFileSource(int)
+   */
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return readFile(FileStructure.Domain.SOURCE, fileRef);
+  }
+
+  /**
+   * Opens the source of a file, encoded in UTF-8, or returns {@code null} if the report does not contain it.
+   * The caller is responsible for closing the stream.
+   */
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return open(FileStructure.Domain.SOURCE, fileRef);
   }
 
+  /**
+   * Only supported by reports which are extracted and not packed.
+   * @see #openTests(int)
+   */
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return readFile(FileStructure.Domain.TESTS, testFileRef);
+  }
 
-    return null;
+  /**
+   * Opens the stream of {@link ScannerReport.Test} of a test file, or returns {@code null} if the report
+   * does not contain any. The caller is responsible for closing the stream.
+   */
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return open(FileStructure.Domain.TESTS, testFileRef);
   }
 
+  /**
+   * Only supported by reports which are extracted and not packed.
+   * @see #openCoverageDetails(int)
+   */
   @CheckForNull
   public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return readFile(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  }
 
-    return null;
+  /**
+   * Opens the stream of {@link ScannerReport.CoverageDetail} of a test file, or returns {@code null} if
+   * the report does not contain any. The caller is responsible for closing the stream.
+   */
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return open(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
   }
 
   public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
-    File file = fileStructure.contextProperties();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
+    return readStream(FileStructure.CONTEXT_PROPERTIES_FILE_NAME, ScannerReport.ContextProperty.parser());
+  }
+
+  /**
+   * Opens the logs of the analysis, or returns {@code null} if the report does not contain them.
+   * The caller is responsible for closing the stream.
+   */
+  @CheckForNull
+  public InputStream openAnalysisLog() {
+    return content.open(FileStructure.ANALYSIS_LOG_FILE_NAME);
+  }
+
+  private <M extends Message> CloseableIterator<M> readStream(FileStructure.Domain domain, int componentRef, Parser<M> parser) {
+    InputStream input = open(domain, componentRef);
+    return input == null ? emptyCloseableIterator() : Protobuf.readStream(input, parser);
+  }
+
+  private <M extends Message> CloseableIterator<M> readStream(String fileName, Parser<M> parser) {
+    InputStream input = content.open(fileName);
+    return input == null ? emptyCloseableIterator() : Protobuf.readStream(input, parser);
+  }
+
+  @CheckForNull
+  private <M extends Message> M read(FileStructure.Domain domain, int componentRef, Parser<M> parser) {
+    try (InputStream input = open(domain, componentRef)) {
+      return input == null ? null : Protobuf.read(input, parser);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read data of component #" + componentRef + " in analysis report", e);
     }
-    return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
   }
 
-  private static boolean fileExists(File file) {
-    return file.exists() && file.isFile();
+  @CheckForNull
+  private InputStream open(FileStructure.Domain domain, int componentRef) {
+    if (isPacked()) {
+      PackedSegment segment = packedSegment(domain);
+      return segment == null ? null : segment.open(componentRef);
+    }
+    return content.open(domain.fileName(componentRef));
   }
 
+  @CheckForNull
+  private File readFile(FileStructure.Domain domain, int componentRef) {
+    if (isPacked()) {
+      throw new IllegalStateException("Analysis report is packed, data of component #" + componentRef + " is not stored in a dedicated file");
+    }
+    return content.file(domain.fileName(componentRef));
+  }
+
+  private boolean hasData(FileStructure.Domain domain, int componentRef) {
+    if (isPacked()) {
+      PackedSegment segment = packedSegment(domain);
+      return segment != null && segment.contains(componentRef);
+    }
+    return content.exists(domain.fileName(componentRef));
+  }
+
+  /**
+   * Reports can be read before being packed, for example by the scanner itself, so the format is
+   * checked until a packed report is detected.
+   */
+  private synchronized boolean isPacked() {
+    if (!packed) {
+      packed = content.exists(FileStructure.Domain.COMPONENT.packedFileName());
+    }
+    return packed;
+  }
+
+  @CheckForNull
+  private synchronized PackedSegment packedSegment(FileStructure.Domain domain) {
+    if (!packedSegments.containsKey(domain)) {
+      String fileName = domain.packedFileName();
+      ByteBuffer segment = content.map(fileName);
+      packedSegments.put(domain, segment == null ? null : PackedSegment.open(segment, content.describe(fileName)));
+    }
+    return packedSegments.get(domain);
+  }
+
+  /**
+   * @throws IllegalStateException if the report is read from its zip file
+   */
   public FileStructure getFileStructure() {
+    if (fileStructure == null) {
+      throw new IllegalStateException("Analysis report is read from its zip file, it has no file structure");
+    }
     return fileStructure;
   }
 }
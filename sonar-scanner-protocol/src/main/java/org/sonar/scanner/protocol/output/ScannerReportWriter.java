@@ -22,8 +22,15 @@ package org.sonar.scanner.protocol.output;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.annotation.concurrent.Immutable;
+import org.apache.commons.io.FileUtils;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
@@ -146,4 +153,82 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Moves the data of components, written so far in a file per component and per domain, to a single
+   * file per domain. It drastically reduces the number of files to be compressed, uploaded and then
+   * extracted by the Compute Engine. Data of components must not be written after the report is packed.
+   *
+   * @see FileStructure#packedFileFor(FileStructure.Domain)
+   */
+  public void pack() {
+    File[] files = fileStructure.root().listFiles();
+    if (files == null) {
+      throw new IllegalStateException("Unable to list files of analysis report: " + fileStructure.root());
+    }
+    // components are packed last, as their segment is what identifies a packed report
+    for (FileStructure.Domain domain : FileStructure.Domain.values()) {
+      if (domain != FileStructure.Domain.COMPONENT) {
+        pack(domain, files);
+      }
+    }
+    pack(FileStructure.Domain.COMPONENT, files);
+  }
+
+  private void pack(FileStructure.Domain domain, File[] files) {
+    SortedMap<Integer, File> filesByRef = new TreeMap<>();
+    for (File file : files) {
+      int componentRef = domain.componentRefOf(file.getName());
+      if (componentRef >= 0 && file.isFile()) {
+        filesByRef.put(componentRef, file);
+      }
+    }
+    if (!filesByRef.isEmpty() || domain == FileStructure.Domain.COMPONENT) {
+      PackedSegment.write(fileStructure.packedFileFor(domain), filesByRef);
+      for (File file : filesByRef.values()) {
+        if (!file.delete()) {
+          throw new IllegalStateException("Unable to delete packed file of analysis report: " + file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compresses the report to the given zip file. Packed files, which content is already compressed
+   * (see {@link #pack()}), are stored without compression so that they can be read in place from
+   * the zip file by {@link ScannerReportReader}.
+   */
+  public void zip(File zipFile) {
+    try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+      zipDir(fileStructure.root(), "", zip);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to zip analysis report to " + zipFile, e);
+    }
+  }
+
+  private static void zipDir(File dir, String prefix, ZipOutputStream zip) throws IOException {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      throw new IllegalStateException("Unable to list files of analysis report: " + dir);
+    }
+    for (File file : files) {
+      String name = prefix + file.getName();
+      if (file.isDirectory()) {
+        zip.putNextEntry(new ZipEntry(name + "/"));
+        zip.closeEntry();
+        zipDir(file, name + "/", zip);
+      } else {
+        ZipEntry entry = new ZipEntry(name);
+        if (FileStructure.Domain.isPackedFileName(name)) {
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(file.length());
+          entry.setCompressedSize(file.length());
+          entry.setCrc(FileUtils.checksumCRC32(file));
+        }
+        zip.putNextEntry(entry);
+        Files.copy(file.toPath(), zip);
+        zip.closeEntry();
+      }
+    }
+  }
+
 }
@@ -0,0 +1,256 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Report read from its zip file, without being extracted. The zip file is memory-mapped and its entries are
+ * located with the central directory. Entries which are stored without compression, like the segments of
+ * packed reports, are read in place.
+ */
+class ZipReportContent implements ReportContent {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int END_SIZE = 22;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+  private final File zipFile;
+  private final ByteBuffer zip;
+  private final Map<String, Entry> entries;
+
+  ZipReportContent(File zipFile) {
+    if (!canRead(zipFile)) {
+      throw new IllegalArgumentException("Zip file of analysis report does not exist or is too large to be read without being extracted: " + zipFile);
+    }
+    this.zipFile = zipFile;
+    try (FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ)) {
+      this.zip = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read zip file of analysis report: " + zipFile, e);
+    }
+    this.entries = readCentralDirectory();
+  }
+
+  /**
+   * Zip files are mapped in a single buffer, so their size is limited to 2GB.
+   */
+  static boolean canRead(File zipFile) {
+    return zipFile.isFile() && zipFile.length() <= Integer.MAX_VALUE;
+  }
+
+  @Override
+  public boolean exists(String fileName) {
+    return entries.containsKey(fileName);
+  }
+
+  @Override
+  @CheckForNull
+  public InputStream open(String fileName) {
+    Entry entry = entries.get(fileName);
+    if (entry == null) {
+      return null;
+    }
+    InputStream data = new ByteBufferInputStream(data(entry));
+    switch (entry.method) {
+      case ZipEntry.STORED:
+        return data;
+      case ZipEntry.DEFLATED:
+        return new RawInflaterInputStream(data);
+      default:
+        throw new IllegalStateException("Unsupported compression method of " + describe(fileName) + ": " + entry.method);
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public ByteBuffer map(String fileName) {
+    Entry entry = entries.get(fileName);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.method == ZipEntry.STORED) {
+      return data(entry);
+    }
+    try (InputStream input = open(fileName)) {
+      return ByteBuffer.wrap(IOUtils.toByteArray(input));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read " + describe(fileName), e);
+    }
+  }
+
+  @Override
+  public File file(String fileName) {
+    throw new IllegalStateException("Analysis report is read from its zip file, " + fileName + " is not extracted");
+  }
+
+  @Override
+  public String describe(String fileName) {
+    return zipFile + "!/" + fileName;
+  }
+
+  private Map<String, Entry> readCentralDirectory() {
+    int end = findEndOfCentralDirectory();
+    long count = zip.getShort(end + 10) & 0xFFFF;
+    long offset = zip.getInt(end + 16) & 0xFFFFFFFFL;
+    if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+      // zip64, used by large reports which are not packed as they contain more than 65535 files
+      int locator = end - ZIP64_LOCATOR_SIZE;
+      checkSignature(locator, ZIP64_LOCATOR_SIGNATURE);
+      int zip64End = toInt(zip.getLong(locator + 8));
+      checkSignature(zip64End, ZIP64_END_SIGNATURE);
+      count = zip.getLong(zip64End + 32);
+      offset = zip.getLong(zip64End + 48);
+    }
+    Map<String, Entry> result = new HashMap<>();
+    int position = toInt(offset);
+    for (long i = 0; i < count; i++) {
+      checkSignature(position, CENTRAL_HEADER_SIGNATURE);
+      int method = zip.getShort(position + 10) & 0xFFFF;
+      long compressedSize = zip.getInt(position + 20) & 0xFFFFFFFFL;
+      int nameLength = zip.getShort(position + 28) & 0xFFFF;
+      int extraLength = zip.getShort(position + 30) & 0xFFFF;
+      int commentLength = zip.getShort(position + 32) & 0xFFFF;
+      long localHeaderOffset = zip.getInt(position + 42) & 0xFFFFFFFFL;
+      String name = readName(position + CENTRAL_HEADER_SIZE, nameLength);
+      if (!name.endsWith("/")) {
+        result.put(name, new Entry(method, toInt(localHeaderOffset), toInt(compressedSize)));
+      }
+      position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return result;
+  }
+
+  private int findEndOfCentralDirectory() {
+    int lowest = Math.max(0, zip.limit() - END_SIZE - MAX_COMMENT_SIZE);
+    for (int position = zip.limit() - END_SIZE; position >= lowest; position--) {
+      if (zip.getInt(position) == END_SIGNATURE) {
+        return position;
+      }
+    }
+    throw corrupted();
+  }
+
+  private ByteBuffer data(Entry entry) {
+    checkSignature(entry.localHeaderOffset, LOCAL_HEADER_SIGNATURE);
+    int nameLength = zip.getShort(entry.localHeaderOffset + 26) & 0xFFFF;
+    int extraLength = zip.getShort(entry.localHeaderOffset + 28) & 0xFFFF;
+    int start = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    ByteBuffer data = zip.duplicate();
+    data.limit(start + entry.compressedSize);
+    data.position(start);
+    return data.slice();
+  }
+
+  private String readName(int position, int length) {
+    byte[] name = new byte[length];
+    ByteBuffer buffer = zip.duplicate();
+    buffer.position(position);
+    buffer.get(name);
+    return new String(name, StandardCharsets.UTF_8);
+  }
+
+  private void checkSignature(int position, int signature) {
+    if (position < 0 || position > zip.limit() - 4 || zip.getInt(position) != signature) {
+      throw corrupted();
+    }
+  }
+
+  private int toInt(long position) {
+    if (position < 0 || position > zip.limit()) {
+      throw corrupted();
+    }
+    return (int) position;
+  }
+
+  private IllegalStateException corrupted() {
+    return new IllegalStateException("Zip file of analysis report is corrupted: " + zipFile);
+  }
+
+  private static class Entry {
+    private final int method;
+    private final int localHeaderOffset;
+    private final int compressedSize;
+
+    private Entry(int method, int localHeaderOffset, int compressedSize) {
+      this.method = method;
+      this.localHeaderOffset = localHeaderOffset;
+      this.compressedSize = compressedSize;
+    }
+  }
+
+  /**
+   * Inflates data which has no zlib header, like entries of zip files. The inflater needs an extra byte
+   * once all the data has been provided.
+   */
+  private static class RawInflaterInputStream extends InflaterInputStream {
+    private boolean eof = false;
+    private boolean closed = false;
+
+    private RawInflaterInputStream(InputStream input) {
+      super(input, new Inflater(true));
+    }
+
+    @Override
+    protected void fill() throws IOException {
+      if (eof) {
+        throw new EOFException("Unexpected end of zip entry");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        inf.end();
+        super.close();
+      }
+    }
+  }
+}
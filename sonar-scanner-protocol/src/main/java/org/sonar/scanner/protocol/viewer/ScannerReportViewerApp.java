@@ -54,7 +54,6 @@ import javax.swing.tree.TreeSelectionModel;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.core.util.CloseableIterator;
-import org.sonar.scanner.protocol.output.FileStructure.Domain;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Changesets;
 import org.sonar.scanner.protocol.output.ScannerReport.Changesets.Changeset;
@@ -312,11 +311,11 @@ public class ScannerReportViewerApp {
 
   private void updateTests(Component component) {
     testsEditor.setText("");
-    File tests = reader.readTests(component.getRef());
+    InputStream tests = reader.openTests(component.getRef());
     if (tests == null) {
       return;
     }
-    try (InputStream inputStream = FileUtils.openInputStream(tests)) {
+    try (InputStream inputStream = tests) {
       ScannerReport.Test test = ScannerReport.Test.parser().parseDelimitedFrom(inputStream);
       while (test != null) {
         testsEditor.getDocument().insertString(testsEditor.getDocument().getEndPosition().getOffset(), test + "\n", null);
@@ -328,15 +327,15 @@ public class ScannerReportViewerApp {
   }
 
   private void updateSource(Component component) {
-    File sourceFile = reader.getFileStructure().fileFor(Domain.SOURCE, component.getRef());
+    InputStream source = reader.openFileSource(component.getRef());
     sourceEditor.setText("");
 
-    if (sourceFile.exists()) {
-      try (Scanner s = new Scanner(sourceFile, StandardCharsets.UTF_8.name()).useDelimiter("\\Z")) {
+    if (source != null) {
+      try (Scanner s = new Scanner(source, StandardCharsets.UTF_8.name()).useDelimiter("\\Z")) {
         if (s.hasNext()) {
           sourceEditor.setText(s.next());
         }
-      } catch (IOException ex) {
+      } catch (Exception ex) {
         StringWriter errors = new StringWriter();
         ex.printStackTrace(new PrintWriter(errors));
         sourceEditor.setText(errors.toString());
@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PackedSegmentTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void write_and_read_data_of_components() throws Exception {
+    TreeMap<Integer, File> filesByRef = new TreeMap<>();
+    filesByRef.put(10, newFile("ten"));
+    filesByRef.put(3, newFile(""));
+    filesByRef.put(7, newFile("seven"));
+    File segment = temp.newFile();
+
+    PackedSegment.write(segment, filesByRef);
+    PackedSegment underTest = open(segment);
+
+    assertThat(read(underTest, 10)).isEqualTo("ten");
+    assertThat(read(underTest, 7)).isEqualTo("seven");
+    assertThat(read(underTest, 3)).isEmpty();
+    assertThat(underTest.contains(3)).isTrue();
+    assertThat(underTest.contains(4)).isFalse();
+    assertThat(underTest.open(4)).isNull();
+  }
+
+  @Test
+  public void write_empty_segment() throws Exception {
+    File segment = temp.newFile();
+
+    PackedSegment.write(segment, new TreeMap<>());
+
+    assertThat(open(segment).contains(1)).isFalse();
+  }
+
+  @Test
+  public void compress_data_of_each_component() throws Exception {
+    TreeMap<Integer, File> filesByRef = new TreeMap<>();
+    filesByRef.put(1, newFile(StringUtils.repeat("compressed ", 1000)));
+    filesByRef.put(2, newFile(StringUtils.repeat("data ", 1000)));
+    File segment = temp.newFile();
+
+    PackedSegment.write(segment, filesByRef);
+    PackedSegment underTest = open(segment);
+
+    assertThat(segment.length()).isLessThan(1000L);
+    assertThat(read(underTest, 1)).isEqualTo(StringUtils.repeat("compressed ", 1000));
+    assertThat(read(underTest, 2)).isEqualTo(StringUtils.repeat("data ", 1000));
+  }
+
+  @Test
+  public void fail_to_write_segment_larger_than_max_size() throws Exception {
+    TreeMap<Integer, File> filesByRef = new TreeMap<>();
+    filesByRef.put(1, newFile("one"));
+    filesByRef.put(2, newFile("two"));
+    File segment = temp.newFile();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Packed report file would exceed the maximum size of 50 bytes: " + segment);
+
+    PackedSegment.write(segment, filesByRef, 50);
+  }
+
+  @Test
+  public void fail_to_open_corrupted_segment() throws Exception {
+    File segment = newFile("this is not a packed segment");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Packed report file is corrupted: " + segment);
+
+    open(segment);
+  }
+
+  private static PackedSegment open(File segment) throws Exception {
+    return PackedSegment.open(ByteBuffer.wrap(FileUtils.readFileToByteArray(segment)), segment.toString());
+  }
+
+  private File newFile(String content) throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, content, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private static String read(PackedSegment segment, int ref) throws Exception {
+    try (InputStream input = segment.open(ref)) {
+      return IOUtils.toString(input, StandardCharsets.UTF_8);
+    }
+  }
+}
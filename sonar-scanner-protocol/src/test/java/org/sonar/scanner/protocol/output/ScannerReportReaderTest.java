@@ -377,4 +377,133 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_packed_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/Foo.java").build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(2).setPath("src/Bar.java").build());
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("issue of 1").build()));
+    writer.writeComponentIssues(2, asList(ScannerReport.Issue.newBuilder().setMsg("issue of 2").build(), ScannerReport.Issue.newBuilder().setMsg("other").build()));
+    writer.writeComponentChangesets(ScannerReport.Changesets.newBuilder().setComponentRef(2).setCopyFromPrevious(true).build());
+    writer.writeComponentCoverage(1, asList(ScannerReport.LineCoverage.newBuilder().setLine(3).setHits(true).build()));
+    FileUtils.write(writer.getSourceFile(2), "line1\nline2");
+    // read before being packed
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+
+    writer.pack();
+
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+    assertThat(underTest.readComponent(2).getPath()).isEqualTo("src/Bar.java");
+    assertThat(underTest.readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("issue of 1");
+    assertThat(underTest.readComponentIssues(2)).extracting(ScannerReport.Issue::getMsg).containsExactly("issue of 2", "other");
+    assertThat(underTest.readComponentMeasures(1)).isEmpty();
+    assertThat(underTest.readChangesets(2).getCopyFromPrevious()).isTrue();
+    assertThat(underTest.readChangesets(1)).isNull();
+    assertThat(underTest.hasCoverage(1)).isTrue();
+    assertThat(underTest.hasCoverage(2)).isFalse();
+    assertThat(underTest.readComponentCoverage(1)).extracting(ScannerReport.LineCoverage::getLine).containsExactly(3);
+    assertThat(underTest.hasSyntaxHighlighting(1)).isFalse();
+    try (InputStream inputStream = underTest.openFileSource(2)) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(1)).isNull();
+    assertThat(underTest.openTests(1)).isNull();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_if_missing_component_in_packed_report() {
+    new ScannerReportWriter(dir).pack();
+
+    underTest.readComponent(UNKNOWN_COMPONENT_REF);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_to_get_file_of_component_in_packed_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    FileUtils.write(writer.getSourceFile(1), "line1");
+    writer.pack();
+
+    underTest.readFileSource(1);
+  }
+
+  @Test
+  public void open_file_source_of_report_which_is_not_packed() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    FileUtils.write(writer.getSourceFile(1), "line1\nline2");
+
+    try (InputStream inputStream = underTest.openFileSource(1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(UNKNOWN_COMPONENT_REF)).isNull();
+  }
+
+  @Test
+  public void read_packed_report_from_zip_file() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_A").build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/Foo.java").build());
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("issue of 1").build()));
+    writer.writeContextProperties(asList(ScannerReport.ContextProperty.newBuilder().setKey("foo").setValue("bar").build()));
+    FileUtils.write(writer.getSourceFile(1), "line1\nline2");
+    FileUtils.write(writer.getFileStructure().analysisLog(), "log1");
+    writer.pack();
+    File zip = temp.newFile();
+    writer.zip(zip);
+
+    underTest = new ScannerReportReader(zip);
+
+    assertThat(underTest.readMetadata().getProjectKey()).isEqualTo("PROJECT_A");
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+    assertThat(underTest.readComponentIssues(1)).extracting(ScannerReport.Issue::getMsg).containsExactly("issue of 1");
+    assertThat(underTest.readComponentIssues(2)).isEmpty();
+    assertThat(underTest.readContextProperties()).extracting(ScannerReport.ContextProperty::getKey).containsExactly("foo");
+    assertThat(underTest.readActiveRules()).isEmpty();
+    assertThat(underTest.hasCoverage(1)).isFalse();
+    try (InputStream inputStream = underTest.openFileSource(1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+    }
+    try (InputStream inputStream = underTest.openAnalysisLog()) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("log1");
+    }
+  }
+
+  @Test
+  public void read_report_which_is_not_packed_from_zip_file() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/Foo.java").build());
+    writer.writeComponentCoverage(1, asList(ScannerReport.LineCoverage.newBuilder().setLine(3).setHits(true).build()));
+    FileUtils.write(writer.getSourceFile(1), "line1\nline2");
+    File zip = temp.newFile();
+    writer.zip(zip);
+
+    underTest = new ScannerReportReader(zip);
+
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+    assertThat(underTest.hasCoverage(1)).isTrue();
+    assertThat(underTest.readComponentCoverage(1)).extracting(ScannerReport.LineCoverage::getLine).containsExactly(3);
+    try (InputStream inputStream = underTest.openFileSource(1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(UNKNOWN_COMPONENT_REF)).isNull();
+    assertThat(underTest.openAnalysisLog()).isNull();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_to_get_file_of_component_in_zip_file() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    FileUtils.write(writer.getSourceFile(1), "line1");
+    File zip = temp.newFile();
+    writer.zip(zip);
+
+    new ScannerReportReader(zip).readFileSource(1);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_to_read_corrupted_zip_file() throws Exception {
+    File zip = temp.newFile();
+    FileUtils.write(zip, "this is not a zip file");
+
+    new ScannerReportReader(zip);
+  }
 }
@@ -21,6 +21,8 @@ package org.sonar.scanner.protocol.output;
 
 import com.google.common.collect.Iterators;
 import java.io.File;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
@@ -299,4 +301,48 @@ public class ScannerReportWriterTest {
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.COVERAGE_DETAILS, 1)).isTrue();
   }
+
+  @Test
+  public void pack_data_of_components_in_a_file_per_domain() {
+    underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(2).build());
+    underTest.writeComponentIssues(2, asList(ScannerReport.Issue.newBuilder().setMsg("the message").build()));
+
+    underTest.pack();
+
+    FileStructure structure = underTest.getFileStructure();
+    assertThat(structure.isPacked()).isTrue();
+    assertThat(structure.packedFileFor(FileStructure.Domain.COMPONENT)).isFile();
+    assertThat(structure.packedFileFor(FileStructure.Domain.ISSUES)).isFile();
+    assertThat(structure.packedFileFor(FileStructure.Domain.MEASURES)).doesNotExist();
+    assertThat(structure.fileFor(FileStructure.Domain.COMPONENT, 1)).doesNotExist();
+    assertThat(structure.fileFor(FileStructure.Domain.COMPONENT, 2)).doesNotExist();
+    assertThat(structure.fileFor(FileStructure.Domain.ISSUES, 2)).doesNotExist();
+  }
+
+  @Test
+  public void pack_report_without_components() {
+    underTest.pack();
+
+    assertThat(underTest.getFileStructure().isPacked()).isTrue();
+  }
+
+  @Test
+  public void zip_report_without_compressing_packed_files() throws Exception {
+    underTest.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_A").build());
+    underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    underTest.pack();
+    File zipFile = temp.newFile();
+
+    underTest.zip(zipFile);
+
+    try (ZipFile zip = new ZipFile(zipFile)) {
+      ZipEntry metadata = zip.getEntry("metadata.pb");
+      assertThat(metadata.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+      ZipEntry components = zip.getEntry(FileStructure.Domain.COMPONENT.packedFileName());
+      assertThat(components.getMethod()).isEqualTo(ZipEntry.STORED);
+      assertThat(components.getSize()).isEqualTo(underTest.getFileStructure().packedFileFor(FileStructure.Domain.COMPONENT).length());
+    }
+  }
+
 }
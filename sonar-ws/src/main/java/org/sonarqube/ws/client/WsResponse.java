@@ -22,6 +22,7 @@ package org.sonarqube.ws.client;
 import java.io.Closeable;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Optional;
 
 /**
  * @since 5.3
@@ -51,6 +52,13 @@ public interface WsResponse extends Closeable {
 
   String contentType();
 
+  /**
+   * Value of the given HTTP header, if present
+   *
+   * @since 7.0
+   */
+  Optional<String> header(String name);
+
   boolean hasContent();
 
   InputStream contentStream();
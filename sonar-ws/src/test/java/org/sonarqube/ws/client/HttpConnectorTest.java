@@ -140,6 +140,17 @@ public class HttpConnectorTest {
     assertThat(recordedRequest.getHeader("X-Bar")).isEqualTo("barz");
   }
 
+  @Test
+  public void read_headers_of_response() throws Exception {
+    server.enqueue(new MockResponse().setBody("hello, world!").setHeader("ETag", "\"abc\""));
+
+    underTest = HttpConnector.newBuilder().url(serverUrl).build();
+    WsResponse response = underTest.call(new GetRequest("api/issues/search"));
+
+    assertThat(response.header("ETag")).contains("\"abc\"");
+    assertThat(response.header("X-Foo")).isEmpty();
+  }
+
   @Test
   public void use_basic_authentication() throws Exception {
     answerHelloWorld();